@@ -39,6 +39,13 @@ public class OverrideUtilTest {
                         "jdbc.url",
                         "jdbc.autoCreateTables",
                         "jdbc.fetchSize",
+                        "jdbc.dataAccess",
+                        "jdbc.payloadDirectory",
+                        "jdbc.storeDirectory",
+                        "jdbc.readReplicaUrl",
+                        "jdbc.readReplicaPoolSize",
+                        "jdbc.rawTransactionRetention",
+                        "jdbc.shardUrls",
                         "peer.url",
                         "keys.passwordFile",
                         "keys.passwords",
@@ -168,6 +175,9 @@ public class OverrideUtilTest {
                         "server.influxConfig.sslConfig.sslConfigType",
                         "server.influxConfig.sslConfig.excludeCipherSuites",
                         "features.enableRemoteKeyValidation",
+                        "features.enableOutboxDelivery",
+                        "features.enableLookupFilter",
+                        "features.enableGroupCommit",
                         "encryptor.type");
 
         final Map<String, Class> results = OverrideUtil.buildConfigOptions();
@@ -0,0 +1,11 @@
+package com.quorum.tessera.config;
+
+/** How stored transactions are read from and written to the database */
+public enum DataAccessType {
+    JPA,
+    JDBC,
+    /** Transactions are kept in an embedded log-structured store in the store directory, rather than the database */
+    EMBEDDED,
+    /** Transactions are spread by hash over the databases given by the shard urls, rather than kept in the database */
+    SHARDED
+}
@@ -11,6 +11,15 @@ public class FeatureToggles {
     @XmlElement(defaultValue = "false")
     private boolean enableRemoteKeyValidation;
 
+    @XmlElement(defaultValue = "false")
+    private boolean enableOutboxDelivery;
+
+    @XmlElement(defaultValue = "false")
+    private boolean enableLookupFilter;
+
+    @XmlElement(defaultValue = "false")
+    private boolean enableGroupCommit;
+
     public FeatureToggles() {}
 
     public boolean isEnableRemoteKeyValidation() {
@@ -21,6 +30,30 @@ public class FeatureToggles {
         this.enableRemoteKeyValidation = enableRemoteKeyValidation;
     }
 
+    public boolean isEnableOutboxDelivery() {
+        return enableOutboxDelivery;
+    }
+
+    public void setEnableOutboxDelivery(final boolean enableOutboxDelivery) {
+        this.enableOutboxDelivery = enableOutboxDelivery;
+    }
+
+    public boolean isEnableLookupFilter() {
+        return enableLookupFilter;
+    }
+
+    public void setEnableLookupFilter(final boolean enableLookupFilter) {
+        this.enableLookupFilter = enableLookupFilter;
+    }
+
+    public boolean isEnableGroupCommit() {
+        return enableGroupCommit;
+    }
+
+    public void setEnableGroupCommit(final boolean enableGroupCommit) {
+        this.enableGroupCommit = enableGroupCommit;
+    }
+
     @Override
     public boolean equals(final Object o) {
         if (!(o instanceof FeatureToggles)) {
@@ -28,11 +61,15 @@ public class FeatureToggles {
         }
 
         final FeatureToggles that = (FeatureToggles) o;
-        return isEnableRemoteKeyValidation() == that.isEnableRemoteKeyValidation();
+        return isEnableRemoteKeyValidation() == that.isEnableRemoteKeyValidation()
+                && isEnableOutboxDelivery() == that.isEnableOutboxDelivery()
+                && isEnableLookupFilter() == that.isEnableLookupFilter()
+                && isEnableGroupCommit() == that.isEnableGroupCommit();
     }
 
     @Override
     public int hashCode() {
-        return Objects.hash(isEnableRemoteKeyValidation());
+        return Objects.hash(
+                isEnableRemoteKeyValidation(), isEnableOutboxDelivery(), isEnableLookupFilter(), isEnableGroupCommit());
     }
 }
@@ -1,9 +1,15 @@
 package com.quorum.tessera.config;
 
+import com.quorum.tessera.config.adapters.PathAdapter;
+
 import javax.validation.constraints.NotNull;
 import javax.xml.bind.annotation.XmlAccessType;
 import javax.xml.bind.annotation.XmlAccessorType;
 import javax.xml.bind.annotation.XmlElement;
+import javax.xml.bind.annotation.adapters.XmlJavaTypeAdapter;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
 
 @XmlAccessorType(XmlAccessType.FIELD)
 public class JdbcConfig extends ConfigItem {
@@ -22,6 +28,33 @@ public class JdbcConfig extends ConfigItem {
 
     @XmlElement private int fetchSize;
 
+    /** Whether transactions are stored through JPA or directly over JDBC */
+    @XmlElement(defaultValue = "JPA")
+    private DataAccessType dataAccess = DataAccessType.JPA;
+
+    /** Directory to keep transaction payloads in, outside of the database; if not set they are kept in the database */
+    @XmlElement
+    @XmlJavaTypeAdapter(PathAdapter.class)
+    private Path payloadDirectory;
+
+    /** Directory of the embedded store, used when transactions are not kept in the database */
+    @XmlElement
+    @XmlJavaTypeAdapter(PathAdapter.class)
+    private Path storeDirectory;
+
+    /** Url of a read replica to send lag tolerant reads to; if not set all reads go to the primary database */
+    @XmlElement private String readReplicaUrl;
+
+    /** Maximum number of connections to the read replica; if not set a default size is used */
+    @XmlElement private int readReplicaPoolSize;
+
+    /** Milliseconds to keep raw transactions for before they are purged; if not set they are kept forever */
+    @XmlElement private long rawTransactionRetention;
+
+    /** Urls of the databases that transactions are spread over when sharded, in order; must not change once used */
+    @XmlElement(name = "shardUrls")
+    private List<String> shardUrls = new ArrayList<>();
+
     public JdbcConfig(String username, String password, String url) {
         this.username = username;
         this.password = password;
@@ -71,4 +104,60 @@ public class JdbcConfig extends ConfigItem {
     public void setFetchSize(int fetchSize) {
         this.fetchSize = fetchSize;
     }
+
+    public DataAccessType getDataAccess() {
+        return dataAccess;
+    }
+
+    public void setDataAccess(DataAccessType dataAccess) {
+        this.dataAccess = dataAccess;
+    }
+
+    public Path getPayloadDirectory() {
+        return payloadDirectory;
+    }
+
+    public void setPayloadDirectory(Path payloadDirectory) {
+        this.payloadDirectory = payloadDirectory;
+    }
+
+    public Path getStoreDirectory() {
+        return storeDirectory;
+    }
+
+    public void setStoreDirectory(Path storeDirectory) {
+        this.storeDirectory = storeDirectory;
+    }
+
+    public String getReadReplicaUrl() {
+        return readReplicaUrl;
+    }
+
+    public void setReadReplicaUrl(String readReplicaUrl) {
+        this.readReplicaUrl = readReplicaUrl;
+    }
+
+    public int getReadReplicaPoolSize() {
+        return readReplicaPoolSize;
+    }
+
+    public void setReadReplicaPoolSize(int readReplicaPoolSize) {
+        this.readReplicaPoolSize = readReplicaPoolSize;
+    }
+
+    public long getRawTransactionRetention() {
+        return rawTransactionRetention;
+    }
+
+    public void setRawTransactionRetention(long rawTransactionRetention) {
+        this.rawTransactionRetention = rawTransactionRetention;
+    }
+
+    public List<String> getShardUrls() {
+        return shardUrls;
+    }
+
+    public void setShardUrls(List<String> shardUrls) {
+        this.shardUrls = shardUrls;
+    }
 }
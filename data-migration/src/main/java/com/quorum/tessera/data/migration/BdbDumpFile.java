@@ -1,12 +1,10 @@
 package com.quorum.tessera.data.migration;
 
-import org.bouncycastle.util.encoders.Hex;
-
-import java.io.BufferedReader;
-import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.nio.channels.FileChannel;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.util.Base64;
 
 /**
@@ -15,12 +13,14 @@ import java.util.Base64;
  *  db_dump -f exported.txt c1/cn§.db/payload.db
  * </pre>
  *
+ * <p>Each value is decoded from the dump as it is read, so the value of an entry can only be read until the next
+ * entry is requested.
  */
 public class BdbDumpFile implements StoreLoader {
 
-    private BufferedReader reader;
+    private static final int BUFFER_SIZE = 64 * 1024;
 
-    private DataEntry nextEntry;
+    private HexDumpReader reader;
 
     @Override
     public void load(final Path inputFile) throws IOException {
@@ -30,57 +30,35 @@ public class BdbDumpFile implements StoreLoader {
             throw new IllegalArgumentException(inputFile.toString() + " doesn't exist or is not a file");
         }
 
-        this.reader = Files.newBufferedReader(inputFile);
-
-        final String firstKey;
-        while (true) {
-            final String line = reader.readLine();
-
-            if (line == null) {
-                //apparently there was nothing in this file, close and return
-                this.nextEntry = null;
-                this.reader.close();
-                return;
-            }
+        this.reader = new HexDumpReader(FileChannel.open(inputFile, StandardOpenOption.READ), BUFFER_SIZE);
 
-            if (line.startsWith(" ")) {
-                //found the first data entry, stop looping over the headers
-                firstKey = line;
-                break;
-            }
+        //data entries start with a space, so skip over the headers until the first one
+        int next;
+        while ((next = reader.peek()) != -1 && next != ' ') {
+            reader.skipLine();
         }
-
-        final String firstValue = reader.readLine();
-
-        this.nextEntry = new DataEntry(
-            Base64.getDecoder().decode(Hex.decode(firstKey.trim())),
-            new ByteArrayInputStream(Hex.decode(firstValue))
-        );
     }
 
     @Override
     public DataEntry nextEntry() throws IOException {
-        if (this.nextEntry == null) {
+        if (this.reader == null) {
             return null;
         }
 
-        final DataEntry oldEntry = this.nextEntry;
-
-        final String nextKey = reader.readLine();
-
-        if (nextKey == null || !nextKey.startsWith(" ")) {
-            this.nextEntry = null;
+        if (reader.peek() != ' ') {
+            //either the end of the file or the footer, so there are no more entries
             this.reader.close();
-        } else {
-            final String nextValue = reader.readLine();
+            this.reader = null;
+            return null;
+        }
+
+        final byte[] key = Base64.getDecoder().decode(reader.readLine());
 
-            this.nextEntry = new DataEntry(
-                Base64.getDecoder().decode(Hex.decode(nextKey.trim())),
-                new ByteArrayInputStream(Hex.decode(nextValue))
-            );
+        if (reader.peek() != ' ') {
+            throw new IOException("No value found for the last key in the dump");
         }
 
-        return oldEntry;
+        return new DataEntry(key, reader.nextLine());
     }
 
 }
@@ -35,7 +35,11 @@ public class CmdLineExecutor implements CliAdapter, Callable<CliResult> {
     @Option(names = "-exporttype", required = true, description = "Export DB type i.e. h2, sqlite")
     private ExportType exportType;
 
-    @Option(names = "-dbconfig", description = "Properties file with create table, insert row and jdbc url")
+    @Option(
+            names = "-dbconfig",
+            description =
+                    "Properties file with create table, insert row and jdbc url, "
+                            + "and optionally batchSize and writerThreads")
     private Path dbconfig;
 
     @Option(names = "-outputfile", required = true, description = "Path to output file")
@@ -84,7 +88,17 @@ public class CmdLineExecutor implements CliAdapter, Callable<CliResult> {
                     Objects.requireNonNull(
                             properties.getProperty("jdbcUrl"), "No jdbcUrl value defined in config file. ");
 
-            dataExporter = new JdbcDataExporter(jdbcUrl, insertRow, singletonList(createTable));
+            final int batchSize =
+                    Integer.parseInt(
+                            properties.getProperty("batchSize", String.valueOf(ExportPipeline.DEFAULT_BATCH_SIZE)));
+            final int writerThreads = Integer.parseInt(properties.getProperty("writerThreads", "1"));
+
+            dataExporter =
+                    new JdbcDataExporter(
+                            jdbcUrl,
+                            insertRow,
+                            singletonList(createTable),
+                            new ExportPipeline(batchSize, writerThreads));
 
         } else {
             dataExporter = DataExporterFactory.create(exportType);
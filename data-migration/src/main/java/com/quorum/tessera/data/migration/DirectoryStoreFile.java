@@ -1,16 +1,32 @@
 package com.quorum.tessera.data.migration;
 
-import com.quorum.tessera.io.FilesDelegate;
 import org.apache.commons.codec.binary.Base32;
 
+import java.io.BufferedInputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.util.Iterator;
 
+/**
+ * Reads a directory store, in which each entry is a file named after the Base32 encoding of its key
+ *
+ * <p>Small files are read whole and closed straight away. Large files are mapped into memory instead, so their
+ * contents are paged in straight from the file cache rather than copied onto the heap. A mapping is only released
+ * once it is garbage collected, and a process may only hold a limited number of them, so files are not mapped unless
+ * the saving is worth it. Files too large to map in one piece, or that cannot be mapped, are read through a stream
+ * that keeps the file open until the stream is closed.
+ */
 public class DirectoryStoreFile implements StoreLoader {
 
-    private final FilesDelegate fileDelegate = FilesDelegate.create();
+    // files at least this big are mapped rather than read onto the heap
+    static final long MAP_THRESHOLD = 1024 * 1024;
+
+    private final Base32 base32 = new Base32();
 
     private Iterator<Path> fileListIterator;
 
@@ -26,7 +42,7 @@ public class DirectoryStoreFile implements StoreLoader {
     }
 
     @Override
-    public DataEntry nextEntry() {
+    public DataEntry nextEntry() throws IOException {
         if (!fileListIterator.hasNext()) {
             return null;
         }
@@ -34,9 +50,38 @@ public class DirectoryStoreFile implements StoreLoader {
         final Path nextPath = fileListIterator.next();
 
         return new DataEntry(
-            new Base32().decode(nextPath.toFile().getName()),
-            fileDelegate.newInputStream(nextPath)
+            base32.decode(nextPath.getFileName().toString()),
+            this.open(nextPath)
         );
 
     }
+
+    private InputStream open(final Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            final long size = channel.size();
+
+            if (size < MAP_THRESHOLD) {
+                return new ByteBufferInputStream(readFully(channel, (int) size));
+            }
+
+            if (size <= Integer.MAX_VALUE) {
+                try {
+                    return new ByteBufferInputStream(channel.map(FileChannel.MapMode.READ_ONLY, 0, size));
+                } catch (final IOException ex) {
+                    // the process has run out of mappings or address space, so fall back to streaming the file
+                }
+            }
+        }
+
+        return new BufferedInputStream(Files.newInputStream(path));
+    }
+
+    private static ByteBuffer readFully(final FileChannel channel, final int size) throws IOException {
+        final ByteBuffer contents = ByteBuffer.allocate(size);
+        while (contents.hasRemaining() && channel.read(contents) >= 0) {
+            // keep reading until the whole file is in the buffer
+        }
+        contents.flip();
+        return contents;
+    }
 }
@@ -0,0 +1,209 @@
+package com.quorum.tessera.data.migration;
+
+import org.apache.commons.io.IOUtils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.PrintStream;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * Copies every entry of a {@link StoreLoader} into a database table
+ *
+ * <p>Entries are read and decoded on the calling thread and handed over a bounded queue to one or more writer threads.
+ * Each writer has its own connection, inserts the entries it takes in batches and commits after every batch, so at
+ * most one batch per writer is lost if the export fails part way through. The number of entries exported so far, and
+ * the rate they are being exported at, is printed periodically while the export runs.
+ */
+public class ExportPipeline {
+
+    public static final int DEFAULT_BATCH_SIZE = 500;
+
+    private static final long DEFAULT_REPORT_INTERVAL = TimeUnit.SECONDS.toMillis(10);
+
+    private static final Row END = new Row(null, null);
+
+    private final int batchSize;
+
+    private final int writers;
+
+    private final long reportInterval;
+
+    private final PrintStream out;
+
+    public ExportPipeline(final int batchSize, final int writers) {
+        this(batchSize, writers, DEFAULT_REPORT_INTERVAL, System.out);
+    }
+
+    ExportPipeline(final int batchSize, final int writers, final long reportInterval, final PrintStream out) {
+        if (batchSize < 1 || writers < 1) {
+            throw new IllegalArgumentException("Batch size and number of writers must be at least 1");
+        }
+        this.batchSize = batchSize;
+        this.writers = writers;
+        this.reportInterval = reportInterval;
+        this.out = out;
+    }
+
+    /**
+     * Inserts every remaining entry of the loader using the given insert statement, which takes the key as its first
+     * parameter and the value as its second
+     *
+     * @param loader the loaded store to read entries from
+     * @param connections opens a new connection for each writer
+     * @param insertRow the insert statement to run for each entry
+     * @return the number of entries exported
+     */
+    public long run(final StoreLoader loader, final JdbcCallback<Connection> connections, final String insertRow)
+            throws IOException, SQLException {
+
+        final BlockingQueue<Row> queue = new ArrayBlockingQueue<>(batchSize * writers);
+        final LongAdder exported = new LongAdder();
+        final long start = System.nanoTime();
+
+        final ExecutorService writerPool = Executors.newFixedThreadPool(writers);
+        final ScheduledExecutorService reporter = Executors.newSingleThreadScheduledExecutor();
+
+        try {
+            reporter.scheduleAtFixedRate(
+                    () -> this.report("Exported", exported.sum(), start),
+                    reportInterval,
+                    reportInterval,
+                    TimeUnit.MILLISECONDS);
+
+            final List<Future<Void>> pending =
+                    IntStream.range(0, writers)
+                            .mapToObj(i -> writerPool.submit(() -> this.write(connections, insertRow, queue, exported)))
+                            .collect(Collectors.toList());
+
+            DataEntry next;
+            while ((next = loader.nextEntry()) != null) {
+                try (InputStream value = next.getValue()) {
+                    this.handOver(queue, new Row(next.getKey(), IOUtils.toByteArray(value)), pending);
+                }
+            }
+
+            for (int i = 0; i < writers; i++) {
+                this.handOver(queue, END, pending);
+            }
+
+            for (final Future<Void> writer : pending) {
+                await(writer);
+            }
+        } finally {
+            reporter.shutdownNow();
+            writerPool.shutdownNow();
+        }
+
+        this.report("Finished exporting", exported.sum(), start);
+        return exported.sum();
+    }
+
+    private Void write(
+            final JdbcCallback<Connection> connections,
+            final String insertRow,
+            final BlockingQueue<Row> queue,
+            final LongAdder exported)
+            throws SQLException, InterruptedException {
+
+        try (Connection conn = connections.doExecute()) {
+            conn.setAutoCommit(false);
+
+            try (PreparedStatement insertStatement = conn.prepareStatement(insertRow)) {
+                int batched = 0;
+                for (Row row = queue.take(); row != END; row = queue.take()) {
+                    insertStatement.setBytes(1, row.key);
+                    insertStatement.setBytes(2, row.value);
+                    insertStatement.addBatch();
+
+                    if (++batched == batchSize) {
+                        this.commit(conn, insertStatement, batched, exported);
+                        batched = 0;
+                    }
+                }
+
+                if (batched > 0) {
+                    this.commit(conn, insertStatement, batched, exported);
+                }
+            }
+        }
+
+        return null;
+    }
+
+    private void commit(
+            final Connection conn, final PreparedStatement insertStatement, final int batched, final LongAdder exported)
+            throws SQLException {
+        insertStatement.executeBatch();
+        conn.commit();
+        exported.add(batched);
+    }
+
+    /** Waits for room on the queue, giving up if any writer has failed in the meantime */
+    private void handOver(final BlockingQueue<Row> queue, final Row row, final List<Future<Void>> writers)
+            throws IOException, SQLException {
+        try {
+            while (!queue.offer(row, 100, TimeUnit.MILLISECONDS)) {
+                for (final Future<Void> writer : writers) {
+                    if (writer.isDone()) {
+                        await(writer);
+                    }
+                }
+            }
+        } catch (final InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while exporting");
+        }
+    }
+
+    private static void await(final Future<Void> writer) throws IOException, SQLException {
+        try {
+            writer.get();
+        } catch (final InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while exporting");
+        } catch (final ExecutionException ex) {
+            final Throwable cause = ex.getCause();
+            if (cause instanceof SQLException) {
+                throw (SQLException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new IOException(cause);
+        }
+    }
+
+    private void report(final String message, final long count, final long start) {
+        final long elapsed = Math.max(1L, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        out.printf("%s %d entries in %d s (%d entries/s)", message, count, elapsed / 1000, count * 1000 / elapsed);
+        out.println();
+    }
+
+    private static final class Row {
+
+        private final byte[] key;
+
+        private final byte[] value;
+
+        private Row(final byte[] key, final byte[] value) {
+            this.key = key;
+            this.value = value;
+        }
+    }
+}
@@ -0,0 +1,163 @@
+package com.quorum.tessera.data.migration;
+
+import org.apache.commons.io.IOUtils;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.util.Arrays;
+
+/**
+ * Reads a file of hex encoded lines, such as the output of db_dump, straight from its bytes
+ *
+ * <p>Lines are decoded as they are read through a fixed size buffer, rather than being read into memory and then
+ * decoded, so a line of any length can be read using constant memory. Whitespace within a line is ignored.
+ *
+ * <p>Only one line can be read at a time: moving on to the next line skips whatever is left of the current one, and
+ * any stream over the current line then behaves as if the line had ended.
+ */
+public class HexDumpReader implements Closeable {
+
+    private static final byte[] DIGITS = new byte[256];
+
+    static {
+        Arrays.fill(DIGITS, (byte) -1);
+        for (int i = 0; i < 10; i++) {
+            DIGITS['0' + i] = (byte) i;
+        }
+        for (int i = 0; i < 6; i++) {
+            DIGITS['a' + i] = (byte) (10 + i);
+            DIGITS['A' + i] = (byte) (10 + i);
+        }
+    }
+
+    private final ReadableByteChannel channel;
+
+    private final ByteBuffer buffer;
+
+    private boolean midLine;
+
+    private long line;
+
+    public HexDumpReader(final ReadableByteChannel channel, final int bufferSize) {
+        this.channel = channel;
+        this.buffer = ByteBuffer.allocate(bufferSize);
+        this.buffer.flip();
+    }
+
+    /** Returns the first byte of the next line without reading it, or -1 if there are no more lines */
+    public int peek() throws IOException {
+        this.finishLine();
+        return this.fill() ? buffer.get(buffer.position()) & 0xFF : -1;
+    }
+
+    /** Skips the next line without decoding it */
+    public void skipLine() throws IOException {
+        this.finishLine();
+        this.midLine = true;
+        this.line++;
+        this.finishLine();
+    }
+
+    /** Decodes the whole of the next line, which should be short */
+    public byte[] readLine() throws IOException {
+        try (InputStream stream = this.nextLine()) {
+            return IOUtils.toByteArray(stream);
+        }
+    }
+
+    /** Returns a stream that decodes the next line as it is read, which ends at the end of the line */
+    public InputStream nextLine() throws IOException {
+        this.finishLine();
+        this.midLine = true;
+
+        final long current = ++line;
+        return new InputStream() {
+
+            private final byte[] single = new byte[1];
+
+            @Override
+            public int read() throws IOException {
+                return this.read(single, 0, 1) < 0 ? -1 : single[0] & 0xFF;
+            }
+
+            @Override
+            public int read(final byte[] b, final int off, final int len) throws IOException {
+                return current == line ? HexDumpReader.this.decode(b, off, len) : -1;
+            }
+        };
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    private int decode(final byte[] b, final int off, final int len) throws IOException {
+        if (len == 0) {
+            return 0;
+        }
+
+        int count = 0;
+        while (midLine && count < len) {
+            final int high = this.nextDigit();
+            if (high < 0) {
+                break;
+            }
+
+            final int low = this.nextDigit();
+            if (low < 0) {
+                throw new IOException("Odd number of hex digits on line " + line);
+            }
+
+            b[off + count++] = (byte) (high << 4 | low);
+        }
+
+        return count == 0 ? -1 : count;
+    }
+
+    /** Reads the next hex digit of the current line, or returns -1 and ends the line if there are none left */
+    private int nextDigit() throws IOException {
+        while (this.fill()) {
+            final int next = buffer.get() & 0xFF;
+            if (next == '\n') {
+                break;
+            }
+
+            final int digit = DIGITS[next];
+            if (digit >= 0) {
+                return digit;
+            }
+            if (next != ' ' && next != '\t' && next != '\r') {
+                throw new IOException("Invalid hex character '" + (char) next + "' on line " + line);
+            }
+        }
+
+        this.midLine = false;
+        return -1;
+    }
+
+    private void finishLine() throws IOException {
+        while (midLine && this.fill()) {
+            if (buffer.get() == '\n') {
+                break;
+            }
+        }
+        this.midLine = false;
+    }
+
+    /** Makes sure there is something left in the buffer, returning false at the end of the file */
+    private boolean fill() throws IOException {
+        while (!buffer.hasRemaining()) {
+            buffer.clear();
+            final int read = channel.read(buffer);
+            buffer.flip();
+            if (read < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -1,7 +1,6 @@
 package com.quorum.tessera.data.migration;
 
 import java.io.IOException;
-import java.io.InputStream;
 import java.nio.file.Path;
 import java.sql.*;
 import java.util.List;
@@ -14,10 +13,20 @@ public class JdbcDataExporter implements DataExporter {
 
     private final List<String> createTables;
 
+    private final ExportPipeline pipeline;
+
     public JdbcDataExporter(final String jdbcUrl, final String insertRow, final List<String> createTables) {
+        this(jdbcUrl, insertRow, createTables, new ExportPipeline(ExportPipeline.DEFAULT_BATCH_SIZE, 1));
+    }
+
+    public JdbcDataExporter(final String jdbcUrl,
+                            final String insertRow,
+                            final List<String> createTables,
+                            final ExportPipeline pipeline) {
         this.jdbcUrl = jdbcUrl;
         this.insertRow = insertRow;
         this.createTables = createTables;
+        this.pipeline = pipeline;
     }
 
     @Override
@@ -26,26 +35,14 @@ public class JdbcDataExporter implements DataExporter {
                        final String username,
                        final String password) throws SQLException, IOException {
 
-        try (Connection conn = DriverManager.getConnection(jdbcUrl, username, password)) {
-
-            try (Statement stmt = conn.createStatement()) {
-                for (final String createTable : createTables) {
-                    stmt.executeUpdate(createTable);
-                }
+        try (Connection conn = DriverManager.getConnection(jdbcUrl, username, password);
+             Statement stmt = conn.createStatement()) {
+            for (final String createTable : createTables) {
+                stmt.executeUpdate(createTable);
             }
-
-            try (PreparedStatement insertStatement = conn.prepareStatement(insertRow)) {
-                DataEntry next;
-                while ((next = loader.nextEntry()) != null) {
-                    try (InputStream data = next.getValue()) {
-                        insertStatement.setBytes(1, next.getKey());
-                        insertStatement.setBinaryStream(2, data);
-                        insertStatement.execute();
-                    }
-                }
-            }
-
         }
+
+        pipeline.run(loader, () -> DriverManager.getConnection(jdbcUrl, username, password), insertRow);
     }
 
 }
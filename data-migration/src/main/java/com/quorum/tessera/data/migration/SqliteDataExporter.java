@@ -1,13 +1,10 @@
 package com.quorum.tessera.data.migration;
 
-import org.apache.commons.io.IOUtils;
-
 import java.io.BufferedReader;
 import java.io.IOException;
-import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.nio.file.Path;
-import java.sql.*;
+import java.sql.SQLException;
 import java.util.List;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
@@ -32,27 +29,10 @@ public class SqliteDataExporter implements DataExporter {
             .flatMap(BufferedReader::lines)
             .collect(Collectors.toList());
 
-        try (Connection conn = DriverManager.getConnection(connectionString, username, password)) {
-
-            try (Statement stmt = conn.createStatement()) {
-                for (final String createTable : createTableStatements) {
-                    stmt.executeUpdate(createTable);
-                }
-            }
-
-            try (PreparedStatement insertStatement = conn.prepareStatement(INSERT_ROW)) {
-                DataEntry next;
-                while ((next = loader.nextEntry()) != null) {
-                    try (InputStream data = next.getValue()) {
-                        insertStatement.setBytes(1, next.getKey());
-                        insertStatement.setBytes(2, IOUtils.toByteArray(data));
-                        insertStatement.execute();
-                    }
-                }
-            }
-
-        }
+        final JdbcDataExporter jdbcDataExporter
+            = new JdbcDataExporter(connectionString, INSERT_ROW, createTableStatements);
 
+        jdbcDataExporter.export(loader, output, username, password);
     }
 
 }
@@ -8,6 +8,7 @@ public interface StoreLoader {
 
     void load(Path input) throws IOException, SQLException;
 
+    /** Returns the next entry, whose value should be read before asking for the one after, or null at the end */
     DataEntry nextEntry() throws IOException, SQLException;
 
 }
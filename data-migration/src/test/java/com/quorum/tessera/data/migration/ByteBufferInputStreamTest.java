@@ -0,0 +1,27 @@
+package com.quorum.tessera.data.migration;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class ByteBufferInputStreamTest {
+
+    @Test
+    public void remainingBytesAreRead() {
+        final ByteBufferInputStream stream = new ByteBufferInputStream(ByteBuffer.wrap(new byte[] {1, 2, 3, 4, 5}));
+
+        assertThat(stream.available()).isEqualTo(5);
+        assertThat(stream.read()).isEqualTo(1);
+        assertThat(stream.skip(1)).isEqualTo(1);
+
+        final byte[] rest = new byte[5];
+        assertThat(stream.read(rest, 1, 4)).isEqualTo(3);
+        assertThat(rest).containsExactly(0, 3, 4, 5, 0);
+
+        assertThat(stream.read()).isEqualTo(-1);
+        assertThat(stream.read(rest, 0, 1)).isEqualTo(-1);
+        assertThat(stream.skip(1)).isZero();
+    }
+}
@@ -1,5 +1,6 @@
 package com.quorum.tessera.data.migration;
 
+import org.apache.commons.codec.binary.Base32;
 import org.apache.commons.io.IOUtils;
 import org.junit.Before;
 import org.junit.Test;
@@ -145,6 +146,34 @@ public class DirectoryStoreFileTest {
 
         final DataEntry nextEntry = directoryStoreFile.nextEntry();
         assertThat(nextEntry).isNotNull();
+        assertThat(IOUtils.toByteArray(nextEntry.getValue())).isEqualTo(data);
+    }
+
+    @Test
+    public void filesEitherSideOfTheMappingThresholdAreReadWhole() throws Exception {
+        final Path directory = Files.createTempDirectory("store");
+
+        final Random random = new Random();
+        final Map<String, byte[]> files = new HashMap<>();
+        files.put("SMALL", new byte[(int) DirectoryStoreFile.MAP_THRESHOLD - 1]);
+        files.put("LARGE", new byte[(int) DirectoryStoreFile.MAP_THRESHOLD]);
+        files.put("EMPTY", new byte[0]);
+        for (final Map.Entry<String, byte[]> file : files.entrySet()) {
+            random.nextBytes(file.getValue());
+            Files.write(directory.resolve(file.getKey()), file.getValue());
+        }
+
+        final DirectoryStoreFile directoryStoreFile = new DirectoryStoreFile();
+        directoryStoreFile.load(directory);
+
+        final Map<String, byte[]> results = new HashMap<>();
+        DataEntry next;
+        while ((next = directoryStoreFile.nextEntry()) != null) {
+            results.put(new String(next.getKey()), IOUtils.toByteArray(next.getValue()));
+        }
+
+        assertThat(results).hasSize(3);
+        files.forEach((name, data) -> assertThat(results.get(new String(new Base32().decode(name)))).isEqualTo(data));
     }
 
 }
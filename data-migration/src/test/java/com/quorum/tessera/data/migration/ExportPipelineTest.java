@@ -0,0 +1,117 @@
+package com.quorum.tessera.data.migration;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.catchThrowable;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class ExportPipelineTest {
+
+    private static final String JDBC_URL = "jdbc:h2:mem:exportPipeline;DB_CLOSE_DELAY=-1";
+
+    private static final String INSERT_ROW = "INSERT INTO ENTRY (HASH, PAYLOAD) VALUES (?, ?)";
+
+    private Connection connection;
+
+    private ByteArrayOutputStream output;
+
+    private ExportPipeline pipeline;
+
+    @Before
+    public void onSetUp() throws SQLException {
+        connection = DriverManager.getConnection(JDBC_URL);
+        connection.createStatement().executeUpdate("CREATE TABLE ENTRY (HASH VARBINARY(100), PAYLOAD BLOB)");
+
+        output = new ByteArrayOutputStream();
+        pipeline = new ExportPipeline(4, 3, 10L, new PrintStream(output, true));
+    }
+
+    @After
+    public void onTearDown() throws SQLException {
+        connection.createStatement().executeUpdate("DROP TABLE ENTRY");
+        connection.close();
+    }
+
+    @Test
+    public void allEntriesAreExportedOverSeveralWritersInBatches() throws Exception {
+        final Map<String, String> data = new LinkedHashMap<>();
+        for (int i = 0; i < 25; i++) {
+            data.put("KEY" + i, "VALUE" + i);
+        }
+
+        final long exported =
+                pipeline.run(new MockDataLoader(data), () -> DriverManager.getConnection(JDBC_URL), INSERT_ROW);
+
+        assertThat(exported).isEqualTo(25L);
+
+        final Map<String, String> stored = new LinkedHashMap<>();
+        try (ResultSet rs = connection.createStatement().executeQuery("SELECT HASH, PAYLOAD FROM ENTRY")) {
+            while (rs.next()) {
+                stored.put(new String(rs.getBytes("HASH")), new String(rs.getBytes("PAYLOAD")));
+            }
+        }
+        assertThat(stored).isEqualTo(data);
+        assertThat(output.toString()).contains("Finished exporting 25 entries");
+    }
+
+    @Test
+    public void nothingToExport() throws Exception {
+        final long exported =
+                pipeline.run(
+                        new MockDataLoader(new LinkedHashMap<>()),
+                        () -> DriverManager.getConnection(JDBC_URL),
+                        INSERT_ROW);
+
+        assertThat(exported).isZero();
+    }
+
+    @Test
+    public void failureToWriteIsRethrown() {
+        final Map<String, String> data = new LinkedHashMap<>();
+        for (int i = 0; i < 100; i++) {
+            data.put("KEY" + i, "VALUE" + i);
+        }
+
+        final Throwable throwable =
+                catchThrowable(
+                        () ->
+                                pipeline.run(
+                                        new MockDataLoader(data),
+                                        () -> DriverManager.getConnection(JDBC_URL),
+                                        "INSERT INTO MISSING (HASH, PAYLOAD) VALUES (?, ?)"));
+
+        assertThat(throwable).isInstanceOf(SQLException.class);
+    }
+
+    @Test
+    public void failureToReadIsRethrown() throws Exception {
+        final IOException failure = new IOException("corrupt store");
+        final StoreLoader loader = mock(StoreLoader.class);
+        when(loader.nextEntry()).thenThrow(failure);
+
+        final Throwable throwable =
+                catchThrowable(() -> pipeline.run(loader, () -> DriverManager.getConnection(JDBC_URL), INSERT_ROW));
+
+        assertThat(throwable).isSameAs(failure);
+    }
+
+    @Test
+    public void invalidSizesAreRejected() {
+        assertThat(catchThrowable(() -> new ExportPipeline(0, 1))).isInstanceOf(IllegalArgumentException.class);
+        assertThat(catchThrowable(() -> new ExportPipeline(1, 0))).isInstanceOf(IllegalArgumentException.class);
+    }
+}
@@ -47,7 +47,7 @@ public class H2DataExporterTest {
                 .mapToObj(i -> JdbcCallback.execute(() -> metaData.getColumnName(i)))
                 .collect(Collectors.toList());
 
-            assertThat(columnNames).containsExactlyInAnyOrder("HASH", "ENCODED_PAYLOAD", "TIMESTAMP");
+            assertThat(columnNames).containsExactlyInAnyOrder("HASH", "ENCODED_PAYLOAD", "RECIPIENT_KEY", "TIMESTAMP");
 
             while (rs.next()) {
                 assertThat(rs.getBytes("HASH")).isEqualTo("HASH".getBytes());
@@ -81,7 +81,7 @@ public class H2DataExporterTest {
                 .mapToObj(i -> JdbcCallback.execute(() -> metaData.getColumnName(i)))
                 .collect(Collectors.toList());
 
-            assertThat(columnNames).containsExactlyInAnyOrder("HASH", "ENCODED_PAYLOAD", "TIMESTAMP");
+            assertThat(columnNames).containsExactlyInAnyOrder("HASH", "ENCODED_PAYLOAD", "RECIPIENT_KEY", "TIMESTAMP");
 
             while (rs.next()) {
                 assertThat(rs.getBytes("HASH")).isEqualTo("HASH".getBytes());
@@ -0,0 +1,72 @@
+package com.quorum.tessera.data.migration;
+
+import org.apache.commons.io.IOUtils;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.catchThrowable;
+
+public class HexDumpReaderTest {
+
+    @Test
+    public void linesAreDecodedAcrossBufferBoundaries() throws IOException {
+        final HexDumpReader reader = reader("HEADER=END\n 48 65\t6c6C6f\r\n 00ff\n");
+
+        assertThat(reader.peek()).isEqualTo('H');
+        reader.skipLine();
+
+        assertThat(reader.peek()).isEqualTo(' ');
+        assertThat(new String(reader.readLine(), StandardCharsets.UTF_8)).isEqualTo("Hello");
+        assertThat(IOUtils.toByteArray(reader.nextLine())).containsExactly(0x00, 0xff);
+
+        assertThat(reader.peek()).isEqualTo(-1);
+    }
+
+    @Test
+    public void unreadPartOfLineIsSkipped() throws IOException {
+        final HexDumpReader reader = reader(" 0102030405\n 06\n");
+
+        final InputStream first = reader.nextLine();
+        assertThat(first.read()).isEqualTo(1);
+
+        assertThat(reader.readLine()).containsExactly(6);
+        assertThat(first.read()).isEqualTo(-1);
+    }
+
+    @Test
+    public void lastLineWithoutNewlineIsRead() throws IOException {
+        final HexDumpReader reader = reader(" 0a0b");
+
+        assertThat(reader.readLine()).containsExactly(10, 11);
+        assertThat(reader.peek()).isEqualTo(-1);
+    }
+
+    @Test
+    public void invalidCharacterFails() {
+        final HexDumpReader reader = reader(" 0g\n");
+
+        final Throwable throwable = catchThrowable(reader::readLine);
+
+        assertThat(throwable).isInstanceOf(IOException.class).hasMessageContaining("Invalid hex character 'g'");
+    }
+
+    @Test
+    public void oddNumberOfDigitsFails() {
+        final HexDumpReader reader = reader(" 010\n");
+
+        final Throwable throwable = catchThrowable(reader::readLine);
+
+        assertThat(throwable).isInstanceOf(IOException.class).hasMessageContaining("Odd number of hex digits");
+    }
+
+    private static HexDumpReader reader(final String contents) {
+        final byte[] bytes = contents.getBytes(StandardCharsets.UTF_8);
+        return new HexDumpReader(Channels.newChannel(new ByteArrayInputStream(bytes)), 3);
+    }
+}
@@ -2,10 +2,8 @@ package com.quorum.tessera.data.migration;
 
 import com.mockrunner.jdbc.BasicJDBCTestCaseAdapter;
 import com.mockrunner.mock.jdbc.MockPreparedStatement;
-import org.apache.commons.io.IOUtils;
 import org.junit.Test;
 
-import java.io.InputStream;
 import java.nio.file.Path;
 import java.util.List;
 
@@ -37,10 +35,11 @@ public class JdbcDataExporterTest extends BasicJDBCTestCaseAdapter {
         assertThat(preparedStatements.get(0).getSQL()).isEqualTo("INSERT INTO TABLE(?, ?)");
 
         final byte[] key = (byte[])super.getPreparedStatementParameter(preparedStatements.get(0), 1);
-        final InputStream value = (InputStream) super.getPreparedStatementParameter(preparedStatements.get(0), 2);
+        final byte[] value = (byte[]) super.getPreparedStatementParameter(preparedStatements.get(0), 2);
         assertThat(new String(key)).isEqualTo("HASH");
-        assertThat(new String(IOUtils.toByteArray(value))).isEqualTo("VALUE");
+        assertThat(new String(value)).isEqualTo("VALUE");
 
+        verifyCommitted();
         verifyAllStatementsClosed();
     }
 
@@ -45,7 +45,7 @@ public class SqliteDataExporterTest {
                 .mapToObj(i -> JdbcCallback.execute(() -> metaData.getColumnName(i)))
                 .collect(Collectors.toList());
 
-            assertThat(columnNames).containsExactlyInAnyOrder("HASH", "ENCODED_PAYLOAD", "TIMESTAMP");
+            assertThat(columnNames).containsExactlyInAnyOrder("HASH", "ENCODED_PAYLOAD", "RECIPIENT_KEY", "TIMESTAMP");
 
             while (rs.next()) {
                 assertThat(rs.getString("TIMESTAMP")).isNull();
@@ -80,7 +80,7 @@ public class SqliteDataExporterTest {
                 .mapToObj(i -> JdbcCallback.execute(() -> metaData.getColumnName(i)))
                 .collect(Collectors.toList());
 
-            assertThat(columnNames).containsExactlyInAnyOrder("HASH", "ENCODED_PAYLOAD", "TIMESTAMP");
+            assertThat(columnNames).containsExactlyInAnyOrder("HASH", "ENCODED_PAYLOAD", "RECIPIENT_KEY", "TIMESTAMP");
 
             while (rs.next()) {
                 assertThat(rs.getString("TIMESTAMP")).isNull();
@@ -0,0 +1,2 @@
+CREATE TABLE ENCRYPTED_TRANSACTION_OUTBOX (HASH VARBINARY(100) NOT NULL, RECIPIENT VARBINARY(100) NOT NULL, ATTEMPTS INTEGER NOT NULL, NEXT_ATTEMPT BIGINT NOT NULL, TIMESTAMP BIGINT, PRIMARY KEY (HASH, RECIPIENT));
+CREATE INDEX OUTBOX_NEXT_ATTEMPT_IDX ON ENCRYPTED_TRANSACTION_OUTBOX (NEXT_ATTEMPT);
@@ -0,0 +1,2 @@
+CREATE TABLE ENCRYPTED_TRANSACTION_OUTBOX (HASH RAW(100) NOT NULL, RECIPIENT RAW(100) NOT NULL, ATTEMPTS NUMBER(10) NOT NULL, NEXT_ATTEMPT NUMBER(19) NOT NULL, TIMESTAMP NUMBER(19), PRIMARY KEY (HASH, RECIPIENT));
+CREATE INDEX OUTBOX_NEXT_ATTEMPT_IDX ON ENCRYPTED_TRANSACTION_OUTBOX (NEXT_ATTEMPT);
@@ -0,0 +1,2 @@
+CREATE TABLE ENCRYPTED_TRANSACTION_OUTBOX (HASH BYTEA NOT NULL, RECIPIENT BYTEA NOT NULL, ATTEMPTS INTEGER NOT NULL, NEXT_ATTEMPT DECIMAL(19) NOT NULL, TIMESTAMP DECIMAL(19), PRIMARY KEY (HASH, RECIPIENT));
+CREATE INDEX OUTBOX_NEXT_ATTEMPT_IDX ON ENCRYPTED_TRANSACTION_OUTBOX (NEXT_ATTEMPT);
@@ -0,0 +1,2 @@
+CREATE TABLE ENCRYPTED_TRANSACTION_OUTBOX (HASH BLOB NOT NULL, RECIPIENT BLOB NOT NULL, ATTEMPTS INTEGER NOT NULL, NEXT_ATTEMPT INTEGER NOT NULL, TIMESTAMP INTEGER, PRIMARY KEY (HASH, RECIPIENT));
+CREATE INDEX OUTBOX_NEXT_ATTEMPT_IDX ON ENCRYPTED_TRANSACTION_OUTBOX (NEXT_ATTEMPT);
@@ -0,0 +1 @@
+CREATE INDEX RAW_TRANSACTION_TIMESTAMP_IDX ON ENCRYPTED_RAW_TRANSACTION (TIMESTAMP);
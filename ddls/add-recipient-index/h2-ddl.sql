@@ -0,0 +1,2 @@
+CREATE TABLE ENCRYPTED_TRANSACTION_RECIPIENT (HASH LONGVARBINARY NOT NULL, RECIPIENT LONGVARBINARY NOT NULL, TIMESTAMP BIGINT NOT NULL, PRIMARY KEY (HASH, RECIPIENT));
+CREATE INDEX ENCRYPTED_TRANSACTION_RECIPIENT_IDX ON ENCRYPTED_TRANSACTION_RECIPIENT (RECIPIENT, TIMESTAMP, HASH);
@@ -0,0 +1,2 @@
+CREATE TABLE ENCRYPTED_TRANSACTION_RECIPIENT (HASH VARBINARY(100) NOT NULL, RECIPIENT VARBINARY(100) NOT NULL, TIMESTAMP BIGINT NOT NULL, PRIMARY KEY (HASH, RECIPIENT));
+CREATE INDEX ENCRYPTED_TRANSACTION_RECIPIENT_IDX ON ENCRYPTED_TRANSACTION_RECIPIENT (RECIPIENT, TIMESTAMP, HASH);
@@ -0,0 +1,2 @@
+CREATE TABLE ENCRYPTED_TRANSACTION_RECIPIENT (HASH RAW(100) NOT NULL, RECIPIENT RAW(100) NOT NULL, TIMESTAMP NUMBER(19) NOT NULL, PRIMARY KEY (HASH, RECIPIENT));
+CREATE INDEX ENCRYPTED_TRANSACTION_RECIPIENT_IDX ON ENCRYPTED_TRANSACTION_RECIPIENT (RECIPIENT, TIMESTAMP, HASH);
@@ -0,0 +1,2 @@
+CREATE TABLE ENCRYPTED_TRANSACTION_RECIPIENT (HASH BYTEA NOT NULL, RECIPIENT BYTEA NOT NULL, TIMESTAMP DECIMAL(19) NOT NULL, PRIMARY KEY (HASH, RECIPIENT));
+CREATE INDEX ENCRYPTED_TRANSACTION_RECIPIENT_IDX ON ENCRYPTED_TRANSACTION_RECIPIENT (RECIPIENT, TIMESTAMP, HASH);
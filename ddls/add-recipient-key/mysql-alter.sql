@@ -0,0 +1 @@
+ALTER TABLE ENCRYPTED_TRANSACTION ADD RECIPIENT_KEY VARBINARY(100)
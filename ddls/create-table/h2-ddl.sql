@@ -1,2 +1,7 @@
-CREATE TABLE ENCRYPTED_TRANSACTION (ENCODED_PAYLOAD LONGVARBINARY NOT NULL, TIMESTAMP BIGINT, HASH LONGVARBINARY NOT NULL, PRIMARY KEY (HASH));
-CREATE TABLE ENCRYPTED_RAW_TRANSACTION (ENCRYPTED_KEY LONGVARBINARY NOT NULL, ENCRYPTED_PAYLOAD LONGVARBINARY NOT NULL, NONCE LONGVARBINARY NOT NULL, SENDER LONGVARBINARY NOT NULL, TIMESTAMP BIGINT, HASH LONGVARBINARY NOT NULL, PRIMARY KEY (HASH));
+CREATE TABLE ENCRYPTED_TRANSACTION (ENCODED_PAYLOAD LONGVARBINARY NOT NULL, RECIPIENT_KEY LONGVARBINARY, TIMESTAMP BIGINT, HASH BINARY(64) NOT NULL, PRIMARY KEY (HASH));
+CREATE TABLE ENCRYPTED_RAW_TRANSACTION (ENCRYPTED_KEY LONGVARBINARY NOT NULL, ENCRYPTED_PAYLOAD LONGVARBINARY NOT NULL, NONCE LONGVARBINARY NOT NULL, SENDER LONGVARBINARY NOT NULL, TIMESTAMP BIGINT, HASH BINARY(64) NOT NULL, PRIMARY KEY (HASH));
+CREATE INDEX RAW_TRANSACTION_TIMESTAMP_IDX ON ENCRYPTED_RAW_TRANSACTION (TIMESTAMP);
+CREATE TABLE ENCRYPTED_TRANSACTION_OUTBOX (HASH BINARY(64) NOT NULL, RECIPIENT LONGVARBINARY NOT NULL, ATTEMPTS INTEGER NOT NULL, NEXT_ATTEMPT BIGINT NOT NULL, TIMESTAMP BIGINT, PRIMARY KEY (HASH, RECIPIENT));
+CREATE INDEX OUTBOX_NEXT_ATTEMPT_IDX ON ENCRYPTED_TRANSACTION_OUTBOX (NEXT_ATTEMPT);
+CREATE TABLE ENCRYPTED_TRANSACTION_RECIPIENT (HASH BINARY(64) NOT NULL, RECIPIENT LONGVARBINARY NOT NULL, TIMESTAMP BIGINT NOT NULL, PRIMARY KEY (HASH, RECIPIENT));
+CREATE INDEX ENCRYPTED_TRANSACTION_RECIPIENT_IDX ON ENCRYPTED_TRANSACTION_RECIPIENT (RECIPIENT, TIMESTAMP, HASH);
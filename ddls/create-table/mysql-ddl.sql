@@ -1,2 +1,7 @@
-CREATE TABLE ENCRYPTED_TRANSACTION (ENCODED_PAYLOAD BLOB NOT NULL, HASH VARBINARY(100) NOT NULL, TIMESTAMP BIGINT, PRIMARY KEY (HASH));
-CREATE TABLE ENCRYPTED_RAW_TRANSACTION (ENCRYPTED_KEY BLOB NOT NULL, ENCRYPTED_PAYLOAD BLOB NOT NULL, NONCE BLOB NOT NULL, SENDER BLOB NOT NULL, TIMESTAMP BIGINT, HASH VARBINARY(100) NOT NULL, PRIMARY KEY (HASH));
\ No newline at end of file
+CREATE TABLE ENCRYPTED_TRANSACTION (ENCODED_PAYLOAD BLOB NOT NULL, RECIPIENT_KEY VARBINARY(100), HASH BINARY(64) NOT NULL, TIMESTAMP BIGINT, PRIMARY KEY (HASH));
+CREATE TABLE ENCRYPTED_RAW_TRANSACTION (ENCRYPTED_KEY BLOB NOT NULL, ENCRYPTED_PAYLOAD BLOB NOT NULL, NONCE BLOB NOT NULL, SENDER BLOB NOT NULL, TIMESTAMP BIGINT, HASH BINARY(64) NOT NULL, PRIMARY KEY (HASH));
+CREATE INDEX RAW_TRANSACTION_TIMESTAMP_IDX ON ENCRYPTED_RAW_TRANSACTION (TIMESTAMP);
+CREATE TABLE ENCRYPTED_TRANSACTION_OUTBOX (HASH BINARY(64) NOT NULL, RECIPIENT VARBINARY(100) NOT NULL, ATTEMPTS INTEGER NOT NULL, NEXT_ATTEMPT BIGINT NOT NULL, TIMESTAMP BIGINT, PRIMARY KEY (HASH, RECIPIENT));
+CREATE INDEX OUTBOX_NEXT_ATTEMPT_IDX ON ENCRYPTED_TRANSACTION_OUTBOX (NEXT_ATTEMPT);
+CREATE TABLE ENCRYPTED_TRANSACTION_RECIPIENT (HASH BINARY(64) NOT NULL, RECIPIENT VARBINARY(100) NOT NULL, TIMESTAMP BIGINT NOT NULL, PRIMARY KEY (HASH, RECIPIENT));
+CREATE INDEX ENCRYPTED_TRANSACTION_RECIPIENT_IDX ON ENCRYPTED_TRANSACTION_RECIPIENT (RECIPIENT, TIMESTAMP, HASH);
@@ -1,2 +1,7 @@
-CREATE TABLE ENCRYPTED_TRANSACTION (ENCODED_PAYLOAD BLOB NOT NULL, HASH RAW(100) NOT NULL, TIMESTAMP NUMBER(19), PRIMARY KEY (HASH));
-CREATE TABLE ENCRYPTED_RAW_TRANSACTION (ENCRYPTED_KEY BLOB NOT NULL, ENCRYPTED_PAYLOAD BLOB NOT NULL, NONCE BLOB NOT NULL, SENDER BLOB NOT NULL, TIMESTAMP NUMBER(19), HASH RAW(100) NOT NULL, PRIMARY KEY (HASH));
\ No newline at end of file
+CREATE TABLE ENCRYPTED_TRANSACTION (ENCODED_PAYLOAD BLOB NOT NULL, RECIPIENT_KEY RAW(100), HASH RAW(64) NOT NULL, TIMESTAMP NUMBER(19), PRIMARY KEY (HASH));
+CREATE TABLE ENCRYPTED_RAW_TRANSACTION (ENCRYPTED_KEY BLOB NOT NULL, ENCRYPTED_PAYLOAD BLOB NOT NULL, NONCE BLOB NOT NULL, SENDER BLOB NOT NULL, TIMESTAMP NUMBER(19), HASH RAW(64) NOT NULL, PRIMARY KEY (HASH));
+CREATE INDEX RAW_TRANSACTION_TIMESTAMP_IDX ON ENCRYPTED_RAW_TRANSACTION (TIMESTAMP);
+CREATE TABLE ENCRYPTED_TRANSACTION_OUTBOX (HASH RAW(64) NOT NULL, RECIPIENT RAW(100) NOT NULL, ATTEMPTS NUMBER(10) NOT NULL, NEXT_ATTEMPT NUMBER(19) NOT NULL, TIMESTAMP NUMBER(19), PRIMARY KEY (HASH, RECIPIENT));
+CREATE INDEX OUTBOX_NEXT_ATTEMPT_IDX ON ENCRYPTED_TRANSACTION_OUTBOX (NEXT_ATTEMPT);
+CREATE TABLE ENCRYPTED_TRANSACTION_RECIPIENT (HASH RAW(64) NOT NULL, RECIPIENT RAW(100) NOT NULL, TIMESTAMP NUMBER(19) NOT NULL, PRIMARY KEY (HASH, RECIPIENT));
+CREATE INDEX ENCRYPTED_TRANSACTION_RECIPIENT_IDX ON ENCRYPTED_TRANSACTION_RECIPIENT (RECIPIENT, TIMESTAMP, HASH);
@@ -1,2 +1,7 @@
-CREATE TABLE ENCRYPTED_TRANSACTION (ENCODED_PAYLOAD BYTEA NOT NULL, HASH BYTEA NOT NULL, TIMESTAMP DECIMAL(19), PRIMARY KEY (HASH));
-CREATE TABLE ENCRYPTED_RAW_TRANSACTION (ENCRYPTED_KEY BYTEA NOT NULL, ENCRYPTED_PAYLOAD BYTEA NOT NULL, NONCE BYTEA NOT NULL, SENDER BYTEA NOT NULL, TIMESTAMP DECIMAL(19), HASH BYTEA NOT NULL, PRIMARY KEY (HASH));
\ No newline at end of file
+CREATE TABLE ENCRYPTED_TRANSACTION (ENCODED_PAYLOAD BYTEA NOT NULL, RECIPIENT_KEY BYTEA, HASH BYTEA NOT NULL, TIMESTAMP DECIMAL(19), PRIMARY KEY (HASH));
+CREATE TABLE ENCRYPTED_RAW_TRANSACTION (ENCRYPTED_KEY BYTEA NOT NULL, ENCRYPTED_PAYLOAD BYTEA NOT NULL, NONCE BYTEA NOT NULL, SENDER BYTEA NOT NULL, TIMESTAMP DECIMAL(19), HASH BYTEA NOT NULL, PRIMARY KEY (HASH));
+CREATE INDEX RAW_TRANSACTION_TIMESTAMP_IDX ON ENCRYPTED_RAW_TRANSACTION (TIMESTAMP);
+CREATE TABLE ENCRYPTED_TRANSACTION_OUTBOX (HASH BYTEA NOT NULL, RECIPIENT BYTEA NOT NULL, ATTEMPTS INTEGER NOT NULL, NEXT_ATTEMPT DECIMAL(19) NOT NULL, TIMESTAMP DECIMAL(19), PRIMARY KEY (HASH, RECIPIENT));
+CREATE INDEX OUTBOX_NEXT_ATTEMPT_IDX ON ENCRYPTED_TRANSACTION_OUTBOX (NEXT_ATTEMPT);
+CREATE TABLE ENCRYPTED_TRANSACTION_RECIPIENT (HASH BYTEA NOT NULL, RECIPIENT BYTEA NOT NULL, TIMESTAMP DECIMAL(19) NOT NULL, PRIMARY KEY (HASH, RECIPIENT));
+CREATE INDEX ENCRYPTED_TRANSACTION_RECIPIENT_IDX ON ENCRYPTED_TRANSACTION_RECIPIENT (RECIPIENT, TIMESTAMP, HASH);
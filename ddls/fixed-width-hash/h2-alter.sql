@@ -0,0 +1,4 @@
+ALTER TABLE ENCRYPTED_TRANSACTION ALTER COLUMN HASH BINARY(64) NOT NULL;
+ALTER TABLE ENCRYPTED_RAW_TRANSACTION ALTER COLUMN HASH BINARY(64) NOT NULL;
+ALTER TABLE ENCRYPTED_TRANSACTION_OUTBOX ALTER COLUMN HASH BINARY(64) NOT NULL;
+ALTER TABLE ENCRYPTED_TRANSACTION_RECIPIENT ALTER COLUMN HASH BINARY(64) NOT NULL;
@@ -0,0 +1,4 @@
+ALTER TABLE ENCRYPTED_TRANSACTION MODIFY HASH BINARY(64) NOT NULL;
+ALTER TABLE ENCRYPTED_RAW_TRANSACTION MODIFY HASH BINARY(64) NOT NULL;
+ALTER TABLE ENCRYPTED_TRANSACTION_OUTBOX MODIFY HASH BINARY(64) NOT NULL;
+ALTER TABLE ENCRYPTED_TRANSACTION_RECIPIENT MODIFY HASH BINARY(64) NOT NULL;
@@ -0,0 +1,4 @@
+ALTER TABLE ENCRYPTED_TRANSACTION MODIFY (HASH RAW(64));
+ALTER TABLE ENCRYPTED_RAW_TRANSACTION MODIFY (HASH RAW(64));
+ALTER TABLE ENCRYPTED_TRANSACTION_OUTBOX MODIFY (HASH RAW(64));
+ALTER TABLE ENCRYPTED_TRANSACTION_RECIPIENT MODIFY (HASH RAW(64));
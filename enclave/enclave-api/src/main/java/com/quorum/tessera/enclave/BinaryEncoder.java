@@ -36,21 +36,17 @@ public interface BinaryEncoder {
      * @return the encoded byte array
      */
     default byte[] encodeArray(final List<byte[]> data) {
-        final byte[] elements = data
-            .stream()
-            .map(this::encodeField)
-            .reduce(new byte[0], (a, b) -> {
-                final byte[] concat = new byte[a.length + b.length];
-                System.arraycopy(a, 0, concat, 0, a.length);
-                System.arraycopy(b, 0, concat, a.length, b.length);
-                return concat;
-            });
+        long size = Long.BYTES;
+        for (final byte[] element : data) {
+            size += Long.BYTES + element.length;
+        }
 
-        return ByteBuffer
-            .allocate(Long.BYTES + elements.length)
-            .putLong(data.size())
-            .put(elements)
-            .array();
+        final ByteBuffer buffer = ByteBuffer.allocate(Math.toIntExact(size)).putLong(data.size());
+        for (final byte[] element : data) {
+            buffer.putLong(element.length).put(element);
+        }
+
+        return buffer.array();
     }
 
 }
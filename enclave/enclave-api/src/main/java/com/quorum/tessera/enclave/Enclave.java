@@ -3,6 +3,7 @@ package com.quorum.tessera.enclave;
 import com.quorum.tessera.encryption.PublicKey;
 import com.quorum.tessera.service.Service;
 
+import java.util.Arrays;
 import java.util.List;
 import java.util.Set;
 
@@ -90,6 +91,32 @@ public interface Enclave extends Service {
      */
     byte[] createNewRecipientBox(EncodedPayload payload, PublicKey recipientKey);
 
+    /**
+     * Checks whether two payloads, both originated by this Enclave, were sealed with
+     * the same master key. Only the first recipient box of each payload is opened;
+     * the ciphertexts are not decrypted.
+     *
+     * Given two payloads with the same ciphertext and nonce, this tells whether they
+     * carry the same message, without the cost of decrypting either of them.
+     *
+     * @param payload the first payload to compare
+     * @param other   the second payload to compare
+     * @return whether both payloads carry the same master key
+     */
+    default boolean hasSameMasterKey(EncodedPayload payload, EncodedPayload other) {
+        return Arrays.equals(unencryptTransaction(payload, null), unencryptTransaction(other, null));
+    }
+
+    /**
+     * Prepares the shared keys between this Enclave's keys and the given remote keys ahead of time,
+     * so that later operations involving those keys do not need to compute them.
+     * Enclaves that do not keep shared keys may ignore this.
+     *
+     * @param remoteKeys the public keys of other parties this Enclave is expected to transact with
+     */
+    default void precomputeSharedKeys(Set<PublicKey> remoteKeys) {
+    }
+
     @Override
     default void start() {
     }
@@ -35,7 +35,12 @@ public interface EnclaveFactory {
         EncryptorFactory encryptorFactory = EncryptorFactory.newFactory(encryptorConfig.getType().name());
         Encryptor encryptor = encryptorFactory.create(encryptorConfig.getProperties());
 
-        return new EnclaveImpl(encryptor, new KeyManagerImpl(keys, forwardKeys));
+        final SharedKeyCache sharedKeyCache =
+                new SharedKeyCache(
+                        Integer.getInteger(
+                                "tessera.enclave.sharedKeyCacheSize", EnclaveImpl.DEFAULT_SHARED_KEY_CACHE_SIZE));
+
+        return new EnclaveImpl(encryptor, new KeyManagerImpl(keys, forwardKeys), sharedKeyCache);
     }
 
     /**
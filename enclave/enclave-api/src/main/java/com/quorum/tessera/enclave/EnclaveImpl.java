@@ -15,13 +15,22 @@ import java.util.stream.Collectors;
 
 public class EnclaveImpl implements Enclave {
 
+    public static final int DEFAULT_SHARED_KEY_CACHE_SIZE = 1024;
+
     private final Encryptor encryptor;
 
     private final KeyManager keyManager;
 
+    private final SharedKeyCache sharedKeyCache;
+
     public EnclaveImpl(Encryptor encryptor, KeyManager keyManager) {
+        this(encryptor, keyManager, new SharedKeyCache(DEFAULT_SHARED_KEY_CACHE_SIZE));
+    }
+
+    public EnclaveImpl(Encryptor encryptor, KeyManager keyManager, SharedKeyCache sharedKeyCache) {
         this.encryptor = Objects.requireNonNull(encryptor);
         this.keyManager = Objects.requireNonNull(keyManager);
+        this.sharedKeyCache = Objects.requireNonNull(sharedKeyCache);
     }
 
     @Override
@@ -53,10 +62,7 @@ public class EnclaveImpl implements Enclave {
             throw new RuntimeException("No key or recipient-box to use");
         }
 
-        final MasterKey master =
-                this.getMasterKey(
-                        payload.getRecipientKeys().get(0), payload.getSenderKey(),
-                        payload.getRecipientNonce(), payload.getRecipientBoxes().get(0));
+        final MasterKey master = this.getOwnMasterKey(payload);
 
         final List<byte[]> sealedMasterKeyList =
                 this.buildRecipientMasterKeys(
@@ -65,6 +71,17 @@ public class EnclaveImpl implements Enclave {
         return sealedMasterKeyList.get(0);
     }
 
+    @Override
+    public boolean hasSameMasterKey(final EncodedPayload payload, final EncodedPayload other) {
+        return this.getOwnMasterKey(payload).equals(this.getOwnMasterKey(other));
+    }
+
+    private MasterKey getOwnMasterKey(final EncodedPayload payload) {
+        return this.getMasterKey(
+                payload.getRecipientKeys().get(0), payload.getSenderKey(),
+                payload.getRecipientNonce(), payload.getRecipientBoxes().get(0));
+    }
+
     @Override
     public EncodedPayload encryptPayload(
             final RawTransaction rawTransaction, final List<PublicKey> recipientPublicKeys) {
@@ -95,7 +112,7 @@ public class EnclaveImpl implements Enclave {
         final PrivateKey privateKey = keyManager.getPrivateKeyForPublicKey(senderPublicKey);
 
         return recipientPublicKeys.stream()
-                .map(publicKey -> encryptor.computeSharedKey(publicKey, privateKey))
+                .map(publicKey -> this.computeSharedKey(publicKey, privateKey))
                 .map(sharedKey -> encryptor.sealAfterPrecomputation(masterKey.getKeyBytes(), recipientNonce, sharedKey))
                 .collect(Collectors.toList());
     }
@@ -110,7 +127,7 @@ public class EnclaveImpl implements Enclave {
         final PrivateKey privateKey = keyManager.getPrivateKeyForPublicKey(sender);
 
         // TODO NL - check if it makes sense to compute a shared key from the public and private parts of the same key
-        SharedKey sharedKey = encryptor.computeSharedKey(sender, privateKey);
+        SharedKey sharedKey = this.computeSharedKey(sender, privateKey);
         final byte[] encryptedMasterKey = encryptor.sealAfterPrecomputation(masterKey.getKeyBytes(), nonce, sharedKey);
 
         return new RawTransaction(cipherText, encryptedMasterKey, nonce, sender);
@@ -135,7 +152,7 @@ public class EnclaveImpl implements Enclave {
 
         final PrivateKey senderPrivKey = keyManager.getPrivateKeyForPublicKey(senderPubKey);
 
-        final SharedKey sharedKey = encryptor.computeSharedKey(recipientPubKey, senderPrivKey);
+        final SharedKey sharedKey = this.computeSharedKey(recipientPubKey, senderPrivKey);
 
         final byte[] recipientBox = payload.getRecipientBoxes().iterator().next();
 
@@ -153,13 +170,37 @@ public class EnclaveImpl implements Enclave {
 
     private MasterKey getMasterKey(PublicKey recipient, PublicKey sender, Nonce nonce, byte[] encryptedKey) {
 
-        final SharedKey sharedKey = encryptor.computeSharedKey(recipient, keyManager.getPrivateKeyForPublicKey(sender));
+        final SharedKey sharedKey = this.computeSharedKey(recipient, keyManager.getPrivateKeyForPublicKey(sender));
 
         final byte[] masterKeyBytes = encryptor.openAfterPrecomputation(encryptedKey, nonce, sharedKey);
 
         return MasterKey.from(masterKeyBytes);
     }
 
+    private SharedKey computeSharedKey(final PublicKey publicKey, final PrivateKey privateKey) {
+        return sharedKeyCache.computeIfAbsent(publicKey, privateKey, encryptor::computeSharedKey);
+    }
+
+    @Override
+    public void precomputeSharedKeys(final Set<PublicKey> remoteKeys) {
+
+        final Set<PublicKey> localKeys = keyManager.getPublicKeys();
+
+        int remaining = sharedKeyCache.getMaxSize();
+        for (final PublicKey localKey : localKeys) {
+            final PrivateKey privateKey = keyManager.getPrivateKeyForPublicKey(localKey);
+            for (final PublicKey remoteKey : remoteKeys) {
+                if (localKeys.contains(remoteKey)) {
+                    continue;
+                }
+                if (remaining-- <= 0) {
+                    return;
+                }
+                this.computeSharedKey(remoteKey, privateKey);
+            }
+        }
+    }
+
     @Override
     public PublicKey defaultPublicKey() {
         return keyManager.defaultPublicKey();
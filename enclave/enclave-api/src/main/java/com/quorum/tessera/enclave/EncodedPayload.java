@@ -35,6 +35,11 @@ public class EncodedPayload {
         this.recipientKeys = recipientKeys;
     }
 
+    /** Used by views over an encoded payload, which supply every field through their own getters */
+    EncodedPayload() {
+        this(null, null, null, null, null, null);
+    }
+
     public PublicKey getSenderKey() {
         return senderKey;
     }
@@ -2,6 +2,8 @@ package com.quorum.tessera.enclave;
 
 import com.quorum.tessera.encryption.PublicKey;
 
+import java.nio.ByteBuffer;
+
 /**
  * Encodes and decodes a {@link EncodedPayload} to and from its binary
  * representation
@@ -16,9 +18,33 @@ public interface PayloadEncoder {
      */
     byte[] encode(EncodedPayload payload);
 
+    /**
+     * Encodes the payload into the given buffer, starting at its current position
+     *
+     * This allows a caller to reuse a pooled or direct buffer instead of allocating
+     * a new array for every payload
+     *
+     * @param payload     the payload to encode
+     * @param destination the buffer to write to, which must have at least
+     *                    {@link #encodedSize(EncodedPayload)} bytes remaining
+     * @return the destination buffer, positioned after the encoded payload
+     */
+    ByteBuffer encode(EncodedPayload payload, ByteBuffer destination);
+
+    /**
+     * Calculates the exact number of bytes the payload takes up once encoded
+     *
+     * @param payload the payload to measure
+     * @return the length of the encoded form of the payload
+     */
+    int encodedSize(EncodedPayload payload);
+
     /**
      * Decodes a byte array back into an encrypted payload
      *
+     * The returned payload may read its fields from the input lazily, so the
+     * input must not be modified afterwards
+     *
      * @param input The byte array to decode into an EncodedPayload
      * @return the decoded payload
      */
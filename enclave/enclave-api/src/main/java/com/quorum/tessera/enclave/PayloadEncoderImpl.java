@@ -1,104 +1,75 @@
 package com.quorum.tessera.enclave;
 
-import com.quorum.tessera.encryption.Nonce;
 import com.quorum.tessera.encryption.PublicKey;
 
 import java.nio.ByteBuffer;
-import java.util.ArrayList;
 import java.util.List;
 
 import static java.util.Collections.emptyList;
 import static java.util.Collections.singletonList;
-import static java.util.stream.Collectors.toList;
 
 public class PayloadEncoderImpl implements PayloadEncoder, BinaryEncoder {
 
     @Override
     public byte[] encode(final EncodedPayload payload) {
+        return encode(payload, ByteBuffer.allocate(encodedSize(payload))).array();
+    }
+
+    @Override
+    public ByteBuffer encode(final EncodedPayload payload, final ByteBuffer destination) {
+
+        if (payload instanceof PayloadView) {
+            return ((PayloadView) payload).writeTo(destination);
+        }
+
+        putField(destination, payload.getSenderKey().getKeyBytes());
+        putField(destination, payload.getCipherText());
 
-        final byte[] senderKey = encodeField(payload.getSenderKey().getKeyBytes());
-        final byte[] cipherText = encodeField(payload.getCipherText());
-        final byte[] nonce = encodeField(payload.getCipherTextNonce().getNonceBytes());
-        final byte[] recipientNonce = encodeField(payload.getRecipientNonce().getNonceBytes());
-        final byte[] recipients = encodeArray(payload.getRecipientBoxes());
-        final byte[] recipientBytes =
-                encodeArray(payload.getRecipientKeys().stream().map(PublicKey::getKeyBytes).collect(toList()));
-
-        return ByteBuffer.allocate(
-                        senderKey.length
-                                + cipherText.length
-                                + nonce.length
-                                + recipients.length
-                                + recipientNonce.length
-                                + recipientBytes.length)
-                .put(senderKey)
-                .put(cipherText)
-                .put(nonce)
-                .put(recipients)
-                .put(recipientNonce)
-                .put(recipientBytes)
-                .array();
+        putField(destination, payload.getCipherTextNonce().getNonceBytes());
+
+        final List<byte[]> recipientBoxes = payload.getRecipientBoxes();
+        destination.putLong(recipientBoxes.size());
+        recipientBoxes.forEach(box -> putField(destination, box));
+
+        putField(destination, payload.getRecipientNonce().getNonceBytes());
+
+        final List<PublicKey> recipientKeys = payload.getRecipientKeys();
+        destination.putLong(recipientKeys.size());
+        recipientKeys.forEach(key -> putField(destination, key.getKeyBytes()));
+
+        return destination;
     }
 
     @Override
-    public EncodedPayload decode(final byte[] input) {
-        final ByteBuffer buffer = ByteBuffer.wrap(input);
-
-        final long senderSize = buffer.getLong();
-        final byte[] senderKey = new byte[Math.toIntExact(senderSize)];
-        buffer.get(senderKey);
-
-        final long cipherTextSize = buffer.getLong();
-        final byte[] cipherText = new byte[Math.toIntExact(cipherTextSize)];
-        buffer.get(cipherText);
-
-        final long nonceSize = buffer.getLong();
-        final byte[] nonce = new byte[Math.toIntExact(nonceSize)];
-        buffer.get(nonce);
-
-        final long numberOfRecipients = buffer.getLong();
-        final List<byte[]> recipientBoxes = new ArrayList<>();
-        for (long i = 0; i < numberOfRecipients; i++) {
-            final long boxSize = buffer.getLong();
-            final byte[] box = new byte[Math.toIntExact(boxSize)];
-            buffer.get(box);
-            recipientBoxes.add(box);
+    public int encodedSize(final EncodedPayload payload) {
+
+        if (payload instanceof PayloadView) {
+            return ((PayloadView) payload).encodedSize();
         }
 
-        final long recipientNonceSize = buffer.getLong();
-        final byte[] recipientNonce = new byte[Math.toIntExact(recipientNonceSize)];
-        buffer.get(recipientNonce);
-
-        // this means there are no recipients in the payload (which we receive when we are a participant)
-        if (!buffer.hasRemaining()) {
-            return EncodedPayload.Builder.create()
-                    .withSenderKey(PublicKey.from(senderKey))
-                    .withCipherText(cipherText)
-                    .withCipherTextNonce(nonce)
-                    .withRecipientBoxes(recipientBoxes)
-                    .withRecipientNonce(recipientNonce)
-                    .withRecipientKeys(emptyList())
-                    .build();
+        long size = Long.BYTES + payload.getSenderKey().getKeyBytes().length;
+        size += Long.BYTES + payload.getCipherText().length;
+        size += Long.BYTES + payload.getCipherTextNonce().getNonceBytes().length;
+        size += Long.BYTES;
+        for (final byte[] box : payload.getRecipientBoxes()) {
+            size += Long.BYTES + box.length;
+        }
+        size += Long.BYTES + payload.getRecipientNonce().getNonceBytes().length;
+        size += Long.BYTES;
+        for (final PublicKey key : payload.getRecipientKeys()) {
+            size += Long.BYTES + key.getKeyBytes().length;
         }
 
-        final long recipientLength = buffer.getLong();
+        return Math.toIntExact(size);
+    }
 
-        final List<byte[]> recipientKeys = new ArrayList<>();
-        for (long i = 0; i < recipientLength; i++) {
-            final long boxSize = buffer.getLong();
-            final byte[] box = new byte[Math.toIntExact(boxSize)];
-            buffer.get(box);
-            recipientKeys.add(box);
-        }
+    private static void putField(final ByteBuffer destination, final byte[] data) {
+        destination.putLong(data.length).put(data);
+    }
 
-        return EncodedPayload.Builder.create()
-                .withSenderKey(PublicKey.from(senderKey))
-                .withCipherText(cipherText)
-                .withCipherTextNonce(new Nonce(nonce))
-                .withRecipientBoxes(recipientBoxes)
-                .withRecipientNonce(new Nonce(recipientNonce))
-                .withRecipientKeys(recipientKeys.stream().map(PublicKey::from).collect(toList()))
-                .build();
+    @Override
+    public EncodedPayload decode(final byte[] input) {
+        return PayloadView.of(input);
     }
 
     @Override
@@ -110,6 +81,14 @@ public class PayloadEncoderImpl implements PayloadEncoder, BinaryEncoder {
         }
 
         final int recipientIndex = payload.getRecipientKeys().indexOf(recipient);
+
+        if (payload instanceof PayloadView) {
+            final PayloadView view = (PayloadView) payload;
+            if (view.hasOriginalBoxes() && recipientIndex < view.numberOfBoxes()) {
+                return view.forRecipient(recipientIndex);
+            }
+        }
+
         final byte[] recipientBox = payload.getRecipientBoxes().get(recipientIndex);
 
         return EncodedPayload.Builder.create()
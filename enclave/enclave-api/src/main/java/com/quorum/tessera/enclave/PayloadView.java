@@ -0,0 +1,337 @@
+package com.quorum.tessera.enclave;
+
+import com.quorum.tessera.encryption.Nonce;
+import com.quorum.tessera.encryption.PublicKey;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * An {@link EncodedPayload} that reads its fields straight out of the encoded form
+ *
+ * <p>Decoding only walks the length prefixes to find where each section of the input starts and ends. A field is
+ * copied out of the input the first time it is asked for, so sections that are never read are never copied. The
+ * recipient lists are materialised into ordinary mutable lists on first access, so callers that add recipients to a
+ * decoded payload see the same behaviour as before.
+ *
+ * <p>Until its recipient lists have been materialised, a view is encoded again by copying its sections from the input
+ * as they are, length prefixes included. A view for a single recipient shares the input of the payload it was taken
+ * from, so the sender, ciphertext and nonce are copied exactly once, straight into the outgoing buffer.
+ */
+final class PayloadView extends EncodedPayload {
+
+    private static final int[] NONE = new int[0];
+
+    private final byte[] input;
+
+    private final int senderKeyOffset;
+
+    private final int senderKeyLength;
+
+    private final int cipherTextOffset;
+
+    private final int cipherTextLength;
+
+    private final int nonceOffset;
+
+    private final int nonceLength;
+
+    private final int[] boxOffsets;
+
+    private final int[] boxLengths;
+
+    private final int recipientNonceOffset;
+
+    private final int recipientNonceLength;
+
+    private final int[] keyOffsets;
+
+    private final int[] keyLengths;
+
+    private PublicKey senderKey;
+
+    private byte[] cipherText;
+
+    private Nonce cipherTextNonce;
+
+    private List<byte[]> recipientBoxes;
+
+    private Nonce recipientNonce;
+
+    private List<PublicKey> recipientKeys;
+
+    private PayloadView(
+            final byte[] input,
+            final int senderKeyOffset,
+            final int senderKeyLength,
+            final int cipherTextOffset,
+            final int cipherTextLength,
+            final int nonceOffset,
+            final int nonceLength,
+            final int[] boxOffsets,
+            final int[] boxLengths,
+            final int recipientNonceOffset,
+            final int recipientNonceLength,
+            final int[] keyOffsets,
+            final int[] keyLengths) {
+        this.input = input;
+        this.senderKeyOffset = senderKeyOffset;
+        this.senderKeyLength = senderKeyLength;
+        this.cipherTextOffset = cipherTextOffset;
+        this.cipherTextLength = cipherTextLength;
+        this.nonceOffset = nonceOffset;
+        this.nonceLength = nonceLength;
+        this.boxOffsets = boxOffsets;
+        this.boxLengths = boxLengths;
+        this.recipientNonceOffset = recipientNonceOffset;
+        this.recipientNonceLength = recipientNonceLength;
+        this.keyOffsets = keyOffsets;
+        this.keyLengths = keyLengths;
+    }
+
+    /**
+     * Indexes the sections of an encoded payload without copying any of them
+     *
+     * @param input the encoded payload, which must not be modified while the view is in use
+     * @return a view over the input
+     */
+    static PayloadView of(final byte[] input) {
+        final ByteBuffer buffer = ByteBuffer.wrap(input);
+
+        final int senderKeyLength = length(buffer);
+        final int senderKeyOffset = skip(buffer, senderKeyLength);
+
+        final int cipherTextLength = length(buffer);
+        final int cipherTextOffset = skip(buffer, cipherTextLength);
+
+        final int nonceLength = length(buffer);
+        final int nonceOffset = skip(buffer, nonceLength);
+
+        final int numberOfBoxes = length(buffer);
+        final int[] boxOffsets = new int[numberOfBoxes];
+        final int[] boxLengths = new int[numberOfBoxes];
+        for (int i = 0; i < numberOfBoxes; i++) {
+            boxLengths[i] = length(buffer);
+            boxOffsets[i] = skip(buffer, boxLengths[i]);
+        }
+
+        final int recipientNonceLength = length(buffer);
+        final int recipientNonceOffset = skip(buffer, recipientNonceLength);
+
+        // no recipient section means the payload was sent to us as a participant
+        final int numberOfKeys = buffer.hasRemaining() ? length(buffer) : 0;
+        final int[] keyOffsets = new int[numberOfKeys];
+        final int[] keyLengths = new int[numberOfKeys];
+        for (int i = 0; i < numberOfKeys; i++) {
+            keyLengths[i] = length(buffer);
+            keyOffsets[i] = skip(buffer, keyLengths[i]);
+        }
+
+        return new PayloadView(
+                input,
+                senderKeyOffset,
+                senderKeyLength,
+                cipherTextOffset,
+                cipherTextLength,
+                nonceOffset,
+                nonceLength,
+                boxOffsets,
+                boxLengths,
+                recipientNonceOffset,
+                recipientNonceLength,
+                keyOffsets,
+                keyLengths);
+    }
+
+    private static int length(final ByteBuffer buffer) {
+        final int length = Math.toIntExact(buffer.getLong());
+        if (length < 0) {
+            throw new NegativeArraySizeException(String.valueOf(length));
+        }
+        return length;
+    }
+
+    private static int skip(final ByteBuffer buffer, final int length) {
+        if (length > buffer.remaining()) {
+            throw new BufferUnderflowException();
+        }
+        final int offset = buffer.position();
+        buffer.position(offset + length);
+        return offset;
+    }
+
+    /**
+     * Whether the recipient boxes can still be read from the input, i.e. they have not been materialised and possibly
+     * modified
+     */
+    boolean hasOriginalBoxes() {
+        return recipientBoxes == null;
+    }
+
+    /** @return the number of recipient boxes in the input */
+    int numberOfBoxes() {
+        return boxOffsets.length;
+    }
+
+    /**
+     * Creates a view of the payload as it is sent to a single recipient, sharing this view's input
+     *
+     * @param boxIndex the index of the recipient's box in the input
+     * @return a view with only the given box and no recipient keys
+     */
+    PayloadView forRecipient(final int boxIndex) {
+        return new PayloadView(
+                input,
+                senderKeyOffset,
+                senderKeyLength,
+                cipherTextOffset,
+                cipherTextLength,
+                nonceOffset,
+                nonceLength,
+                new int[] {boxOffsets[boxIndex]},
+                new int[] {boxLengths[boxIndex]},
+                recipientNonceOffset,
+                recipientNonceLength,
+                NONE,
+                NONE);
+    }
+
+    /** @return the number of bytes {@link #writeTo(ByteBuffer)} will write */
+    int encodedSize() {
+        long size = fieldSize(senderKeyLength) + fieldSize(cipherTextLength) + fieldSize(nonceLength);
+
+        size += Long.BYTES;
+        if (recipientBoxes == null) {
+            for (final int length : boxLengths) {
+                size += fieldSize(length);
+            }
+        } else {
+            for (final byte[] box : recipientBoxes) {
+                size += fieldSize(box.length);
+            }
+        }
+
+        size += fieldSize(recipientNonceLength);
+
+        size += Long.BYTES;
+        if (recipientKeys == null) {
+            for (final int length : keyLengths) {
+                size += fieldSize(length);
+            }
+        } else {
+            for (final PublicKey key : recipientKeys) {
+                size += fieldSize(key.getKeyBytes().length);
+            }
+        }
+
+        return Math.toIntExact(size);
+    }
+
+    /**
+     * Writes the payload in its encoded form, copying any sections that have not been materialised directly from the
+     * input
+     *
+     * @param destination the buffer to write to
+     * @return the destination buffer
+     */
+    ByteBuffer writeTo(final ByteBuffer destination) {
+        putSection(destination, senderKeyOffset, senderKeyLength);
+        putSection(destination, cipherTextOffset, cipherTextLength);
+        putSection(destination, nonceOffset, nonceLength);
+
+        if (recipientBoxes == null) {
+            destination.putLong(boxOffsets.length);
+            for (int i = 0; i < boxOffsets.length; i++) {
+                putSection(destination, boxOffsets[i], boxLengths[i]);
+            }
+        } else {
+            destination.putLong(recipientBoxes.size());
+            recipientBoxes.forEach(box -> destination.putLong(box.length).put(box));
+        }
+
+        putSection(destination, recipientNonceOffset, recipientNonceLength);
+
+        if (recipientKeys == null) {
+            destination.putLong(keyOffsets.length);
+            for (int i = 0; i < keyOffsets.length; i++) {
+                putSection(destination, keyOffsets[i], keyLengths[i]);
+            }
+        } else {
+            destination.putLong(recipientKeys.size());
+            recipientKeys.forEach(key -> destination.putLong(key.getKeyBytes().length).put(key.getKeyBytes()));
+        }
+
+        return destination;
+    }
+
+    private void putSection(final ByteBuffer destination, final int offset, final int length) {
+        destination.putLong(length).put(input, offset, length);
+    }
+
+    private static long fieldSize(final int length) {
+        return Long.BYTES + (long) length;
+    }
+
+    private byte[] copy(final int offset, final int length) {
+        return Arrays.copyOfRange(input, offset, offset + length);
+    }
+
+    @Override
+    public PublicKey getSenderKey() {
+        if (senderKey == null) {
+            senderKey = PublicKey.from(copy(senderKeyOffset, senderKeyLength));
+        }
+        return senderKey;
+    }
+
+    @Override
+    public byte[] getCipherText() {
+        if (cipherText == null) {
+            cipherText = copy(cipherTextOffset, cipherTextLength);
+        }
+        return cipherText;
+    }
+
+    @Override
+    public Nonce getCipherTextNonce() {
+        if (cipherTextNonce == null) {
+            cipherTextNonce = new Nonce(copy(nonceOffset, nonceLength));
+        }
+        return cipherTextNonce;
+    }
+
+    @Override
+    public List<byte[]> getRecipientBoxes() {
+        if (recipientBoxes == null) {
+            final List<byte[]> boxes = new ArrayList<>(boxOffsets.length);
+            for (int i = 0; i < boxOffsets.length; i++) {
+                boxes.add(copy(boxOffsets[i], boxLengths[i]));
+            }
+            recipientBoxes = boxes;
+        }
+        return recipientBoxes;
+    }
+
+    @Override
+    public Nonce getRecipientNonce() {
+        if (recipientNonce == null) {
+            recipientNonce = new Nonce(copy(recipientNonceOffset, recipientNonceLength));
+        }
+        return recipientNonce;
+    }
+
+    @Override
+    public List<PublicKey> getRecipientKeys() {
+        if (recipientKeys == null) {
+            final List<PublicKey> keys = new ArrayList<>(keyOffsets.length);
+            for (int i = 0; i < keyOffsets.length; i++) {
+                keys.add(PublicKey.from(copy(keyOffsets[i], keyLengths[i])));
+            }
+            recipientKeys = keys;
+        }
+        return recipientKeys;
+    }
+}
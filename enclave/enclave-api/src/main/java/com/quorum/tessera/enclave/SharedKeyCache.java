@@ -0,0 +1,110 @@
+package com.quorum.tessera.enclave;
+
+import com.quorum.tessera.encryption.PrivateKey;
+import com.quorum.tessera.encryption.PublicKey;
+import com.quorum.tessera.encryption.SharedKey;
+
+import java.util.Map;
+import java.util.Objects;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.function.BiFunction;
+
+/**
+ * A bounded, thread-safe cache of {@link SharedKey}s, keyed by the public and private key they were computed from.
+ *
+ * <p>A node only ever pairs its own private keys with the public keys of the parties it transacts with, so the same
+ * small set of shared keys is needed on nearly every transaction. Once the cache is full, the entries that were added
+ * first are evicted. A maximum size of zero disables caching entirely.
+ */
+public class SharedKeyCache {
+
+    private final int maxSize;
+
+    private final Map<CacheKey, SharedKey> cache = new ConcurrentHashMap<>();
+
+    private final Queue<CacheKey> insertionOrder = new ConcurrentLinkedQueue<>();
+
+    public SharedKeyCache(final int maxSize) {
+        this.maxSize = Math.max(0, maxSize);
+    }
+
+    /**
+     * Returns the shared key for the given pair, computing and caching it if it is not already present
+     *
+     * @param publicKey the public key of the other party
+     * @param privateKey the private key of the local party
+     * @param computation the function used to compute the shared key on a cache miss
+     * @return the shared key for the pair
+     */
+    public SharedKey computeIfAbsent(
+            final PublicKey publicKey,
+            final PrivateKey privateKey,
+            final BiFunction<PublicKey, PrivateKey, SharedKey> computation) {
+
+        if (maxSize == 0) {
+            return computation.apply(publicKey, privateKey);
+        }
+
+        final CacheKey key = new CacheKey(publicKey, privateKey);
+
+        final SharedKey cached = cache.get(key);
+        if (cached != null) {
+            return cached;
+        }
+
+        // computed outside of any lock, two threads racing on the same pair will both compute the same value
+        final SharedKey computed = computation.apply(publicKey, privateKey);
+        if (cache.putIfAbsent(key, computed) == null) {
+            insertionOrder.add(key);
+            evict();
+        }
+
+        return computed;
+    }
+
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    public int size() {
+        return cache.size();
+    }
+
+    private void evict() {
+        while (cache.size() > maxSize) {
+            final CacheKey eldest = insertionOrder.poll();
+            if (eldest == null) {
+                return;
+            }
+            cache.remove(eldest);
+        }
+    }
+
+    private static final class CacheKey {
+
+        private final PublicKey publicKey;
+
+        private final PrivateKey privateKey;
+
+        private CacheKey(final PublicKey publicKey, final PrivateKey privateKey) {
+            this.publicKey = publicKey;
+            this.privateKey = privateKey;
+        }
+
+        @Override
+        public boolean equals(final Object o) {
+            if (!(o instanceof CacheKey)) {
+                return false;
+            }
+            final CacheKey other = (CacheKey) o;
+            return Objects.equals(publicKey, other.publicKey) && Objects.equals(privateKey, other.privateKey);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(publicKey, privateKey);
+        }
+    }
+}
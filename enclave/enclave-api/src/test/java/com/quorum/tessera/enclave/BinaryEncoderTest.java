@@ -2,6 +2,7 @@ package com.quorum.tessera.enclave;
 
 import org.junit.Test;
 
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
@@ -54,4 +55,24 @@ public class BinaryEncoderTest {
 
     }
 
+    @Test
+    public void largeByteArrayListEncodesEveryElementInOrder() {
+
+        final List<byte[]> lst = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            lst.add(new byte[]{(byte) i, (byte) (i >> 8)});
+        }
+
+        final ByteBuffer encoded = ByteBuffer.wrap(binaryEncoder.encodeArray(lst));
+
+        assertThat(encoded.remaining()).isEqualTo(8 + 1000 * 10);
+        assertThat(encoded.getLong()).isEqualTo(1000);
+        for (int i = 0; i < 1000; i++) {
+            assertThat(encoded.getLong()).isEqualTo(2);
+            assertThat(encoded.get()).isEqualTo((byte) i);
+            assertThat(encoded.get()).isEqualTo((byte) (i >> 8));
+        }
+
+    }
+
 }
@@ -8,6 +8,7 @@ import org.junit.Test;
 
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.HashSet;
 
 import static java.util.Collections.emptyList;
 import static java.util.Collections.singletonList;
@@ -210,6 +211,51 @@ public class EnclaveTest {
         verify(keyManager).getPrivateKeyForPublicKey(senderPublicKey);
     }
 
+    @Test
+    public void sharedKeyIsOnlyComputedOnceForRepeatedRecipient() {
+
+        PublicKey senderPublicKey = mock(PublicKey.class);
+        PublicKey recipientPublicKey = mock(PublicKey.class);
+        PrivateKey senderPrivateKey = mock(PrivateKey.class);
+        SharedKey sharedKey = mock(SharedKey.class);
+        MasterKey masterKey = MasterKey.from("masterKeyBytes".getBytes());
+        Nonce nonce = mock(Nonce.class);
+
+        when(nacl.createMasterKey()).thenReturn(masterKey);
+        when(nacl.randomNonce()).thenReturn(nonce);
+        when(keyManager.getPrivateKeyForPublicKey(senderPublicKey)).thenReturn(senderPrivateKey);
+        when(nacl.computeSharedKey(recipientPublicKey, senderPrivateKey)).thenReturn(sharedKey);
+
+        enclave.encryptPayload("ONE".getBytes(), senderPublicKey, singletonList(recipientPublicKey));
+        enclave.encryptPayload("TWO".getBytes(), senderPublicKey, singletonList(recipientPublicKey));
+
+        verify(nacl, times(2)).createMasterKey();
+        verify(nacl, times(4)).randomNonce();
+        verify(nacl, times(2)).sealAfterPrecomputation(any(byte[].class), eq(nonce), any(MasterKey.class));
+        verify(nacl, times(2)).sealAfterPrecomputation(any(byte[].class), eq(nonce), any(SharedKey.class));
+        verify(nacl).computeSharedKey(recipientPublicKey, senderPrivateKey);
+        verify(keyManager, times(2)).getPrivateKeyForPublicKey(senderPublicKey);
+    }
+
+    @Test
+    public void precomputeSharedKeysSkipsLocalKeys() {
+
+        PublicKey localKey = mock(PublicKey.class);
+        PublicKey remoteKey = mock(PublicKey.class);
+        PrivateKey localPrivateKey = mock(PrivateKey.class);
+
+        when(keyManager.getPublicKeys()).thenReturn(Collections.singleton(localKey));
+        when(keyManager.getPrivateKeyForPublicKey(localKey)).thenReturn(localPrivateKey);
+        when(nacl.computeSharedKey(remoteKey, localPrivateKey)).thenReturn(mock(SharedKey.class));
+
+        enclave.precomputeSharedKeys(new HashSet<>(Arrays.asList(localKey, remoteKey)));
+        enclave.precomputeSharedKeys(Collections.singleton(remoteKey));
+
+        verify(keyManager, times(2)).getPublicKeys();
+        verify(keyManager, times(2)).getPrivateKeyForPublicKey(localKey);
+        verify(nacl).computeSharedKey(remoteKey, localPrivateKey);
+    }
+
     @Test
     public void encryptPayloadRawTransaction() {
 
@@ -373,4 +419,70 @@ public class EnclaveTest {
         verify(nacl).sealAfterPrecomputation(openbox, nonce, senderShared);
         verify(keyManager, times(2)).getPrivateKeyForPublicKey(senderKey);
     }
+
+    @Test
+    public void payloadsWithTheSameMasterKeyMatchWithoutOpeningTheCipherText() {
+
+        final PublicKey senderKey = PublicKey.from("sender".getBytes());
+        final PrivateKey privateKey = PrivateKey.from("sender-priv".getBytes());
+        final PublicKey firstRecipient = PublicKey.from("first".getBytes());
+        final PublicKey secondRecipient = PublicKey.from("second".getBytes());
+        final SharedKey firstShared = SharedKey.from("shared-one".getBytes());
+        final SharedKey secondShared = SharedKey.from("shared-two".getBytes());
+        final Nonce nonce = new Nonce("nonce".getBytes());
+
+        final EncodedPayload payload = ownPayload(senderKey, firstRecipient, "box-one".getBytes(), nonce);
+        final EncodedPayload other = ownPayload(senderKey, secondRecipient, "box-two".getBytes(), nonce);
+
+        when(keyManager.getPrivateKeyForPublicKey(senderKey)).thenReturn(privateKey);
+        when(nacl.computeSharedKey(firstRecipient, privateKey)).thenReturn(firstShared);
+        when(nacl.computeSharedKey(secondRecipient, privateKey)).thenReturn(secondShared);
+        when(nacl.openAfterPrecomputation("box-one".getBytes(), nonce, firstShared)).thenReturn("master".getBytes());
+        when(nacl.openAfterPrecomputation("box-two".getBytes(), nonce, secondShared)).thenReturn("master".getBytes());
+
+        assertThat(enclave.hasSameMasterKey(payload, other)).isTrue();
+
+        verify(keyManager, times(2)).getPrivateKeyForPublicKey(senderKey);
+        verify(nacl).computeSharedKey(firstRecipient, privateKey);
+        verify(nacl).computeSharedKey(secondRecipient, privateKey);
+        verify(nacl).openAfterPrecomputation("box-one".getBytes(), nonce, firstShared);
+        verify(nacl).openAfterPrecomputation("box-two".getBytes(), nonce, secondShared);
+    }
+
+    @Test
+    public void payloadsWithDifferentMasterKeysDoNotMatch() {
+
+        final PublicKey senderKey = PublicKey.from("sender".getBytes());
+        final PrivateKey privateKey = PrivateKey.from("sender-priv".getBytes());
+        final PublicKey recipient = PublicKey.from("recipient".getBytes());
+        final SharedKey shared = SharedKey.from("shared".getBytes());
+        final Nonce nonce = new Nonce("nonce".getBytes());
+
+        final EncodedPayload payload = ownPayload(senderKey, recipient, "box-one".getBytes(), nonce);
+        final EncodedPayload other = ownPayload(senderKey, recipient, "box-two".getBytes(), nonce);
+
+        when(keyManager.getPrivateKeyForPublicKey(senderKey)).thenReturn(privateKey);
+        when(nacl.computeSharedKey(recipient, privateKey)).thenReturn(shared);
+        when(nacl.openAfterPrecomputation("box-one".getBytes(), nonce, shared)).thenReturn("master".getBytes());
+        when(nacl.openAfterPrecomputation("box-two".getBytes(), nonce, shared)).thenReturn("other".getBytes());
+
+        assertThat(enclave.hasSameMasterKey(payload, other)).isFalse();
+
+        verify(keyManager, times(2)).getPrivateKeyForPublicKey(senderKey);
+        verify(nacl).computeSharedKey(recipient, privateKey);
+        verify(nacl).openAfterPrecomputation("box-one".getBytes(), nonce, shared);
+        verify(nacl).openAfterPrecomputation("box-two".getBytes(), nonce, shared);
+    }
+
+    private static EncodedPayload ownPayload(
+            final PublicKey sender, final PublicKey recipient, final byte[] box, final Nonce recipientNonce) {
+        return EncodedPayload.Builder.create()
+                .withSenderKey(sender)
+                .withCipherText("cipherText".getBytes())
+                .withCipherTextNonce("cipherTextNonce".getBytes())
+                .withRecipientBoxes(singletonList(box))
+                .withRecipientNonce(recipientNonce)
+                .withRecipientKeys(singletonList(recipient))
+                .build();
+    }
 }
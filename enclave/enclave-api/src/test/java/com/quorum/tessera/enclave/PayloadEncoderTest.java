@@ -5,6 +5,9 @@ import com.quorum.tessera.encryption.PublicKey;
 import org.bouncycastle.util.encoders.Hex;
 import org.junit.Test;
 
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
 import java.util.Base64;
 
 import static java.util.Collections.singletonList;
@@ -536,4 +539,131 @@ public class PayloadEncoderTest {
         assertThat(payload.getRecipientBoxes()).hasSize(1);
         assertThat(payload.getRecipientBoxes().get(0)).containsExactly(recipient);
     }
+
+    @Test
+    public void encodeIntoSuppliedBufferMatchesEncode() {
+
+        final EncodedPayload payload = twoRecipientPayload();
+        final byte[] expected = payloadEncoder.encode(payload);
+
+        assertThat(payloadEncoder.encodedSize(payload)).isEqualTo(expected.length);
+
+        final ByteBuffer buffer = ByteBuffer.allocate(expected.length + 10);
+        buffer.position(4);
+
+        final ByteBuffer result = payloadEncoder.encode(payload, buffer);
+
+        assertThat(result).isSameAs(buffer);
+        assertThat(result.position()).isEqualTo(4 + expected.length);
+        assertThat(Arrays.copyOfRange(buffer.array(), 4, 4 + expected.length)).containsExactly(expected);
+    }
+
+    @Test
+    public void decodedPayloadEncodesBackToTheSameBytes() {
+
+        final byte[] encoded = payloadEncoder.encode(twoRecipientPayload());
+
+        final EncodedPayload decoded = payloadEncoder.decode(encoded);
+
+        assertThat(payloadEncoder.encodedSize(decoded)).isEqualTo(encoded.length);
+        assertThat(payloadEncoder.encode(decoded)).containsExactly(encoded);
+        assertThat(decoded.getCipherText()).containsExactly("CIPHERTEXT".getBytes());
+        assertThat(payloadEncoder.encode(decoded)).containsExactly(encoded);
+    }
+
+    @Test
+    public void recipientsAddedToDecodedPayloadAreEncoded() {
+
+        final EncodedPayload decoded = payloadEncoder.decode(payloadEncoder.encode(twoRecipientPayload()));
+
+        decoded.getRecipientKeys().add(PublicKey.from("KEY3".getBytes()));
+        decoded.getRecipientBoxes().add("BOX3".getBytes());
+
+        final EncodedPayload result = payloadEncoder.decode(payloadEncoder.encode(decoded));
+
+        assertThat(result.getRecipientKeys())
+                .containsExactly(
+                        PublicKey.from("KEY1".getBytes()),
+                        PublicKey.from("KEY2".getBytes()),
+                        PublicKey.from("KEY3".getBytes()));
+        assertThat(result.getRecipientBoxes()).hasSize(3);
+        assertThat(result.getRecipientBoxes().get(2)).containsExactly("BOX3".getBytes());
+    }
+
+    @Test(expected = BufferUnderflowException.class)
+    public void truncatedPayloadFailsToDecode() {
+
+        final byte[] encoded = payloadEncoder.encode(twoRecipientPayload());
+
+        payloadEncoder.decode(Arrays.copyOf(encoded, encoded.length - 1));
+    }
+
+    @Test
+    public void forRecipientOfDecodedPayloadEncodesLikeABuiltPayload() {
+
+        final EncodedPayload built = twoRecipientPayload();
+        final EncodedPayload decoded = payloadEncoder.decode(payloadEncoder.encode(built));
+        final PublicKey recipient = PublicKey.from("KEY2".getBytes());
+
+        final byte[] expected = payloadEncoder.encode(payloadEncoder.forRecipient(built, recipient));
+        final EncodedPayload result = payloadEncoder.forRecipient(decoded, recipient);
+
+        assertThat(payloadEncoder.encodedSize(result)).isEqualTo(expected.length);
+        assertThat(payloadEncoder.encode(result)).containsExactly(expected);
+        assertThat(result.getRecipientKeys()).isEmpty();
+        assertThat(result.getRecipientBoxes()).hasSize(1);
+        assertThat(result.getRecipientBoxes().get(0)).containsExactly("BOX2".getBytes());
+    }
+
+    @Test
+    public void encodedForRecipientOfDecodedPayloadKeepsOnlyTheRecipientsBox() {
+
+        final byte[] encoded = payloadEncoder.encode(twoRecipientPayload());
+
+        final byte[] result =
+                payloadEncoder.encode(
+                        payloadEncoder.forRecipient(payloadEncoder.decode(encoded), PublicKey.from("KEY1".getBytes())));
+
+        final EncodedPayload payload = payloadEncoder.decode(result);
+        assertThat(payload.getSenderKey()).isEqualTo(PublicKey.from("SENDER".getBytes()));
+        assertThat(payload.getCipherText()).containsExactly("CIPHERTEXT".getBytes());
+        assertThat(payload.getCipherTextNonce()).isEqualTo(new Nonce("NONCE".getBytes()));
+        assertThat(payload.getRecipientNonce()).isEqualTo(new Nonce("RECIPIENT_NONCE".getBytes()));
+        assertThat(payload.getRecipientKeys()).isEmpty();
+        assertThat(payload.getRecipientBoxes()).hasSize(1);
+        assertThat(payload.getRecipientBoxes().get(0)).containsExactly("BOX1".getBytes());
+    }
+
+    @Test(expected = InvalidRecipientException.class)
+    public void forRecipientOfDecodedPayloadNotInPayloadFails() {
+
+        final byte[] encoded = payloadEncoder.encode(twoRecipientPayload());
+
+        payloadEncoder.encode(
+                payloadEncoder.forRecipient(payloadEncoder.decode(encoded), PublicKey.from("UNKNOWN".getBytes())));
+    }
+
+    @Test
+    public void forRecipientAddedToDecodedPayloadUsesTheAddedBox() {
+
+        final EncodedPayload decoded = payloadEncoder.decode(payloadEncoder.encode(twoRecipientPayload()));
+        decoded.getRecipientKeys().add(PublicKey.from("KEY3".getBytes()));
+        decoded.getRecipientBoxes().add("BOX3".getBytes());
+
+        final EncodedPayload result = payloadEncoder.forRecipient(decoded, PublicKey.from("KEY3".getBytes()));
+
+        assertThat(result.getRecipientBoxes()).hasSize(1);
+        assertThat(result.getRecipientBoxes().get(0)).containsExactly("BOX3".getBytes());
+    }
+
+    private static EncodedPayload twoRecipientPayload() {
+        return EncodedPayload.Builder.create()
+                .withSenderKey(PublicKey.from("SENDER".getBytes()))
+                .withCipherText("CIPHERTEXT".getBytes())
+                .withCipherTextNonce("NONCE".getBytes())
+                .withRecipientBoxes(Arrays.asList("BOX1".getBytes(), "BOX2".getBytes()))
+                .withRecipientNonce("RECIPIENT_NONCE".getBytes())
+                .withRecipientKeys(Arrays.asList(PublicKey.from("KEY1".getBytes()), PublicKey.from("KEY2".getBytes())))
+                .build();
+    }
 }
@@ -0,0 +1,78 @@
+package com.quorum.tessera.enclave;
+
+import com.quorum.tessera.encryption.PrivateKey;
+import com.quorum.tessera.encryption.PublicKey;
+import com.quorum.tessera.encryption.SharedKey;
+import org.junit.Test;
+
+import java.util.function.BiFunction;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.*;
+
+public class SharedKeyCacheTest {
+
+    @SuppressWarnings("unchecked")
+    private final BiFunction<PublicKey, PrivateKey, SharedKey> computation = mock(BiFunction.class);
+
+    @Test
+    public void secondLookupOfSamePairIsServedFromCache() {
+        final PublicKey publicKey = PublicKey.from("PUBLIC".getBytes());
+        final PrivateKey privateKey = PrivateKey.from("PRIVATE".getBytes());
+        final SharedKey sharedKey = SharedKey.from("SHARED".getBytes());
+        when(computation.apply(publicKey, privateKey)).thenReturn(sharedKey);
+
+        final SharedKeyCache cache = new SharedKeyCache(10);
+
+        assertThat(cache.computeIfAbsent(publicKey, privateKey, computation)).isSameAs(sharedKey);
+        assertThat(cache.computeIfAbsent(PublicKey.from("PUBLIC".getBytes()), privateKey, computation))
+                .isSameAs(sharedKey);
+        assertThat(cache.size()).isEqualTo(1);
+
+        verify(computation).apply(publicKey, privateKey);
+        verifyNoMoreInteractions(computation);
+    }
+
+    @Test
+    public void oldestEntryIsEvictedWhenFull() {
+        final PrivateKey privateKey = PrivateKey.from("PRIVATE".getBytes());
+        final PublicKey first = PublicKey.from("FIRST".getBytes());
+        final PublicKey second = PublicKey.from("SECOND".getBytes());
+        final PublicKey third = PublicKey.from("THIRD".getBytes());
+        when(computation.apply(any(PublicKey.class), eq(privateKey)))
+                .thenAnswer(invocation -> SharedKey.from(invocation.<PublicKey>getArgument(0).getKeyBytes()));
+
+        final SharedKeyCache cache = new SharedKeyCache(2);
+
+        cache.computeIfAbsent(first, privateKey, computation);
+        cache.computeIfAbsent(second, privateKey, computation);
+        cache.computeIfAbsent(third, privateKey, computation);
+
+        assertThat(cache.size()).isEqualTo(2);
+
+        cache.computeIfAbsent(second, privateKey, computation);
+        cache.computeIfAbsent(third, privateKey, computation);
+        cache.computeIfAbsent(first, privateKey, computation);
+
+        verify(computation, times(2)).apply(first, privateKey);
+        verify(computation).apply(second, privateKey);
+        verify(computation).apply(third, privateKey);
+        verifyNoMoreInteractions(computation);
+    }
+
+    @Test
+    public void zeroSizeDisablesCaching() {
+        final PublicKey publicKey = PublicKey.from("PUBLIC".getBytes());
+        final PrivateKey privateKey = PrivateKey.from("PRIVATE".getBytes());
+        when(computation.apply(publicKey, privateKey)).thenReturn(SharedKey.from("SHARED".getBytes()));
+
+        final SharedKeyCache cache = new SharedKeyCache(0);
+
+        cache.computeIfAbsent(publicKey, privateKey, computation);
+        cache.computeIfAbsent(publicKey, privateKey, computation);
+
+        assertThat(cache.size()).isZero();
+        assertThat(cache.getMaxSize()).isZero();
+        verify(computation, times(2)).apply(publicKey, privateKey);
+    }
+}
@@ -0,0 +1,28 @@
+package com.quorum.tessera.server.monitoring;
+
+public class MBeanAttributeMetric implements MBeanMetric {
+
+    private String type;
+
+    private String name;
+
+    private String value;
+
+    public MBeanAttributeMetric(String type, String name, String value) {
+        this.type = type;
+        this.name = name;
+        this.value = value;
+    }
+
+    public String getType() {
+        return type;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getValue() {
+        return value;
+    }
+}
@@ -40,6 +40,34 @@ public class MetricsEnquirer {
         return Collections.unmodifiableList(mBeanMetrics);
     }
 
+    /**
+     * Reads the numeric attributes of the MBeans that Tessera itself registers, such as the number of stored
+     * transactions
+     */
+    public List<MBeanMetric> getTesseraMetrics() {
+        List<MBeanMetric> mBeanMetrics = new ArrayList<>();
+
+        try {
+            Set<ObjectName> mBeanNames = this.mBeanServer.queryNames(new ObjectName("com.quorum.tessera:type=*"), null);
+
+            for(ObjectName mBeanName : mBeanNames) {
+                for(MBeanAttributeInfo mBeanAttribute : this.mBeanServer.getMBeanInfo(mBeanName).getAttributes()) {
+                    String attributeName = mBeanAttribute.getName();
+                    Object value = mBeanServer.getAttribute(mBeanName, attributeName);
+
+                    if(value instanceof Number) {
+                        String type = mBeanName.getKeyProperty("type");
+                        mBeanMetrics.add(new MBeanAttributeMetric(type, attributeName, value.toString()));
+                    }
+                }
+            }
+        } catch (MalformedObjectNameException | AttributeNotFoundException | MBeanException | InstanceNotFoundException | ReflectionException | IntrospectionException e) {
+            throw new RuntimeException(e);
+        }
+
+        return Collections.unmodifiableList(mBeanMetrics);
+    }
+
     private Set<ObjectName> getTesseraResourceMBeanNames(AppType appType) throws MalformedObjectNameException {
         final String type;
         switch(appType) {
@@ -36,6 +36,8 @@ public class MetricsResource {
                             .append("\n");
         }
 
+        formattedMetrics.append(new PrometheusProtocolFormatter().format(metricsEnquirer.getTesseraMetrics()));
+
         return Response.status(Response.Status.OK)
             .header("Content-Type", TEXT_PLAIN)
             .entity(formattedMetrics.toString().trim())
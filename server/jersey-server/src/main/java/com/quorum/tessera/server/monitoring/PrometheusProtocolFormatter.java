@@ -26,6 +26,24 @@ public class PrometheusProtocolFormatter {
         return formattedMetrics.toString().trim();
     }
 
+    public String format(final List<MBeanMetric> metrics) {
+        StringBuilder formattedMetrics = new StringBuilder();
+
+        for (final MBeanMetric metric : metrics) {
+            final MBeanAttributeMetric attributeMetric = (MBeanAttributeMetric) metric;
+
+            formattedMetrics.append("tessera_")
+                .append(attributeMetric.getType())
+                .append("_")
+                .append(attributeMetric.getName())
+                .append(" ")
+                .append(attributeMetric.getValue())
+                .append("\n");
+        }
+
+        return formattedMetrics.toString().trim();
+    }
+
     private String sanitize(final String input) {
         return input
             .replaceAll("(#.*)|(_total)|\\(\\)|\\)|\\[\\]|\\]|;", "")
@@ -283,4 +283,29 @@ public class MetricsEnquirerTest {
         assertThat(metrics.get(0).getName()).isEqualTo("name3_total");
         assertThat(metrics.get(1).getName()).isEqualTo("name_total");
     }
+
+    @Test
+    public void tesseraMBeanNumericAttributesAreIncluded() throws MalformedObjectNameException, IntrospectionException, ReflectionException, AttributeNotFoundException, MBeanException, InstanceNotFoundException {
+        ObjectName mBeanName = new ObjectName("com.quorum.tessera:type=EncryptedTransactions");
+        names.add(mBeanName);
+
+        when(mBeanServer.queryNames(new ObjectName("com.quorum.tessera:type=*"), null)).thenReturn(names);
+
+        MBeanAttributeInfo[] mBeanAttributes = {
+            new MBeanAttributeInfo("TransactionCount", "long", "desc", true, false, false),
+            new MBeanAttributeInfo("Name", "java.lang.String", "desc", true, false, false)
+        };
+        MBeanInfo mBeanInfo = new MBeanInfo(null, null, mBeanAttributes, null, null, null);
+
+        when(mBeanServer.getMBeanInfo(mBeanName)).thenReturn(mBeanInfo);
+        when(mBeanServer.getAttribute(mBeanName, "TransactionCount")).thenReturn(12L);
+        when(mBeanServer.getAttribute(mBeanName, "Name")).thenReturn("name");
+
+        List<MBeanMetric> metrics = metricsEnquirer.getTesseraMetrics();
+
+        assertThat(metrics.size()).isEqualTo(1);
+        assertThat(((MBeanAttributeMetric) metrics.get(0)).getType()).isEqualTo("EncryptedTransactions");
+        assertThat(metrics.get(0).getName()).isEqualTo("TransactionCount");
+        assertThat(metrics.get(0).getValue()).isEqualTo("12");
+    }
 }
@@ -84,4 +84,15 @@ public class PrometheusProtocolFormatterTest {
 
         assertThat(protocolFormatter.format(mockMetrics, type)).isEmpty();
     }
+
+    @Test
+    public void attributeMetricsResponseCorrectlyFormatted() {
+        mockMetrics.add(new MBeanAttributeMetric("EncryptedTransactions", "TransactionCount", "12"));
+        mockMetrics.add(new MBeanAttributeMetric("PayloadCache", "HitCount", "3"));
+
+        String expectedResponse = "tessera_EncryptedTransactions_TransactionCount 12" + "\n" +
+            "tessera_PayloadCache_HitCount 3";
+
+        assertThat(protocolFormatter.format(mockMetrics)).isEqualTo(expectedResponse);
+    }
 }
@@ -0,0 +1,58 @@
+package com.quorum.tessera.api.model;
+
+import io.swagger.annotations.ApiModel;
+import io.swagger.annotations.ApiModelProperty;
+
+import javax.xml.bind.annotation.XmlMimeType;
+
+/**
+ * Model representation of a JSON body on outgoing HTTP responses
+ *
+ * The outcome of fetching one of the transactions of a {@link ReceiveBatchRequest}
+ */
+@ApiModel
+public class ReceiveBatchEntry {
+
+    @ApiModelProperty("Encoded transaction hash, as given in the request")
+    private String key;
+
+    @ApiModelProperty("Whether the transaction is stored on this node")
+    private boolean found;
+
+    @XmlMimeType("base64Binary")
+    @ApiModelProperty("Decrypted payload of the transaction, absent if it was not found")
+    private byte[] payload;
+
+    public ReceiveBatchEntry(final String key, final byte[] payload) {
+        this.key = key;
+        this.found = payload != null;
+        this.payload = payload;
+    }
+
+    public ReceiveBatchEntry() {
+    }
+
+    public String getKey() {
+        return key;
+    }
+
+    public void setKey(final String key) {
+        this.key = key;
+    }
+
+    public boolean isFound() {
+        return found;
+    }
+
+    public void setFound(final boolean found) {
+        this.found = found;
+    }
+
+    public byte[] getPayload() {
+        return payload;
+    }
+
+    public void setPayload(final byte[] payload) {
+        this.payload = payload;
+    }
+}
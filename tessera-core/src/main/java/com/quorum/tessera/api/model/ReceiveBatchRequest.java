@@ -0,0 +1,42 @@
+package com.quorum.tessera.api.model;
+
+import io.swagger.annotations.ApiModel;
+import io.swagger.annotations.ApiModelProperty;
+
+import javax.validation.constraints.NotNull;
+import javax.validation.constraints.Size;
+import java.util.List;
+
+/**
+ * Model representation of a JSON body on incoming HTTP requests
+ *
+ * Used when several transactions are to be fetched and decrypted at once, such as all of the private transactions
+ * of a block
+ */
+@ApiModel
+public class ReceiveBatchRequest {
+
+    @NotNull
+    @Size(min = 1)
+    @ApiModelProperty("Encoded transaction hashes")
+    private List<String> keys;
+
+    @ApiModelProperty("Encoded recipient public key, used to decrypt every transaction")
+    private String to;
+
+    public List<String> getKeys() {
+        return keys;
+    }
+
+    public void setKeys(final List<String> keys) {
+        this.keys = keys;
+    }
+
+    public String getTo() {
+        return to;
+    }
+
+    public void setTo(final String to) {
+        this.to = to;
+    }
+}
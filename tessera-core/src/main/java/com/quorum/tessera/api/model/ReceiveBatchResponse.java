@@ -0,0 +1,33 @@
+package com.quorum.tessera.api.model;
+
+import io.swagger.annotations.ApiModel;
+import io.swagger.annotations.ApiModelProperty;
+
+import java.util.List;
+
+/**
+ * Model representation of a JSON body on outgoing HTTP responses
+ *
+ * A response to a {@link ReceiveBatchRequest}, with one entry for each requested transaction
+ */
+@ApiModel
+public class ReceiveBatchResponse {
+
+    @ApiModelProperty("The fetched transactions, in the same order as the requested keys")
+    private List<ReceiveBatchEntry> payloads;
+
+    public ReceiveBatchResponse(final List<ReceiveBatchEntry> payloads) {
+        this.payloads = payloads;
+    }
+
+    public ReceiveBatchResponse() {
+    }
+
+    public List<ReceiveBatchEntry> getPayloads() {
+        return payloads;
+    }
+
+    public void setPayloads(final List<ReceiveBatchEntry> payloads) {
+        this.payloads = payloads;
+    }
+}
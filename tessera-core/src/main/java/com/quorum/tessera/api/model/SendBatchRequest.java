@@ -0,0 +1,32 @@
+package com.quorum.tessera.api.model;
+
+import io.swagger.annotations.ApiModel;
+import io.swagger.annotations.ApiModelProperty;
+
+import javax.validation.Valid;
+import javax.validation.constraints.NotNull;
+import javax.validation.constraints.Size;
+import java.util.List;
+
+/**
+ * Model representation of a JSON body on incoming HTTP requests
+ *
+ * Used when several new transactions are to be created where this node is the sender
+ */
+@ApiModel
+public class SendBatchRequest {
+
+    @Valid
+    @NotNull
+    @Size(min = 1)
+    @ApiModelProperty("The transactions to send, each treated as a separate send request")
+    private List<SendRequest> requests;
+
+    public List<SendRequest> getRequests() {
+        return requests;
+    }
+
+    public void setRequests(final List<SendRequest> requests) {
+        this.requests = requests;
+    }
+}
@@ -0,0 +1,35 @@
+package com.quorum.tessera.api.model;
+
+import io.swagger.annotations.ApiModel;
+import io.swagger.annotations.ApiModelProperty;
+
+import java.util.List;
+
+/**
+ * Model representation of a JSON body on outgoing HTTP responses
+ *
+ * A response to a {@link SendBatchRequest} after all of the transactions have been
+ * distributed and saved
+ */
+@ApiModel
+public class SendBatchResponse {
+
+    @ApiModelProperty("Base64 encoded transaction hashes, in the same order as the requests")
+    private List<String> keys;
+
+    public SendBatchResponse(final List<String> keys) {
+        this.keys = keys;
+    }
+
+    public SendBatchResponse() {
+    }
+
+    public List<String> getKeys() {
+        return keys;
+    }
+
+    public void setKeys(final List<String> keys) {
+        this.keys = keys;
+    }
+
+}
@@ -0,0 +1,157 @@
+package com.quorum.tessera.transaction;
+
+import com.quorum.tessera.data.EncryptedTransaction;
+import com.quorum.tessera.data.EncryptedTransactionDAO;
+import com.quorum.tessera.data.MessageHash;
+import com.quorum.tessera.data.OutboxEntry;
+import com.quorum.tessera.data.OutboxEntryDAO;
+import com.quorum.tessera.enclave.EncodedPayload;
+import com.quorum.tessera.enclave.InvalidRecipientException;
+import com.quorum.tessera.enclave.PayloadEncoder;
+import com.quorum.tessera.encryption.PublicKey;
+import com.quorum.tessera.partyinfo.FanOutPublisher;
+import com.quorum.tessera.partyinfo.PublishResult;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.stream.Collectors;
+
+/**
+ * Drains the transaction outbox, pushing pending payloads to their recipients off the request path
+ *
+ * <p>Due entries are fetched in batches and grouped by transaction, so each stored payload is read and decoded once
+ * regardless of how many recipients are waiting on it, and then by recipient, so each recipient is sent all of its due
+ * payloads in a single push. Failed deliveries are rescheduled with an exponential backoff, capped at
+ * {@code maxRetryDelay} milliseconds.
+ */
+public class OutboxDispatcher implements Runnable {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(OutboxDispatcher.class);
+
+    private final OutboxEntryDAO outboxEntryDAO;
+
+    private final EncryptedTransactionDAO encryptedTransactionDAO;
+
+    private final FanOutPublisher fanOutPublisher;
+
+    private final PayloadEncoder payloadEncoder;
+
+    private final int batchSize;
+
+    private final long retryDelay;
+
+    private final long maxRetryDelay;
+
+    public OutboxDispatcher(
+            final OutboxEntryDAO outboxEntryDAO,
+            final EncryptedTransactionDAO encryptedTransactionDAO,
+            final FanOutPublisher fanOutPublisher,
+            final int batchSize,
+            final long retryDelay,
+            final long maxRetryDelay) {
+        this(
+                outboxEntryDAO,
+                encryptedTransactionDAO,
+                fanOutPublisher,
+                PayloadEncoder.create(),
+                batchSize,
+                retryDelay,
+                maxRetryDelay);
+    }
+
+    public OutboxDispatcher(
+            final OutboxEntryDAO outboxEntryDAO,
+            final EncryptedTransactionDAO encryptedTransactionDAO,
+            final FanOutPublisher fanOutPublisher,
+            final PayloadEncoder payloadEncoder,
+            final int batchSize,
+            final long retryDelay,
+            final long maxRetryDelay) {
+        this.outboxEntryDAO = Objects.requireNonNull(outboxEntryDAO);
+        this.encryptedTransactionDAO = Objects.requireNonNull(encryptedTransactionDAO);
+        this.fanOutPublisher = Objects.requireNonNull(fanOutPublisher);
+        this.payloadEncoder = Objects.requireNonNull(payloadEncoder);
+        this.batchSize = batchSize;
+        this.retryDelay = retryDelay;
+        this.maxRetryDelay = maxRetryDelay;
+    }
+
+    @Override
+    public void run() {
+
+        final List<OutboxEntry> due = outboxEntryDAO.retrieveDue(System.currentTimeMillis(), batchSize);
+
+        if (due.isEmpty()) {
+            return;
+        }
+
+        LOGGER.debug("Dispatching {} pending deliveries", due.size());
+
+        final Map<PublicKey, List<EncodedPayload>> outgoing = new LinkedHashMap<>();
+        final Map<PublicKey, List<OutboxEntry>> pending = new LinkedHashMap<>();
+
+        due.stream()
+                .collect(Collectors.groupingBy(OutboxEntry::getHash, LinkedHashMap::new, Collectors.toList()))
+                .forEach((hash, entries) -> this.prepare(hash, entries, outgoing, pending));
+
+        if (outgoing.isEmpty()) {
+            return;
+        }
+
+        for (final PublishResult result : fanOutPublisher.publishAll(outgoing)) {
+            final List<OutboxEntry> entries = pending.get(result.getRecipient());
+            if (result.isSuccess()) {
+                entries.forEach(outboxEntryDAO::delete);
+            } else {
+                entries.forEach(this::reschedule);
+            }
+        }
+    }
+
+    private void prepare(
+            final MessageHash hash,
+            final List<OutboxEntry> entries,
+            final Map<PublicKey, List<EncodedPayload>> outgoing,
+            final Map<PublicKey, List<OutboxEntry>> pending) {
+
+        final Optional<EncryptedTransaction> transaction = encryptedTransactionDAO.retrieveByHash(hash);
+
+        if (!transaction.isPresent()) {
+            LOGGER.warn("Transaction {} no longer exists, discarding {} pending deliveries", hash, entries.size());
+            entries.forEach(outboxEntryDAO::delete);
+            return;
+        }
+
+        final EncodedPayload payload = payloadEncoder.decode(transaction.get().getEncodedPayload());
+
+        for (final OutboxEntry entry : entries) {
+            final PublicKey recipient = PublicKey.from(entry.getRecipient());
+            try {
+                final EncodedPayload recipientPayload = payloadEncoder.forRecipient(payload, recipient);
+                outgoing.computeIfAbsent(recipient, k -> new ArrayList<>()).add(recipientPayload);
+                pending.computeIfAbsent(recipient, k -> new ArrayList<>()).add(entry);
+            } catch (final InvalidRecipientException ex) {
+                LOGGER.warn("Discarding delivery of {} to non-recipient {}", hash, recipient.encodeToBase64());
+                outboxEntryDAO.delete(entry);
+            }
+        }
+    }
+
+    private void reschedule(final OutboxEntry entry) {
+        final int attempts = entry.getAttempts() + 1;
+        final long delay = Math.min(maxRetryDelay, retryDelay << Math.min(attempts - 1, 20));
+
+        entry.setAttempts(attempts);
+        entry.setNextAttempt(System.currentTimeMillis() + delay);
+
+        LOGGER.info("Delivery of {} failed after {} attempts, retrying in {}ms", entry.getHash(), attempts, delay);
+
+        outboxEntryDAO.update(entry);
+    }
+}
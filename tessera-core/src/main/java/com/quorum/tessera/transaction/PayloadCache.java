@@ -0,0 +1,177 @@
+package com.quorum.tessera.transaction;
+
+import com.quorum.tessera.data.EncryptedTransaction;
+import com.quorum.tessera.data.MessageHash;
+
+import java.nio.ByteBuffer;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A cache of recently stored transactions, so that the repeated receives that follow a push are not each answered from
+ * the database. Transactions read to answer a receive are not added, as they may have been read from a read replica
+ * that is behind
+ *
+ * <p>Entries hold the encoded payload along with the local key that can decrypt it, and are evicted least recently
+ * used first once the payloads held exceed the configured number of bytes. Payloads can be held off-heap, in which case
+ * they are copied back on to the heap on every hit. Only transactions with a known recipient key are cached, as
+ * anything else needs to be written back once its key has been found.
+ *
+ * <p>Transactions are returned as new, detached instances, so changes made to them are neither written to the database
+ * nor seen by later hits. A maximum size of zero disables the cache.
+ */
+public class PayloadCache implements PayloadCacheMXBean {
+
+    private final long maxSizeInBytes;
+
+    private final boolean offHeap;
+
+    private final Map<MessageHash, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+    private long sizeInBytes;
+
+    private final LongAdder hits = new LongAdder();
+
+    private final LongAdder misses = new LongAdder();
+
+    private final LongAdder evictions = new LongAdder();
+
+    public PayloadCache(final long maxSizeInBytes, final boolean offHeap) {
+        if (maxSizeInBytes < 0) {
+            throw new IllegalArgumentException("Maximum cache size cannot be negative");
+        }
+        this.maxSizeInBytes = maxSizeInBytes;
+        this.offHeap = offHeap;
+    }
+
+    /**
+     * Looks up a cached transaction
+     *
+     * @param hash the hash of the transaction
+     * @return a copy of the cached transaction, or empty if it is not cached
+     */
+    public Optional<EncryptedTransaction> get(final MessageHash hash) {
+        final Entry entry;
+        synchronized (this) {
+            entry = entries.get(hash);
+        }
+
+        if (entry == null) {
+            misses.increment();
+            return Optional.empty();
+        }
+
+        hits.increment();
+        return Optional.of(new EncryptedTransaction(hash, entry.payload(), entry.recipientKey.clone()));
+    }
+
+    /**
+     * Adds a transaction to the cache, replacing any entry for the same hash. Transactions without a recipient key,
+     * or with a payload larger than the whole cache, are not cached.
+     *
+     * @param transaction the stored transaction
+     */
+    public void put(final EncryptedTransaction transaction) {
+        final byte[] payload = transaction.getEncodedPayload();
+        final byte[] recipientKey = transaction.getRecipientKey();
+        if (recipientKey == null || payload == null || payload.length > maxSizeInBytes) {
+            return;
+        }
+
+        final Entry entry = new Entry(payload, recipientKey.clone(), offHeap);
+
+        synchronized (this) {
+            final Entry previous = entries.put(transaction.getHash(), entry);
+            if (previous != null) {
+                sizeInBytes -= previous.size;
+            }
+            sizeInBytes += entry.size;
+
+            final Iterator<Entry> eldest = entries.values().iterator();
+            while (sizeInBytes > maxSizeInBytes) {
+                sizeInBytes -= eldest.next().size;
+                eldest.remove();
+                evictions.increment();
+            }
+        }
+    }
+
+    /**
+     * Removes a transaction from the cache, if present
+     *
+     * @param hash the hash of the transaction
+     */
+    public synchronized void invalidate(final MessageHash hash) {
+        final Entry removed = entries.remove(hash);
+        if (removed != null) {
+            sizeInBytes -= removed.size;
+        }
+    }
+
+    @Override
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    @Override
+    public long getMissCount() {
+        return misses.sum();
+    }
+
+    @Override
+    public long getEvictionCount() {
+        return evictions.sum();
+    }
+
+    @Override
+    public synchronized int getEntryCount() {
+        return entries.size();
+    }
+
+    @Override
+    public synchronized long getSizeInBytes() {
+        return sizeInBytes;
+    }
+
+    @Override
+    public long getMaxSizeInBytes() {
+        return maxSizeInBytes;
+    }
+
+    private static final class Entry {
+
+        private final byte[] heapPayload;
+
+        private final ByteBuffer directPayload;
+
+        private final byte[] recipientKey;
+
+        private final int size;
+
+        private Entry(final byte[] payload, final byte[] recipientKey, final boolean offHeap) {
+            if (offHeap) {
+                this.heapPayload = null;
+                this.directPayload = ByteBuffer.allocateDirect(payload.length);
+                this.directPayload.put(payload);
+            } else {
+                this.heapPayload = payload.clone();
+                this.directPayload = null;
+            }
+            this.recipientKey = Objects.requireNonNull(recipientKey);
+            this.size = payload.length;
+        }
+
+        private byte[] payload() {
+            if (heapPayload != null) {
+                return heapPayload.clone();
+            }
+            final byte[] copy = new byte[size];
+            ((ByteBuffer) directPayload.duplicate().rewind()).get(copy);
+            return copy;
+        }
+    }
+}
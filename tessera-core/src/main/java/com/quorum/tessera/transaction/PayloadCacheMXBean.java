@@ -0,0 +1,17 @@
+package com.quorum.tessera.transaction;
+
+/** Statistics of a {@link PayloadCache}, exposed over JMX so that the cache can be sized */
+public interface PayloadCacheMXBean {
+
+    long getHitCount();
+
+    long getMissCount();
+
+    long getEvictionCount();
+
+    int getEntryCount();
+
+    long getSizeInBytes();
+
+    long getMaxSizeInBytes();
+}
@@ -0,0 +1,140 @@
+package com.quorum.tessera.transaction;
+
+import com.quorum.tessera.data.EncryptedTransaction;
+import com.quorum.tessera.data.EncryptedTransactionDAO;
+import com.quorum.tessera.enclave.EncodedPayload;
+import com.quorum.tessera.enclave.PayloadEncoder;
+import com.quorum.tessera.encryption.PublicKey;
+import com.quorum.tessera.transaction.exception.RecipientIndexIncompleteException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Records every key that is party to a stored transaction, being its recipients and its sender, so that a resend for
+ * any one of those keys only reads that key's transactions
+ *
+ * <p>New transactions are indexed as they are stored. Running this job indexes any transactions that were stored
+ * before the recipient index existed, a page at a time. It is not transactional itself, so the recipients of each
+ * transaction are committed as they are written and nothing builds up in a persistence context while the table is
+ * walked. Once every transaction has been indexed, further runs return straight away.
+ *
+ * <p>Requests that read the index only wait a bounded time for it to be completed, rather than building it
+ * themselves, since indexing a large store can take far longer than a request should.
+ */
+public class RecipientIndexer implements Runnable {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(RecipientIndexer.class);
+
+    private final PayloadEncoder payloadEncoder;
+
+    private final EncryptedTransactionDAO encryptedTransactionDAO;
+
+    private final int fetchSize;
+
+    private final long maxWaitMillis;
+
+    private final CountDownLatch completed = new CountDownLatch(1);
+
+    private volatile boolean complete;
+
+    public RecipientIndexer(final EncryptedTransactionDAO encryptedTransactionDAO, final int fetchSize) {
+        this(encryptedTransactionDAO, fetchSize, 0L);
+    }
+
+    public RecipientIndexer(
+            final EncryptedTransactionDAO encryptedTransactionDAO, final int fetchSize, final long maxWaitMillis) {
+        this(PayloadEncoder.create(), encryptedTransactionDAO, fetchSize, maxWaitMillis);
+    }
+
+    public RecipientIndexer(
+            final PayloadEncoder payloadEncoder,
+            final EncryptedTransactionDAO encryptedTransactionDAO,
+            final int fetchSize) {
+        this(payloadEncoder, encryptedTransactionDAO, fetchSize, 0L);
+    }
+
+    public RecipientIndexer(
+            final PayloadEncoder payloadEncoder,
+            final EncryptedTransactionDAO encryptedTransactionDAO,
+            final int fetchSize,
+            final long maxWaitMillis) {
+        this.payloadEncoder = Objects.requireNonNull(payloadEncoder);
+        this.encryptedTransactionDAO = Objects.requireNonNull(encryptedTransactionDAO);
+        this.fetchSize = fetchSize;
+        this.maxWaitMillis = maxWaitMillis;
+    }
+
+    /** Indexes a transaction that is being stored, as part of the transaction storing it */
+    public void index(final EncryptedTransaction transaction, final EncodedPayload payload) {
+        this.encryptedTransactionDAO.saveRecipients(transaction, partiesOf(payload));
+    }
+
+    /** Returns once every stored transaction has been indexed, waiting for a run that is already in progress */
+    @Override
+    public synchronized void run() {
+        if (complete) {
+            return;
+        }
+
+        int indexed = 0;
+        EncryptedTransaction last = null;
+        List<EncryptedTransaction> page;
+        do {
+            page = encryptedTransactionDAO.retrieveUnindexedTransactions(last, fetchSize);
+
+            for (final EncryptedTransaction transaction : page) {
+                this.index(transaction, payloadEncoder.decode(transaction.getEncodedPayload()));
+            }
+
+            if (!page.isEmpty()) {
+                last = page.get(page.size() - 1);
+                indexed += page.size();
+            }
+        } while (page.size() == fetchSize);
+
+        if (indexed > 0) {
+            LOGGER.info("Added {} previously stored transactions to the recipient index", indexed);
+        }
+
+        complete = true;
+        completed.countDown();
+    }
+
+    /**
+     * Returns once every stored transaction has been indexed, waiting at most the configured time for a run to
+     * complete it
+     *
+     * @throws RecipientIndexIncompleteException if transactions are still waiting to be indexed
+     */
+    public void awaitIndexed() {
+        if (complete) {
+            return;
+        }
+
+        try {
+            if (completed.await(maxWaitMillis, TimeUnit.MILLISECONDS)) {
+                return;
+            }
+        } catch (final InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+
+        throw new RecipientIndexIncompleteException(
+                "Transactions stored before the recipient index existed are still being indexed, try again later");
+    }
+
+    /** Returns every key that is party to a transaction, being its recipients and its sender */
+    static List<PublicKey> partiesOf(final EncodedPayload payload) {
+        return Stream.concat(payload.getRecipientKeys().stream(), Stream.of(payload.getSenderKey()))
+                .filter(Objects::nonNull)
+                .distinct()
+                .collect(Collectors.toList());
+    }
+}
@@ -5,10 +5,14 @@ import com.quorum.tessera.partyinfo.ResendRequest;
 import com.quorum.tessera.data.MessageHash;
 import com.quorum.tessera.api.model.*;
 
+import java.util.List;
+
 public interface TransactionManager {
 
     SendResponse send(SendRequest sendRequest);
 
+    SendBatchResponse sendBatch(SendBatchRequest sendBatchRequest);
+
     SendResponse sendSignedTransaction(SendSignedRequest sendRequest);
 
     void delete(DeleteRequest request);
@@ -17,7 +21,11 @@ public interface TransactionManager {
 
     MessageHash storePayload(byte[] toByteArray);
 
+    List<MessageHash> storePayloads(List<byte[]> payloads);
+
     ReceiveResponse receive(ReceiveRequest request);
 
+    ReceiveBatchResponse receiveBatch(ReceiveBatchRequest request);
+
     StoreRawResponse store(StoreRawRequest storeRequest);
 }
@@ -2,6 +2,7 @@ package com.quorum.tessera.transaction;
 
 import com.quorum.tessera.partyinfo.ResendManager;
 import com.quorum.tessera.data.EncryptedTransactionDAO;
+import com.quorum.tessera.data.GroupCommitWriter;
 import com.quorum.tessera.data.EncryptedRawTransactionDAO;
 import com.quorum.tessera.partyinfo.ResendResponse;
 import com.quorum.tessera.partyinfo.ResendRequestType;
@@ -11,10 +12,15 @@ import com.quorum.tessera.data.EncryptedRawTransaction;
 import com.quorum.tessera.data.EncryptedTransaction;
 import com.quorum.tessera.data.MessageHash;
 import com.quorum.tessera.data.MessageHashFactory;
+import com.quorum.tessera.data.TransactionCallbacks;
+import com.quorum.tessera.data.OutboxEntry;
+import com.quorum.tessera.data.OutboxEntryDAO;
 import com.quorum.tessera.enclave.*;
 import com.quorum.tessera.encryption.EncryptorException;
 import com.quorum.tessera.encryption.PublicKey;
+import com.quorum.tessera.partyinfo.FanOutPublisher;
 import com.quorum.tessera.partyinfo.PartyInfoService;
+import com.quorum.tessera.partyinfo.PublishResult;
 import com.quorum.tessera.transaction.exception.KeyNotFoundException;
 import com.quorum.tessera.partyinfo.PublishPayloadException;
 import com.quorum.tessera.transaction.exception.TransactionNotFoundException;
@@ -23,9 +29,19 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import javax.transaction.Transactional;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
@@ -53,17 +69,41 @@ public class TransactionManagerImpl implements TransactionManager {
 
     private final ResendManager resendManager;
 
+    private final FanOutPublisher fanOutPublisher;
+
+    private final OutboxEntryDAO outboxEntryDAO;
+
+    private final PayloadCache payloadCache;
+
+    private final GroupCommitWriter groupCommitWriter;
+
+    private final RecipientIndexer recipientIndexer;
+
+    private final Executor receiveExecutor;
+
+    private final boolean outboxDelivery;
+
     private final MessageHashFactory messageHashFactory = MessageHashFactory.create();
 
     private int resendFetchSize;
 
+    private final long resendBatchBytes;
+
     public TransactionManagerImpl(
             EncryptedTransactionDAO encryptedTransactionDAO,
             Enclave enclave,
             EncryptedRawTransactionDAO encryptedRawTransactionDAO,
             ResendManager resendManager,
             PartyInfoService partyInfoService,
-            int resendFetchSize) {
+            FanOutPublisher fanOutPublisher,
+            OutboxEntryDAO outboxEntryDAO,
+            PayloadCache payloadCache,
+            GroupCommitWriter groupCommitWriter,
+            RecipientIndexer recipientIndexer,
+            Executor receiveExecutor,
+            boolean outboxDelivery,
+            int resendFetchSize,
+            long resendBatchBytes) {
         this(
                 Base64Decoder.create(),
                 PayloadEncoder.create(),
@@ -72,7 +112,15 @@ public class TransactionManagerImpl implements TransactionManager {
                 enclave,
                 encryptedRawTransactionDAO,
                 resendManager,
-                resendFetchSize);
+                fanOutPublisher,
+                outboxEntryDAO,
+                payloadCache,
+                groupCommitWriter,
+                recipientIndexer,
+                receiveExecutor,
+                outboxDelivery,
+                resendFetchSize,
+                resendBatchBytes);
     }
 
     /*
@@ -86,7 +134,15 @@ public class TransactionManagerImpl implements TransactionManager {
             Enclave enclave,
             EncryptedRawTransactionDAO encryptedRawTransactionDAO,
             ResendManager resendManager,
-            int resendFetchSize) {
+            FanOutPublisher fanOutPublisher,
+            OutboxEntryDAO outboxEntryDAO,
+            PayloadCache payloadCache,
+            GroupCommitWriter groupCommitWriter,
+            RecipientIndexer recipientIndexer,
+            Executor receiveExecutor,
+            boolean outboxDelivery,
+            int resendFetchSize,
+            long resendBatchBytes) {
 
         this.base64Decoder = Objects.requireNonNull(base64Decoder, "base64Decoder is required");
         this.payloadEncoder = Objects.requireNonNull(payloadEncoder, "payloadEncoder is required");
@@ -97,33 +153,25 @@ public class TransactionManagerImpl implements TransactionManager {
         this.encryptedRawTransactionDAO =
                 Objects.requireNonNull(encryptedRawTransactionDAO, "encryptedRawTransactionDAO is required");
         this.resendManager = Objects.requireNonNull(resendManager, "resendManager is required");
+        this.fanOutPublisher = Objects.requireNonNull(fanOutPublisher, "fanOutPublisher is required");
+        this.outboxEntryDAO = Objects.requireNonNull(outboxEntryDAO, "outboxEntryDAO is required");
+        this.payloadCache = Objects.requireNonNull(payloadCache, "payloadCache is required");
+        this.groupCommitWriter = Objects.requireNonNull(groupCommitWriter, "groupCommitWriter is required");
+        this.recipientIndexer = Objects.requireNonNull(recipientIndexer, "recipientIndexer is required");
+        this.receiveExecutor = Objects.requireNonNull(receiveExecutor, "receiveExecutor is required");
+        this.outboxDelivery = outboxDelivery;
         this.resendFetchSize = resendFetchSize;
+        this.resendBatchBytes = resendBatchBytes;
     }
 
     @Override
     @Transactional
     public SendResponse send(SendRequest sendRequest) {
 
-        final String sender = sendRequest.getFrom();
-
-        final PublicKey senderPublicKey =
-                Optional.ofNullable(sender)
-                        .map(base64Decoder::decode)
-                        .map(PublicKey::from)
-                        .orElseGet(enclave::defaultPublicKey);
-
-        final byte[][] recipients =
-                Stream.of(sendRequest)
-                        .filter(sr -> Objects.nonNull(sr.getTo()))
-                        .flatMap(s -> Stream.of(s.getTo()))
-                        .map(base64Decoder::decode)
-                        .toArray(byte[][]::new);
+        final PublicKey senderPublicKey = this.resolveSender(sendRequest);
 
-        final List<PublicKey> recipientList = Stream.of(recipients).map(PublicKey::from).collect(Collectors.toList());
-
-        recipientList.add(senderPublicKey);
-
-        recipientList.addAll(enclave.getForwardingKeys());
+        final List<PublicKey> recipientList =
+                this.resolveRecipients(sendRequest, senderPublicKey, enclave.getForwardingKeys());
 
         final byte[] raw = sendRequest.getPayload();
 
@@ -135,16 +183,17 @@ public class TransactionManagerImpl implements TransactionManager {
                         .map(messageHashFactory::createFromCipherText)
                         .get();
 
+        final byte[] encoded = this.payloadEncoder.encode(payload);
+
         final EncryptedTransaction newTransaction =
-                new EncryptedTransaction(transactionHash, this.payloadEncoder.encode(payload));
+                new EncryptedTransaction(transactionHash, encoded, senderPublicKey.getKeyBytes());
 
         this.encryptedTransactionDAO.save(newTransaction);
+        this.indexRecipients(newTransaction, payload);
+
+        this.deliver(transactionHash, encoded, recipientList);
 
-        recipientList.forEach(
-                recipient -> {
-                    final EncodedPayload outgoing = payloadEncoder.forRecipient(payload, recipient);
-                    partyInfoService.publishPayload(outgoing, recipient);
-                });
+        this.cacheOnCommit(newTransaction);
 
         final byte[] key = transactionHash.getHashBytes();
 
@@ -153,6 +202,90 @@ public class TransactionManagerImpl implements TransactionManager {
         return new SendResponse(encodedKey);
     }
 
+    /**
+     * Sends several transactions as a unit. The forwarding keys are looked up once for the whole batch, the
+     * transactions are stored using a single batched insert, and each recipient receives all of its payloads in a
+     * single push rather than one per transaction.
+     */
+    @Override
+    @Transactional
+    public SendBatchResponse sendBatch(final SendBatchRequest sendBatchRequest) {
+
+        final Set<PublicKey> forwardingKeys = enclave.getForwardingKeys();
+
+        final List<SendRequest> requests = sendBatchRequest.getRequests();
+        final List<MessageHash> hashes = new ArrayList<>(requests.size());
+        final List<EncodedPayload> payloads = new ArrayList<>(requests.size());
+        final List<List<PublicKey>> recipientLists = new ArrayList<>(requests.size());
+        final List<EncryptedTransaction> transactions = new ArrayList<>(requests.size());
+
+        for (final SendRequest sendRequest : requests) {
+            final PublicKey senderPublicKey = this.resolveSender(sendRequest);
+            final List<PublicKey> recipientList = this.resolveRecipients(sendRequest, senderPublicKey, forwardingKeys);
+
+            final EncodedPayload payload =
+                    enclave.encryptPayload(sendRequest.getPayload(), senderPublicKey, recipientList);
+
+            final MessageHash transactionHash = messageHashFactory.createFromCipherText(payload.getCipherText());
+
+            hashes.add(transactionHash);
+            payloads.add(payload);
+            recipientLists.add(recipientList);
+            transactions.add(
+                    new EncryptedTransaction(
+                            transactionHash, this.payloadEncoder.encode(payload), senderPublicKey.getKeyBytes()));
+        }
+
+        this.encryptedTransactionDAO.saveAll(transactions);
+        for (int i = 0; i < transactions.size(); i++) {
+            this.indexRecipients(transactions.get(i), payloads.get(i));
+        }
+
+        if (outboxDelivery) {
+            for (int i = 0; i < hashes.size(); i++) {
+                this.enqueueForDelivery(hashes.get(i), recipientLists.get(i));
+            }
+        } else {
+            this.publishAllToRecipients(transactions, recipientLists);
+        }
+
+        transactions.forEach(this::cacheOnCommit);
+
+        final List<String> keys =
+                hashes.stream()
+                        .map(MessageHash::getHashBytes)
+                        .map(base64Decoder::encodeToString)
+                        .collect(Collectors.toList());
+
+        return new SendBatchResponse(keys);
+    }
+
+    private PublicKey resolveSender(final SendRequest sendRequest) {
+        return Optional.ofNullable(sendRequest.getFrom())
+                .map(base64Decoder::decode)
+                .map(PublicKey::from)
+                .orElseGet(enclave::defaultPublicKey);
+    }
+
+    private List<PublicKey> resolveRecipients(
+            final SendRequest sendRequest, final PublicKey senderPublicKey, final Set<PublicKey> forwardingKeys) {
+
+        final byte[][] recipients =
+                Stream.of(sendRequest)
+                        .filter(sr -> Objects.nonNull(sr.getTo()))
+                        .flatMap(s -> Stream.of(s.getTo()))
+                        .map(base64Decoder::decode)
+                        .toArray(byte[][]::new);
+
+        final List<PublicKey> recipientList = Stream.of(recipients).map(PublicKey::from).collect(Collectors.toList());
+
+        recipientList.add(senderPublicKey);
+
+        recipientList.addAll(forwardingKeys);
+
+        return recipientList;
+    }
+
     @Override
     @Transactional
     public SendResponse sendSignedTransaction(final SendSignedRequest sendRequest) {
@@ -183,16 +316,17 @@ public class TransactionManagerImpl implements TransactionManager {
         final EncodedPayload payload =
                 enclave.encryptPayload(encryptedRawTransaction.toRawTransaction(), recipientList);
 
+        final byte[] encoded = this.payloadEncoder.encode(payload);
+
         final EncryptedTransaction newTransaction =
-                new EncryptedTransaction(messageHash, this.payloadEncoder.encode(payload));
+                new EncryptedTransaction(messageHash, encoded, encryptedRawTransaction.getSender());
 
         this.encryptedTransactionDAO.save(newTransaction);
+        this.indexRecipients(newTransaction, payload);
+
+        this.deliver(messageHash, encoded, recipientList);
 
-        recipientList.forEach(
-                recipient -> {
-                    final EncodedPayload toPublish = payloadEncoder.forRecipient(payload, recipient);
-                    partyInfoService.publishPayload(toPublish, recipient);
-                });
+        this.cacheOnCommit(newTransaction);
 
         final byte[] key = messageHash.getHashBytes();
 
@@ -201,6 +335,89 @@ public class TransactionManagerImpl implements TransactionManager {
         return new SendResponse(encodedKey);
     }
 
+    private void deliver(final MessageHash hash, final byte[] encoded, final List<PublicKey> recipientList) {
+        if (outboxDelivery) {
+            this.enqueueForDelivery(hash, recipientList);
+        } else {
+            this.publishToRecipients(encoded, recipientList);
+        }
+    }
+
+    /**
+     * Records a pending delivery for each remote recipient, in the same database transaction as the payload itself.
+     * The {@link OutboxDispatcher} pushes them once the transaction has been committed.
+     */
+    private void enqueueForDelivery(final MessageHash hash, final List<PublicKey> recipientList) {
+        final Set<PublicKey> localKeys = enclave.getPublicKeys();
+
+        recipientList.stream()
+                .distinct()
+                .filter(recipient -> !localKeys.contains(recipient))
+                .map(recipient -> new OutboxEntry(hash, recipient.getKeyBytes()))
+                .forEach(outboxEntryDAO::save);
+    }
+
+    /**
+     * Publishes the payload to all recipients concurrently. Every recipient is treated as mandatory, so if any of them
+     * could not be reached then the first failure is rethrown once all pushes have finished.
+     *
+     * <p>The payload is read back from the form it was stored in, so that each recipient's copy is spliced out of those
+     * bytes when it is pushed rather than the whole payload being encoded again for every recipient.
+     */
+    private void publishToRecipients(final byte[] encoded, final List<PublicKey> recipientList) {
+
+        final EncodedPayload payload = payloadEncoder.decode(encoded);
+
+        final Map<PublicKey, EncodedPayload> outgoing = new LinkedHashMap<>();
+        for (final PublicKey recipient : recipientList) {
+            if (!outgoing.containsKey(recipient)) {
+                outgoing.put(recipient, payloadEncoder.forRecipient(payload, recipient));
+            }
+        }
+
+        this.throwOnFailure(fanOutPublisher.publish(outgoing));
+    }
+
+    /**
+     * Publishes a batch of payloads, grouping them so that each recipient is sent all of the payloads it is party to
+     * in one go. As with a single payload, every recipient is mandatory, and each recipient's copy is spliced out of
+     * the stored form of the payload.
+     */
+    private void publishAllToRecipients(
+            final List<EncryptedTransaction> transactions, final List<List<PublicKey>> recipientLists) {
+
+        final Map<PublicKey, List<EncodedPayload>> outgoing = new LinkedHashMap<>();
+        for (int i = 0; i < transactions.size(); i++) {
+            final EncodedPayload payload = payloadEncoder.decode(transactions.get(i).getEncodedPayload());
+            recipientLists.get(i).stream()
+                    .distinct()
+                    .forEach(
+                            recipient ->
+                                    outgoing.computeIfAbsent(recipient, k -> new ArrayList<>())
+                                            .add(payloadEncoder.forRecipient(payload, recipient)));
+        }
+
+        this.throwOnFailure(fanOutPublisher.publishAll(outgoing));
+    }
+
+    private void throwOnFailure(final List<PublishResult> results) {
+
+        final List<PublishResult> failures =
+                results.stream().filter(result -> !result.isSuccess()).collect(Collectors.toList());
+
+        if (failures.isEmpty()) {
+            return;
+        }
+
+        final PublishResult firstFailure = failures.get(0);
+        final Throwable cause = firstFailure.getCause().get();
+        if (cause instanceof RuntimeException) {
+            throw (RuntimeException) cause;
+        }
+        throw new PublishPayloadException(
+                "Unable to publish payload to recipient " + firstFailure.getRecipient().encodeToBase64());
+    }
+
     @Override
     public ResendResponse resend(ResendRequest request) {
 
@@ -208,56 +425,70 @@ public class TransactionManagerImpl implements TransactionManager {
         PublicKey recipientPublicKey = PublicKey.from(publicKeyData);
         if (request.getType() == ResendRequestType.ALL) {
 
-            int offset = 0;
+            // the index is built in the background from startup, and normally finished long before this is called
+            this.recipientIndexer.awaitIndexed();
 
-            while (offset < encryptedTransactionDAO.transactionCount()) {
+            EncryptedTransaction last = null;
+            List<EncryptedTransaction> page;
+            do {
+                page =
+                        encryptedTransactionDAO.retrieveTransactionsForRecipient(
+                                recipientPublicKey, last, resendFetchSize);
 
-                encryptedTransactionDAO.retrieveTransactions(offset, resendFetchSize).stream()
-                        .map(EncryptedTransaction::getEncodedPayload)
-                        .map(payloadEncoder::decode)
-                        .filter(
-                                payload -> {
-                                    final boolean isRecipient = payload.getRecipientKeys().contains(recipientPublicKey);
-                                    final boolean isSender = Objects.equals(payload.getSenderKey(), recipientPublicKey);
-                                    return isRecipient || isSender;
-                                })
-                        .forEach(
-                                payload -> {
-                                    final EncodedPayload prunedPayload;
-
-                                    if (Objects.equals(payload.getSenderKey(), recipientPublicKey)) {
-                                        final PublicKey decryptedKey =
-                                                searchForRecipientKey(payload)
-                                                        .orElseThrow(
-                                                                () -> {
-                                                                    final MessageHash hash =
-                                                                            MessageHashFactory.create()
-                                                                                    .createFromCipherText(
-                                                                                            payload.getCipherText());
-                                                                    return new KeyNotFoundException(
-                                                                            "No key found as recipient of message "
-                                                                                    + hash);
-                                                                });
-                                        payload.getRecipientKeys().add(decryptedKey);
-
-                                        // This payload does not need to be pruned as it was not sent by this node and
-                                        // so does not contain any other node's data
-                                        prunedPayload = payload;
-                                    } else {
-                                        prunedPayload = payloadEncoder.forRecipient(payload, recipientPublicKey);
-                                    }
-
-                                    try {
-                                        partyInfoService.publishPayload(prunedPayload, recipientPublicKey);
-                                    } catch (PublishPayloadException ex) {
-                                        LOGGER.warn(
-                                                "Unable to publish payload to recipient {} during resend",
-                                                recipientPublicKey.encodeToBase64());
-                                    }
-                                });
-
-                offset += resendFetchSize;
-            }
+                List<EncodedPayload> outgoing = new ArrayList<>(page.size());
+                long outgoingBytes = 0;
+                for (final EncryptedTransaction transaction : page) {
+
+                    final EncodedPayload payload = payloadEncoder.decode(transaction.getEncodedPayload());
+
+                    final boolean isRecipient = payload.getRecipientKeys().contains(recipientPublicKey);
+                    final boolean isSender = Objects.equals(payload.getSenderKey(), recipientPublicKey);
+                    if (!isRecipient && !isSender) {
+                        continue;
+                    }
+
+                    final EncodedPayload prunedPayload;
+
+                    if (isSender) {
+                        final PublicKey decryptedKey =
+                                recipientKeyOf(transaction, payload)
+                                        .orElseThrow(
+                                                () -> {
+                                                    final MessageHash hash =
+                                                            MessageHashFactory.create()
+                                                                    .createFromCipherText(payload.getCipherText());
+                                                    return new KeyNotFoundException(
+                                                            "No key found as recipient of message " + hash);
+                                                });
+                        payload.getRecipientKeys().add(decryptedKey);
+
+                        // This payload does not need to be pruned as it was not sent by this node and
+                        // so does not contain any other node's data
+                        prunedPayload = payload;
+                    } else {
+                        prunedPayload = payloadEncoder.forRecipient(payload, recipientPublicKey);
+                    }
+
+                    // a page of large payloads is split so that no one request gets too big for the recipient
+                    final int size = transaction.getEncodedPayload().length;
+                    if (!outgoing.isEmpty() && outgoingBytes + size > resendBatchBytes) {
+                        this.publishResendBatch(outgoing, recipientPublicKey);
+                        outgoing = new ArrayList<>();
+                        outgoingBytes = 0;
+                    }
+
+                    outgoing.add(prunedPayload);
+                    outgoingBytes += size;
+                }
+
+                if (!outgoing.isEmpty()) {
+                    this.publishResendBatch(outgoing, recipientPublicKey);
+                }
+
+                if (!page.isEmpty()) {
+                    last = page.get(page.size() - 1);
+                }
+            } while (page.size() == resendFetchSize);
 
             return new ResendResponse();
         } else {
@@ -277,7 +508,8 @@ public class TransactionManagerImpl implements TransactionManager {
 
             final EncodedPayload returnValue;
             if (Objects.equals(payload.getSenderKey(), recipientPublicKey)) {
-                final PublicKey decryptedKey = searchForRecipientKey(payload).orElseThrow(RuntimeException::new);
+                final PublicKey decryptedKey =
+                        recipientKeyOf(encryptedTransaction, payload).orElseThrow(RuntimeException::new);
                 payload.getRecipientKeys().add(decryptedKey);
                 returnValue = payload;
             } else {
@@ -289,6 +521,21 @@ public class TransactionManagerImpl implements TransactionManager {
         }
     }
 
+    private void publishResendBatch(final List<EncodedPayload> outgoing, final PublicKey recipientPublicKey) {
+        try {
+            partyInfoService.publishPayloads(outgoing, recipientPublicKey);
+        } catch (PublishPayloadException ex) {
+            LOGGER.warn(
+                    "Unable to publish {} payloads to recipient {} during resend",
+                    outgoing.size(),
+                    recipientPublicKey.encodeToBase64());
+        }
+    }
+
+    private void indexRecipients(final EncryptedTransaction transaction, final EncodedPayload payload) {
+        this.recipientIndexer.index(transaction, payload);
+    }
+
     @Override
     public MessageHash storePayload(byte[] input) {
 
@@ -300,20 +547,108 @@ public class TransactionManagerImpl implements TransactionManager {
                         .map(messageHashFactory::createFromCipherText)
                         .get();
 
-        if (enclave.getPublicKeys().contains(payload.getSenderKey())) {
+        final Set<PublicKey> localKeys = enclave.getPublicKeys();
+
+        if (localKeys.contains(payload.getSenderKey())) {
 
             this.resendManager.acceptOwnMessage(input);
+            this.invalidateOnCommit(transactionHash);
 
         } else {
 
-            // this is a tx from someone else
-            this.encryptedTransactionDAO.save(new EncryptedTransaction(transactionHash, input));
+            final EncryptedTransaction newTransaction =
+                    this.foreignTransaction(transactionHash, input, payload, localKeys);
+            await(this.groupCommitWriter.save(newTransaction, RecipientIndexer.partiesOf(payload)));
+            this.cacheOnCommit(newTransaction);
             LOGGER.info("Stored payload with hash {}", transactionHash);
         }
 
         return transactionHash;
     }
 
+    /**
+     * Stores a batch of payloads pushed from another node. Transactions from other nodes are written with a single
+     * batched insert, skipping any that are already stored so that a repeated resend does not fail the whole batch.
+     */
+    @Override
+    @Transactional
+    public List<MessageHash> storePayloads(final List<byte[]> inputs) {
+
+        final Set<PublicKey> localKeys = enclave.getPublicKeys();
+
+        final List<MessageHash> hashes = new ArrayList<>(inputs.size());
+        final List<EncodedPayload> payloads = new ArrayList<>(inputs.size());
+        final Set<MessageHash> foreignHashes = new LinkedHashSet<>();
+        for (final byte[] input : inputs) {
+            final EncodedPayload payload = payloadEncoder.decode(input);
+            final MessageHash transactionHash = messageHashFactory.createFromCipherText(payload.getCipherText());
+
+            hashes.add(transactionHash);
+            payloads.add(payload);
+            if (!localKeys.contains(payload.getSenderKey())) {
+                foreignHashes.add(transactionHash);
+            }
+        }
+
+        // the transactions from other nodes that are already stored are looked up together rather than one by one
+        final Set<MessageHash> stored =
+                foreignHashes.isEmpty()
+                        ? Collections.emptySet()
+                        : encryptedTransactionDAO.retrieveByHashes(foreignHashes).stream()
+                                .map(EncryptedTransaction::getHash)
+                                .collect(Collectors.toSet());
+
+        final List<byte[]> ownInputs = new ArrayList<>();
+        final Map<MessageHash, EncodedPayload> foreignPayloads = new LinkedHashMap<>();
+        final List<EncryptedTransaction> transactions = new ArrayList<>();
+
+        for (int i = 0; i < inputs.size(); i++) {
+            final byte[] input = inputs.get(i);
+            final EncodedPayload payload = payloads.get(i);
+            final MessageHash transactionHash = hashes.get(i);
+
+            if (localKeys.contains(payload.getSenderKey())) {
+                ownInputs.add(input);
+                this.invalidateOnCommit(transactionHash);
+            } else if (!stored.contains(transactionHash) && !foreignPayloads.containsKey(transactionHash)) {
+                foreignPayloads.put(transactionHash, payload);
+                transactions.add(this.foreignTransaction(transactionHash, input, payload, localKeys));
+            }
+        }
+
+        // our own messages are merged together, so that the locks they need are all taken in one consistent order
+        if (!ownInputs.isEmpty()) {
+            this.resendManager.acceptOwnMessages(ownInputs);
+        }
+
+        if (!transactions.isEmpty()) {
+            this.encryptedTransactionDAO.saveAll(transactions);
+            transactions.forEach(tx -> this.indexRecipients(tx, foreignPayloads.get(tx.getHash())));
+            transactions.forEach(this::cacheOnCommit);
+        }
+
+        LOGGER.info("Stored {} of {} pushed payloads", transactions.size(), inputs.size());
+
+        return hashes;
+    }
+
+    private EncryptedTransaction foreignTransaction(
+            final MessageHash transactionHash,
+            final byte[] input,
+            final EncodedPayload payload,
+            final Set<PublicKey> localKeys) {
+
+        // this is a tx from someone else, so work out which of our keys it was sent to once now rather than on
+        // every receive
+        final byte[] recipientKey = searchForRecipientKey(payload, localKeys).map(PublicKey::getKeyBytes).orElse(null);
+
+        if (recipientKey == null) {
+            LOGGER.warn("None of the local keys can decrypt payload with hash {}", transactionHash);
+        }
+
+        return new EncryptedTransaction(transactionHash, input, recipientKey);
+    }
+
     @Override
     @Transactional
     public void delete(DeleteRequest request) {
@@ -322,6 +657,7 @@ public class TransactionManagerImpl implements TransactionManager {
 
         LOGGER.info("Received request to delete message with hash {}", messageHash);
         this.encryptedTransactionDAO.delete(messageHash);
+        this.invalidateOnCommit(messageHash);
     }
 
     @Override
@@ -330,17 +666,124 @@ public class TransactionManagerImpl implements TransactionManager {
 
         final byte[] key = base64Decoder.decode(request.getKey());
 
-        final Optional<byte[]> to =
-                Optional.ofNullable(request.getTo()).filter(str -> !str.isEmpty()).map(base64Decoder::decode);
+        final Optional<PublicKey> to = this.resolveReceiver(request.getTo());
 
         final MessageHash hash = new MessageHash(key);
         LOGGER.info("Lookup transaction {}", hash);
 
+        // a transaction that is read is not cached, as it may come from a read replica that is behind, and an old copy
+        // would then go on being served after the transaction has changed
         final EncryptedTransaction encryptedTransaction =
-                encryptedTransactionDAO
-                        .retrieveByHash(hash)
-                        .orElseThrow(
-                                () -> new TransactionNotFoundException("Message with hash " + hash + " was not found"));
+                payloadCache.get(hash).orElseGet(
+                        () ->
+                                encryptedTransactionDAO
+                                        .retrieveByHashForRead(hash)
+                                        .orElseThrow(
+                                                () ->
+                                                        new TransactionNotFoundException(
+                                                                "Message with hash " + hash + " was not found")));
+
+        final Decrypted decrypted = this.decrypt(hash, encryptedTransaction, to);
+        this.recordRecipientKey(decrypted);
+
+        return new ReceiveResponse(decrypted.payload);
+    }
+
+    /**
+     * Fetches and decrypts several transactions at once. Transactions that are not cached are read with a single
+     * read-only lookup, and are then decrypted concurrently. Transactions that are not stored are marked as not found
+     * rather than failing the whole batch, but any other failure, such as a transaction that cannot be decrypted, fails
+     * the batch in the same way as a single receive. As with a single receive, transactions that are read are not
+     * cached.
+     */
+    @Override
+    @Transactional
+    public ReceiveBatchResponse receiveBatch(final ReceiveBatchRequest request) {
+
+        final Optional<PublicKey> to = this.resolveReceiver(request.getTo());
+
+        final List<MessageHash> hashes =
+                request.getKeys().stream()
+                        .map(base64Decoder::decode)
+                        .map(MessageHash::new)
+                        .collect(Collectors.toList());
+
+        LOGGER.info("Lookup batch of {} transactions", hashes.size());
+
+        final Map<MessageHash, EncryptedTransaction> transactions = new LinkedHashMap<>();
+        final Set<MessageHash> uncached = new LinkedHashSet<>();
+        for (final MessageHash hash : new LinkedHashSet<>(hashes)) {
+            final Optional<EncryptedTransaction> cached = payloadCache.get(hash);
+            if (cached.isPresent()) {
+                transactions.put(hash, cached.get());
+            } else {
+                uncached.add(hash);
+            }
+        }
+
+        final List<EncryptedTransaction> stored =
+                uncached.isEmpty()
+                        ? Collections.emptyList()
+                        : encryptedTransactionDAO.retrieveByHashesForRead(uncached);
+        stored.forEach(tx -> transactions.put(tx.getHash(), tx));
+
+        // only the decryption happens on other threads, as the transactions may be attached to this thread's
+        // persistence context, so any recipient keys that were found are recorded here once they are done
+        final Map<MessageHash, CompletableFuture<Decrypted>> decrypted = new HashMap<>();
+        transactions.forEach(
+                (hash, tx) ->
+                        decrypted.put(
+                                hash,
+                                CompletableFuture.supplyAsync(() -> this.decrypt(hash, tx, to), receiveExecutor)));
+
+        final List<ReceiveBatchEntry> entries = new ArrayList<>(hashes.size());
+        for (int i = 0; i < hashes.size(); i++) {
+            final CompletableFuture<Decrypted> result = decrypted.get(hashes.get(i));
+            entries.add(new ReceiveBatchEntry(request.getKeys().get(i), result == null ? null : await(result).payload));
+        }
+        decrypted.values().stream().map(TransactionManagerImpl::await).forEach(this::recordRecipientKey);
+
+        return new ReceiveBatchResponse(entries);
+    }
+
+    /**
+     * Caches a transaction once the transaction storing or reading it has committed, so that the cache never serves a
+     * transaction that was rolled back, or a recipient key that was never written
+     */
+    private void cacheOnCommit(final EncryptedTransaction transaction) {
+        TransactionCallbacks.afterCommit(() -> payloadCache.put(transaction));
+    }
+
+    /**
+     * Drops a cached transaction now, and again once the change to it has committed, so that a receive running in the
+     * meantime cannot put the old version back
+     */
+    private void invalidateOnCommit(final MessageHash hash) {
+        this.payloadCache.invalidate(hash);
+        TransactionCallbacks.afterCommit(() -> payloadCache.invalidate(hash));
+    }
+
+    private static <T> T await(final CompletableFuture<T> future) {
+        try {
+            return future.join();
+        } catch (final CompletionException ex) {
+            if (ex.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) ex.getCause();
+            }
+            throw ex;
+        }
+    }
+
+    private Optional<PublicKey> resolveReceiver(final String to) {
+        return Optional.ofNullable(to).filter(str -> !str.isEmpty()).map(base64Decoder::decode).map(PublicKey::from);
+    }
+
+    /**
+     * Decrypts a stored transaction without changing it, so that it can be called from any thread. A recipient key
+     * that had to be searched for is returned alongside the payload, for the caller to record against the transaction.
+     */
+    private Decrypted decrypt(
+            final MessageHash hash, final EncryptedTransaction encryptedTransaction, final Optional<PublicKey> to) {
 
         final EncodedPayload payload =
                 Optional.of(encryptedTransaction)
@@ -348,23 +791,94 @@ public class TransactionManagerImpl implements TransactionManager {
                         .map(payloadEncoder::decode)
                         .orElseThrow(() -> new IllegalStateException("Unable to decode previously encoded payload"));
 
-        PublicKey recipientKey =
-                to.map(PublicKey::from)
-                        .orElse(
-                                searchForRecipientKey(payload)
+        final Optional<PublicKey> recorded =
+                Optional.ofNullable(encryptedTransaction.getRecipientKey()).map(PublicKey::from);
+        final Optional<PublicKey> found =
+                to.isPresent() || recorded.isPresent() ? Optional.empty() : searchForRecipientKey(payload);
+
+        final PublicKey recipientKey =
+                to.orElseGet(
+                        () ->
+                                (recorded.isPresent() ? recorded : found)
                                         .orElseThrow(
                                                 () ->
                                                         new NoRecipientKeyFoundException(
-                                                                "No suitable recipient keys found to decrypt payload for : "
+                                                                "No suitable recipient keys found to decrypt "
+                                                                        + "payload for : "
                                                                         + hash)));
 
-        byte[] response = enclave.unencryptTransaction(payload, recipientKey);
+        return new Decrypted(encryptedTransaction, enclave.unencryptTransaction(payload, recipientKey), found);
+    }
 
-        return new ReceiveResponse(response);
+    /**
+     * Returns the local key that can decrypt the stored transaction. This is normally recorded when the transaction is
+     * stored; rows written before that was the case fall back to trying each local key, and have the result recorded
+     * against them.
+     *
+     * <p>The key is recorded against the stored transaction as it is now rather than the copy it was found from, as
+     * resends may read from a read replica that is behind, and writing that copy back could undo a newer change to the
+     * transaction or bring back one that has been deleted.
+     */
+    private Optional<PublicKey> recipientKeyOf(final EncryptedTransaction transaction, final EncodedPayload payload) {
+        final Optional<PublicKey> recorded = Optional.ofNullable(transaction.getRecipientKey()).map(PublicKey::from);
+        if (recorded.isPresent()) {
+            return recorded;
+        }
+
+        final Optional<PublicKey> found = searchForRecipientKey(payload);
+        found.ifPresent(
+                key ->
+                        encryptedTransactionDAO
+                                .retrieveByHash(transaction.getHash())
+                                .ifPresent(stored -> this.recordRecipientKey(stored, key)));
+        return found;
+    }
+
+    /**
+     * Records a found key against the stored transaction, which must be done on the thread that the transaction is on.
+     * As with resends, the key is written to the transaction as it is now, since receives may have read it from a
+     * read replica that is behind
+     */
+    private void recordRecipientKey(final Decrypted decrypted) {
+        decrypted.foundKey.ifPresent(
+                key ->
+                        encryptedTransactionDAO
+                                .retrieveByHash(decrypted.transaction.getHash())
+                                .ifPresent(stored -> this.recordRecipientKey(stored, key)));
+    }
+
+    /**
+     * Writes a found key back to the stored transaction. This goes through the DAO rather than relying on the
+     * transaction being attached to a persistence context, as the plain JDBC DAO has no persistence context.
+     */
+    private void recordRecipientKey(final EncryptedTransaction transaction, final PublicKey key) {
+        transaction.setRecipientKey(key.getKeyBytes());
+        this.encryptedTransactionDAO.update(transaction);
+    }
+
+    /** A decrypted payload, along with the local key that can decrypt it if that had to be searched for */
+    private static final class Decrypted {
+
+        private final EncryptedTransaction transaction;
+
+        private final byte[] payload;
+
+        private final Optional<PublicKey> foundKey;
+
+        private Decrypted(
+                final EncryptedTransaction transaction, final byte[] payload, final Optional<PublicKey> foundKey) {
+            this.transaction = transaction;
+            this.payload = payload;
+            this.foundKey = foundKey;
+        }
     }
 
     private Optional<PublicKey> searchForRecipientKey(final EncodedPayload payload) {
-        for (final PublicKey potentialMatchingKey : enclave.getPublicKeys()) {
+        return searchForRecipientKey(payload, enclave.getPublicKeys());
+    }
+
+    private Optional<PublicKey> searchForRecipientKey(final EncodedPayload payload, final Set<PublicKey> localKeys) {
+        for (final PublicKey potentialMatchingKey : localKeys) {
             try {
                 enclave.unencryptTransaction(payload, potentialMatchingKey);
                 return Optional.of(potentialMatchingKey);
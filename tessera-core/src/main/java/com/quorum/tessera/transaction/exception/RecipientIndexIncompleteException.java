@@ -0,0 +1,14 @@
+package com.quorum.tessera.transaction.exception;
+
+import com.quorum.tessera.exception.TesseraException;
+
+/**
+ * An exception thrown when a request needs the recipient index, but transactions stored before the index existed are
+ * still being added to it
+ */
+public class RecipientIndexIncompleteException extends TesseraException {
+
+    public RecipientIndexIncompleteException(final String message) {
+        super(message);
+    }
+}
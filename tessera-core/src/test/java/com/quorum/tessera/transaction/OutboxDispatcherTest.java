@@ -0,0 +1,221 @@
+package com.quorum.tessera.transaction;
+
+import com.quorum.tessera.data.EncryptedTransaction;
+import com.quorum.tessera.data.EncryptedTransactionDAO;
+import com.quorum.tessera.data.MessageHash;
+import com.quorum.tessera.data.OutboxEntry;
+import com.quorum.tessera.data.OutboxEntryDAO;
+import com.quorum.tessera.enclave.EncodedPayload;
+import com.quorum.tessera.enclave.InvalidRecipientException;
+import com.quorum.tessera.enclave.PayloadEncoder;
+import com.quorum.tessera.encryption.PublicKey;
+import com.quorum.tessera.partyinfo.FanOutPublisher;
+import com.quorum.tessera.partyinfo.PublishPayloadException;
+import com.quorum.tessera.partyinfo.PublishResult;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Optional;
+
+import static java.util.Collections.emptyList;
+import static java.util.Collections.singletonList;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+public class OutboxDispatcherTest {
+
+    private static final MessageHash HASH = new MessageHash("HASH".getBytes());
+
+    private static final PublicKey RECIPIENT = PublicKey.from("RECIPIENT".getBytes());
+
+    private OutboxEntryDAO outboxEntryDAO;
+
+    private EncryptedTransactionDAO encryptedTransactionDAO;
+
+    private FanOutPublisher fanOutPublisher;
+
+    private PayloadEncoder payloadEncoder;
+
+    private OutboxDispatcher outboxDispatcher;
+
+    @Before
+    public void onSetUp() {
+        outboxEntryDAO = mock(OutboxEntryDAO.class);
+        encryptedTransactionDAO = mock(EncryptedTransactionDAO.class);
+        fanOutPublisher = mock(FanOutPublisher.class);
+        payloadEncoder = mock(PayloadEncoder.class);
+
+        outboxDispatcher =
+                new OutboxDispatcher(
+                        outboxEntryDAO, encryptedTransactionDAO, fanOutPublisher, payloadEncoder, 10, 1000L, 5000L);
+    }
+
+    @After
+    public void onTearDown() {
+        verifyNoMoreInteractions(outboxEntryDAO, encryptedTransactionDAO, fanOutPublisher, payloadEncoder);
+    }
+
+    @Test
+    public void nothingDueDoesNothing() {
+        when(outboxEntryDAO.retrieveDue(anyLong(), eq(10))).thenReturn(emptyList());
+
+        outboxDispatcher.run();
+
+        verify(outboxEntryDAO).retrieveDue(anyLong(), eq(10));
+    }
+
+    @Test
+    public void deliveredEntriesAreRemoved() {
+        final OutboxEntry entry = new OutboxEntry(HASH, RECIPIENT.getKeyBytes());
+        final EncodedPayload payload = mock(EncodedPayload.class);
+
+        when(outboxEntryDAO.retrieveDue(anyLong(), eq(10))).thenReturn(singletonList(entry));
+        when(encryptedTransactionDAO.retrieveByHash(HASH))
+                .thenReturn(Optional.of(new EncryptedTransaction(HASH, "PAYLOAD".getBytes())));
+        when(payloadEncoder.decode("PAYLOAD".getBytes())).thenReturn(payload);
+        when(payloadEncoder.forRecipient(payload, RECIPIENT)).thenReturn(payload);
+        when(fanOutPublisher.publishAll(anyMap())).thenReturn(singletonList(PublishResult.success(RECIPIENT)));
+
+        outboxDispatcher.run();
+
+        verify(outboxEntryDAO).retrieveDue(anyLong(), eq(10));
+        verify(encryptedTransactionDAO).retrieveByHash(HASH);
+        verify(payloadEncoder).decode("PAYLOAD".getBytes());
+        verify(payloadEncoder).forRecipient(payload, RECIPIENT);
+        verify(fanOutPublisher)
+                .publishAll(argThat(m -> m.size() == 1 && m.get(RECIPIENT).equals(singletonList(payload))));
+        verify(outboxEntryDAO).delete(entry);
+    }
+
+    @Test
+    public void dueTransactionsForTheSameRecipientAreSentTogether() {
+        final MessageHash otherHash = new MessageHash("OTHER_HASH".getBytes());
+        final OutboxEntry first = new OutboxEntry(HASH, RECIPIENT.getKeyBytes());
+        final OutboxEntry second = new OutboxEntry(otherHash, RECIPIENT.getKeyBytes());
+        final EncodedPayload payload = mock(EncodedPayload.class);
+        final EncodedPayload otherPayload = mock(EncodedPayload.class);
+
+        when(outboxEntryDAO.retrieveDue(anyLong(), eq(10))).thenReturn(Arrays.asList(first, second));
+        when(encryptedTransactionDAO.retrieveByHash(HASH))
+                .thenReturn(Optional.of(new EncryptedTransaction(HASH, "PAYLOAD".getBytes())));
+        when(encryptedTransactionDAO.retrieveByHash(otherHash))
+                .thenReturn(Optional.of(new EncryptedTransaction(otherHash, "OTHER_PAYLOAD".getBytes())));
+        when(payloadEncoder.decode("PAYLOAD".getBytes())).thenReturn(payload);
+        when(payloadEncoder.decode("OTHER_PAYLOAD".getBytes())).thenReturn(otherPayload);
+        when(payloadEncoder.forRecipient(payload, RECIPIENT)).thenReturn(payload);
+        when(payloadEncoder.forRecipient(otherPayload, RECIPIENT)).thenReturn(otherPayload);
+        when(fanOutPublisher.publishAll(anyMap())).thenReturn(singletonList(PublishResult.success(RECIPIENT)));
+
+        outboxDispatcher.run();
+
+        verify(outboxEntryDAO).retrieveDue(anyLong(), eq(10));
+        verify(encryptedTransactionDAO).retrieveByHash(HASH);
+        verify(encryptedTransactionDAO).retrieveByHash(otherHash);
+        verify(payloadEncoder).decode("PAYLOAD".getBytes());
+        verify(payloadEncoder).decode("OTHER_PAYLOAD".getBytes());
+        verify(payloadEncoder).forRecipient(payload, RECIPIENT);
+        verify(payloadEncoder).forRecipient(otherPayload, RECIPIENT);
+        verify(fanOutPublisher)
+                .publishAll(
+                        argThat(
+                                m ->
+                                        m.size() == 1
+                                                && m.get(RECIPIENT).equals(Arrays.asList(payload, otherPayload))));
+        verify(outboxEntryDAO).delete(first);
+        verify(outboxEntryDAO).delete(second);
+    }
+
+    @Test
+    public void failedEntriesAreRescheduledWithBackoff() {
+        final OutboxEntry entry = new OutboxEntry(HASH, RECIPIENT.getKeyBytes());
+        entry.setAttempts(1);
+        final EncodedPayload payload = mock(EncodedPayload.class);
+
+        when(outboxEntryDAO.retrieveDue(anyLong(), eq(10))).thenReturn(singletonList(entry));
+        when(encryptedTransactionDAO.retrieveByHash(HASH))
+                .thenReturn(Optional.of(new EncryptedTransaction(HASH, "PAYLOAD".getBytes())));
+        when(payloadEncoder.decode("PAYLOAD".getBytes())).thenReturn(payload);
+        when(payloadEncoder.forRecipient(payload, RECIPIENT)).thenReturn(payload);
+        final PublishPayloadException cause = new PublishPayloadException("Unreachable");
+        when(fanOutPublisher.publishAll(anyMap())).thenReturn(singletonList(PublishResult.failure(RECIPIENT, cause)));
+
+        final long before = System.currentTimeMillis();
+        outboxDispatcher.run();
+
+        assertThat(entry.getAttempts()).isEqualTo(2);
+        assertThat(entry.getNextAttempt()).isBetween(before + 2000L, System.currentTimeMillis() + 2000L);
+
+        verify(outboxEntryDAO).retrieveDue(anyLong(), eq(10));
+        verify(encryptedTransactionDAO).retrieveByHash(HASH);
+        verify(payloadEncoder).decode("PAYLOAD".getBytes());
+        verify(payloadEncoder).forRecipient(payload, RECIPIENT);
+        verify(fanOutPublisher).publishAll(anyMap());
+        verify(outboxEntryDAO).update(entry);
+    }
+
+    @Test
+    public void retryDelayIsCapped() {
+        final OutboxEntry entry = new OutboxEntry(HASH, RECIPIENT.getKeyBytes());
+        entry.setAttempts(10);
+        final EncodedPayload payload = mock(EncodedPayload.class);
+
+        when(outboxEntryDAO.retrieveDue(anyLong(), eq(10))).thenReturn(singletonList(entry));
+        when(encryptedTransactionDAO.retrieveByHash(HASH))
+                .thenReturn(Optional.of(new EncryptedTransaction(HASH, "PAYLOAD".getBytes())));
+        when(payloadEncoder.decode("PAYLOAD".getBytes())).thenReturn(payload);
+        when(payloadEncoder.forRecipient(payload, RECIPIENT)).thenReturn(payload);
+        final PublishPayloadException cause = new PublishPayloadException("Unreachable");
+        when(fanOutPublisher.publishAll(anyMap())).thenReturn(singletonList(PublishResult.failure(RECIPIENT, cause)));
+
+        final long before = System.currentTimeMillis();
+        outboxDispatcher.run();
+
+        assertThat(entry.getNextAttempt()).isBetween(before + 5000L, System.currentTimeMillis() + 5000L);
+
+        verify(outboxEntryDAO).retrieveDue(anyLong(), eq(10));
+        verify(encryptedTransactionDAO).retrieveByHash(HASH);
+        verify(payloadEncoder).decode("PAYLOAD".getBytes());
+        verify(payloadEncoder).forRecipient(payload, RECIPIENT);
+        verify(fanOutPublisher).publishAll(anyMap());
+        verify(outboxEntryDAO).update(entry);
+    }
+
+    @Test
+    public void entriesForMissingTransactionAreDiscarded() {
+        final OutboxEntry first = new OutboxEntry(HASH, RECIPIENT.getKeyBytes());
+        final OutboxEntry second = new OutboxEntry(HASH, "OTHER".getBytes());
+
+        when(outboxEntryDAO.retrieveDue(anyLong(), eq(10))).thenReturn(Arrays.asList(first, second));
+        when(encryptedTransactionDAO.retrieveByHash(HASH)).thenReturn(Optional.empty());
+
+        outboxDispatcher.run();
+
+        verify(outboxEntryDAO).retrieveDue(anyLong(), eq(10));
+        verify(encryptedTransactionDAO).retrieveByHash(HASH);
+        verify(outboxEntryDAO).delete(first);
+        verify(outboxEntryDAO).delete(second);
+    }
+
+    @Test
+    public void entriesForNonRecipientsAreDiscarded() {
+        final OutboxEntry entry = new OutboxEntry(HASH, RECIPIENT.getKeyBytes());
+        final EncodedPayload payload = mock(EncodedPayload.class);
+
+        when(outboxEntryDAO.retrieveDue(anyLong(), eq(10))).thenReturn(singletonList(entry));
+        when(encryptedTransactionDAO.retrieveByHash(HASH))
+                .thenReturn(Optional.of(new EncryptedTransaction(HASH, "PAYLOAD".getBytes())));
+        when(payloadEncoder.decode("PAYLOAD".getBytes())).thenReturn(payload);
+        when(payloadEncoder.forRecipient(payload, RECIPIENT)).thenThrow(new InvalidRecipientException("Not found"));
+
+        outboxDispatcher.run();
+
+        verify(outboxEntryDAO).retrieveDue(anyLong(), eq(10));
+        verify(encryptedTransactionDAO).retrieveByHash(HASH);
+        verify(payloadEncoder).decode("PAYLOAD".getBytes());
+        verify(payloadEncoder).forRecipient(payload, RECIPIENT);
+        verify(outboxEntryDAO).delete(entry);
+    }
+}
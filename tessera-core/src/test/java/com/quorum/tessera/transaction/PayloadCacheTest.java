@@ -0,0 +1,145 @@
+package com.quorum.tessera.transaction;
+
+import com.quorum.tessera.data.EncryptedTransaction;
+import com.quorum.tessera.data.MessageHash;
+import org.junit.Test;
+
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.*;
+
+public class PayloadCacheTest {
+
+    private static final byte[] RECIPIENT_KEY = "RECIPIENT".getBytes();
+
+    private static EncryptedTransaction transaction(final String hash, final int payloadSize) {
+        final byte[] payload = new byte[payloadSize];
+        payload[0] = (byte) hash.hashCode();
+        return new EncryptedTransaction(new MessageHash(hash.getBytes()), payload, RECIPIENT_KEY);
+    }
+
+    @Test
+    public void cachedTransactionIsReturnedAsACopy() {
+        final PayloadCache payloadCache = new PayloadCache(100, false);
+        final EncryptedTransaction transaction = transaction("HASH", 10);
+
+        payloadCache.put(transaction);
+
+        final Optional<EncryptedTransaction> cached = payloadCache.get(transaction.getHash());
+
+        assertThat(cached).isPresent();
+        assertThat(cached.get()).isNotSameAs(transaction);
+        assertThat(cached.get().getHash()).isEqualTo(transaction.getHash());
+        assertThat(cached.get().getEncodedPayload()).isEqualTo(transaction.getEncodedPayload());
+        assertThat(cached.get().getRecipientKey()).isEqualTo(RECIPIENT_KEY);
+
+        cached.get().getEncodedPayload()[0]++;
+        assertThat(payloadCache.get(transaction.getHash()).get().getEncodedPayload())
+                .isEqualTo(transaction.getEncodedPayload());
+
+        assertThat(payloadCache.getHitCount()).isEqualTo(2);
+        assertThat(payloadCache.getMissCount()).isZero();
+    }
+
+    @Test
+    public void offHeapTransactionIsReturnedIntact() {
+        final PayloadCache payloadCache = new PayloadCache(100, true);
+        final EncryptedTransaction transaction = transaction("HASH", 10);
+
+        payloadCache.put(transaction);
+
+        final Optional<EncryptedTransaction> cached = payloadCache.get(transaction.getHash());
+
+        assertThat(cached).isPresent();
+        assertThat(cached.get().getEncodedPayload()).isEqualTo(transaction.getEncodedPayload());
+        assertThat(payloadCache.get(transaction.getHash()).get().getEncodedPayload())
+                .isEqualTo(transaction.getEncodedPayload());
+    }
+
+    @Test
+    public void unknownHashIsAMiss() {
+        final PayloadCache payloadCache = new PayloadCache(100, false);
+
+        assertThat(payloadCache.get(new MessageHash("HASH".getBytes()))).isNotPresent();
+        assertThat(payloadCache.getMissCount()).isEqualTo(1);
+        assertThat(payloadCache.getHitCount()).isZero();
+    }
+
+    @Test
+    public void leastRecentlyUsedEntriesAreEvictedOnceFull() {
+        final PayloadCache payloadCache = new PayloadCache(30, false);
+        final EncryptedTransaction first = transaction("FIRST", 10);
+        final EncryptedTransaction second = transaction("SECOND", 10);
+        final EncryptedTransaction third = transaction("THIRD", 10);
+        final EncryptedTransaction fourth = transaction("FOURTH", 10);
+
+        payloadCache.put(first);
+        payloadCache.put(second);
+        payloadCache.put(third);
+        payloadCache.get(first.getHash());
+        payloadCache.put(fourth);
+
+        assertThat(payloadCache.get(second.getHash())).isNotPresent();
+        assertThat(payloadCache.get(first.getHash())).isPresent();
+        assertThat(payloadCache.get(third.getHash())).isPresent();
+        assertThat(payloadCache.get(fourth.getHash())).isPresent();
+
+        assertThat(payloadCache.getEntryCount()).isEqualTo(3);
+        assertThat(payloadCache.getSizeInBytes()).isEqualTo(30);
+        assertThat(payloadCache.getMaxSizeInBytes()).isEqualTo(30);
+        assertThat(payloadCache.getEvictionCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void replacingAnEntryDoesNotCountItTwice() {
+        final PayloadCache payloadCache = new PayloadCache(100, false);
+
+        payloadCache.put(transaction("HASH", 10));
+        payloadCache.put(transaction("HASH", 20));
+
+        assertThat(payloadCache.getEntryCount()).isEqualTo(1);
+        assertThat(payloadCache.getSizeInBytes()).isEqualTo(20);
+    }
+
+    @Test
+    public void invalidatedEntryIsRemoved() {
+        final PayloadCache payloadCache = new PayloadCache(100, false);
+        final EncryptedTransaction transaction = transaction("HASH", 10);
+
+        payloadCache.put(transaction);
+        payloadCache.invalidate(transaction.getHash());
+        payloadCache.invalidate(new MessageHash("UNKNOWN".getBytes()));
+
+        assertThat(payloadCache.get(transaction.getHash())).isNotPresent();
+        assertThat(payloadCache.getEntryCount()).isZero();
+        assertThat(payloadCache.getSizeInBytes()).isZero();
+    }
+
+    @Test
+    public void transactionsThatCannotBeCachedAreSkipped() {
+        final PayloadCache payloadCache = new PayloadCache(10, false);
+
+        payloadCache.put(new EncryptedTransaction(new MessageHash("NOKEY".getBytes()), new byte[5]));
+        payloadCache.put(transaction("TOOBIG", 11));
+
+        assertThat(payloadCache.getEntryCount()).isZero();
+        assertThat(payloadCache.getEvictionCount()).isZero();
+    }
+
+    @Test
+    public void zeroSizeDisablesTheCache() {
+        final PayloadCache payloadCache = new PayloadCache(0, false);
+        final EncryptedTransaction transaction = transaction("HASH", 1);
+
+        payloadCache.put(transaction);
+
+        assertThat(payloadCache.get(transaction.getHash())).isNotPresent();
+    }
+
+    @Test
+    public void negativeSizeIsRejected() {
+        final Throwable throwable = catchThrowable(() -> new PayloadCache(-1, false));
+
+        assertThat(throwable).isInstanceOf(IllegalArgumentException.class);
+    }
+}
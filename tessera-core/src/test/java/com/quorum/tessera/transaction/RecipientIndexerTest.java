@@ -0,0 +1,147 @@
+package com.quorum.tessera.transaction;
+
+import com.quorum.tessera.data.EncryptedTransaction;
+import com.quorum.tessera.data.EncryptedTransactionDAO;
+import com.quorum.tessera.data.MessageHash;
+import com.quorum.tessera.enclave.EncodedPayload;
+import com.quorum.tessera.enclave.PayloadEncoder;
+import com.quorum.tessera.encryption.PublicKey;
+import com.quorum.tessera.transaction.exception.RecipientIndexIncompleteException;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static java.util.Collections.emptyList;
+import static java.util.Collections.singletonList;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.catchThrowable;
+import static org.mockito.Mockito.*;
+
+public class RecipientIndexerTest {
+
+    private static final PublicKey SENDER = PublicKey.from("SENDER".getBytes());
+
+    private static final PublicKey RECIPIENT = PublicKey.from("RECIPIENT".getBytes());
+
+    private PayloadEncoder payloadEncoder;
+
+    private EncryptedTransactionDAO encryptedTransactionDAO;
+
+    private RecipientIndexer recipientIndexer;
+
+    @Before
+    public void onSetUp() {
+        this.payloadEncoder = mock(PayloadEncoder.class);
+        this.encryptedTransactionDAO = mock(EncryptedTransactionDAO.class);
+        this.recipientIndexer = new RecipientIndexer(payloadEncoder, encryptedTransactionDAO, 1);
+
+        final EncodedPayload payload = mock(EncodedPayload.class);
+        when(payload.getSenderKey()).thenReturn(SENDER);
+        when(payload.getRecipientKeys()).thenReturn(Arrays.asList(SENDER, RECIPIENT));
+        when(payloadEncoder.decode(any(byte[].class))).thenReturn(payload);
+    }
+
+    @After
+    public void onTearDown() {
+        verifyNoMoreInteractions(payloadEncoder, encryptedTransactionDAO);
+    }
+
+    @Test
+    public void indexSavesEveryPartyOnce() {
+        final EncryptedTransaction transaction = new EncryptedTransaction(mock(MessageHash.class), "TX".getBytes());
+
+        recipientIndexer.index(transaction, payloadEncoder.decode("TX".getBytes()));
+
+        verify(payloadEncoder).decode("TX".getBytes());
+        verify(encryptedTransactionDAO).saveRecipients(transaction, Arrays.asList(SENDER, RECIPIENT));
+    }
+
+    @Test
+    public void runIndexesEachPageOfUnindexedTransactionsAndThenStops() {
+        final EncryptedTransaction first = new EncryptedTransaction(mock(MessageHash.class), "FIRST".getBytes());
+        final EncryptedTransaction second = new EncryptedTransaction(mock(MessageHash.class), "SECOND".getBytes());
+
+        when(encryptedTransactionDAO.retrieveUnindexedTransactions(null, 1)).thenReturn(singletonList(first));
+        when(encryptedTransactionDAO.retrieveUnindexedTransactions(first, 1)).thenReturn(singletonList(second));
+        when(encryptedTransactionDAO.retrieveUnindexedTransactions(second, 1)).thenReturn(emptyList());
+
+        recipientIndexer.run();
+        recipientIndexer.run();
+
+        verify(encryptedTransactionDAO).retrieveUnindexedTransactions(null, 1);
+        verify(encryptedTransactionDAO).retrieveUnindexedTransactions(first, 1);
+        verify(encryptedTransactionDAO).retrieveUnindexedTransactions(second, 1);
+        verify(payloadEncoder).decode("FIRST".getBytes());
+        verify(payloadEncoder).decode("SECOND".getBytes());
+        verify(encryptedTransactionDAO).saveRecipients(first, Arrays.asList(SENDER, RECIPIENT));
+        verify(encryptedTransactionDAO).saveRecipients(second, Arrays.asList(SENDER, RECIPIENT));
+    }
+
+    @Test
+    public void runWithNothingToIndex() {
+        when(encryptedTransactionDAO.retrieveUnindexedTransactions(null, 1)).thenReturn(emptyList());
+
+        recipientIndexer.run();
+
+        verify(encryptedTransactionDAO).retrieveUnindexedTransactions(null, 1);
+    }
+
+    @Test
+    public void awaitIndexedReturnsOnceIndexed() {
+        when(encryptedTransactionDAO.retrieveUnindexedTransactions(null, 1)).thenReturn(emptyList());
+
+        recipientIndexer.run();
+        recipientIndexer.awaitIndexed();
+
+        verify(encryptedTransactionDAO).retrieveUnindexedTransactions(null, 1);
+    }
+
+    @Test
+    public void awaitIndexedFailsIfIndexingDoesNotCompleteInTime() {
+        final RecipientIndexer waitingIndexer = new RecipientIndexer(payloadEncoder, encryptedTransactionDAO, 1, 10);
+
+        final Throwable throwable = catchThrowable(waitingIndexer::awaitIndexed);
+
+        assertThat(throwable).isInstanceOf(RecipientIndexIncompleteException.class);
+    }
+
+    @Test
+    public void awaitIndexedWaitsForARunInProgress() throws Exception {
+        final RecipientIndexer waitingIndexer = new RecipientIndexer(payloadEncoder, encryptedTransactionDAO, 1, 5000);
+
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        when(encryptedTransactionDAO.retrieveUnindexedTransactions(null, 1))
+                .thenAnswer(
+                        invocation -> {
+                            started.countDown();
+                            release.await(5, TimeUnit.SECONDS);
+                            return emptyList();
+                        });
+
+        final ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            final Future<?> run = executor.submit(waitingIndexer);
+            assertThat(started.await(5, TimeUnit.SECONDS)).isTrue();
+
+            final Future<?> waiting = executor.submit(waitingIndexer::awaitIndexed);
+            Thread.sleep(50);
+            assertThat(waiting.isDone()).isFalse();
+
+            release.countDown();
+            run.get(5, TimeUnit.SECONDS);
+            waiting.get(5, TimeUnit.SECONDS);
+        } finally {
+            executor.shutdownNow();
+        }
+
+        verify(encryptedTransactionDAO).retrieveUnindexedTransactions(null, 1);
+    }
+}
@@ -3,6 +3,7 @@ package com.quorum.tessera.transaction;
 import com.quorum.tessera.partyinfo.ResendManager;
 import com.quorum.tessera.data.EncryptedRawTransactionDAO;
 import com.quorum.tessera.data.EncryptedTransactionDAO;
+import com.quorum.tessera.data.GroupCommitWriter;
 import com.jpmorgan.quorum.mock.servicelocator.MockServiceLocator;
 import com.quorum.tessera.partyinfo.ResendRequest;
 import com.quorum.tessera.partyinfo.ResendRequestType;
@@ -18,12 +19,17 @@ import com.quorum.tessera.enclave.PayloadEncoder;
 import com.quorum.tessera.enclave.RawTransaction;
 import com.quorum.tessera.data.MessageHash;
 import com.quorum.tessera.data.MessageHashFactory;
+import com.quorum.tessera.data.OutboxEntry;
+import com.quorum.tessera.data.OutboxEntryDAO;
 import com.quorum.tessera.encryption.PublicKey;
 import com.quorum.tessera.encryption.EncryptorException;
 import com.quorum.tessera.encryption.Nonce;
+import com.quorum.tessera.partyinfo.FanOutPublisher;
 import com.quorum.tessera.partyinfo.PartyInfoService;
+import com.quorum.tessera.partyinfo.PublishResult;
 import com.quorum.tessera.service.locator.ServiceLocator;
 import com.quorum.tessera.transaction.exception.KeyNotFoundException;
+import com.quorum.tessera.transaction.exception.RecipientIndexIncompleteException;
 import com.quorum.tessera.partyinfo.PublishPayloadException;
 import com.quorum.tessera.transaction.exception.TransactionNotFoundException;
 import com.quorum.tessera.data.EncryptedRawTransaction;
@@ -34,6 +40,7 @@ import org.junit.Before;
 import org.junit.Test;
 import org.mockito.ArgumentCaptor;
 
+import javax.persistence.PersistenceException;
 import java.util.*;
 
 import static java.util.Collections.*;
@@ -56,6 +63,16 @@ public class TransactionManagerTest {
 
     private ResendManager resendManager;
 
+    private FanOutPublisher fanOutPublisher;
+
+    private OutboxEntryDAO outboxEntryDAO;
+
+    private PayloadCache payloadCache;
+
+    private GroupCommitWriter groupCommitWriter;
+
+    private RecipientIndexer recipientIndexer;
+
     private Enclave enclave;
 
     private MessageHashFactory messageHashFactory = MessageHashFactory.create();
@@ -69,6 +86,11 @@ public class TransactionManagerTest {
         encryptedRawTransactionDAO = mock(EncryptedRawTransactionDAO.class);
         partyInfoService = mock(PartyInfoService.class);
         this.resendManager = mock(ResendManager.class);
+        this.fanOutPublisher = mock(FanOutPublisher.class);
+        this.outboxEntryDAO = mock(OutboxEntryDAO.class);
+        this.payloadCache = mock(PayloadCache.class);
+        this.groupCommitWriter = new GroupCommitWriter(encryptedTransactionDAO, false, 1, 0);
+        this.recipientIndexer = new RecipientIndexer(payloadEncoder, encryptedTransactionDAO, 1000);
 
         transactionManager =
                 new TransactionManagerImpl(
@@ -79,12 +101,21 @@ public class TransactionManagerTest {
                         enclave,
                         encryptedRawTransactionDAO,
                         resendManager,
-                        1000);
+                        fanOutPublisher,
+                        outboxEntryDAO,
+                        payloadCache,
+                        groupCommitWriter,
+                        recipientIndexer,
+                        Runnable::run,
+                        false,
+                        1000,
+                        Long.MAX_VALUE);
     }
 
     @After
     public void onTearDown() {
-        verifyNoMoreInteractions(payloadEncoder, encryptedTransactionDAO, partyInfoService, enclave);
+        verifyNoMoreInteractions(
+                payloadEncoder, encryptedTransactionDAO, partyInfoService, fanOutPublisher, outboxEntryDAO, enclave);
     }
 
     @Test
@@ -95,6 +126,8 @@ public class TransactionManagerTest {
         when(encodedPayload.getCipherText()).thenReturn("CIPHERTEXT".getBytes());
 
         when(enclave.encryptPayload(any(), any(), any())).thenReturn(encodedPayload);
+        when(payloadEncoder.encode(encodedPayload)).thenReturn("ENCODED".getBytes());
+        when(payloadEncoder.decode("ENCODED".getBytes())).thenReturn(encodedPayload);
         when(payloadEncoder.forRecipient(any(EncodedPayload.class), any(PublicKey.class))).thenReturn(encodedPayload);
 
         String sender = Base64.getEncoder().encodeToString("SENDER".getBytes());
@@ -113,10 +146,163 @@ public class TransactionManagerTest {
 
         verify(enclave).encryptPayload(any(), any(), any());
         verify(payloadEncoder).encode(encodedPayload);
+        verify(payloadEncoder).decode("ENCODED".getBytes());
         verify(payloadEncoder, times(2)).forRecipient(eq(encodedPayload), any(PublicKey.class));
         verify(encryptedTransactionDAO).save(any(EncryptedTransaction.class));
-        verify(partyInfoService, times(2)).publishPayload(any(EncodedPayload.class), any(PublicKey.class));
+        verify(encryptedTransactionDAO).saveRecipients(any(EncryptedTransaction.class), anyList());
+        verify(fanOutPublisher).publish(argThat(m -> m.size() == 2));
+        verify(enclave).getForwardingKeys();
+    }
+
+    @Test
+    public void sendFailsWhenRecipientCannotBeReached() {
+
+        EncodedPayload encodedPayload = mock(EncodedPayload.class);
+
+        when(encodedPayload.getCipherText()).thenReturn("CIPHERTEXT".getBytes());
+
+        when(enclave.encryptPayload(any(), any(), any())).thenReturn(encodedPayload);
+        when(payloadEncoder.encode(encodedPayload)).thenReturn("ENCODED".getBytes());
+        when(payloadEncoder.decode("ENCODED".getBytes())).thenReturn(encodedPayload);
+        when(payloadEncoder.forRecipient(any(EncodedPayload.class), any(PublicKey.class))).thenReturn(encodedPayload);
+
+        final PublicKey receiverKey = PublicKey.from("RECEIVER".getBytes());
+        final PublishPayloadException exception = new PublishPayloadException("Unreachable");
+        when(fanOutPublisher.publish(anyMap()))
+                .thenReturn(
+                        Arrays.asList(
+                                PublishResult.success(PublicKey.from("SENDER".getBytes())),
+                                PublishResult.failure(receiverKey, exception)));
+
+        SendRequest sendRequest = new SendRequest();
+        sendRequest.setFrom(Base64.getEncoder().encodeToString("SENDER".getBytes()));
+        sendRequest.setTo(Base64.getEncoder().encodeToString("RECEIVER".getBytes()));
+        sendRequest.setPayload("PAYLOAD".getBytes());
+
+        final Throwable throwable = catchThrowable(() -> transactionManager.send(sendRequest));
+
+        assertThat(throwable).isSameAs(exception);
+
+        verify(enclave).encryptPayload(any(), any(), any());
+        verify(payloadEncoder).encode(encodedPayload);
+        verify(payloadEncoder).decode("ENCODED".getBytes());
+        verify(payloadEncoder, times(2)).forRecipient(eq(encodedPayload), any(PublicKey.class));
+        verify(encryptedTransactionDAO).save(any(EncryptedTransaction.class));
+        verify(encryptedTransactionDAO).saveRecipients(any(EncryptedTransaction.class), anyList());
+        verify(fanOutPublisher).publish(anyMap());
+        verify(enclave).getForwardingKeys();
+    }
+
+    @Test
+    public void sendBatch() {
+
+        EncodedPayload first = mock(EncodedPayload.class);
+        when(first.getCipherText()).thenReturn("FIRST".getBytes());
+        EncodedPayload second = mock(EncodedPayload.class);
+        when(second.getCipherText()).thenReturn("SECOND".getBytes());
+
+        when(enclave.encryptPayload(eq("ONE".getBytes()), any(), any())).thenReturn(first);
+        when(enclave.encryptPayload(eq("TWO".getBytes()), any(), any())).thenReturn(second);
+        when(payloadEncoder.encode(first)).thenReturn("FIRST_ENCODED".getBytes());
+        when(payloadEncoder.encode(second)).thenReturn("SECOND_ENCODED".getBytes());
+        when(payloadEncoder.decode("FIRST_ENCODED".getBytes())).thenReturn(first);
+        when(payloadEncoder.decode("SECOND_ENCODED".getBytes())).thenReturn(second);
+        when(payloadEncoder.forRecipient(any(EncodedPayload.class), any(PublicKey.class)))
+                .thenAnswer(invocation -> invocation.getArgument(0));
+        when(fanOutPublisher.publishAll(anyMap())).thenReturn(emptyList());
+
+        final PublicKey senderKey = PublicKey.from("SENDER".getBytes());
+        final PublicKey receiverKey = PublicKey.from("RECEIVER".getBytes());
+
+        SendRequest firstRequest = new SendRequest();
+        firstRequest.setFrom(senderKey.encodeToBase64());
+        firstRequest.setTo(receiverKey.encodeToBase64());
+        firstRequest.setPayload("ONE".getBytes());
+
+        SendRequest secondRequest = new SendRequest();
+        secondRequest.setFrom(senderKey.encodeToBase64());
+        secondRequest.setTo(receiverKey.encodeToBase64());
+        secondRequest.setPayload("TWO".getBytes());
+
+        SendBatchRequest sendBatchRequest = new SendBatchRequest();
+        sendBatchRequest.setRequests(Arrays.asList(firstRequest, secondRequest));
+
+        SendBatchResponse result = transactionManager.sendBatch(sendBatchRequest);
+
+        final String firstKey =
+                Base64.getEncoder()
+                        .encodeToString(messageHashFactory.createFromCipherText("FIRST".getBytes()).getHashBytes());
+        final String secondKey =
+                Base64.getEncoder()
+                        .encodeToString(messageHashFactory.createFromCipherText("SECOND".getBytes()).getHashBytes());
+
+        assertThat(result.getKeys()).containsExactly(firstKey, secondKey);
+
+        verify(enclave, times(2)).encryptPayload(any(), any(), any());
+        verify(enclave).getForwardingKeys();
+        verify(payloadEncoder).encode(first);
+        verify(payloadEncoder).encode(second);
+        verify(payloadEncoder).decode("FIRST_ENCODED".getBytes());
+        verify(payloadEncoder).decode("SECOND_ENCODED".getBytes());
+        verify(payloadEncoder, times(4)).forRecipient(any(EncodedPayload.class), any(PublicKey.class));
+        verify(encryptedTransactionDAO).saveAll(argThat(l -> l.size() == 2));
+        verify(encryptedTransactionDAO, times(2)).saveRecipients(any(EncryptedTransaction.class), anyList());
+        verify(fanOutPublisher)
+                .publishAll(
+                        argThat(
+                                m ->
+                                        m.size() == 2
+                                                && m.get(senderKey).equals(Arrays.asList(first, second))
+                                                && m.get(receiverKey).equals(Arrays.asList(first, second))));
+    }
+
+    @Test
+    public void sendQueuesRemoteRecipientsWhenOutboxDeliveryEnabled() {
+
+        final TransactionManager outboxTransactionManager =
+                new TransactionManagerImpl(
+                        Base64Decoder.create(),
+                        payloadEncoder,
+                        encryptedTransactionDAO,
+                        partyInfoService,
+                        enclave,
+                        encryptedRawTransactionDAO,
+                        resendManager,
+                        fanOutPublisher,
+                        outboxEntryDAO,
+                        payloadCache,
+                        groupCommitWriter,
+                        new RecipientIndexer(payloadEncoder, encryptedTransactionDAO, 1000),
+                        Runnable::run,
+                        true,
+                        1000,
+                        Long.MAX_VALUE);
+
+        EncodedPayload encodedPayload = mock(EncodedPayload.class);
+        when(encodedPayload.getCipherText()).thenReturn("CIPHERTEXT".getBytes());
+        when(enclave.encryptPayload(any(), any(), any())).thenReturn(encodedPayload);
+        when(enclave.getPublicKeys()).thenReturn(singleton(PublicKey.from("SENDER".getBytes())));
+
+        SendRequest sendRequest = new SendRequest();
+        sendRequest.setFrom(Base64.getEncoder().encodeToString("SENDER".getBytes()));
+        sendRequest.setTo(Base64.getEncoder().encodeToString("RECEIVER".getBytes()));
+        sendRequest.setPayload("PAYLOAD".getBytes());
+
+        SendResponse result = outboxTransactionManager.send(sendRequest);
+
+        assertThat(result).isNotNull();
+
+        final ArgumentCaptor<OutboxEntry> captor = ArgumentCaptor.forClass(OutboxEntry.class);
+
+        verify(enclave).encryptPayload(any(), any(), any());
+        verify(enclave).getPublicKeys();
+        verify(payloadEncoder).encode(encodedPayload);
+        verify(encryptedTransactionDAO).save(any(EncryptedTransaction.class));
+        verify(encryptedTransactionDAO).saveRecipients(any(EncryptedTransaction.class), anyList());
+        verify(outboxEntryDAO).save(captor.capture());
         verify(enclave).getForwardingKeys();
+
+        assertThat(captor.getValue().getRecipient()).isEqualTo("RECEIVER".getBytes());
     }
 
     @Test
@@ -134,6 +320,8 @@ public class TransactionManagerTest {
 
         when(encryptedRawTransactionDAO.retrieveByHash(any(MessageHash.class)))
                 .thenReturn(Optional.of(encryptedRawTransaction));
+        when(payloadEncoder.encode(payload)).thenReturn("ENCODED".getBytes());
+        when(payloadEncoder.decode("ENCODED".getBytes())).thenReturn(payload);
         when(payloadEncoder.forRecipient(any(EncodedPayload.class), any(PublicKey.class))).thenReturn(payload);
 
         when(payload.getCipherText()).thenReturn("ENCRYPTED_PAYLOAD".getBytes());
@@ -152,12 +340,21 @@ public class TransactionManagerTest {
 
         verify(enclave).encryptPayload(any(RawTransaction.class), any());
         verify(payloadEncoder).encode(payload);
+        verify(payloadEncoder).decode("ENCODED".getBytes());
         verify(payloadEncoder).forRecipient(any(EncodedPayload.class), eq(PublicKey.from("SENDER".getBytes())));
         verify(payloadEncoder).forRecipient(any(EncodedPayload.class), eq(PublicKey.from("RECEIVER".getBytes())));
         verify(encryptedTransactionDAO).save(any(EncryptedTransaction.class));
+        verify(encryptedTransactionDAO).saveRecipients(any(EncryptedTransaction.class), anyList());
         verify(encryptedRawTransactionDAO).retrieveByHash(any(MessageHash.class));
-        verify(partyInfoService).publishPayload(any(EncodedPayload.class), eq(PublicKey.from("SENDER".getBytes())));
-        verify(partyInfoService).publishPayload(any(EncodedPayload.class), eq(PublicKey.from("RECEIVER".getBytes())));
+        verify(fanOutPublisher)
+                .publish(
+                        argThat(
+                                m ->
+                                        m.keySet()
+                                                .containsAll(
+                                                        Arrays.asList(
+                                                                PublicKey.from("SENDER".getBytes()),
+                                                                PublicKey.from("RECEIVER".getBytes())))));
         verify(enclave).getForwardingKeys();
     }
 
@@ -190,9 +387,12 @@ public class TransactionManagerTest {
         transactionManager.delete(deleteRequest);
 
         verify(encryptedTransactionDAO).delete(any(MessageHash.class));
+        // dropped straight away and again on commit, which is also straight away outside of a transaction
+        verify(payloadCache, times(2)).invalidate(new MessageHash("SOMEKEY".getBytes()));
     }
 
     @Test
+    @SuppressWarnings("unchecked")
     public void storePayloadAsRecipient() {
 
         byte[] input = "SOMEDATA".getBytes();
@@ -201,13 +401,51 @@ public class TransactionManagerTest {
 
         when(payload.getCipherText()).thenReturn("CIPHERTEXT".getBytes());
 
+        PublicKey senderKey = PublicKey.from("SENDER".getBytes());
+        when(payload.getSenderKey()).thenReturn(senderKey);
+
         when(payloadEncoder.decode(input)).thenReturn(payload);
 
+        PublicKey localKey = PublicKey.from("LOCAL".getBytes());
+        when(enclave.getPublicKeys()).thenReturn(singleton(localKey));
+        when(enclave.unencryptTransaction(payload, localKey)).thenReturn("DECRYPTED".getBytes());
+
         transactionManager.storePayload(input);
 
-        verify(encryptedTransactionDAO).save(any(EncryptedTransaction.class));
+        final ArgumentCaptor<Map> captor = ArgumentCaptor.forClass(Map.class);
+        verify(encryptedTransactionDAO).saveAllWithRecipients(captor.capture());
+        final Map<EncryptedTransaction, Collection<PublicKey>> saved = captor.getValue();
+        assertThat(saved).hasSize(1);
+        saved.forEach(
+                (tx, recipients) -> {
+                    assertThat(tx.getRecipientKey()).isEqualTo(localKey.getKeyBytes());
+                    assertThat(recipients).containsExactly(senderKey);
+                });
         verify(payloadEncoder).decode(input);
         verify(enclave).getPublicKeys();
+        verify(enclave).unencryptTransaction(payload, localKey);
+        verify(payloadCache).put(argThat(tx -> Arrays.equals(tx.getRecipientKey(), localKey.getKeyBytes())));
+    }
+
+    @Test
+    public void storePayloadRethrowsFailedSave() {
+        final byte[] input = "SOMEDATA".getBytes();
+        final EncodedPayload payload = mock(EncodedPayload.class);
+        when(payload.getCipherText()).thenReturn("CIPHERTEXT".getBytes());
+        when(payload.getSenderKey()).thenReturn(PublicKey.from("SENDER".getBytes()));
+        when(payloadEncoder.decode(input)).thenReturn(payload);
+        when(enclave.getPublicKeys()).thenReturn(emptySet());
+
+        final PersistenceException failure = new PersistenceException("duplicate");
+        doThrow(failure).when(encryptedTransactionDAO).saveAllWithRecipients(anyMap());
+
+        final Throwable throwable = catchThrowable(() -> transactionManager.storePayload(input));
+
+        assertThat(throwable).isSameAs(failure);
+        verify(encryptedTransactionDAO).saveAllWithRecipients(anyMap());
+        verify(payloadEncoder).decode(input);
+        verify(enclave).getPublicKeys();
+        verifyZeroInteractions(payloadCache);
     }
 
     @Test
@@ -228,10 +466,65 @@ public class TransactionManagerTest {
         transactionManager.storePayload(input);
 
         verify(resendManager).acceptOwnMessage(input);
+        // dropped straight away and again on commit, which is also straight away outside of a transaction
+        verify(payloadCache, times(2)).invalidate(messageHashFactory.createFromCipherText("CIPHERTEXT".getBytes()));
         verify(payloadEncoder).decode(input);
         verify(enclave).getPublicKeys();
     }
 
+    @Test
+    public void storePayloadsBatchesNewTransactionsFromOtherNodes() {
+        final PublicKey localKey = PublicKey.from("LOCAL".getBytes());
+        final PublicKey remoteKey = PublicKey.from("REMOTE".getBytes());
+
+        final byte[] own = "OWN".getBytes();
+        final byte[] fresh = "FRESH".getBytes();
+        final byte[] stored = "STORED".getBytes();
+
+        final EncodedPayload ownPayload = mock(EncodedPayload.class);
+        when(ownPayload.getSenderKey()).thenReturn(localKey);
+        when(ownPayload.getCipherText()).thenReturn("OWN_CIPHERTEXT".getBytes());
+        final EncodedPayload freshPayload = mock(EncodedPayload.class);
+        when(freshPayload.getSenderKey()).thenReturn(remoteKey);
+        when(freshPayload.getCipherText()).thenReturn("FRESH_CIPHERTEXT".getBytes());
+        final EncodedPayload storedPayload = mock(EncodedPayload.class);
+        when(storedPayload.getSenderKey()).thenReturn(remoteKey);
+        when(storedPayload.getCipherText()).thenReturn("STORED_CIPHERTEXT".getBytes());
+
+        when(payloadEncoder.decode(own)).thenReturn(ownPayload);
+        when(payloadEncoder.decode(fresh)).thenReturn(freshPayload);
+        when(payloadEncoder.decode(stored)).thenReturn(storedPayload);
+        when(enclave.getPublicKeys()).thenReturn(singleton(localKey));
+        when(enclave.unencryptTransaction(freshPayload, localKey)).thenReturn("DECRYPTED".getBytes());
+
+        final MessageHash freshHash = messageHashFactory.createFromCipherText("FRESH_CIPHERTEXT".getBytes());
+        final MessageHash storedHash = messageHashFactory.createFromCipherText("STORED_CIPHERTEXT".getBytes());
+        when(encryptedTransactionDAO.retrieveByHashes(any()))
+                .thenReturn(singletonList(new EncryptedTransaction(storedHash, stored)));
+
+        final List<MessageHash> hashes = transactionManager.storePayloads(Arrays.asList(own, fresh, stored));
+
+        assertThat(hashes).hasSize(3).contains(freshHash, storedHash);
+
+        verify(resendManager).acceptOwnMessages(singletonList(own));
+        verify(payloadEncoder).decode(own);
+        verify(payloadEncoder).decode(fresh);
+        verify(payloadEncoder).decode(stored);
+        verify(enclave).getPublicKeys();
+        verify(enclave).unencryptTransaction(freshPayload, localKey);
+        verify(encryptedTransactionDAO)
+                .retrieveByHashes(argThat(h -> h.size() == 2 && h.contains(freshHash) && h.contains(storedHash)));
+        verify(encryptedTransactionDAO)
+                .saveAll(
+                        argThat(
+                                l ->
+                                        l.size() == 1
+                                                && l.get(0).getHash().equals(freshHash)
+                                                && Arrays.equals(l.get(0).getRecipientKey(), localKey.getKeyBytes())));
+        verify(encryptedTransactionDAO)
+                .saveRecipients(any(EncryptedTransaction.class), eq(singletonList(remoteKey)));
+    }
+
     @Test
     public void resendAllWhereRequestedIsSenderAndRecipientExists() {
 
@@ -244,8 +537,9 @@ public class TransactionManagerTest {
 
         when(payload.getSenderKey()).thenReturn(senderKey);
         when(payload.getRecipientKeys()).thenReturn(new ArrayList<>());
-        when(encryptedTransactionDAO.retrieveTransactions(anyInt(), anyInt())).thenReturn(singletonList(tx));
-        when(encryptedTransactionDAO.transactionCount()).thenReturn(1L);
+        when(encryptedTransactionDAO.retrieveTransactionsForRecipient(any(PublicKey.class), isNull(), anyInt()))
+                .thenReturn(singletonList(tx));
+        when(encryptedTransactionDAO.retrieveByHash(tx.getHash())).thenReturn(Optional.of(tx));
         when(payloadEncoder.decode(any(byte[].class))).thenReturn(payload);
         when(enclave.getPublicKeys()).thenReturn(singleton(recipientKey));
         when(enclave.unencryptTransaction(payload, recipientKey)).thenReturn(new byte[0]);
@@ -254,14 +548,18 @@ public class TransactionManagerTest {
         resendRequest.setPublicKey(senderKey.encodeToBase64());
         resendRequest.setType(ResendRequestType.ALL);
 
+        recipientIndexer.run();
+
         ResendResponse result = transactionManager.resend(resendRequest);
 
         assertThat(result).isNotNull();
 
-        verify(encryptedTransactionDAO).retrieveTransactions(anyInt(), anyInt());
-        verify(encryptedTransactionDAO, times(2)).transactionCount();
+        verify(encryptedTransactionDAO).retrieveUnindexedTransactions(isNull(), anyInt());
+        verify(encryptedTransactionDAO).retrieveTransactionsForRecipient(any(PublicKey.class), isNull(), anyInt());
+        verify(encryptedTransactionDAO).retrieveByHash(tx.getHash());
+        verify(encryptedTransactionDAO).update(tx);
         verify(payloadEncoder).decode(encodedData);
-        verify(partyInfoService).publishPayload(any(EncodedPayload.class), eq(senderKey));
+        verify(partyInfoService).publishPayloads(singletonList(payload), senderKey);
         verify(enclave).getPublicKeys();
         verify(enclave).unencryptTransaction(payload, recipientKey);
         verify(payloadEncoder, never()).forRecipient(any(EncodedPayload.class), any(PublicKey.class));
@@ -277,20 +575,22 @@ public class TransactionManagerTest {
         final EncodedPayload payload = mock(EncodedPayload.class);
         when(payload.getRecipientKeys()).thenReturn(emptyList());
 
-        when(encryptedTransactionDAO.retrieveTransactions(anyInt(), anyInt())).thenReturn(singletonList(tx));
-        when(encryptedTransactionDAO.transactionCount()).thenReturn(1L);
+        when(encryptedTransactionDAO.retrieveTransactionsForRecipient(any(PublicKey.class), isNull(), anyInt()))
+                .thenReturn(singletonList(tx));
         when(payloadEncoder.decode(any(byte[].class))).thenReturn(payload);
 
         final ResendRequest resendRequest = new ResendRequest();
         resendRequest.setPublicKey(recipientKey.encodeToBase64());
         resendRequest.setType(ResendRequestType.ALL);
 
+        recipientIndexer.run();
+
         ResendResponse result = transactionManager.resend(resendRequest);
 
         assertThat(result).isNotNull();
 
-        verify(encryptedTransactionDAO).retrieveTransactions(anyInt(), anyInt());
-        verify(encryptedTransactionDAO, times(2)).transactionCount();
+        verify(encryptedTransactionDAO).retrieveUnindexedTransactions(isNull(), anyInt());
+        verify(encryptedTransactionDAO).retrieveTransactionsForRecipient(any(PublicKey.class), isNull(), anyInt());
         verify(payloadEncoder).decode(encodedData);
     }
 
@@ -303,8 +603,8 @@ public class TransactionManagerTest {
         final EncodedPayload payload = mock(EncodedPayload.class);
         when(payload.getRecipientKeys()).thenReturn(singletonList(recipientKey));
 
-        when(encryptedTransactionDAO.retrieveTransactions(anyInt(), anyInt())).thenReturn(singletonList(tx));
-        when(encryptedTransactionDAO.transactionCount()).thenReturn(1L);
+        when(encryptedTransactionDAO.retrieveTransactionsForRecipient(any(PublicKey.class), isNull(), anyInt()))
+                .thenReturn(singletonList(tx));
 
         when(payloadEncoder.decode(any(byte[].class))).thenReturn(payload);
         when(payloadEncoder.forRecipient(payload, recipientKey)).thenReturn(payload);
@@ -313,15 +613,17 @@ public class TransactionManagerTest {
         resendRequest.setPublicKey(recipientKey.encodeToBase64());
         resendRequest.setType(ResendRequestType.ALL);
 
+        recipientIndexer.run();
+
         ResendResponse result = transactionManager.resend(resendRequest);
 
         assertThat(result).isNotNull();
 
-        verify(encryptedTransactionDAO).retrieveTransactions(anyInt(), anyInt());
-        verify(encryptedTransactionDAO, times(2)).transactionCount();
+        verify(encryptedTransactionDAO).retrieveUnindexedTransactions(isNull(), anyInt());
+        verify(encryptedTransactionDAO).retrieveTransactionsForRecipient(any(PublicKey.class), isNull(), anyInt());
         verify(payloadEncoder).decode(encodedData);
         verify(payloadEncoder).forRecipient(payload, recipientKey);
-        verify(partyInfoService).publishPayload(any(EncodedPayload.class), eq(recipientKey));
+        verify(partyInfoService).publishPayloads(singletonList(payload), recipientKey);
     }
 
     @Test
@@ -346,8 +648,8 @@ public class TransactionManagerTest {
         when(payload.getRecipientKeys()).thenReturn(recipients);
         when(payload.getRecipientBoxes()).thenReturn(recipientBoxes);
 
-        when(encryptedTransactionDAO.retrieveTransactions(anyInt(), anyInt())).thenReturn(singletonList(tx));
-        when(encryptedTransactionDAO.transactionCount()).thenReturn(1L);
+        when(encryptedTransactionDAO.retrieveTransactionsForRecipient(any(PublicKey.class), isNull(), anyInt()))
+                .thenReturn(singletonList(tx));
 
         when(payloadEncoder.decode(any(byte[].class))).thenReturn(payload);
 
@@ -360,13 +662,15 @@ public class TransactionManagerTest {
         resendRequest.setPublicKey(recipientKey.encodeToBase64());
         resendRequest.setType(ResendRequestType.ALL);
 
+        recipientIndexer.run();
+
         ResendResponse result = transactionManager.resend(resendRequest);
 
         assertThat(result).isNotNull();
-        verify(partyInfoService).publishPayload(eq(prunedPayload), eq(recipientKey));
+        verify(partyInfoService).publishPayloads(singletonList(prunedPayload), recipientKey);
 
-        verify(encryptedTransactionDAO).retrieveTransactions(anyInt(), anyInt());
-        verify(encryptedTransactionDAO, times(2)).transactionCount();
+        verify(encryptedTransactionDAO).retrieveUnindexedTransactions(isNull(), anyInt());
+        verify(encryptedTransactionDAO).retrieveTransactionsForRecipient(any(PublicKey.class), isNull(), anyInt());
         verify(payloadEncoder).forRecipient(payload, recipientKey);
         verify(payloadEncoder).decode(encodedData);
     }
@@ -391,8 +695,9 @@ public class TransactionManagerTest {
         when(payload.getRecipientKeys()).thenReturn(recipients);
         when(payload.getRecipientBoxes()).thenReturn(recipientBoxes);
 
-        when(encryptedTransactionDAO.retrieveTransactions(anyInt(), anyInt())).thenReturn(singletonList(tx));
-        when(encryptedTransactionDAO.transactionCount()).thenReturn(1L);
+        when(encryptedTransactionDAO.retrieveTransactionsForRecipient(any(PublicKey.class), isNull(), anyInt()))
+                .thenReturn(singletonList(tx));
+        when(encryptedTransactionDAO.retrieveByHash(tx.getHash())).thenReturn(Optional.of(tx));
         when(payloadEncoder.decode(any(byte[].class))).thenReturn(payload);
         when(enclave.getPublicKeys()).thenReturn(singleton(localKey));
 
@@ -400,14 +705,18 @@ public class TransactionManagerTest {
         resendRequest.setPublicKey(senderKey.encodeToBase64());
         resendRequest.setType(ResendRequestType.ALL);
 
+        recipientIndexer.run();
+
         ResendResponse result = transactionManager.resend(resendRequest);
 
         assertThat(result).isNotNull();
-        verify(partyInfoService).publishPayload(eq(payload), eq(senderKey));
+        verify(partyInfoService).publishPayloads(singletonList(payload), senderKey);
         verify(payloadEncoder, never()).forRecipient(any(EncodedPayload.class), any(PublicKey.class));
 
-        verify(encryptedTransactionDAO).retrieveTransactions(anyInt(), anyInt());
-        verify(encryptedTransactionDAO, times(2)).transactionCount();
+        verify(encryptedTransactionDAO).retrieveUnindexedTransactions(isNull(), anyInt());
+        verify(encryptedTransactionDAO).retrieveTransactionsForRecipient(any(PublicKey.class), isNull(), anyInt());
+        verify(encryptedTransactionDAO).retrieveByHash(tx.getHash());
+        verify(encryptedTransactionDAO).update(tx);
         verify(payloadEncoder).decode(encodedData);
         verify(enclave).getPublicKeys();
         verify(enclave).unencryptTransaction(payload, localKey);
@@ -423,8 +732,8 @@ public class TransactionManagerTest {
 
         when(payload.getSenderKey()).thenReturn(senderKey);
         when(payload.getCipherText()).thenReturn("CIPHERTEXT".getBytes());
-        when(encryptedTransactionDAO.retrieveTransactions(anyInt(), anyInt())).thenReturn(singletonList(tx));
-        when(encryptedTransactionDAO.transactionCount()).thenReturn(1L);
+        when(encryptedTransactionDAO.retrieveTransactionsForRecipient(any(PublicKey.class), isNull(), anyInt()))
+                .thenReturn(singletonList(tx));
         when(payloadEncoder.decode(any(byte[].class))).thenReturn(payload);
         when(payload.getRecipientKeys()).thenReturn(new ArrayList<>());
         when(enclave.getPublicKeys()).thenReturn(emptySet());
@@ -433,14 +742,16 @@ public class TransactionManagerTest {
         resendRequest.setPublicKey(senderKey.encodeToBase64());
         resendRequest.setType(ResendRequestType.ALL);
 
+        recipientIndexer.run();
+
         final Throwable throwable = catchThrowable(() -> transactionManager.resend(resendRequest));
 
         assertThat(throwable)
                 .isInstanceOf(KeyNotFoundException.class)
                 .hasMessage("No key found as recipient of message Q0lQSEVSVEVYVA==");
 
-        verify(encryptedTransactionDAO).retrieveTransactions(anyInt(), anyInt());
-        verify(encryptedTransactionDAO, times(1)).transactionCount();
+        verify(encryptedTransactionDAO).retrieveUnindexedTransactions(isNull(), anyInt());
+        verify(encryptedTransactionDAO).retrieveTransactionsForRecipient(any(PublicKey.class), isNull(), anyInt());
         verify(payloadEncoder).decode(encodedData);
         verify(enclave).getPublicKeys();
     }
@@ -451,8 +762,8 @@ public class TransactionManagerTest {
         EncryptedTransaction encryptedTransaction = mock(EncryptedTransaction.class);
         List<EncryptedTransaction> allDbTransactions = Collections.singletonList(encryptedTransaction);
 
-        when(encryptedTransactionDAO.retrieveTransactions(anyInt(), anyInt())).thenReturn(allDbTransactions);
-        when(encryptedTransactionDAO.transactionCount()).thenReturn((long) allDbTransactions.size());
+        when(encryptedTransactionDAO.retrieveTransactionsForRecipient(any(PublicKey.class), isNull(), anyInt()))
+                .thenReturn(allDbTransactions);
 
         byte[] transactionBytes = "TRANSACTION".getBytes();
         when(encryptedTransaction.getEncodedPayload()).thenReturn(transactionBytes);
@@ -471,25 +782,29 @@ public class TransactionManagerTest {
 
         when(payloadEncoder.forRecipient(eq(encodedPayload), any(PublicKey.class))).thenReturn(encodedPayload);
 
-        doThrow(new PublishPayloadException("msg")).when(partyInfoService).publishPayload(encodedPayload, publicKey);
+        doThrow(new PublishPayloadException("msg"))
+                .when(partyInfoService)
+                .publishPayloads(singletonList(encodedPayload), publicKey);
+
+        recipientIndexer.run();
 
         transactionManager.resend(resendRequest);
 
-        verify(partyInfoService).publishPayload(encodedPayload, publicKey);
+        verify(partyInfoService).publishPayloads(singletonList(encodedPayload), publicKey);
         verify(payloadEncoder).decode(any(byte[].class));
         verify(payloadEncoder).forRecipient(any(EncodedPayload.class), any(PublicKey.class));
-        verify(encryptedTransactionDAO).retrieveTransactions(anyInt(), anyInt());
-        verify(encryptedTransactionDAO, times(2)).transactionCount();
+        verify(encryptedTransactionDAO).retrieveUnindexedTransactions(isNull(), anyInt());
+        verify(encryptedTransactionDAO).retrieveTransactionsForRecipient(any(PublicKey.class), isNull(), anyInt());
     }
 
     @Test
-    public void resendAllIfTwoPayloadsAndFirstThrowsExceptionThenSecondIsStillPublished() {
+    public void resendAllPublishesEachPageToTheRecipientAsOneBatch() {
         EncryptedTransaction encryptedTransaction = mock(EncryptedTransaction.class);
         EncryptedTransaction otherEncryptedTransaction = mock(EncryptedTransaction.class);
         List<EncryptedTransaction> allDbTransactions = Arrays.asList(encryptedTransaction, otherEncryptedTransaction);
 
-        when(encryptedTransactionDAO.retrieveTransactions(anyInt(), anyInt())).thenReturn(allDbTransactions);
-        when(encryptedTransactionDAO.transactionCount()).thenReturn((long) allDbTransactions.size());
+        when(encryptedTransactionDAO.retrieveTransactionsForRecipient(any(PublicKey.class), isNull(), anyInt()))
+                .thenReturn(allDbTransactions);
 
         byte[] transactionBytes = "TRANSACTION".getBytes();
         byte[] otherTransactionBytes = "OTHER_TRANSACTION".getBytes();
@@ -515,65 +830,202 @@ public class TransactionManagerTest {
         when(payloadEncoder.forRecipient(eq(otherEncodedPayload), any(PublicKey.class)))
                 .thenReturn(otherEncodedPayload);
 
-        doThrow(new PublishPayloadException("msg")).when(partyInfoService).publishPayload(encodedPayload, publicKey);
+        recipientIndexer.run();
 
         transactionManager.resend(resendRequest);
 
-        verify(partyInfoService).publishPayload(encodedPayload, publicKey);
-        verify(partyInfoService).publishPayload(otherEncodedPayload, publicKey);
+        verify(partyInfoService).publishPayloads(Arrays.asList(encodedPayload, otherEncodedPayload), publicKey);
         verify(payloadEncoder, times(2)).decode(any(byte[].class));
         verify(payloadEncoder, times(2)).forRecipient(any(EncodedPayload.class), any(PublicKey.class));
-        verify(encryptedTransactionDAO).retrieveTransactions(anyInt(), anyInt());
-        verify(encryptedTransactionDAO, times(2)).transactionCount();
+        verify(encryptedTransactionDAO).retrieveUnindexedTransactions(isNull(), anyInt());
+        verify(encryptedTransactionDAO).retrieveTransactionsForRecipient(any(PublicKey.class), isNull(), anyInt());
     }
 
     @Test
-    public void resendAllTwoPayloadsAndTwoRecipientsAllThrowExceptionButAllStillPublished() {
-        EncryptedTransaction encryptedTransaction = mock(EncryptedTransaction.class);
-        EncryptedTransaction otherEncryptedTransaction = mock(EncryptedTransaction.class);
-        List<EncryptedTransaction> allDbTransactions = Arrays.asList(encryptedTransaction, otherEncryptedTransaction);
+    public void resendAllSplitsAPageThatIsOverTheBatchByteLimit() {
 
-        when(encryptedTransactionDAO.retrieveTransactions(anyInt(), anyInt())).thenReturn(allDbTransactions);
-        when(encryptedTransactionDAO.transactionCount()).thenReturn((long) allDbTransactions.size());
+        final RecipientIndexer indexer = new RecipientIndexer(payloadEncoder, encryptedTransactionDAO, 1000);
 
-        byte[] transactionBytes = "TRANSACTION".getBytes();
-        byte[] otherTransactionBytes = "OTHER_TRANSACTION".getBytes();
-        when(encryptedTransaction.getEncodedPayload()).thenReturn(transactionBytes);
-        when(otherEncryptedTransaction.getEncodedPayload()).thenReturn(otherTransactionBytes);
+        final TransactionManager byteLimitedTransactionManager =
+                new TransactionManagerImpl(
+                        Base64Decoder.create(),
+                        payloadEncoder,
+                        encryptedTransactionDAO,
+                        partyInfoService,
+                        enclave,
+                        encryptedRawTransactionDAO,
+                        resendManager,
+                        fanOutPublisher,
+                        outboxEntryDAO,
+                        payloadCache,
+                        groupCommitWriter,
+                        indexer,
+                        Runnable::run,
+                        false,
+                        1000,
+                        20);
 
-        EncodedPayload encodedPayload = mock(EncodedPayload.class);
-        EncodedPayload otherEncodedPayload = mock(EncodedPayload.class);
-        when(payloadEncoder.decode(transactionBytes)).thenReturn(encodedPayload);
-        when(payloadEncoder.decode(otherTransactionBytes)).thenReturn(otherEncodedPayload);
+        final PublicKey recipientKey = PublicKey.from("RECIPIENTKEY".getBytes());
+        final EncryptedTransaction first = new EncryptedTransaction(mock(MessageHash.class), new byte[10]);
+        final EncryptedTransaction second = new EncryptedTransaction(mock(MessageHash.class), new byte[10]);
+        final EncryptedTransaction third = new EncryptedTransaction(mock(MessageHash.class), new byte[10]);
+        final EncodedPayload payload = mock(EncodedPayload.class);
+        when(payload.getRecipientKeys()).thenReturn(singletonList(recipientKey));
 
-        byte[] publicKeyBytes = "PUBLICKEY".getBytes();
-        String publicKeyEncoded = Base64.getEncoder().encodeToString(publicKeyBytes);
-        PublicKey publicKey = PublicKey.from(publicKeyBytes);
-        when(encodedPayload.getRecipientKeys()).thenReturn(Collections.singletonList(publicKey));
-        when(otherEncodedPayload.getRecipientKeys()).thenReturn(Collections.singletonList(publicKey));
+        when(encryptedTransactionDAO.retrieveTransactionsForRecipient(recipientKey, null, 1000))
+                .thenReturn(Arrays.asList(first, second, third));
+        when(payloadEncoder.decode(any(byte[].class))).thenReturn(payload);
+        when(payloadEncoder.forRecipient(payload, recipientKey)).thenReturn(payload);
 
-        when(payloadEncoder.forRecipient(encodedPayload, publicKey)).thenReturn(encodedPayload);
-        when(payloadEncoder.forRecipient(otherEncodedPayload, publicKey)).thenReturn(otherEncodedPayload);
+        final ResendRequest resendRequest = new ResendRequest();
+        resendRequest.setPublicKey(recipientKey.encodeToBase64());
+        resendRequest.setType(ResendRequestType.ALL);
 
-        ResendRequest resendRequest = mock(ResendRequest.class);
-        when(resendRequest.getPublicKey()).thenReturn(publicKeyEncoded);
-        when(resendRequest.getType()).thenReturn(ResendRequestType.ALL);
+        indexer.run();
 
-        doThrow(new PublishPayloadException("msg")).when(partyInfoService).publishPayload(encodedPayload, publicKey);
+        byteLimitedTransactionManager.resend(resendRequest);
+
+        verify(partyInfoService).publishPayloads(Arrays.asList(payload, payload), recipientKey);
+        verify(partyInfoService).publishPayloads(singletonList(payload), recipientKey);
+        verify(payloadEncoder, times(3)).decode(any(byte[].class));
+        verify(payloadEncoder, times(3)).forRecipient(payload, recipientKey);
+        verify(encryptedTransactionDAO).retrieveUnindexedTransactions(null, 1000);
+        verify(encryptedTransactionDAO).retrieveTransactionsForRecipient(recipientKey, null, 1000);
+    }
+
+    @Test
+    public void resendAllIfOnePageFailsThenTheNextPageIsStillPublished() {
+
+        final RecipientIndexer indexer = new RecipientIndexer(payloadEncoder, encryptedTransactionDAO, 1);
+
+        final TransactionManager pagingTransactionManager =
+                new TransactionManagerImpl(
+                        Base64Decoder.create(),
+                        payloadEncoder,
+                        encryptedTransactionDAO,
+                        partyInfoService,
+                        enclave,
+                        encryptedRawTransactionDAO,
+                        resendManager,
+                        fanOutPublisher,
+                        outboxEntryDAO,
+                        payloadCache,
+                        groupCommitWriter,
+                        indexer,
+                        Runnable::run,
+                        false,
+                        1,
+                        Long.MAX_VALUE);
+
+        final PublicKey recipientKey = PublicKey.from("RECIPIENTKEY".getBytes());
+        final EncryptedTransaction first = new EncryptedTransaction(mock(MessageHash.class), "FIRST".getBytes());
+        final EncryptedTransaction second = new EncryptedTransaction(mock(MessageHash.class), "SECOND".getBytes());
+        final EncodedPayload firstPayload = mock(EncodedPayload.class);
+        final EncodedPayload secondPayload = mock(EncodedPayload.class);
+        when(firstPayload.getRecipientKeys()).thenReturn(singletonList(recipientKey));
+        when(secondPayload.getRecipientKeys()).thenReturn(singletonList(recipientKey));
+
+        when(encryptedTransactionDAO.retrieveTransactionsForRecipient(recipientKey, null, 1))
+                .thenReturn(singletonList(first));
+        when(encryptedTransactionDAO.retrieveTransactionsForRecipient(recipientKey, first, 1))
+                .thenReturn(singletonList(second));
+        when(payloadEncoder.decode("FIRST".getBytes())).thenReturn(firstPayload);
+        when(payloadEncoder.decode("SECOND".getBytes())).thenReturn(secondPayload);
+        when(payloadEncoder.forRecipient(firstPayload, recipientKey)).thenReturn(firstPayload);
+        when(payloadEncoder.forRecipient(secondPayload, recipientKey)).thenReturn(secondPayload);
 
         doThrow(new PublishPayloadException("msg"))
                 .when(partyInfoService)
-                .publishPayload(otherEncodedPayload, publicKey);
+                .publishPayloads(singletonList(firstPayload), recipientKey);
 
-        transactionManager.resend(resendRequest);
+        final ResendRequest resendRequest = new ResendRequest();
+        resendRequest.setPublicKey(recipientKey.encodeToBase64());
+        resendRequest.setType(ResendRequestType.ALL);
 
-        verify(encryptedTransactionDAO).retrieveTransactions(anyInt(), anyInt());
-        verify(encryptedTransactionDAO, times(2)).transactionCount();
-        verify(partyInfoService).publishPayload(encodedPayload, publicKey);
-        verify(partyInfoService).publishPayload(otherEncodedPayload, publicKey);
-        verify(payloadEncoder, times(2)).decode(any(byte[].class));
-        verify(payloadEncoder, times(2)).forRecipient(any(EncodedPayload.class), any(PublicKey.class));
-        verify(partyInfoService, times(2)).publishPayload(any(EncodedPayload.class), any(PublicKey.class));
+        indexer.run();
+
+        pagingTransactionManager.resend(resendRequest);
+
+        verify(encryptedTransactionDAO).retrieveUnindexedTransactions(null, 1);
+        verify(encryptedTransactionDAO).retrieveTransactionsForRecipient(recipientKey, null, 1);
+        verify(encryptedTransactionDAO).retrieveTransactionsForRecipient(recipientKey, first, 1);
+        verify(encryptedTransactionDAO).retrieveTransactionsForRecipient(recipientKey, second, 1);
+        verify(payloadEncoder).decode("FIRST".getBytes());
+        verify(payloadEncoder).decode("SECOND".getBytes());
+        verify(payloadEncoder).forRecipient(firstPayload, recipientKey);
+        verify(payloadEncoder).forRecipient(secondPayload, recipientKey);
+        verify(partyInfoService).publishPayloads(singletonList(firstPayload), recipientKey);
+        verify(partyInfoService).publishPayloads(singletonList(secondPayload), recipientKey);
+    }
+
+    @Test
+    public void resendAllSeeksPastTheLastTransactionOfEachPage() {
+
+        final RecipientIndexer indexer = new RecipientIndexer(payloadEncoder, encryptedTransactionDAO, 1);
+
+        final TransactionManager pagingTransactionManager =
+                new TransactionManagerImpl(
+                        Base64Decoder.create(),
+                        payloadEncoder,
+                        encryptedTransactionDAO,
+                        partyInfoService,
+                        enclave,
+                        encryptedRawTransactionDAO,
+                        resendManager,
+                        fanOutPublisher,
+                        outboxEntryDAO,
+                        payloadCache,
+                        groupCommitWriter,
+                        indexer,
+                        Runnable::run,
+                        false,
+                        1,
+                        Long.MAX_VALUE);
+
+        final PublicKey recipientKey = PublicKey.from("RECIPIENTKEY".getBytes());
+        final EncryptedTransaction first = new EncryptedTransaction(mock(MessageHash.class), "FIRST".getBytes());
+        final EncryptedTransaction second = new EncryptedTransaction(mock(MessageHash.class), "SECOND".getBytes());
+        final EncodedPayload payload = mock(EncodedPayload.class);
+        when(payload.getRecipientKeys()).thenReturn(singletonList(recipientKey));
+
+        when(encryptedTransactionDAO.retrieveTransactionsForRecipient(recipientKey, null, 1))
+                .thenReturn(singletonList(first));
+        when(encryptedTransactionDAO.retrieveTransactionsForRecipient(recipientKey, first, 1))
+                .thenReturn(singletonList(second));
+        when(encryptedTransactionDAO.retrieveTransactionsForRecipient(recipientKey, second, 1)).thenReturn(emptyList());
+        when(payloadEncoder.decode(any(byte[].class))).thenReturn(payload);
+        when(payloadEncoder.forRecipient(payload, recipientKey)).thenReturn(payload);
+
+        final ResendRequest resendRequest = new ResendRequest();
+        resendRequest.setPublicKey(recipientKey.encodeToBase64());
+        resendRequest.setType(ResendRequestType.ALL);
+
+        indexer.run();
+
+        pagingTransactionManager.resend(resendRequest);
+
+        verify(encryptedTransactionDAO).retrieveUnindexedTransactions(null, 1);
+        verify(encryptedTransactionDAO).retrieveTransactionsForRecipient(recipientKey, null, 1);
+        verify(encryptedTransactionDAO).retrieveTransactionsForRecipient(recipientKey, first, 1);
+        verify(encryptedTransactionDAO).retrieveTransactionsForRecipient(recipientKey, second, 1);
+        verify(payloadEncoder).decode("FIRST".getBytes());
+        verify(payloadEncoder).decode("SECOND".getBytes());
+        verify(payloadEncoder, times(2)).forRecipient(payload, recipientKey);
+        verify(partyInfoService, times(2)).publishPayloads(singletonList(payload), recipientKey);
+    }
+
+    @Test
+    public void resendAllFailsWhileTransactionsAreStillBeingIndexed() {
+
+        final PublicKey recipientKey = PublicKey.from("RECIPIENTKEY".getBytes());
+
+        final ResendRequest resendRequest = new ResendRequest();
+        resendRequest.setPublicKey(recipientKey.encodeToBase64());
+        resendRequest.setType(ResendRequestType.ALL);
+
+        final Throwable throwable = catchThrowable(() -> transactionManager.resend(resendRequest));
+
+        assertThat(throwable).isInstanceOf(RecipientIndexIncompleteException.class);
     }
 
     @Test
@@ -641,7 +1093,8 @@ public class TransactionManagerTest {
     public void resendIndividualAsSender() {
 
         final byte[] encodedPayloadData = "getRecipientKeys".getBytes();
-        final EncryptedTransaction encryptedTransaction = new EncryptedTransaction(null, encodedPayloadData);
+        final EncryptedTransaction encryptedTransaction =
+                new EncryptedTransaction(new MessageHash("KEY".getBytes()), encodedPayloadData);
 
         byte[] encodedOutcome = "SUCCESS".getBytes();
         PublicKey senderKey = PublicKey.from("PUBLICKEY".getBytes());
@@ -674,7 +1127,8 @@ public class TransactionManagerTest {
 
         final ArgumentCaptor<EncodedPayload> captor = ArgumentCaptor.forClass(EncodedPayload.class);
 
-        verify(encryptedTransactionDAO).retrieveByHash(any(MessageHash.class));
+        verify(encryptedTransactionDAO, times(2)).retrieveByHash(any(MessageHash.class));
+        verify(encryptedTransactionDAO).update(encryptedTransaction);
         verify(payloadEncoder).decode(encodedPayloadData);
         verify(payloadEncoder).encode(captor.capture());
         verify(enclave).getPublicKeys();
@@ -700,16 +1154,13 @@ public class TransactionManagerTest {
 
         when(payloadEncoder.decode(any(byte[].class))).thenReturn(payload);
 
-        when(encryptedTransactionDAO.retrieveByHash(any(MessageHash.class)))
+        when(encryptedTransactionDAO.retrieveByHashForRead(any(MessageHash.class)))
                 .thenReturn(Optional.of(encryptedTransaction));
 
         byte[] expectedOutcome = "Encrypted payload".getBytes();
 
         when(enclave.unencryptTransaction(any(EncodedPayload.class), any(PublicKey.class))).thenReturn(expectedOutcome);
 
-        PublicKey publicKey = mock(PublicKey.class);
-        when(enclave.getPublicKeys()).thenReturn(Collections.singleton(publicKey));
-
         ReceiveResponse receiveResponse = transactionManager.receive(receiveRequest);
 
         assertThat(receiveResponse).isNotNull();
@@ -717,9 +1168,246 @@ public class TransactionManagerTest {
         assertThat(receiveResponse.getPayload()).isEqualTo(expectedOutcome);
 
         verify(payloadEncoder).decode(any(byte[].class));
+        verify(encryptedTransactionDAO).retrieveByHashForRead(any(MessageHash.class));
+        verify(enclave).unencryptTransaction(payload, PublicKey.from("recipient".getBytes()));
+    }
+
+    @Test
+    public void receiveUsesRecordedRecipientKey() {
+
+        byte[] keyData = Base64.getEncoder().encode("KEY".getBytes());
+
+        ReceiveRequest receiveRequest = new ReceiveRequest();
+        receiveRequest.setKey(new String(keyData));
+
+        PublicKey recordedKey = PublicKey.from("RECORDED".getBytes());
+        EncryptedTransaction encryptedTransaction =
+                new EncryptedTransaction(new MessageHash(keyData), keyData, recordedKey.getKeyBytes());
+
+        EncodedPayload payload = mock(EncodedPayload.class);
+        when(payloadEncoder.decode(any(byte[].class))).thenReturn(payload);
+        when(encryptedTransactionDAO.retrieveByHashForRead(any(MessageHash.class)))
+                .thenReturn(Optional.of(encryptedTransaction));
+
+        byte[] expectedOutcome = "Encrypted payload".getBytes();
+        when(enclave.unencryptTransaction(payload, recordedKey)).thenReturn(expectedOutcome);
+
+        ReceiveResponse receiveResponse = transactionManager.receive(receiveRequest);
+
+        assertThat(receiveResponse.getPayload()).isEqualTo(expectedOutcome);
+
+        verify(payloadEncoder).decode(any(byte[].class));
+        verify(encryptedTransactionDAO).retrieveByHashForRead(any(MessageHash.class));
+        verify(enclave).unencryptTransaction(payload, recordedKey);
+        verify(payloadCache, never()).put(any());
+    }
+
+    @Test
+    public void receiveServesCachedTransactionWithoutDatabaseLookup() {
+
+        byte[] keyData = Base64.getEncoder().encode("KEY".getBytes());
+        MessageHash messageHash = new MessageHash("KEY".getBytes());
+
+        ReceiveRequest receiveRequest = new ReceiveRequest();
+        receiveRequest.setKey(new String(keyData));
+
+        PublicKey recordedKey = PublicKey.from("RECORDED".getBytes());
+        EncryptedTransaction cachedTransaction =
+                new EncryptedTransaction(messageHash, keyData, recordedKey.getKeyBytes());
+        when(payloadCache.get(messageHash)).thenReturn(Optional.of(cachedTransaction));
+
+        EncodedPayload payload = mock(EncodedPayload.class);
+        when(payloadEncoder.decode(keyData)).thenReturn(payload);
+
+        byte[] expectedOutcome = "Encrypted payload".getBytes();
+        when(enclave.unencryptTransaction(payload, recordedKey)).thenReturn(expectedOutcome);
+
+        ReceiveResponse receiveResponse = transactionManager.receive(receiveRequest);
+
+        assertThat(receiveResponse.getPayload()).isEqualTo(expectedOutcome);
+
+        verify(payloadCache).get(messageHash);
+        verify(payloadEncoder).decode(keyData);
+        verify(enclave).unencryptTransaction(payload, recordedKey);
+        verifyNoMoreInteractions(payloadCache);
+    }
+
+    @Test
+    public void receiveWithoutRecordedKeySearchesAndRecordsIt() {
+
+        byte[] keyData = Base64.getEncoder().encode("KEY".getBytes());
+
+        ReceiveRequest receiveRequest = new ReceiveRequest();
+        receiveRequest.setKey(new String(keyData));
+
+        EncryptedTransaction readTransaction = new EncryptedTransaction(new MessageHash(keyData), keyData);
+        EncryptedTransaction storedTransaction = new EncryptedTransaction(new MessageHash(keyData), keyData);
+
+        EncodedPayload payload = mock(EncodedPayload.class);
+        when(payloadEncoder.decode(any(byte[].class))).thenReturn(payload);
+        when(encryptedTransactionDAO.retrieveByHashForRead(any(MessageHash.class)))
+                .thenReturn(Optional.of(readTransaction));
+        when(encryptedTransactionDAO.retrieveByHash(any(MessageHash.class))).thenReturn(Optional.of(storedTransaction));
+
+        PublicKey localKey = PublicKey.from("LOCAL".getBytes());
+        when(enclave.getPublicKeys()).thenReturn(singleton(localKey));
+        when(enclave.unencryptTransaction(payload, localKey)).thenReturn("Encrypted payload".getBytes());
+
+        transactionManager.receive(receiveRequest);
+
+        assertThat(storedTransaction.getRecipientKey()).isEqualTo(localKey.getKeyBytes());
+        assertThat(readTransaction.getRecipientKey()).isNull();
+
+        verify(payloadEncoder).decode(any(byte[].class));
+        verify(encryptedTransactionDAO).retrieveByHashForRead(any(MessageHash.class));
         verify(encryptedTransactionDAO).retrieveByHash(any(MessageHash.class));
-        verify(enclave, times(2)).unencryptTransaction(any(EncodedPayload.class), any(PublicKey.class));
+        verify(encryptedTransactionDAO).update(storedTransaction);
         verify(enclave).getPublicKeys();
+        verify(enclave, times(2)).unencryptTransaction(payload, localKey);
+    }
+
+    @Test
+    public void receiveBatchDecryptsCachedAndStoredTransactionsAndMarksMissingOnes() {
+
+        final MessageHash cachedHash = new MessageHash("CACHED".getBytes());
+        final MessageHash storedHash = new MessageHash("STORED".getBytes());
+        final MessageHash missingHash = new MessageHash("MISSING".getBytes());
+        final List<String> keys =
+                Stream.of("CACHED", "STORED", "MISSING", "CACHED")
+                        .map(key -> Base64.getEncoder().encodeToString(key.getBytes()))
+                        .collect(Collectors.toList());
+
+        final ReceiveBatchRequest receiveBatchRequest = new ReceiveBatchRequest();
+        receiveBatchRequest.setKeys(keys);
+
+        final PublicKey recordedKey = PublicKey.from("RECORDED".getBytes());
+        final EncryptedTransaction cachedTransaction =
+                new EncryptedTransaction(cachedHash, "CACHED_PAYLOAD".getBytes(), recordedKey.getKeyBytes());
+        final EncryptedTransaction storedTransaction =
+                new EncryptedTransaction(storedHash, "STORED_PAYLOAD".getBytes(), recordedKey.getKeyBytes());
+        final Set<MessageHash> uncached = new HashSet<>(Arrays.asList(storedHash, missingHash));
+
+        when(payloadCache.get(cachedHash)).thenReturn(Optional.of(cachedTransaction));
+        when(encryptedTransactionDAO.retrieveByHashesForRead(uncached)).thenReturn(singletonList(storedTransaction));
+
+        final EncodedPayload cachedPayload = mock(EncodedPayload.class);
+        final EncodedPayload storedPayload = mock(EncodedPayload.class);
+        when(payloadEncoder.decode("CACHED_PAYLOAD".getBytes())).thenReturn(cachedPayload);
+        when(payloadEncoder.decode("STORED_PAYLOAD".getBytes())).thenReturn(storedPayload);
+        when(enclave.unencryptTransaction(cachedPayload, recordedKey)).thenReturn("FIRST".getBytes());
+        when(enclave.unencryptTransaction(storedPayload, recordedKey)).thenReturn("SECOND".getBytes());
+
+        final ReceiveBatchResponse response = transactionManager.receiveBatch(receiveBatchRequest);
+
+        assertThat(response.getPayloads()).extracting(ReceiveBatchEntry::getKey).containsExactlyElementsOf(keys);
+        assertThat(response.getPayloads())
+                .extracting(ReceiveBatchEntry::isFound)
+                .containsExactly(true, true, false, true);
+        assertThat(response.getPayloads())
+                .extracting(ReceiveBatchEntry::getPayload)
+                .containsExactly("FIRST".getBytes(), "SECOND".getBytes(), null, "FIRST".getBytes());
+
+        verify(encryptedTransactionDAO).retrieveByHashesForRead(uncached);
+        verify(payloadEncoder).decode("CACHED_PAYLOAD".getBytes());
+        verify(payloadEncoder).decode("STORED_PAYLOAD".getBytes());
+        verify(enclave).unencryptTransaction(cachedPayload, recordedKey);
+        verify(enclave).unencryptTransaction(storedPayload, recordedKey);
+        verify(payloadCache, never()).put(any());
+    }
+
+    @Test
+    public void receiveBatchRecordsFoundRecipientKeysOnTheCallingThread() throws Exception {
+
+        final TransactionManager threadedTransactionManager =
+                new TransactionManagerImpl(
+                        Base64Decoder.create(),
+                        payloadEncoder,
+                        encryptedTransactionDAO,
+                        partyInfoService,
+                        enclave,
+                        encryptedRawTransactionDAO,
+                        resendManager,
+                        fanOutPublisher,
+                        outboxEntryDAO,
+                        payloadCache,
+                        groupCommitWriter,
+                        new RecipientIndexer(payloadEncoder, encryptedTransactionDAO, 1000),
+                        runnable -> {
+                            final Thread thread = new Thread(runnable);
+                            thread.start();
+                            try {
+                                thread.join();
+                            } catch (final InterruptedException ex) {
+                                throw new IllegalStateException(ex);
+                            }
+                        },
+                        false,
+                        1000,
+                        Long.MAX_VALUE);
+
+        final MessageHash hash = new MessageHash("STORED".getBytes());
+        final PublicKey localKey = PublicKey.from("LOCAL".getBytes());
+
+        final ReceiveBatchRequest receiveBatchRequest = new ReceiveBatchRequest();
+        receiveBatchRequest.setKeys(singletonList(Base64.getEncoder().encodeToString("STORED".getBytes())));
+
+        final List<Thread> recordedOn = new ArrayList<>();
+        final EncryptedTransaction storedTransaction = spy(new EncryptedTransaction(hash, "PAYLOAD".getBytes()));
+        doAnswer(
+                        invocation -> {
+                            recordedOn.add(Thread.currentThread());
+                            return invocation.callRealMethod();
+                        })
+                .when(storedTransaction)
+                .setRecipientKey(any());
+
+        final EncodedPayload payload = mock(EncodedPayload.class);
+        when(encryptedTransactionDAO.retrieveByHashesForRead(singleton(hash)))
+                .thenReturn(singletonList(new EncryptedTransaction(hash, "PAYLOAD".getBytes())));
+        when(encryptedTransactionDAO.retrieveByHash(hash)).thenReturn(Optional.of(storedTransaction));
+        when(payloadEncoder.decode("PAYLOAD".getBytes())).thenReturn(payload);
+        when(enclave.getPublicKeys()).thenReturn(singleton(localKey));
+        when(enclave.unencryptTransaction(payload, localKey)).thenReturn("DECRYPTED".getBytes());
+
+        final ReceiveBatchResponse response = threadedTransactionManager.receiveBatch(receiveBatchRequest);
+
+        assertThat(response.getPayloads())
+                .extracting(ReceiveBatchEntry::getPayload)
+                .containsExactly("DECRYPTED".getBytes());
+        assertThat(storedTransaction.getRecipientKey()).isEqualTo(localKey.getKeyBytes());
+        assertThat(recordedOn).containsExactly(Thread.currentThread());
+
+        verify(encryptedTransactionDAO).retrieveByHashesForRead(singleton(hash));
+        verify(encryptedTransactionDAO).retrieveByHash(hash);
+        verify(encryptedTransactionDAO).update(storedTransaction);
+        verify(payloadEncoder).decode("PAYLOAD".getBytes());
+        verify(enclave).getPublicKeys();
+        verify(enclave, times(2)).unencryptTransaction(payload, localKey);
+    }
+
+    @Test
+    public void receiveBatchRethrowsDecryptionFailures() {
+
+        final MessageHash hash = new MessageHash("STORED".getBytes());
+        final PublicKey recipient = PublicKey.from("RECIPIENT".getBytes());
+
+        final ReceiveBatchRequest receiveBatchRequest = new ReceiveBatchRequest();
+        receiveBatchRequest.setKeys(singletonList(Base64.getEncoder().encodeToString("STORED".getBytes())));
+        receiveBatchRequest.setTo(recipient.encodeToBase64());
+
+        final EncodedPayload payload = mock(EncodedPayload.class);
+        when(encryptedTransactionDAO.retrieveByHashesForRead(singleton(hash)))
+                .thenReturn(singletonList(new EncryptedTransaction(hash, "PAYLOAD".getBytes())));
+        when(payloadEncoder.decode("PAYLOAD".getBytes())).thenReturn(payload);
+        when(enclave.unencryptTransaction(payload, recipient)).thenThrow(new IllegalStateException("Cannot decrypt"));
+
+        final Throwable throwable = catchThrowable(() -> transactionManager.receiveBatch(receiveBatchRequest));
+
+        assertThat(throwable).isInstanceOf(IllegalStateException.class).hasMessage("Cannot decrypt");
+
+        verify(encryptedTransactionDAO).retrieveByHashesForRead(singleton(hash));
+        verify(payloadEncoder).decode("PAYLOAD".getBytes());
+        verify(enclave).unencryptTransaction(payload, recipient);
     }
 
     @Test
@@ -736,18 +1424,18 @@ public class TransactionManagerTest {
 
         when(payloadEncoder.decode(any(byte[].class))).thenReturn(payload);
 
-        when(encryptedTransactionDAO.retrieveByHash(any(MessageHash.class))).thenReturn(Optional.empty());
+        when(encryptedTransactionDAO.retrieveByHashForRead(any(MessageHash.class))).thenReturn(Optional.empty());
 
         try {
             transactionManager.receive(receiveRequest);
             failBecauseExceptionWasNotThrown(TransactionNotFoundException.class);
         } catch (TransactionNotFoundException ex) {
-            verify(encryptedTransactionDAO).retrieveByHash(any(MessageHash.class));
+            verify(encryptedTransactionDAO).retrieveByHashForRead(any(MessageHash.class));
         }
     }
 
     @Test
-    public void receiveNoRecipientKeyFound() {
+    public void receiveWithGivenRecipientThatCannotDecryptThrowsError() {
 
         byte[] keyData = Base64.getEncoder().encode("KEY".getBytes());
         String recipient = Base64.getEncoder().encodeToString("recipient".getBytes());
@@ -764,24 +1452,19 @@ public class TransactionManagerTest {
 
         when(payloadEncoder.decode(any(byte[].class))).thenReturn(payload);
 
-        when(encryptedTransactionDAO.retrieveByHash(any(MessageHash.class)))
+        when(encryptedTransactionDAO.retrieveByHashForRead(any(MessageHash.class)))
                 .thenReturn(Optional.of(encryptedTransaction));
 
-        PublicKey publicKey = mock(PublicKey.class);
-        when(enclave.getPublicKeys()).thenReturn(Collections.singleton(publicKey));
-
         when(enclave.unencryptTransaction(any(EncodedPayload.class), any(PublicKey.class)))
                 .thenThrow(EncryptorException.class);
 
-        try {
-            transactionManager.receive(receiveRequest);
-            failBecauseExceptionWasNotThrown(NoRecipientKeyFoundException.class);
-        } catch (NoRecipientKeyFoundException ex) {
-            verify(encryptedTransactionDAO).retrieveByHash(any(MessageHash.class));
-            verify(enclave).getPublicKeys();
-            verify(enclave).unencryptTransaction(any(EncodedPayload.class), any(PublicKey.class));
-            verify(payloadEncoder).decode(any(byte[].class));
-        }
+        final Throwable throwable = catchThrowable(() -> transactionManager.receive(receiveRequest));
+
+        assertThat(throwable).isInstanceOf(EncryptorException.class);
+
+        verify(encryptedTransactionDAO).retrieveByHashForRead(any(MessageHash.class));
+        verify(enclave).unencryptTransaction(any(EncodedPayload.class), any(PublicKey.class));
+        verify(payloadEncoder).decode(any(byte[].class));
     }
 
     @Test
@@ -802,7 +1485,7 @@ public class TransactionManagerTest {
 
         when(payloadEncoder.decode(any(byte[].class))).thenReturn(payload).thenReturn(null);
 
-        when(encryptedTransactionDAO.retrieveByHash(any(MessageHash.class)))
+        when(encryptedTransactionDAO.retrieveByHashForRead(any(MessageHash.class)))
                 .thenReturn(Optional.of(encryptedTransaction));
 
         byte[] expectedOutcome = "Encrypted payload".getBytes();
@@ -816,7 +1499,7 @@ public class TransactionManagerTest {
 
         assertThat(throwable).isInstanceOf(IllegalStateException.class);
 
-        verify(encryptedTransactionDAO).retrieveByHash(any(MessageHash.class));
+        verify(encryptedTransactionDAO).retrieveByHashForRead(any(MessageHash.class));
     }
 
     @Test
@@ -834,7 +1517,7 @@ public class TransactionManagerTest {
 
         when(payloadEncoder.decode(any(byte[].class))).thenReturn(payload);
 
-        when(encryptedTransactionDAO.retrieveByHash(any(MessageHash.class)))
+        when(encryptedTransactionDAO.retrieveByHashForRead(any(MessageHash.class)))
                 .thenReturn(Optional.of(encryptedTransaction));
 
         PublicKey publicKey = mock(PublicKey.class);
@@ -847,7 +1530,7 @@ public class TransactionManagerTest {
             transactionManager.receive(receiveRequest);
             failBecauseExceptionWasNotThrown(NoRecipientKeyFoundException.class);
         } catch (NoRecipientKeyFoundException ex) {
-            verify(encryptedTransactionDAO).retrieveByHash(any(MessageHash.class));
+            verify(encryptedTransactionDAO).retrieveByHashForRead(any(MessageHash.class));
             verify(enclave).getPublicKeys();
             verify(enclave).unencryptTransaction(any(EncodedPayload.class), any(PublicKey.class));
             verify(payloadEncoder).decode(any(byte[].class));
@@ -869,7 +1552,7 @@ public class TransactionManagerTest {
 
         when(payloadEncoder.decode(any(byte[].class))).thenReturn(payload);
 
-        when(encryptedTransactionDAO.retrieveByHash(any(MessageHash.class)))
+        when(encryptedTransactionDAO.retrieveByHashForRead(any(MessageHash.class)))
                 .thenReturn(Optional.of(encryptedTransaction));
 
         PublicKey publicKey = mock(PublicKey.class);
@@ -882,7 +1565,7 @@ public class TransactionManagerTest {
             transactionManager.receive(receiveRequest);
             failBecauseExceptionWasNotThrown(NoRecipientKeyFoundException.class);
         } catch (NoRecipientKeyFoundException ex) {
-            verify(encryptedTransactionDAO).retrieveByHash(any(MessageHash.class));
+            verify(encryptedTransactionDAO).retrieveByHashForRead(any(MessageHash.class));
             verify(enclave).getPublicKeys();
             verify(enclave).unencryptTransaction(any(EncodedPayload.class), any(PublicKey.class));
             verify(payloadEncoder).decode(any(byte[].class));
@@ -982,7 +1665,15 @@ public class TransactionManagerTest {
                         encryptedRawTransactionDAO,
                         resendManager,
                         partyInfoService,
-                        1000);
+                        fanOutPublisher,
+                        outboxEntryDAO,
+                        payloadCache,
+                        groupCommitWriter,
+                        new RecipientIndexer(payloadEncoder, encryptedTransactionDAO, 1000),
+                        Runnable::run,
+                        false,
+                        1000,
+                        Long.MAX_VALUE);
 
         assertThat(tm).isNotNull();
     }
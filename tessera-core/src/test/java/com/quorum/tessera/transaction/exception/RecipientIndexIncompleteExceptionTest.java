@@ -0,0 +1,17 @@
+package com.quorum.tessera.transaction.exception;
+
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class RecipientIndexIncompleteExceptionTest {
+
+    @Test
+    public void constructWithMessage() {
+        final String message = "Still indexing";
+
+        final RecipientIndexIncompleteException exception = new RecipientIndexIncompleteException(message);
+
+        assertThat(exception.getMessage()).isEqualTo(message);
+    }
+}
@@ -0,0 +1,152 @@
+package com.quorum.tessera.data;
+
+import com.quorum.tessera.encryption.PublicKey;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.PostConstruct;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * An {@link EncryptedTransactionDAO} that keeps a running count of the stored transactions, so that counting them does
+ * not scan the whole table
+ *
+ * <p>The count is read from the database once at startup, and is then adjusted for every transaction saved or deleted
+ * through this DAO once the transaction it was made in has committed, so neither a write that fails nor one that is
+ * rolled back by an enclosing transaction is counted. Anything written to the database by something other than this
+ * DAO, such as another node sharing the database, is not counted either, and the count is corrected the next time the
+ * node starts.
+ */
+public class CountingEncryptedTransactionDAO implements EncryptedTransactionDAO, EncryptedTransactionCounterMXBean {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(CountingEncryptedTransactionDAO.class);
+
+    private final EncryptedTransactionDAO delegate;
+
+    private final LongAdder count = new LongAdder();
+
+    private volatile boolean seeded;
+
+    public CountingEncryptedTransactionDAO(final EncryptedTransactionDAO delegate) {
+        this.delegate = Objects.requireNonNull(delegate);
+    }
+
+    /** Seeds the count from the database */
+    @PostConstruct
+    public synchronized void init() {
+        if (seeded) {
+            return;
+        }
+
+        count.add(delegate.transactionCount());
+        this.seeded = true;
+
+        LOGGER.info("Counted {} stored transactions", count.sum());
+    }
+
+    @Override
+    public EncryptedTransaction save(final EncryptedTransaction entity) {
+        final EncryptedTransaction saved = delegate.save(entity);
+        this.adjustOnCommit(1);
+        return saved;
+    }
+
+    @Override
+    public List<EncryptedTransaction> saveAll(final List<EncryptedTransaction> entities) {
+        final List<EncryptedTransaction> saved = delegate.saveAll(entities);
+        this.adjustOnCommit(entities.size());
+        return saved;
+    }
+
+    @Override
+    public EncryptedTransaction update(final EncryptedTransaction entity) {
+        return delegate.update(entity);
+    }
+
+    @Override
+    public Optional<EncryptedTransaction> retrieveByHash(final MessageHash hash) {
+        return delegate.retrieveByHash(hash);
+    }
+
+    @Override
+    public List<EncryptedTransaction> retrieveByHashes(final Collection<MessageHash> hashes) {
+        return delegate.retrieveByHashes(hashes);
+    }
+
+    @Override
+    public Optional<EncryptedTransaction> retrieveByHashForRead(final MessageHash hash) {
+        return delegate.retrieveByHashForRead(hash);
+    }
+
+    @Override
+    public List<EncryptedTransaction> retrieveByHashesForRead(final Collection<MessageHash> hashes) {
+        return delegate.retrieveByHashesForRead(hashes);
+    }
+
+    @Override
+    public List<EncryptedTransaction> retrieveTransactions(final int offset, final int maxResult) {
+        return delegate.retrieveTransactions(offset, maxResult);
+    }
+
+    @Override
+    public void saveRecipients(final EncryptedTransaction transaction, final Collection<PublicKey> recipients) {
+        delegate.saveRecipients(transaction, recipients);
+    }
+
+    @Override
+    public List<PublicKey> retrieveRecipients(final MessageHash hash) {
+        return delegate.retrieveRecipients(hash);
+    }
+
+    @Override
+    public void saveAllWithRecipients(final Map<EncryptedTransaction, ? extends Collection<PublicKey>> transactions) {
+        delegate.saveAllWithRecipients(transactions);
+        this.adjustOnCommit(transactions.size());
+    }
+
+    @Override
+    public List<EncryptedTransaction> retrieveTransactionsForRecipient(
+            final PublicKey recipient, final EncryptedTransaction after, final int maxResult) {
+        return delegate.retrieveTransactionsForRecipient(recipient, after, maxResult);
+    }
+
+    @Override
+    public List<EncryptedTransaction> retrieveUnindexedTransactions(
+            final EncryptedTransaction after, final int maxResult) {
+        return delegate.retrieveUnindexedTransactions(after, maxResult);
+    }
+
+    @Override
+    public List<MessageHash> retrieveHashes(final MessageHash after, final int maxResult) {
+        return delegate.retrieveHashes(after, maxResult);
+    }
+
+    @Override
+    public long transactionCount() {
+        if (!seeded) {
+            this.init();
+        }
+        return count.sum();
+    }
+
+    @Override
+    public long getTransactionCount() {
+        return this.transactionCount();
+    }
+
+    @Override
+    public void delete(final MessageHash hash) {
+        delegate.delete(hash);
+        this.adjustOnCommit(-1);
+    }
+
+    /** Adjusts the count once the transaction making the change has committed, so a rolled back write is not counted */
+    private void adjustOnCommit(final long change) {
+        TransactionCallbacks.afterCommit(() -> count.add(change));
+    }
+}
@@ -0,0 +1,122 @@
+package com.quorum.tessera.data;
+
+import com.quorum.tessera.data.LogStructuredStore.Change;
+import com.quorum.tessera.data.LogStructuredStore.Value;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.persistence.EntityExistsException;
+import javax.persistence.EntityNotFoundException;
+import java.nio.ByteBuffer;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.stream.Collectors;
+
+/** An implementation of {@link EncryptedRawTransactionDAO} backed by a {@link LogStructuredStore} */
+public class EmbeddedEncryptedRawTransactionDAO implements EncryptedRawTransactionDAO {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(EmbeddedEncryptedRawTransactionDAO.class);
+
+    static final byte RAW_TRANSACTIONS = 3;
+
+    private final LogStructuredStore store;
+
+    public EmbeddedEncryptedRawTransactionDAO(final LogStructuredStore store) {
+        this.store = Objects.requireNonNull(store);
+    }
+
+    @Override
+    public synchronized EncryptedRawTransaction save(final EncryptedRawTransaction entity) {
+        if (store.contains(RAW_TRANSACTIONS, entity.getHash().getHashBytes())) {
+            throw new EntityExistsException("Raw transaction " + entity.getHash() + " is already stored");
+        }
+
+        entity.onPersist();
+        this.restore(Collections.singletonList(entity));
+
+        LOGGER.debug("Stored EncryptedRawTransaction with hash {}", entity.getHash());
+        return entity;
+    }
+
+    /**
+     * Writes raw transactions as they are, keeping their timestamps and replacing any already stored under the same
+     * hash, for loading transactions copied from another store
+     */
+    void restore(final List<EncryptedRawTransaction> entities) {
+        store.write(
+                entities.stream()
+                        .map(
+                                entity ->
+                                        Change.put(
+                                                RAW_TRANSACTIONS,
+                                                entity.getHash().getHashBytes(),
+                                                entity.getTimestamp(),
+                                                encode(entity)))
+                        .collect(Collectors.toList()));
+    }
+
+    @Override
+    public Optional<EncryptedRawTransaction> retrieveByHash(final MessageHash hash) {
+        LOGGER.info("Retrieving payload with hash {}", hash);
+        return store.get(RAW_TRANSACTIONS, hash.getHashBytes()).map(EmbeddedEncryptedRawTransactionDAO::decode);
+    }
+
+    @Override
+    public synchronized void delete(final MessageHash hash) {
+        LOGGER.info("Deleting transaction with hash {}", hash);
+
+        if (!store.contains(RAW_TRANSACTIONS, hash.getHashBytes())) {
+            throw new EntityNotFoundException();
+        }
+        store.write(Collections.singletonList(Change.delete(RAW_TRANSACTIONS, hash.getHashBytes())));
+    }
+
+    @Override
+    public synchronized int deleteOlderThan(final long timestamp, final int maxResult) {
+        final List<Change> deletes =
+                store.scanByTime(RAW_TRANSACTIONS, 0, maxResult).stream()
+                        .filter(value -> value.getTimestamp() < timestamp)
+                        .map(value -> Change.delete(RAW_TRANSACTIONS, value.getKey()))
+                        .collect(Collectors.toList());
+
+        if (!deletes.isEmpty()) {
+            store.write(deletes);
+        }
+        return deletes.size();
+    }
+
+    private static byte[] encode(final EncryptedRawTransaction entity) {
+        final byte[][] fields = {
+            entity.getEncryptedPayload(), entity.getEncryptedKey(), entity.getNonce(), entity.getSender()
+        };
+
+        int size = 0;
+        for (final byte[] field : fields) {
+            size += Integer.BYTES + field.length;
+        }
+
+        final ByteBuffer buffer = ByteBuffer.allocate(size);
+        for (final byte[] field : fields) {
+            buffer.putInt(field.length).put(field);
+        }
+        return buffer.array();
+    }
+
+    private static EncryptedRawTransaction decode(final Value value) {
+        final ByteBuffer buffer = ByteBuffer.wrap(value.getBytes());
+
+        final EncryptedRawTransaction transaction =
+                new EncryptedRawTransaction(
+                        new MessageHash(value.getKey()), next(buffer), next(buffer), next(buffer), next(buffer));
+        transaction.setTimestamp(value.getTimestamp());
+        return transaction;
+    }
+
+    private static byte[] next(final ByteBuffer buffer) {
+        final byte[] field = new byte[buffer.getInt()];
+        buffer.get(field);
+        return field;
+    }
+}
@@ -0,0 +1,426 @@
+package com.quorum.tessera.data;
+
+import com.quorum.tessera.data.LogStructuredStore.Change;
+import com.quorum.tessera.data.LogStructuredStore.Value;
+import com.quorum.tessera.encryption.PublicKey;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.PostConstruct;
+import javax.persistence.EntityExistsException;
+import javax.persistence.EntityNotFoundException;
+import javax.persistence.PersistenceException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.stream.Collectors;
+
+/**
+ * An implementation of {@link EncryptedTransactionDAO} backed by a {@link LogStructuredStore} rather than a database
+ *
+ * <p>Transactions are stored under their hash, with the keys that are party to each transaction stored under the same
+ * hash in a second table. Which transactions each key is party to is kept in memory, built from the store at startup,
+ * so paging through a recipient's transactions does not need to read anything but the transactions themselves.
+ *
+ * <p>Writes are made durable by the store before returning, so they are made to look part of the caller's transaction
+ * by undoing them if it rolls back: saved transactions are deleted again and updated ones are put back as they were.
+ * Deletes are held back until the caller's transaction has committed. Recipients recorded on their own are not undone,
+ * as they only ever describe the transaction they were recorded against. Failures are reported with the same
+ * exceptions as the JPA implementation.
+ */
+public class EmbeddedEncryptedTransactionDAO implements EncryptedTransactionDAO {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(EmbeddedEncryptedTransactionDAO.class);
+
+    static final byte TRANSACTIONS = 1;
+
+    static final byte RECIPIENTS = 2;
+
+    private static final Comparator<Recorded> RECORDED_ORDER =
+            Comparator.<Recorded>comparingLong(recorded -> recorded.timestamp)
+                    .thenComparing(recorded -> recorded.hash, LogStructuredStore.KEY_ORDER);
+
+    private final LogStructuredStore store;
+
+    private final ConcurrentMap<PublicKey, NavigableSet<Recorded>> recipientIndex = new ConcurrentHashMap<>();
+
+    public EmbeddedEncryptedTransactionDAO(final LogStructuredStore store) {
+        this.store = Objects.requireNonNull(store);
+    }
+
+    /** Builds the in-memory index of which transactions each key is party to */
+    @PostConstruct
+    public void init() {
+        store.forEach(RECIPIENTS, value -> this.index(value.getKey(), value.getTimestamp(), decodeKeys(value)));
+        LOGGER.info("Indexed transactions of {} recipients", recipientIndex.size());
+    }
+
+    @Override
+    public synchronized EncryptedTransaction save(final EncryptedTransaction entity) {
+        this.saveAllWithRecipients(Collections.singletonMap(entity, Collections.emptyList()));
+        return entity;
+    }
+
+    @Override
+    public synchronized List<EncryptedTransaction> saveAll(final List<EncryptedTransaction> entities) {
+        final Map<EncryptedTransaction, List<PublicKey>> transactions = new LinkedHashMap<>();
+        for (final EncryptedTransaction entity : entities) {
+            if (transactions.put(entity, Collections.emptyList()) != null) {
+                throw new EntityExistsException("Transaction " + entity.getHash() + " is saved twice");
+            }
+        }
+
+        this.saveAllWithRecipients(transactions);
+        return entities;
+    }
+
+    @Override
+    public synchronized void saveAllWithRecipients(
+            final Map<EncryptedTransaction, ? extends Collection<PublicKey>> transactions) {
+        for (final EncryptedTransaction transaction : transactions.keySet()) {
+            if (store.contains(TRANSACTIONS, transaction.getHash().getHashBytes())) {
+                throw new EntityExistsException("Transaction " + transaction.getHash() + " is already stored");
+            }
+        }
+
+        transactions.keySet().forEach(EncryptedTransaction::onPersist);
+        this.write(transactions);
+
+        final List<MessageHash> hashes =
+                transactions.keySet().stream().map(EncryptedTransaction::getHash).collect(Collectors.toList());
+        TransactionCallbacks.afterRollback(() -> hashes.forEach(hash -> this.undo(hash, () -> this.remove(hash))));
+
+        LOGGER.info("Stored {} transactions", transactions.size());
+    }
+
+    /**
+     * Writes transactions as they are, keeping their timestamps and replacing any already stored under the same hash,
+     * for loading transactions copied from another store
+     */
+    synchronized void restore(final Map<EncryptedTransaction, ? extends Collection<PublicKey>> transactions) {
+        this.write(transactions);
+    }
+
+    private void write(final Map<EncryptedTransaction, ? extends Collection<PublicKey>> transactions) {
+        final List<Change> changes = new ArrayList<>();
+        for (final Map.Entry<EncryptedTransaction, ? extends Collection<PublicKey>> transaction :
+                transactions.entrySet()) {
+            final EncryptedTransaction entity = transaction.getKey();
+            final byte[] hash = entity.getHash().getHashBytes();
+            changes.add(Change.put(TRANSACTIONS, hash, entity.getTimestamp(), encode(entity)));
+            if (!transaction.getValue().isEmpty()) {
+                changes.add(
+                        Change.put(
+                                RECIPIENTS, hash, entity.getTimestamp(), encodeKeys(transaction.getValue())));
+            }
+        }
+
+        store.write(changes);
+
+        transactions.forEach(
+                (entity, recipients) ->
+                        this.index(entity.getHash().getHashBytes(), entity.getTimestamp(), recipients));
+    }
+
+    @Override
+    public synchronized EncryptedTransaction update(final EncryptedTransaction entity) {
+        final byte[] hash = entity.getHash().getHashBytes();
+        if (!store.contains(TRANSACTIONS, hash)) {
+            throw new EntityNotFoundException("No transaction with hash " + entity.getHash());
+        }
+
+        // the timestamp is not updatable, the same as its column
+        final Value previous = store.get(TRANSACTIONS, hash).get();
+        final long timestamp = previous.getTimestamp();
+        store.write(Collections.singletonList(Change.put(TRANSACTIONS, hash, timestamp, encode(entity))));
+        entity.setTimestamp(timestamp);
+
+        TransactionCallbacks.afterRollback(() -> this.undo(entity.getHash(), () -> this.putBack(previous)));
+
+        LOGGER.info("Updated transaction {}", entity.getHash());
+        return entity;
+    }
+
+    @Override
+    public Optional<EncryptedTransaction> retrieveByHash(final MessageHash hash) {
+        LOGGER.info("Retrieving payload with hash {}", hash);
+        return store.get(TRANSACTIONS, hash.getHashBytes()).map(EmbeddedEncryptedTransactionDAO::decode);
+    }
+
+    @Override
+    public List<EncryptedTransaction> retrieveByHashes(final Collection<MessageHash> hashes) {
+        final List<byte[]> keys = hashes.stream().map(MessageHash::getHashBytes).collect(Collectors.toList());
+        return decodeAll(store.getAll(TRANSACTIONS, keys));
+    }
+
+    @Override
+    public Optional<EncryptedTransaction> retrieveByHashForRead(final MessageHash hash) {
+        return this.retrieveByHash(hash);
+    }
+
+    @Override
+    public List<EncryptedTransaction> retrieveByHashesForRead(final Collection<MessageHash> hashes) {
+        return this.retrieveByHashes(hashes);
+    }
+
+    @Override
+    public List<EncryptedTransaction> retrieveTransactions(final int offset, final int maxResult) {
+        return decodeAll(store.scanByTime(TRANSACTIONS, offset, maxResult));
+    }
+
+    @Override
+    public synchronized void saveRecipients(
+            final EncryptedTransaction transaction, final Collection<PublicKey> recipients) {
+        final byte[] hash = transaction.getHash().getHashBytes();
+        if (!store.contains(TRANSACTIONS, hash)) {
+            throw new PersistenceException("Transaction " + transaction.getHash() + " is not stored");
+        }
+
+        final Set<PublicKey> all = new LinkedHashSet<>(this.recipientsOf(hash));
+        for (final PublicKey recipient : recipients) {
+            if (!all.add(recipient)) {
+                throw new EntityExistsException(
+                        "Recipient is already recorded against transaction " + transaction.getHash());
+            }
+        }
+
+        final long timestamp = store.timestampOf(TRANSACTIONS, hash);
+        store.write(Collections.singletonList(Change.put(RECIPIENTS, hash, timestamp, encodeKeys(all))));
+        this.index(hash, timestamp, recipients);
+    }
+
+    @Override
+    public synchronized List<PublicKey> retrieveRecipients(final MessageHash hash) {
+        return this.recipientsOf(hash.getHashBytes());
+    }
+
+    /**
+     * Records keys against transactions as they are, for loading recipients copied from another store. Any keys
+     * already recorded against the same transactions are kept
+     */
+    synchronized void restoreRecipients(final List<EncryptedTransactionRecipient> recipients) {
+        final Map<MessageHash, Set<PublicKey>> byHash = new LinkedHashMap<>();
+        final Map<MessageHash, Long> timestamps = new LinkedHashMap<>();
+        for (final EncryptedTransactionRecipient recipient : recipients) {
+            byHash.computeIfAbsent(
+                            recipient.getHash(), hash -> new LinkedHashSet<>(this.recipientsOf(hash.getHashBytes())))
+                    .add(PublicKey.from(recipient.getRecipient()));
+            timestamps.putIfAbsent(recipient.getHash(), recipient.getTimestamp());
+        }
+
+        final List<Change> changes = new ArrayList<>(byHash.size());
+        byHash.forEach(
+                (hash, keys) ->
+                        changes.add(
+                                Change.put(
+                                        RECIPIENTS, hash.getHashBytes(), timestamps.get(hash), encodeKeys(keys))));
+        store.write(changes);
+
+        byHash.forEach((hash, keys) -> this.index(hash.getHashBytes(), timestamps.get(hash), keys));
+    }
+
+    @Override
+    public List<EncryptedTransaction> retrieveTransactionsForRecipient(
+            final PublicKey recipient, final EncryptedTransaction after, final int maxResult) {
+        final NavigableSet<Recorded> recorded = recipientIndex.get(recipient);
+        if (recorded == null) {
+            return Collections.emptyList();
+        }
+
+        final NavigableSet<Recorded> remaining =
+                after == null
+                        ? recorded
+                        : recorded.tailSet(new Recorded(after.getHash().getHashBytes(), after.getTimestamp()), false);
+
+        final List<EncryptedTransaction> transactions = new ArrayList<>(Math.min(maxResult, 1024));
+        for (final Recorded next : remaining) {
+            if (transactions.size() == maxResult) {
+                break;
+            }
+            // a transaction deleted since the index was read is left out
+            store.get(TRANSACTIONS, next.hash)
+                    .map(EmbeddedEncryptedTransactionDAO::decode)
+                    .ifPresent(transactions::add);
+        }
+        return transactions;
+    }
+
+    @Override
+    public List<EncryptedTransaction> retrieveUnindexedTransactions(
+            final EncryptedTransaction after, final int maxResult) {
+        final byte[] from = after == null ? null : after.getHash().getHashBytes();
+        return decodeAll(store.scanByKey(TRANSACTIONS, from, maxResult, hash -> !store.contains(RECIPIENTS, hash)));
+    }
+
+    @Override
+    public List<MessageHash> retrieveHashes(final MessageHash after, final int maxResult) {
+        final byte[] from = after == null ? null : after.getHashBytes();
+        return store.keys(TRANSACTIONS, from, maxResult).stream().map(MessageHash::new).collect(Collectors.toList());
+    }
+
+    @Override
+    public long transactionCount() {
+        return store.size(TRANSACTIONS);
+    }
+
+    /**
+     * Checks the transaction is stored straight away, so a missing one fails the same as on a database, but only
+     * deletes it once the caller's transaction has committed, as a delete could not be undone
+     */
+    @Override
+    public synchronized void delete(final MessageHash hash) {
+        if (!store.contains(TRANSACTIONS, hash.getHashBytes())) {
+            throw new EntityNotFoundException("No transaction with hash " + hash);
+        }
+
+        TransactionCallbacks.afterCommit(
+                () -> {
+                    this.remove(hash);
+                    LOGGER.info("Deleted transaction with hash {}", hash);
+                });
+    }
+
+    private synchronized void remove(final MessageHash hash) {
+        final byte[] key = hash.getHashBytes();
+        if (!store.contains(TRANSACTIONS, key)) {
+            throw new EntityNotFoundException("No transaction with hash " + hash);
+        }
+
+        final long timestamp = store.timestampOf(TRANSACTIONS, key);
+        final List<PublicKey> recipients = this.recipientsOf(key);
+
+        store.write(
+                Arrays.asList(
+                        Change.delete(TRANSACTIONS, key),
+                        Change.delete(RECIPIENTS, key)));
+
+        final Recorded recorded = new Recorded(key, timestamp);
+        recipients.forEach(
+                recipient ->
+                        recipientIndex.computeIfPresent(
+                                recipient,
+                                (k, transactions) -> {
+                                    transactions.remove(recorded);
+                                    return transactions.isEmpty() ? null : transactions;
+                                }));
+    }
+
+    /** Puts a transaction back as it was before an update, unless it has been deleted since */
+    private synchronized void putBack(final Value previous) {
+        if (!store.contains(TRANSACTIONS, previous.getKey())) {
+            throw new EntityNotFoundException("No transaction with hash " + new MessageHash(previous.getKey()));
+        }
+
+        store.write(
+                Collections.singletonList(
+                        Change.put(TRANSACTIONS, previous.getKey(), previous.getTimestamp(), previous.getBytes())));
+    }
+
+    /** Undoes a write the caller's transaction rolled back, logging rather than throwing if it cannot be undone */
+    private void undo(final MessageHash hash, final Runnable action) {
+        try {
+            action.run();
+        } catch (final EntityNotFoundException ex) {
+            LOGGER.debug("Transaction {} is no longer stored, so there is nothing to undo", hash);
+        } catch (final RuntimeException ex) {
+            // the store reports its own failures as I/O or state errors rather than persistence ones
+            LOGGER.warn("Unable to undo write of transaction {}: {}", hash, ex.getMessage());
+            LOGGER.debug(null, ex);
+        }
+    }
+
+    private List<PublicKey> recipientsOf(final byte[] hash) {
+        return store.get(RECIPIENTS, hash)
+                .map(EmbeddedEncryptedTransactionDAO::decodeKeys)
+                .orElse(Collections.emptyList());
+    }
+
+    private void index(final byte[] hash, final long timestamp, final Collection<PublicKey> recipients) {
+        final Recorded recorded = new Recorded(hash, timestamp);
+        recipients.forEach(
+                recipient ->
+                        recipientIndex
+                                .computeIfAbsent(recipient, k -> new ConcurrentSkipListSet<>(RECORDED_ORDER))
+                                .add(recorded));
+    }
+
+    private static byte[] encode(final EncryptedTransaction entity) {
+        final byte[] recipientKey = entity.getRecipientKey();
+        final byte[] payload = entity.getEncodedPayload();
+        final int keyLength = recipientKey == null ? 0 : recipientKey.length;
+
+        final ByteBuffer buffer = ByteBuffer.allocate(Integer.BYTES + keyLength + payload.length);
+        buffer.putInt(recipientKey == null ? -1 : recipientKey.length);
+        if (recipientKey != null) {
+            buffer.put(recipientKey);
+        }
+        return buffer.put(payload).array();
+    }
+
+    private static EncryptedTransaction decode(final Value value) {
+        final ByteBuffer buffer = ByteBuffer.wrap(value.getBytes());
+        final int keyLength = buffer.getInt();
+
+        byte[] recipientKey = null;
+        if (keyLength >= 0) {
+            recipientKey = new byte[keyLength];
+            buffer.get(recipientKey);
+        }
+        final byte[] payload = new byte[buffer.remaining()];
+        buffer.get(payload);
+
+        final EncryptedTransaction transaction =
+                new EncryptedTransaction(new MessageHash(value.getKey()), payload, recipientKey);
+        transaction.setTimestamp(value.getTimestamp());
+        return transaction;
+    }
+
+    private static List<EncryptedTransaction> decodeAll(final List<Value> values) {
+        return values.stream().map(EmbeddedEncryptedTransactionDAO::decode).collect(Collectors.toList());
+    }
+
+    private static byte[] encodeKeys(final Collection<PublicKey> keys) {
+        final int size = keys.stream().mapToInt(key -> Integer.BYTES + key.getKeyBytes().length).sum();
+        final ByteBuffer buffer = ByteBuffer.allocate(size);
+        keys.forEach(key -> buffer.putInt(key.getKeyBytes().length).put(key.getKeyBytes()));
+        return buffer.array();
+    }
+
+    private static List<PublicKey> decodeKeys(final Value value) {
+        final ByteBuffer buffer = ByteBuffer.wrap(value.getBytes());
+        final List<PublicKey> keys = new ArrayList<>();
+        while (buffer.hasRemaining()) {
+            final byte[] key = new byte[buffer.getInt()];
+            buffer.get(key);
+            keys.add(PublicKey.from(key));
+        }
+        return keys;
+    }
+
+    /** A transaction recorded against a key, ordered the same as the recipient table's index */
+    private static final class Recorded {
+
+        private final byte[] hash;
+
+        private final long timestamp;
+
+        private Recorded(final byte[] hash, final long timestamp) {
+            this.hash = hash;
+            this.timestamp = timestamp;
+        }
+    }
+}
@@ -0,0 +1,175 @@
+package com.quorum.tessera.data;
+
+import com.quorum.tessera.encryption.PublicKey;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.nio.file.Paths;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Consumer;
+
+/**
+ * Copies the transactions, recipients and raw transactions of an existing database into an embedded store
+ *
+ * <p>Each table is read in a single pass and written to the store in batches, keeping the stored timestamps, so the
+ * embedded store answers every query the same as the database did. Running the import again over the same store
+ * replaces what was copied before. Run it with the node stopped:
+ *
+ * <pre>
+ * java -cp tessera-app.jar com.quorum.tessera.data.EmbeddedStoreImporter jdbcUrl username password storeDirectory
+ * </pre>
+ */
+public class EmbeddedStoreImporter {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(EmbeddedStoreImporter.class);
+
+    private static final String SELECT_TRANSACTIONS =
+            "SELECT HASH, ENCODED_PAYLOAD, RECIPIENT_KEY, TIMESTAMP FROM ENCRYPTED_TRANSACTION";
+
+    private static final String SELECT_RECIPIENTS =
+            "SELECT HASH, RECIPIENT, TIMESTAMP FROM ENCRYPTED_TRANSACTION_RECIPIENT ORDER BY HASH";
+
+    private static final String SELECT_RAW_TRANSACTIONS =
+            "SELECT HASH, ENCRYPTED_PAYLOAD, ENCRYPTED_KEY, NONCE, SENDER, TIMESTAMP FROM ENCRYPTED_RAW_TRANSACTION";
+
+    @FunctionalInterface
+    private interface RowMapper<T> {
+        T map(ResultSet resultSet) throws SQLException;
+    }
+
+    private final EmbeddedEncryptedTransactionDAO encryptedTransactionDAO;
+
+    private final EmbeddedEncryptedRawTransactionDAO encryptedRawTransactionDAO;
+
+    private final int batchSize;
+
+    public EmbeddedStoreImporter(
+            final EmbeddedEncryptedTransactionDAO encryptedTransactionDAO,
+            final EmbeddedEncryptedRawTransactionDAO encryptedRawTransactionDAO,
+            final int batchSize) {
+        this.encryptedTransactionDAO = Objects.requireNonNull(encryptedTransactionDAO);
+        this.encryptedRawTransactionDAO = Objects.requireNonNull(encryptedRawTransactionDAO);
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * Copies every stored row read through the connection into the embedded store
+     *
+     * @param connection a connection to the database to import from
+     * @return the number of rows copied
+     */
+    public long importFrom(final Connection connection) throws SQLException {
+        final long transactions =
+                this.copy(
+                        connection,
+                        SELECT_TRANSACTIONS,
+                        EmbeddedStoreImporter::transaction,
+                        batch -> {
+                            final Map<EncryptedTransaction, Collection<PublicKey>> withoutRecipients =
+                                    new LinkedHashMap<>();
+                            batch.forEach(tx -> withoutRecipients.put(tx, Collections.emptyList()));
+                            encryptedTransactionDAO.restore(withoutRecipients);
+                        });
+        LOGGER.info("Imported {} transactions", transactions);
+
+        final long recipients =
+                this.copy(
+                        connection,
+                        SELECT_RECIPIENTS,
+                        EmbeddedStoreImporter::recipient,
+                        encryptedTransactionDAO::restoreRecipients);
+        LOGGER.info("Imported {} transaction recipients", recipients);
+
+        final long rawTransactions =
+                this.copy(
+                        connection,
+                        SELECT_RAW_TRANSACTIONS,
+                        EmbeddedStoreImporter::rawTransaction,
+                        encryptedRawTransactionDAO::restore);
+        LOGGER.info("Imported {} raw transactions", rawTransactions);
+
+        return transactions + recipients + rawTransactions;
+    }
+
+    private <T> long copy(
+            final Connection connection, final String sql, final RowMapper<T> mapper, final Consumer<List<T>> writer)
+            throws SQLException {
+        long count = 0;
+        try (PreparedStatement statement = connection.prepareStatement(sql)) {
+            statement.setFetchSize(batchSize);
+            try (ResultSet resultSet = statement.executeQuery()) {
+                final List<T> batch = new ArrayList<>(batchSize);
+                while (resultSet.next()) {
+                    batch.add(mapper.map(resultSet));
+                    if (batch.size() == batchSize) {
+                        writer.accept(batch);
+                        count += batch.size();
+                        batch.clear();
+                    }
+                }
+                if (!batch.isEmpty()) {
+                    writer.accept(batch);
+                    count += batch.size();
+                }
+            }
+        }
+        return count;
+    }
+
+    private static EncryptedTransaction transaction(final ResultSet resultSet) throws SQLException {
+        final EncryptedTransaction transaction =
+                new EncryptedTransaction(
+                        new MessageHash(resultSet.getBytes(1)), resultSet.getBytes(2), resultSet.getBytes(3));
+        transaction.setTimestamp(resultSet.getLong(4));
+        return transaction;
+    }
+
+    private static EncryptedTransactionRecipient recipient(final ResultSet resultSet) throws SQLException {
+        return new EncryptedTransactionRecipient(
+                new MessageHash(resultSet.getBytes(1)), resultSet.getBytes(2), resultSet.getLong(3));
+    }
+
+    private static EncryptedRawTransaction rawTransaction(final ResultSet resultSet) throws SQLException {
+        final EncryptedRawTransaction transaction =
+                new EncryptedRawTransaction(
+                        new MessageHash(resultSet.getBytes(1)),
+                        resultSet.getBytes(2),
+                        resultSet.getBytes(3),
+                        resultSet.getBytes(4),
+                        resultSet.getBytes(5));
+        transaction.setTimestamp(resultSet.getLong(6));
+        return transaction;
+    }
+
+    public static void main(final String... args) throws SQLException {
+        if (args.length != 4) {
+            System.err.println("Usage: EmbeddedStoreImporter <jdbc url> <username> <password> <store directory>");
+            System.exit(1);
+        }
+
+        final LogStructuredStore store = new LogStructuredStore(Paths.get(args[3]), Long.MAX_VALUE, Long.MAX_VALUE);
+        store.init();
+        try (Connection connection = DriverManager.getConnection(args[0], args[1], args[2])) {
+            final long imported =
+                    new EmbeddedStoreImporter(
+                                    new EmbeddedEncryptedTransactionDAO(store),
+                                    new EmbeddedEncryptedRawTransactionDAO(store),
+                                    1000)
+                            .importFrom(connection);
+            System.out.printf("Imported %d rows into %s%n", imported, args[3]);
+        } finally {
+            store.close();
+        }
+    }
+}
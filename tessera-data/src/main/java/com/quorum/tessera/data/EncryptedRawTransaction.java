@@ -10,13 +10,21 @@ import java.util.Objects;
 
 /** The JPA entity that contains the raw transaction information */
 @Entity
-@Table(name = "ENCRYPTED_RAW_TRANSACTION")
+@Table(
+        name = "ENCRYPTED_RAW_TRANSACTION",
+        indexes = @Index(name = "RAW_TRANSACTION_TIMESTAMP_IDX", columnList = "TIMESTAMP"))
 public class EncryptedRawTransaction implements Serializable {
 
     @EmbeddedId
     @AttributeOverride(
             name = "hashBytes",
-            column = @Column(name = "HASH", nullable = false, unique = true, updatable = false))
+            column =
+                    @Column(
+                            name = "HASH",
+                            length = MessageHash.LENGTH,
+                            nullable = false,
+                            unique = true,
+                            updatable = false))
     private MessageHash hash;
 
     @Lob
@@ -94,6 +102,10 @@ public class EncryptedRawTransaction implements Serializable {
         return this.timestamp;
     }
 
+    public void setTimestamp(final long timestamp) {
+        this.timestamp = timestamp;
+    }
+
     public byte[] getSender() {
         return sender;
     }
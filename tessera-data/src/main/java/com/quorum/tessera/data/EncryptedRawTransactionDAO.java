@@ -28,4 +28,13 @@ public interface EncryptedRawTransactionDAO {
      * @throws javax.persistence.EntityNotFoundException if there hash doesn't exist
      */
     void delete(MessageHash hash);
+
+    /**
+     * Deletes the oldest transactions that were stored before the given time, up to the given number
+     *
+     * @param timestamp the time, in milliseconds since the epoch, before which transactions are deleted
+     * @param maxResult the maximum number of transactions to delete
+     * @return the number of transactions deleted
+     */
+    int deleteOlderThan(long timestamp, int maxResult);
 }
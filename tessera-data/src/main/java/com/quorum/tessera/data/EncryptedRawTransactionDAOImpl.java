@@ -7,13 +7,24 @@ import org.slf4j.LoggerFactory;
 import javax.persistence.EntityManager;
 import javax.persistence.EntityNotFoundException;
 import javax.persistence.PersistenceContext;
+import javax.transaction.Transactional;
+import java.util.List;
 import java.util.Optional;
+import java.util.stream.Collectors;
 
 /** A JPA implementation of {@link EncryptedTransactionDAO} */
+@Transactional
 public class EncryptedRawTransactionDAOImpl implements EncryptedRawTransactionDAO {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(EncryptedRawTransactionDAOImpl.class);
 
+    // selects through the TIMESTAMP index, written as native SQL so that only the hashes are read
+    private static final String FIND_OLDER_THAN =
+            "SELECT HASH FROM ENCRYPTED_RAW_TRANSACTION WHERE TIMESTAMP < ?1 ORDER BY TIMESTAMP";
+
+    private static final String DELETE_HASH_IN =
+            "DELETE FROM EncryptedRawTransaction et WHERE et.hash.hashBytes IN :hashes";
+
     @PersistenceContext(unitName = "tessera")
     private EntityManager entityManager;
 
@@ -45,6 +56,23 @@ public class EncryptedRawTransactionDAOImpl implements EncryptedRawTransactionDA
         entityManager.remove(retrieveByHash(hash).orElseThrow(EntityNotFoundException::new));
     }
 
+    @Override
+    public int deleteOlderThan(final long timestamp, final int maxResult) {
+        final List<?> hashes =
+                entityManager
+                        .createNativeQuery(FIND_OLDER_THAN)
+                        .setParameter(1, timestamp)
+                        .setMaxResults(maxResult)
+                        .getResultList();
+
+        if (hashes.isEmpty()) {
+            return 0;
+        }
+
+        final List<byte[]> hashBytes = hashes.stream().map(byte[].class::cast).collect(Collectors.toList());
+        return entityManager.createQuery(DELETE_HASH_IN).setParameter("hashes", hashBytes).executeUpdate();
+    }
+
     private String toHexString(byte[] val) {
         if (null == val) {
             return "null";
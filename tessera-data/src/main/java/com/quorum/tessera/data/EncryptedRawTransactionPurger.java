@@ -0,0 +1,51 @@
+package com.quorum.tessera.data;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Objects;
+
+/**
+ * Deletes raw transactions that have been stored for longer than the retention period
+ *
+ * <p>A raw transaction is only needed until the signed transaction made from it has been sent, after which nothing
+ * reads it again. Each run deletes the expired transactions oldest first, in batches that are each committed on their
+ * own, so that no single delete holds its locks for long. A retention period of zero keeps raw transactions forever.
+ */
+public class EncryptedRawTransactionPurger implements Runnable {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(EncryptedRawTransactionPurger.class);
+
+    private final EncryptedRawTransactionDAO encryptedRawTransactionDAO;
+
+    private final long retention;
+
+    private final int batchSize;
+
+    public EncryptedRawTransactionPurger(
+            final EncryptedRawTransactionDAO encryptedRawTransactionDAO, final long retention, final int batchSize) {
+        this.encryptedRawTransactionDAO = Objects.requireNonNull(encryptedRawTransactionDAO);
+        this.retention = retention;
+        this.batchSize = batchSize;
+    }
+
+    @Override
+    public void run() {
+        if (retention <= 0) {
+            return;
+        }
+
+        final long expiry = System.currentTimeMillis() - retention;
+
+        long purged = 0;
+        int deleted;
+        do {
+            deleted = encryptedRawTransactionDAO.deleteOlderThan(expiry, batchSize);
+            purged += deleted;
+        } while (deleted == batchSize);
+
+        if (purged > 0) {
+            LOGGER.info("Purged {} expired raw transactions", purged);
+        }
+    }
+}
@@ -17,19 +17,34 @@ public class EncryptedTransaction implements Serializable {
     @EmbeddedId
     @AttributeOverride(
             name = "hashBytes",
-            column = @Column(name = "HASH", nullable = false, unique = true, updatable = false))
+            column =
+                    @Column(
+                            name = "HASH",
+                            length = MessageHash.LENGTH,
+                            nullable = false,
+                            unique = true,
+                            updatable = false))
     private MessageHash hash;
 
     @Lob
     @Column(name = "ENCODED_PAYLOAD", nullable = false)
     private byte[] encodedPayload;
 
+    /** The local public key that is able to decrypt the payload, recorded so receiving does not need to search */
+    @Column(name = "RECIPIENT_KEY")
+    private byte[] recipientKey;
+
     @Column(name = "TIMESTAMP", updatable = false)
     private long timestamp;
 
     public EncryptedTransaction(final MessageHash hash, final byte[] encodedPayload) {
+        this(hash, encodedPayload, null);
+    }
+
+    public EncryptedTransaction(final MessageHash hash, final byte[] encodedPayload, final byte[] recipientKey) {
         this.hash = hash;
         this.encodedPayload = encodedPayload;
+        this.recipientKey = recipientKey;
     }
 
     public EncryptedTransaction() {}
@@ -55,10 +70,22 @@ public class EncryptedTransaction implements Serializable {
         this.encodedPayload = encodedPayload;
     }
 
+    public byte[] getRecipientKey() {
+        return this.recipientKey;
+    }
+
+    public void setRecipientKey(final byte[] recipientKey) {
+        this.recipientKey = recipientKey;
+    }
+
     public long getTimestamp() {
         return this.timestamp;
     }
 
+    public void setTimestamp(final long timestamp) {
+        this.timestamp = timestamp;
+    }
+
     @Override
     public int hashCode() {
         return 47 * 3 + Objects.hashCode(this.hash);
@@ -0,0 +1,7 @@
+package com.quorum.tessera.data;
+
+/** The number of stored transactions, exposed over JMX so that it can be monitored without querying the database */
+public interface EncryptedTransactionCounterMXBean {
+
+    long getTransactionCount();
+}
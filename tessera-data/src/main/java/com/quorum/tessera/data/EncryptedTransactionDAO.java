@@ -1,6 +1,10 @@
 package com.quorum.tessera.data;
 
+import com.quorum.tessera.encryption.PublicKey;
+
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 /** A data store for transactions that need to be retrieved later */
@@ -14,6 +18,23 @@ public interface EncryptedTransactionDAO {
      */
     EncryptedTransaction save(EncryptedTransaction entity);
 
+    /**
+     * Save several new Encrypted Transactions together, so that the inserts can be sent to the database as a single
+     * JDBC batch. All fields are required to be non-null on each entity
+     *
+     * @param entities The entities to be persisted
+     * @return The entities that were persisted
+     */
+    List<EncryptedTransaction> saveAll(List<EncryptedTransaction> entities);
+
+    /**
+     * Writes the payload and recipient key of a transaction that has already been saved
+     *
+     * @param entity The changed entity
+     * @return The entity that was updated
+     */
+    EncryptedTransaction update(EncryptedTransaction entity);
+
     /**
      * Retrieve a transaction based on its hash
      *
@@ -22,6 +43,34 @@ public interface EncryptedTransactionDAO {
      */
     Optional<EncryptedTransaction> retrieveByHash(MessageHash hash);
 
+    /**
+     * Retrieve several transactions based on their hashes, with as few queries as possible. Hashes that are not
+     * stored are left out of the result, and the order of the result is not defined
+     *
+     * @param hashes the hashes of the transactions to retrieve
+     * @return the stored transactions with any of the given hashes
+     */
+    List<EncryptedTransaction> retrieveByHashes(Collection<MessageHash> hashes);
+
+    /**
+     * Retrieve a transaction based on its hash, for a caller that only reads it and never writes it back. Unlike
+     * {@link #retrieveByHash}, this may be answered from a copy of the data that lags behind, so long as a transaction
+     * missing from the copy is still looked for in the data itself
+     *
+     * @param hash the hash of the transaction to retrieve
+     * @return the encrypted transaction with the given hash
+     */
+    Optional<EncryptedTransaction> retrieveByHashForRead(MessageHash hash);
+
+    /**
+     * Retrieve several transactions based on their hashes, for a caller that only reads them and never writes them
+     * back, in the same way as {@link #retrieveByHashForRead}
+     *
+     * @param hashes the hashes of the transactions to retrieve
+     * @return the stored transactions with any of the given hashes
+     */
+    List<EncryptedTransaction> retrieveByHashesForRead(Collection<MessageHash> hashes);
+
     /**
      * Retrieves a list of transactions stored in the database
      *
@@ -31,6 +80,65 @@ public interface EncryptedTransactionDAO {
      */
     List<EncryptedTransaction> retrieveTransactions(int offset, int maxResult);
 
+    /**
+     * Records the keys that are party to a stored transaction, so that its transactions can later be looked up by key
+     * using {@link #retrieveTransactionsForRecipient}. The transaction must already have been saved, and none of the
+     * given keys may already be recorded against it
+     *
+     * @param transaction the stored transaction
+     * @param recipients the distinct keys that are party to the transaction
+     */
+    void saveRecipients(EncryptedTransaction transaction, Collection<PublicKey> recipients);
+
+    /**
+     * Retrieves the keys recorded against a stored transaction using {@link #saveRecipients}
+     *
+     * @param hash the hash of the transaction
+     * @return the recorded keys, which is empty if the transaction has none recorded or is not stored
+     */
+    List<PublicKey> retrieveRecipients(MessageHash hash);
+
+    /**
+     * Save several new Encrypted Transactions along with the keys that are party to each of them, all in a single
+     * database transaction. This is equivalent to {@link #saveAll} followed by {@link #saveRecipients} for each
+     * transaction, but commits only once
+     *
+     * @param transactions the entities to be persisted, each mapped to the distinct keys that are party to it
+     */
+    void saveAllWithRecipients(Map<EncryptedTransaction, ? extends Collection<PublicKey>> transactions);
+
+    /**
+     * Retrieves the next page of transactions that the given key is party to, ordered by timestamp and then hash.
+     * Pages are found by seeking past the last transaction of the previous page rather than by offset, so the cost of
+     * each page does not grow with its position
+     *
+     * @param recipient the key to retrieve transactions for
+     * @param after the last transaction of the previous page, or {@code null} to retrieve the first page
+     * @param maxResult the maximum number of records to return
+     * @return The list of requested rows from the database
+     */
+    List<EncryptedTransaction> retrieveTransactionsForRecipient(
+            PublicKey recipient, EncryptedTransaction after, int maxResult);
+
+    /**
+     * Retrieves the next page of transactions that have no keys recorded against them, such as those stored before
+     * the recipient index existed, ordered by hash
+     *
+     * @param after the last transaction of the previous page, or {@code null} to retrieve the first page
+     * @param maxResult the maximum number of records to return
+     * @return The list of requested rows from the database
+     */
+    List<EncryptedTransaction> retrieveUnindexedTransactions(EncryptedTransaction after, int maxResult);
+
+    /**
+     * Retrieves the next page of stored transaction hashes, ordered by hash, without loading the payloads
+     *
+     * @param after the last hash of the previous page, or {@code null} to retrieve the first page
+     * @param maxResult the maximum number of hashes to return
+     * @return The list of requested hashes
+     */
+    List<MessageHash> retrieveHashes(MessageHash after, int maxResult);
+
     /**
      * Retrieve the total transaction count.
      *
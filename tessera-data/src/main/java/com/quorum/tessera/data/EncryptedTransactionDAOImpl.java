@@ -1,13 +1,19 @@
 package com.quorum.tessera.data;
 
+import com.quorum.tessera.encryption.PublicKey;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import javax.persistence.EntityManager;
 import javax.persistence.EntityNotFoundException;
 import javax.persistence.PersistenceContext;
+import javax.persistence.Query;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.stream.Collectors;
 import javax.persistence.criteria.CriteriaBuilder;
 import javax.persistence.criteria.CriteriaQuery;
 import javax.transaction.Transactional;
@@ -21,8 +27,58 @@ public class EncryptedTransactionDAOImpl implements EncryptedTransactionDAO {
     private static final String FIND_HASH_EQUAL =
             "SELECT et FROM EncryptedTransaction et WHERE et.hash.hashBytes = :hash";
 
+    private static final String FIND_HASH_IN =
+            "SELECT et FROM EncryptedTransaction et WHERE et.hash.hashBytes IN :hashes";
+
+    // keeps each IN list well inside the bind parameter limits of the supported databases
+    private static final int MAX_HASHES_PER_QUERY = 500;
+
     private static final String FIND_ALL = "SELECT et FROM EncryptedTransaction et ORDER BY et.timestamp,et.hash";
 
+    private static final String FIND_RECIPIENTS =
+            "SELECT r FROM EncryptedTransactionRecipient r WHERE r.id.hash = :hash";
+
+    // The seek queries compare binary hashes, which JPQL does not allow, so these are written as native SQL that is
+    // portable across the supported databases
+
+    private static final String TRANSACTION_COLUMNS = "et.HASH, et.ENCODED_PAYLOAD, et.RECIPIENT_KEY, et.TIMESTAMP";
+
+    private static final String FIND_FOR_RECIPIENT =
+            "SELECT "
+                    + TRANSACTION_COLUMNS
+                    + " FROM ENCRYPTED_TRANSACTION_RECIPIENT r JOIN ENCRYPTED_TRANSACTION et ON et.HASH = r.HASH"
+                    + " WHERE r.RECIPIENT = ?1"
+                    + " ORDER BY r.TIMESTAMP, r.HASH";
+
+    private static final String FIND_FOR_RECIPIENT_AFTER =
+            "SELECT "
+                    + TRANSACTION_COLUMNS
+                    + " FROM ENCRYPTED_TRANSACTION_RECIPIENT r JOIN ENCRYPTED_TRANSACTION et ON et.HASH = r.HASH"
+                    + " WHERE r.RECIPIENT = ?1 AND (r.TIMESTAMP > ?2 OR (r.TIMESTAMP = ?2 AND r.HASH > ?3))"
+                    + " ORDER BY r.TIMESTAMP, r.HASH";
+
+    private static final String NOT_INDEXED =
+            " NOT EXISTS (SELECT 1 FROM ENCRYPTED_TRANSACTION_RECIPIENT r WHERE r.HASH = et.HASH)";
+
+    private static final String FIND_UNINDEXED =
+            "SELECT "
+                    + TRANSACTION_COLUMNS
+                    + " FROM ENCRYPTED_TRANSACTION et WHERE"
+                    + NOT_INDEXED
+                    + " ORDER BY et.HASH";
+
+    private static final String FIND_UNINDEXED_AFTER =
+            "SELECT "
+                    + TRANSACTION_COLUMNS
+                    + " FROM ENCRYPTED_TRANSACTION et WHERE et.HASH > ?1 AND"
+                    + NOT_INDEXED
+                    + " ORDER BY et.HASH";
+
+    private static final String FIND_HASHES = "SELECT et.HASH FROM ENCRYPTED_TRANSACTION et ORDER BY et.HASH";
+
+    private static final String FIND_HASHES_AFTER =
+            "SELECT et.HASH FROM ENCRYPTED_TRANSACTION et WHERE et.HASH > ?1 ORDER BY et.HASH";
+
     @PersistenceContext(unitName = "tessera")
     private EntityManager entityManager;
 
@@ -33,6 +89,21 @@ public class EncryptedTransactionDAOImpl implements EncryptedTransactionDAO {
         return entity;
     }
 
+    @Override
+    public List<EncryptedTransaction> saveAll(final List<EncryptedTransaction> entities) {
+        entities.forEach(entityManager::persist);
+        entityManager.flush();
+        LOGGER.info("Stored batch of {} transactions", entities.size());
+        return entities;
+    }
+
+    @Override
+    public EncryptedTransaction update(final EncryptedTransaction entity) {
+        final EncryptedTransaction merged = entityManager.merge(entity);
+        LOGGER.info("Updated transaction {}", entity.getHash());
+        return merged;
+    }
+
     @Override
     public Optional<EncryptedTransaction> retrieveByHash(final MessageHash hash) {
         LOGGER.info("Retrieving payload with hash {}", hash);
@@ -44,6 +115,34 @@ public class EncryptedTransactionDAOImpl implements EncryptedTransactionDAO {
                 .findAny();
     }
 
+    @Override
+    public List<EncryptedTransaction> retrieveByHashes(final Collection<MessageHash> hashes) {
+        LOGGER.info("Retrieving {} payloads by hash", hashes.size());
+
+        final List<byte[]> hashBytes = hashes.stream().map(MessageHash::getHashBytes).collect(Collectors.toList());
+
+        final List<EncryptedTransaction> results = new ArrayList<>(hashBytes.size());
+        for (int from = 0; from < hashBytes.size(); from += MAX_HASHES_PER_QUERY) {
+            final List<byte[]> chunk = hashBytes.subList(from, Math.min(from + MAX_HASHES_PER_QUERY, hashBytes.size()));
+            results.addAll(
+                    entityManager
+                            .createQuery(FIND_HASH_IN, EncryptedTransaction.class)
+                            .setParameter("hashes", chunk)
+                            .getResultList());
+        }
+        return results;
+    }
+
+    @Override
+    public Optional<EncryptedTransaction> retrieveByHashForRead(final MessageHash hash) {
+        return this.retrieveByHash(hash);
+    }
+
+    @Override
+    public List<EncryptedTransaction> retrieveByHashesForRead(final Collection<MessageHash> hashes) {
+        return this.retrieveByHashes(hashes);
+    }
+
     @Override
     public List<EncryptedTransaction> retrieveTransactions(int offset, int maxResult) {
         LOGGER.info("Fetching batch(offset:{},maxResult:{}) EncryptedTransaction database rows", offset, maxResult);
@@ -55,6 +154,87 @@ public class EncryptedTransactionDAOImpl implements EncryptedTransactionDAO {
                 .getResultList();
     }
 
+    @Override
+    public void saveRecipients(final EncryptedTransaction transaction, final Collection<PublicKey> recipients) {
+        recipients.stream()
+                .map(
+                        recipient ->
+                                new EncryptedTransactionRecipient(
+                                        transaction.getHash(), recipient.getKeyBytes(), transaction.getTimestamp()))
+                .forEach(entityManager::persist);
+    }
+
+    @Override
+    public List<PublicKey> retrieveRecipients(final MessageHash hash) {
+        return entityManager
+                .createQuery(FIND_RECIPIENTS, EncryptedTransactionRecipient.class)
+                .setParameter("hash", hash.getHashBytes())
+                .getResultList()
+                .stream()
+                .map(recipient -> PublicKey.from(recipient.getRecipient()))
+                .collect(Collectors.toList());
+    }
+
+    @Override
+    public void saveAllWithRecipients(final Map<EncryptedTransaction, ? extends Collection<PublicKey>> transactions) {
+        transactions.keySet().forEach(entityManager::persist);
+        transactions.forEach(this::saveRecipients);
+        entityManager.flush();
+        LOGGER.info("Stored batch of {} transactions with their recipients", transactions.size());
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public List<EncryptedTransaction> retrieveTransactionsForRecipient(
+            final PublicKey recipient, final EncryptedTransaction after, final int maxResult) {
+
+        final Query query;
+        if (after == null) {
+            query = entityManager.createNativeQuery(FIND_FOR_RECIPIENT, EncryptedTransaction.class);
+        } else {
+            query =
+                    entityManager
+                            .createNativeQuery(FIND_FOR_RECIPIENT_AFTER, EncryptedTransaction.class)
+                            .setParameter(2, after.getTimestamp())
+                            .setParameter(3, after.getHash().getHashBytes());
+        }
+
+        return query.setParameter(1, recipient.getKeyBytes()).setMaxResults(maxResult).getResultList();
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public List<EncryptedTransaction> retrieveUnindexedTransactions(
+            final EncryptedTransaction after, final int maxResult) {
+
+        final Query query;
+        if (after == null) {
+            query = entityManager.createNativeQuery(FIND_UNINDEXED, EncryptedTransaction.class);
+        } else {
+            query =
+                    entityManager
+                            .createNativeQuery(FIND_UNINDEXED_AFTER, EncryptedTransaction.class)
+                            .setParameter(1, after.getHash().getHashBytes());
+        }
+
+        return query.setMaxResults(maxResult).getResultList();
+    }
+
+    @Override
+    public List<MessageHash> retrieveHashes(final MessageHash after, final int maxResult) {
+
+        final Query query;
+        if (after == null) {
+            query = entityManager.createNativeQuery(FIND_HASHES);
+        } else {
+            query = entityManager.createNativeQuery(FIND_HASHES_AFTER).setParameter(1, after.getHashBytes());
+        }
+
+        final List<?> results = query.setMaxResults(maxResult).getResultList();
+
+        return results.stream().map(hash -> new MessageHash((byte[]) hash)).collect(Collectors.toList());
+    }
+
     @Override
     public long transactionCount() {
 
@@ -79,5 +259,13 @@ public class EncryptedTransactionDAOImpl implements EncryptedTransactionDAO {
                         .orElseThrow(EntityNotFoundException::new);
 
         entityManager.remove(message);
+
+        // removed through the entity manager rather than a bulk delete, so recipients that are already managed in
+        // this persistence context are removed from it too and are not written back or found again
+        entityManager
+                .createQuery(FIND_RECIPIENTS, EncryptedTransactionRecipient.class)
+                .setParameter("hash", hash.getHashBytes())
+                .getResultList()
+                .forEach(entityManager::remove);
     }
 }
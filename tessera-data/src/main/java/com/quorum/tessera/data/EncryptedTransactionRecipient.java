@@ -0,0 +1,62 @@
+package com.quorum.tessera.data;
+
+import javax.persistence.*;
+import java.io.Serializable;
+import java.util.Objects;
+
+/**
+ * The JPA entity that indexes a stored {@link EncryptedTransaction} by each of the keys that are party to it
+ *
+ * <p>The timestamp of the transaction is copied into the index so that all the transactions for a single key can be
+ * read in order by seeking along the {@code (RECIPIENT, TIMESTAMP, HASH)} index, without touching any other rows
+ */
+@Entity
+@Table(
+        name = "ENCRYPTED_TRANSACTION_RECIPIENT",
+        indexes =
+                @Index(name = "ENCRYPTED_TRANSACTION_RECIPIENT_IDX", columnList = "RECIPIENT,TIMESTAMP,HASH"))
+public class EncryptedTransactionRecipient implements Serializable {
+
+    @EmbeddedId private EncryptedTransactionRecipientId id;
+
+    @Column(name = "TIMESTAMP", nullable = false, updatable = false)
+    private long timestamp;
+
+    public EncryptedTransactionRecipient(final MessageHash hash, final byte[] recipient, final long timestamp) {
+        this.id = new EncryptedTransactionRecipientId(hash.getHashBytes(), recipient);
+        this.timestamp = timestamp;
+    }
+
+    public EncryptedTransactionRecipient() {}
+
+    public EncryptedTransactionRecipientId getId() {
+        return id;
+    }
+
+    public void setId(final EncryptedTransactionRecipientId id) {
+        this.id = id;
+    }
+
+    public MessageHash getHash() {
+        return new MessageHash(id.getHash());
+    }
+
+    public byte[] getRecipient() {
+        return id.getRecipient();
+    }
+
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    @Override
+    public int hashCode() {
+        return 47 * 3 + Objects.hashCode(this.id);
+    }
+
+    @Override
+    public boolean equals(final Object obj) {
+        return (obj instanceof EncryptedTransactionRecipient)
+                && Objects.equals(this.id, ((EncryptedTransactionRecipient) obj).id);
+    }
+}
@@ -0,0 +1,55 @@
+package com.quorum.tessera.data;
+
+import javax.persistence.Column;
+import javax.persistence.Embeddable;
+import java.io.Serializable;
+import java.util.Arrays;
+
+/** The composite key of an {@link EncryptedTransactionRecipient}, being the transaction hash and one of its parties */
+@Embeddable
+public class EncryptedTransactionRecipientId implements Serializable {
+
+    @Column(name = "HASH", length = MessageHash.LENGTH, nullable = false, updatable = false)
+    private byte[] hash;
+
+    @Column(name = "RECIPIENT", nullable = false, updatable = false)
+    private byte[] recipient;
+
+    public EncryptedTransactionRecipientId(final byte[] hash, final byte[] recipient) {
+        this.hash = hash;
+        this.recipient = recipient;
+    }
+
+    public EncryptedTransactionRecipientId() {}
+
+    public byte[] getHash() {
+        return hash;
+    }
+
+    public void setHash(final byte[] hash) {
+        this.hash = hash;
+    }
+
+    public byte[] getRecipient() {
+        return recipient;
+    }
+
+    public void setRecipient(final byte[] recipient) {
+        this.recipient = recipient;
+    }
+
+    @Override
+    public boolean equals(final Object o) {
+        if (!(o instanceof EncryptedTransactionRecipientId)) {
+            return false;
+        }
+
+        final EncryptedTransactionRecipientId other = (EncryptedTransactionRecipientId) o;
+        return Arrays.equals(hash, other.hash) && Arrays.equals(recipient, other.recipient);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * Arrays.hashCode(hash) + Arrays.hashCode(recipient);
+    }
+}
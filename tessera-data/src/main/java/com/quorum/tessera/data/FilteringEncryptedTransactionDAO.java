@@ -0,0 +1,193 @@
+package com.quorum.tessera.data;
+
+import com.quorum.tessera.encryption.PublicKey;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.PostConstruct;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.stream.Collectors;
+
+/**
+ * An {@link EncryptedTransactionDAO} that keeps a {@link MessageHashFilter} over the stored hashes, so that lookups of
+ * transactions this node does not hold are answered without a database query
+ *
+ * <p>The filter is built at startup by scanning the stored hashes, and every transaction saved through this DAO is
+ * added to it. Until the scan completes every lookup goes to the database. Deleted transactions stay in the filter,
+ * because a delete may still be rolled back, and a hash that is wrongly reported as possibly present only costs the
+ * query that would have been made anyway.
+ *
+ * <p>Transactions written to the database by anything other than this DAO, such as another node sharing the database,
+ * are not seen by the filter, which is why it can be switched off.
+ */
+public class FilteringEncryptedTransactionDAO implements EncryptedTransactionDAO {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(FilteringEncryptedTransactionDAO.class);
+
+    private static final long MINIMUM_CAPACITY = 1_000_000L;
+
+    private static final double FALSE_POSITIVE_RATE = 0.01;
+
+    private static final int SCAN_PAGE_SIZE = 10_000;
+
+    private final EncryptedTransactionDAO delegate;
+
+    private final boolean enabled;
+
+    private volatile MessageHashFilter filter;
+
+    private volatile boolean ready;
+
+    public FilteringEncryptedTransactionDAO(final EncryptedTransactionDAO delegate, final boolean enabled) {
+        this.delegate = Objects.requireNonNull(delegate);
+        this.enabled = enabled;
+    }
+
+    /** Sizes the filter for twice the number of stored transactions and adds every stored hash to it */
+    @PostConstruct
+    public void init() {
+        if (!enabled) {
+            return;
+        }
+
+        final long count = delegate.transactionCount();
+        this.filter = new MessageHashFilter(Math.max(MINIMUM_CAPACITY, 2 * count), FALSE_POSITIVE_RATE);
+
+        LOGGER.info("Building lookup filter over {} stored transactions", count);
+
+        MessageHash last = null;
+        List<MessageHash> page;
+        do {
+            page = delegate.retrieveHashes(last, SCAN_PAGE_SIZE);
+            page.forEach(filter::put);
+            if (!page.isEmpty()) {
+                last = page.get(page.size() - 1);
+            }
+        } while (page.size() == SCAN_PAGE_SIZE);
+
+        this.ready = true;
+
+        LOGGER.info("Lookup filter built");
+    }
+
+    private void record(final MessageHash hash) {
+        final MessageHashFilter current = this.filter;
+        if (current != null && hash != null) {
+            current.put(hash);
+        }
+    }
+
+    @Override
+    public EncryptedTransaction save(final EncryptedTransaction entity) {
+        this.record(entity.getHash());
+        return delegate.save(entity);
+    }
+
+    @Override
+    public List<EncryptedTransaction> saveAll(final List<EncryptedTransaction> entities) {
+        entities.stream().map(EncryptedTransaction::getHash).forEach(this::record);
+        return delegate.saveAll(entities);
+    }
+
+    @Override
+    public EncryptedTransaction update(final EncryptedTransaction entity) {
+        return delegate.update(entity);
+    }
+
+    @Override
+    public Optional<EncryptedTransaction> retrieveByHash(final MessageHash hash) {
+        if (ready && !filter.mightContain(hash)) {
+            LOGGER.debug("Transaction {} is not stored, skipping lookup", hash);
+            return Optional.empty();
+        }
+        return delegate.retrieveByHash(hash);
+    }
+
+    @Override
+    public List<EncryptedTransaction> retrieveByHashes(final Collection<MessageHash> hashes) {
+        if (!ready) {
+            return delegate.retrieveByHashes(hashes);
+        }
+
+        final List<MessageHash> candidates = hashes.stream().filter(filter::mightContain).collect(Collectors.toList());
+        if (candidates.isEmpty()) {
+            return Collections.emptyList();
+        }
+        return delegate.retrieveByHashes(candidates);
+    }
+
+    @Override
+    public Optional<EncryptedTransaction> retrieveByHashForRead(final MessageHash hash) {
+        if (ready && !filter.mightContain(hash)) {
+            LOGGER.debug("Transaction {} is not stored, skipping lookup", hash);
+            return Optional.empty();
+        }
+        return delegate.retrieveByHashForRead(hash);
+    }
+
+    @Override
+    public List<EncryptedTransaction> retrieveByHashesForRead(final Collection<MessageHash> hashes) {
+        if (!ready) {
+            return delegate.retrieveByHashesForRead(hashes);
+        }
+
+        final List<MessageHash> candidates = hashes.stream().filter(filter::mightContain).collect(Collectors.toList());
+        if (candidates.isEmpty()) {
+            return Collections.emptyList();
+        }
+        return delegate.retrieveByHashesForRead(candidates);
+    }
+
+    @Override
+    public List<EncryptedTransaction> retrieveTransactions(final int offset, final int maxResult) {
+        return delegate.retrieveTransactions(offset, maxResult);
+    }
+
+    @Override
+    public void saveRecipients(final EncryptedTransaction transaction, final Collection<PublicKey> recipients) {
+        delegate.saveRecipients(transaction, recipients);
+    }
+
+    @Override
+    public List<PublicKey> retrieveRecipients(final MessageHash hash) {
+        return delegate.retrieveRecipients(hash);
+    }
+
+    @Override
+    public void saveAllWithRecipients(final Map<EncryptedTransaction, ? extends Collection<PublicKey>> transactions) {
+        transactions.keySet().stream().map(EncryptedTransaction::getHash).forEach(this::record);
+        delegate.saveAllWithRecipients(transactions);
+    }
+
+    @Override
+    public List<EncryptedTransaction> retrieveTransactionsForRecipient(
+            final PublicKey recipient, final EncryptedTransaction after, final int maxResult) {
+        return delegate.retrieveTransactionsForRecipient(recipient, after, maxResult);
+    }
+
+    @Override
+    public List<EncryptedTransaction> retrieveUnindexedTransactions(
+            final EncryptedTransaction after, final int maxResult) {
+        return delegate.retrieveUnindexedTransactions(after, maxResult);
+    }
+
+    @Override
+    public List<MessageHash> retrieveHashes(final MessageHash after, final int maxResult) {
+        return delegate.retrieveHashes(after, maxResult);
+    }
+
+    @Override
+    public long transactionCount() {
+        return delegate.transactionCount();
+    }
+
+    @Override
+    public void delete(final MessageHash hash) {
+        delegate.delete(hash);
+    }
+}
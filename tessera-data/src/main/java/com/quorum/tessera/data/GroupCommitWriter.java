@@ -0,0 +1,239 @@
+package com.quorum.tessera.data;
+
+import com.quorum.tessera.encryption.PublicKey;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Saves new transactions and their recipients, committing the saves of concurrent callers together
+ *
+ * <p>When enabled, each save is queued and a single writer thread collects queued saves until either the batch is
+ * full or the oldest save has waited for the configured delay, then writes them all in one database transaction. A
+ * caller's future only completes once that transaction has committed, so a completed save is exactly as durable as
+ * one written on its own, but many saves share the cost of each commit.
+ *
+ * <p>If a shared write fails, each save in it is retried on its own so that only the saves that actually fail (such
+ * as a transaction that is already stored) are reported as failed. When disabled, each save is written straight away
+ * on the calling thread.
+ */
+public class GroupCommitWriter {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(GroupCommitWriter.class);
+
+    private static final long IDLE_POLL_MILLIS = 100;
+
+    private final EncryptedTransactionDAO encryptedTransactionDAO;
+
+    private final boolean enabled;
+
+    private final int maxBatchSize;
+
+    private final long maxDelayNanos;
+
+    private final BlockingQueue<PendingSave> queue = new LinkedBlockingQueue<>();
+
+    private volatile boolean running;
+
+    private Thread writer;
+
+    public GroupCommitWriter(
+            final EncryptedTransactionDAO encryptedTransactionDAO,
+            final boolean enabled,
+            final int maxBatchSize,
+            final long maxDelayMillis) {
+        if (maxBatchSize < 1) {
+            throw new IllegalArgumentException("Batch size must be at least 1");
+        }
+        this.encryptedTransactionDAO = Objects.requireNonNull(encryptedTransactionDAO);
+        this.enabled = enabled;
+        this.maxBatchSize = maxBatchSize;
+        this.maxDelayNanos = TimeUnit.MILLISECONDS.toNanos(maxDelayMillis);
+    }
+
+    @PostConstruct
+    public synchronized void start() {
+        if (!enabled || running) {
+            return;
+        }
+
+        this.running = true;
+        this.writer = new Thread(this::run, "group-commit-writer");
+        this.writer.setDaemon(true);
+        this.writer.start();
+
+        LOGGER.info("Started group commit writer, batching up to {} saves", maxBatchSize);
+    }
+
+    /**
+     * Stops the writer thread once it has written out anything still queued, so that no caller is left waiting. The
+     * thread is not interrupted, as some drivers close the database file when interrupted mid-write
+     */
+    @PreDestroy
+    public synchronized void stop() {
+        if (!running) {
+            return;
+        }
+
+        this.running = false;
+        try {
+            this.writer.join();
+        } catch (final InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+
+        this.drain();
+
+        LOGGER.info("Stopped group commit writer");
+    }
+
+    /**
+     * Saves a new transaction along with the keys that are party to it
+     *
+     * @param transaction the transaction to save
+     * @param recipients the distinct keys that are party to the transaction
+     * @return a future that completes once the save has been committed, or completes exceptionally if it failed
+     */
+    public CompletableFuture<EncryptedTransaction> save(
+            final EncryptedTransaction transaction, final Collection<PublicKey> recipients) {
+
+        final PendingSave save = new PendingSave(transaction, recipients);
+
+        if (!running) {
+            this.write(Collections.singletonList(save));
+            return save.future;
+        }
+
+        queue.add(save);
+
+        // the writer may have stopped after the check above, in which case nothing else will pick this save up
+        if (!running) {
+            this.drain();
+        }
+
+        return save.future;
+    }
+
+    private void run() {
+        final List<PendingSave> batch = new ArrayList<>(maxBatchSize);
+
+        while (running) {
+            try {
+                final PendingSave first = queue.poll(IDLE_POLL_MILLIS, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+
+                final long deadline = System.nanoTime() + maxDelayNanos;
+                while (batch.size() < maxBatchSize) {
+                    queue.drainTo(batch, maxBatchSize - batch.size());
+                    final long remaining = deadline - System.nanoTime();
+                    if (batch.size() == maxBatchSize || remaining <= 0) {
+                        break;
+                    }
+                    final PendingSave next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+            } catch (final InterruptedException ex) {
+                LOGGER.warn("Group commit writer interrupted, saves will be written on the calling thread");
+                Thread.currentThread().interrupt();
+                this.running = false;
+            }
+
+            if (!batch.isEmpty()) {
+                this.write(batch);
+                batch.clear();
+            }
+        }
+
+        this.drain();
+    }
+
+    private void drain() {
+        final List<PendingSave> remaining = new ArrayList<>();
+        queue.drainTo(remaining);
+        for (int from = 0; from < remaining.size(); from += maxBatchSize) {
+            this.write(remaining.subList(from, Math.min(from + maxBatchSize, remaining.size())));
+        }
+    }
+
+    private void write(final List<PendingSave> batch) {
+        final Map<EncryptedTransaction, Collection<PublicKey>> transactions = new LinkedHashMap<>();
+        final List<PendingSave> included = new ArrayList<>(batch.size());
+        final List<PendingSave> repeated = new ArrayList<>();
+
+        // a second save of the same transaction is written after the others, so it fails on its own as it would have
+        for (final PendingSave save : batch) {
+            if (transactions.putIfAbsent(save.transaction, save.recipients) == null) {
+                included.add(save);
+            } else {
+                repeated.add(save);
+            }
+        }
+
+        try {
+            encryptedTransactionDAO.saveAllWithRecipients(transactions);
+            included.forEach(PendingSave::complete);
+            LOGGER.debug("Committed {} saves together", included.size());
+        } catch (final RuntimeException ex) {
+            if (included.size() == 1) {
+                included.get(0).fail(ex);
+            } else {
+                LOGGER.warn("Saving {} transactions together failed, saving each on its own", included.size());
+                LOGGER.debug(null, ex);
+                included.forEach(this::writeAlone);
+            }
+        }
+
+        repeated.forEach(this::writeAlone);
+    }
+
+    private void writeAlone(final PendingSave save) {
+        try {
+            encryptedTransactionDAO.saveAllWithRecipients(
+                    Collections.singletonMap(save.transaction, save.recipients));
+            save.complete();
+        } catch (final RuntimeException ex) {
+            save.fail(ex);
+        }
+    }
+
+    private static final class PendingSave {
+
+        private final EncryptedTransaction transaction;
+
+        private final Collection<PublicKey> recipients;
+
+        private final CompletableFuture<EncryptedTransaction> future = new CompletableFuture<>();
+
+        private PendingSave(final EncryptedTransaction transaction, final Collection<PublicKey> recipients) {
+            this.transaction = Objects.requireNonNull(transaction);
+            this.recipients = Objects.requireNonNull(recipients);
+        }
+
+        private void complete() {
+            future.complete(transaction);
+        }
+
+        private void fail(final Throwable cause) {
+            future.completeExceptionally(cause);
+        }
+    }
+}
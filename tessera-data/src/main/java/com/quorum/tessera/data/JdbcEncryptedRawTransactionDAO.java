@@ -0,0 +1,103 @@
+package com.quorum.tessera.data;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.persistence.EntityNotFoundException;
+import javax.sql.DataSource;
+import javax.transaction.Transactional;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * A plain JDBC implementation of {@link EncryptedRawTransactionDAO}, working directly against the same table as
+ * {@link EncryptedRawTransactionDAOImpl}
+ */
+@Transactional
+public class JdbcEncryptedRawTransactionDAO implements EncryptedRawTransactionDAO {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(JdbcEncryptedRawTransactionDAO.class);
+
+    private static final String INSERT =
+            "INSERT INTO ENCRYPTED_RAW_TRANSACTION (HASH, ENCRYPTED_PAYLOAD, ENCRYPTED_KEY, NONCE, SENDER, TIMESTAMP)"
+                    + " VALUES (?, ?, ?, ?, ?, ?)";
+
+    private static final String FIND_BY_HASH =
+            "SELECT HASH, ENCRYPTED_PAYLOAD, ENCRYPTED_KEY, NONCE, SENDER, TIMESTAMP"
+                    + " FROM ENCRYPTED_RAW_TRANSACTION WHERE HASH = ?";
+
+    private static final String DELETE = "DELETE FROM ENCRYPTED_RAW_TRANSACTION WHERE HASH = ?";
+
+    private static final String FIND_OLDER_THAN =
+            "SELECT HASH FROM ENCRYPTED_RAW_TRANSACTION WHERE TIMESTAMP < ? ORDER BY TIMESTAMP";
+
+    private final JdbcSupport jdbc;
+
+    public JdbcEncryptedRawTransactionDAO(final DataSource dataSource) {
+        this.jdbc = new JdbcSupport(dataSource, 0);
+    }
+
+    @Override
+    public EncryptedRawTransaction save(final EncryptedRawTransaction entity) {
+        entity.onPersist();
+        jdbc.update(
+                INSERT,
+                statement -> {
+                    statement.setBytes(1, JdbcSupport.bytesOf(entity.getHash()));
+                    statement.setBytes(2, entity.getEncryptedPayload());
+                    statement.setBytes(3, entity.getEncryptedKey());
+                    statement.setBytes(4, entity.getNonce());
+                    statement.setBytes(5, entity.getSender());
+                    statement.setLong(6, entity.getTimestamp());
+                });
+
+        LOGGER.debug("Stored EncryptedRawTransaction with hash {}", entity.getHash());
+        return entity;
+    }
+
+    @Override
+    public Optional<EncryptedRawTransaction> retrieveByHash(final MessageHash hash) {
+        LOGGER.info("Retrieving payload with hash {}", hash);
+
+        return jdbc.query(FIND_BY_HASH, 1, statement -> statement.setBytes(1, hash.getHashBytes()), this::map)
+                .stream()
+                .findAny();
+    }
+
+    @Override
+    public void delete(final MessageHash hash) {
+        LOGGER.info("Deleting transaction with hash {}", hash);
+
+        final int deleted = jdbc.update(DELETE, statement -> statement.setBytes(1, hash.getHashBytes()));
+        if (deleted == 0) {
+            throw new EntityNotFoundException();
+        }
+    }
+
+    @Override
+    public int deleteOlderThan(final long timestamp, final int maxResult) {
+        final List<byte[]> hashes =
+                jdbc.query(
+                        FIND_OLDER_THAN,
+                        maxResult,
+                        statement -> statement.setLong(1, timestamp),
+                        resultSet -> resultSet.getBytes(1));
+
+        jdbc.batch(DELETE, hashes, (statement, hash) -> statement.setBytes(1, hash));
+        return hashes.size();
+    }
+
+    private EncryptedRawTransaction map(final ResultSet resultSet) throws SQLException {
+        final EncryptedRawTransaction transaction =
+                new EncryptedRawTransaction(
+                        new MessageHash(resultSet.getBytes(1)),
+                        resultSet.getBytes(2),
+                        resultSet.getBytes(3),
+                        resultSet.getBytes(4),
+                        resultSet.getBytes(5));
+        transaction.setTimestamp(resultSet.getLong(6));
+        return transaction;
+    }
+}
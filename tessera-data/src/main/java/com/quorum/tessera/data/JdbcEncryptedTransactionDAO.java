@@ -0,0 +1,354 @@
+package com.quorum.tessera.data;
+
+import com.quorum.tessera.encryption.PublicKey;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.persistence.EntityNotFoundException;
+import javax.sql.DataSource;
+import javax.transaction.Transactional;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.stream.Collectors;
+
+import static com.quorum.tessera.data.JdbcSupport.bytesOf;
+
+/**
+ * A plain JDBC implementation of {@link EncryptedTransactionDAO}, working directly against the same tables as
+ * {@link EncryptedTransactionDAOImpl}
+ *
+ * <p>There is no persistence context, so transactions read through this DAO are not tracked: changes to one are only
+ * written by passing it to {@link #update(EncryptedTransaction)}. The data source should take part in the current
+ * transaction, so that what is written here is committed or rolled back along with everything else.
+ */
+@Transactional
+public class JdbcEncryptedTransactionDAO implements EncryptedTransactionDAO {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(JdbcEncryptedTransactionDAO.class);
+
+    // keeps each IN list well inside the bind parameter limits of the supported databases
+    private static final int MAX_HASHES_PER_QUERY = 500;
+
+    private static final String TRANSACTION_COLUMNS = "et.HASH, et.ENCODED_PAYLOAD, et.RECIPIENT_KEY, et.TIMESTAMP";
+
+    private static final String INSERT =
+            "INSERT INTO ENCRYPTED_TRANSACTION (HASH, ENCODED_PAYLOAD, RECIPIENT_KEY, TIMESTAMP) VALUES (?, ?, ?, ?)";
+
+    private static final String UPDATE =
+            "UPDATE ENCRYPTED_TRANSACTION SET ENCODED_PAYLOAD = ?, RECIPIENT_KEY = ? WHERE HASH = ?";
+
+    private static final String INSERT_RECIPIENT =
+            "INSERT INTO ENCRYPTED_TRANSACTION_RECIPIENT (HASH, RECIPIENT, TIMESTAMP) VALUES (?, ?, ?)";
+
+    private static final String FIND_RECIPIENTS =
+            "SELECT RECIPIENT FROM ENCRYPTED_TRANSACTION_RECIPIENT WHERE HASH = ?";
+
+    private static final String FIND_BY_HASH =
+            "SELECT " + TRANSACTION_COLUMNS + " FROM ENCRYPTED_TRANSACTION et WHERE et.HASH = ?";
+
+    private static final String FIND_BY_HASH_IN =
+            "SELECT " + TRANSACTION_COLUMNS + " FROM ENCRYPTED_TRANSACTION et WHERE et.HASH IN ";
+
+    private static final String FIND_ALL =
+            "SELECT " + TRANSACTION_COLUMNS + " FROM ENCRYPTED_TRANSACTION et ORDER BY et.TIMESTAMP, et.HASH";
+
+    private static final String FIND_ALL_AFTER =
+            "SELECT "
+                    + TRANSACTION_COLUMNS
+                    + " FROM ENCRYPTED_TRANSACTION et"
+                    + " WHERE et.TIMESTAMP > ? OR (et.TIMESTAMP = ? AND et.HASH > ?)"
+                    + " ORDER BY et.TIMESTAMP, et.HASH";
+
+    private static final String FIND_FOR_RECIPIENT =
+            "SELECT "
+                    + TRANSACTION_COLUMNS
+                    + " FROM ENCRYPTED_TRANSACTION_RECIPIENT r JOIN ENCRYPTED_TRANSACTION et ON et.HASH = r.HASH"
+                    + " WHERE r.RECIPIENT = ?"
+                    + " ORDER BY r.TIMESTAMP, r.HASH";
+
+    private static final String FIND_FOR_RECIPIENT_AFTER =
+            "SELECT "
+                    + TRANSACTION_COLUMNS
+                    + " FROM ENCRYPTED_TRANSACTION_RECIPIENT r JOIN ENCRYPTED_TRANSACTION et ON et.HASH = r.HASH"
+                    + " WHERE r.RECIPIENT = ? AND (r.TIMESTAMP > ? OR (r.TIMESTAMP = ? AND r.HASH > ?))"
+                    + " ORDER BY r.TIMESTAMP, r.HASH";
+
+    private static final String NOT_INDEXED =
+            " NOT EXISTS (SELECT 1 FROM ENCRYPTED_TRANSACTION_RECIPIENT r WHERE r.HASH = et.HASH)";
+
+    private static final String FIND_UNINDEXED =
+            "SELECT "
+                    + TRANSACTION_COLUMNS
+                    + " FROM ENCRYPTED_TRANSACTION et WHERE"
+                    + NOT_INDEXED
+                    + " ORDER BY et.HASH";
+
+    private static final String FIND_UNINDEXED_AFTER =
+            "SELECT "
+                    + TRANSACTION_COLUMNS
+                    + " FROM ENCRYPTED_TRANSACTION et WHERE et.HASH > ? AND"
+                    + NOT_INDEXED
+                    + " ORDER BY et.HASH";
+
+    private static final String FIND_HASHES = "SELECT et.HASH FROM ENCRYPTED_TRANSACTION et ORDER BY et.HASH";
+
+    private static final String FIND_HASHES_AFTER =
+            "SELECT et.HASH FROM ENCRYPTED_TRANSACTION et WHERE et.HASH > ? ORDER BY et.HASH";
+
+    private static final String COUNT = "SELECT COUNT(*) FROM ENCRYPTED_TRANSACTION";
+
+    private static final String DELETE = "DELETE FROM ENCRYPTED_TRANSACTION WHERE HASH = ?";
+
+    private static final String DELETE_RECIPIENTS = "DELETE FROM ENCRYPTED_TRANSACTION_RECIPIENT WHERE HASH = ?";
+
+    private final JdbcSupport jdbc;
+
+    public JdbcEncryptedTransactionDAO(final DataSource dataSource, final int fetchSize) {
+        this.jdbc = new JdbcSupport(dataSource, fetchSize);
+    }
+
+    @Override
+    public EncryptedTransaction save(final EncryptedTransaction entity) {
+        entity.onPersist();
+        jdbc.update(INSERT, statement -> bindInsert(statement, entity));
+        LOGGER.info("Stored transaction {}", entity.getHash());
+        return entity;
+    }
+
+    @Override
+    public List<EncryptedTransaction> saveAll(final List<EncryptedTransaction> entities) {
+        entities.forEach(EncryptedTransaction::onPersist);
+        jdbc.batch(INSERT, entities, JdbcEncryptedTransactionDAO::bindInsert);
+        LOGGER.info("Stored batch of {} transactions", entities.size());
+        return entities;
+    }
+
+    private static void bindInsert(final PreparedStatement statement, final EncryptedTransaction entity)
+            throws SQLException {
+        statement.setBytes(1, bytesOf(entity.getHash()));
+        statement.setBytes(2, entity.getEncodedPayload());
+        statement.setBytes(3, entity.getRecipientKey());
+        statement.setLong(4, entity.getTimestamp());
+    }
+
+    @Override
+    public EncryptedTransaction update(final EncryptedTransaction entity) {
+        final int updated =
+                jdbc.update(
+                        UPDATE,
+                        statement -> {
+                            statement.setBytes(1, entity.getEncodedPayload());
+                            statement.setBytes(2, entity.getRecipientKey());
+                            statement.setBytes(3, bytesOf(entity.getHash()));
+                        });
+
+        if (updated == 0) {
+            throw new EntityNotFoundException("No transaction with hash " + entity.getHash());
+        }
+
+        LOGGER.info("Updated transaction {}", entity.getHash());
+        return entity;
+    }
+
+    @Override
+    public Optional<EncryptedTransaction> retrieveByHash(final MessageHash hash) {
+        LOGGER.info("Retrieving payload with hash {}", hash);
+
+        return jdbc.query(FIND_BY_HASH, 1, statement -> statement.setBytes(1, hash.getHashBytes()), this::map)
+                .stream()
+                .findAny();
+    }
+
+    @Override
+    public List<EncryptedTransaction> retrieveByHashes(final Collection<MessageHash> hashes) {
+        LOGGER.info("Retrieving {} payloads by hash", hashes.size());
+
+        final List<MessageHash> distinct = hashes.stream().distinct().collect(Collectors.toList());
+
+        final List<EncryptedTransaction> results = new ArrayList<>(distinct.size());
+        for (int from = 0; from < distinct.size(); from += MAX_HASHES_PER_QUERY) {
+            final List<MessageHash> chunk =
+                    distinct.subList(from, Math.min(from + MAX_HASHES_PER_QUERY, distinct.size()));
+            final String sql = FIND_BY_HASH_IN + "(" + String.join(", ", Collections.nCopies(chunk.size(), "?")) + ")";
+
+            results.addAll(
+                    jdbc.query(
+                            sql,
+                            chunk.size(),
+                            statement -> {
+                                for (int i = 0; i < chunk.size(); i++) {
+                                    statement.setBytes(i + 1, chunk.get(i).getHashBytes());
+                                }
+                            },
+                            this::map));
+        }
+        return results;
+    }
+
+    @Override
+    public Optional<EncryptedTransaction> retrieveByHashForRead(final MessageHash hash) {
+        return this.retrieveByHash(hash);
+    }
+
+    @Override
+    public List<EncryptedTransaction> retrieveByHashesForRead(final Collection<MessageHash> hashes) {
+        return this.retrieveByHashes(hashes);
+    }
+
+    @Override
+    public List<EncryptedTransaction> retrieveTransactions(final int offset, final int maxResult) {
+        LOGGER.info("Fetching batch(offset:{},maxResult:{}) EncryptedTransaction database rows", offset, maxResult);
+
+        return jdbc.page(FIND_ALL, offset, maxResult, this::map);
+    }
+
+    /**
+     * Retrieves the next page of stored transactions, in the same order as {@link #retrieveTransactions(int, int)}, by
+     * seeking past the last transaction of the previous page rather than by offset
+     *
+     * @param after the last transaction of the previous page, or {@code null} to retrieve the first page
+     * @param maxResult the maximum number of records to return
+     * @return The list of requested rows from the database
+     */
+    public List<EncryptedTransaction> retrieveTransactionsAfter(final EncryptedTransaction after, final int maxResult) {
+        if (after == null) {
+            return jdbc.query(FIND_ALL, maxResult, statement -> {}, this::map);
+        }
+
+        return jdbc.query(
+                FIND_ALL_AFTER,
+                maxResult,
+                statement -> {
+                    statement.setLong(1, after.getTimestamp());
+                    statement.setLong(2, after.getTimestamp());
+                    statement.setBytes(3, after.getHash().getHashBytes());
+                },
+                this::map);
+    }
+
+    @Override
+    public void saveRecipients(final EncryptedTransaction transaction, final Collection<PublicKey> recipients) {
+        jdbc.batch(
+                INSERT_RECIPIENT,
+                recipients,
+                (statement, recipient) -> {
+                    statement.setBytes(1, bytesOf(transaction.getHash()));
+                    statement.setBytes(2, recipient.getKeyBytes());
+                    statement.setLong(3, transaction.getTimestamp());
+                });
+    }
+
+    @Override
+    public List<PublicKey> retrieveRecipients(final MessageHash hash) {
+        return jdbc.query(
+                FIND_RECIPIENTS,
+                Integer.MAX_VALUE,
+                statement -> statement.setBytes(1, hash.getHashBytes()),
+                rs -> PublicKey.from(rs.getBytes(1)));
+    }
+
+    @Override
+    public void saveAllWithRecipients(final Map<EncryptedTransaction, ? extends Collection<PublicKey>> transactions) {
+        this.saveAll(new ArrayList<>(transactions.keySet()));
+
+        final List<Map.Entry<EncryptedTransaction, PublicKey>> recipients = new ArrayList<>();
+        transactions.forEach(
+                (transaction, keys) ->
+                        keys.forEach(key -> recipients.add(new AbstractMap.SimpleImmutableEntry<>(transaction, key))));
+
+        jdbc.batch(
+                INSERT_RECIPIENT,
+                recipients,
+                (statement, recipient) -> {
+                    statement.setBytes(1, bytesOf(recipient.getKey().getHash()));
+                    statement.setBytes(2, recipient.getValue().getKeyBytes());
+                    statement.setLong(3, recipient.getKey().getTimestamp());
+                });
+    }
+
+    @Override
+    public List<EncryptedTransaction> retrieveTransactionsForRecipient(
+            final PublicKey recipient, final EncryptedTransaction after, final int maxResult) {
+
+        if (after == null) {
+            return jdbc.query(
+                    FIND_FOR_RECIPIENT,
+                    maxResult,
+                    statement -> statement.setBytes(1, recipient.getKeyBytes()),
+                    this::map);
+        }
+
+        return jdbc.query(
+                FIND_FOR_RECIPIENT_AFTER,
+                maxResult,
+                statement -> {
+                    statement.setBytes(1, recipient.getKeyBytes());
+                    statement.setLong(2, after.getTimestamp());
+                    statement.setLong(3, after.getTimestamp());
+                    statement.setBytes(4, after.getHash().getHashBytes());
+                },
+                this::map);
+    }
+
+    @Override
+    public List<EncryptedTransaction> retrieveUnindexedTransactions(
+            final EncryptedTransaction after, final int maxResult) {
+
+        if (after == null) {
+            return jdbc.query(FIND_UNINDEXED, maxResult, statement -> {}, this::map);
+        }
+
+        return jdbc.query(
+                FIND_UNINDEXED_AFTER,
+                maxResult,
+                statement -> statement.setBytes(1, after.getHash().getHashBytes()),
+                this::map);
+    }
+
+    @Override
+    public List<MessageHash> retrieveHashes(final MessageHash after, final int maxResult) {
+
+        if (after == null) {
+            return jdbc.query(FIND_HASHES, maxResult, statement -> {}, rs -> new MessageHash(rs.getBytes(1)));
+        }
+
+        return jdbc.query(
+                FIND_HASHES_AFTER,
+                maxResult,
+                statement -> statement.setBytes(1, after.getHashBytes()),
+                rs -> new MessageHash(rs.getBytes(1)));
+    }
+
+    @Override
+    public long transactionCount() {
+        return jdbc.query(COUNT, 1, statement -> {}, rs -> rs.getLong(1)).get(0);
+    }
+
+    @Override
+    public void delete(final MessageHash hash) {
+        LOGGER.info("Deleting transaction with hash {}", hash);
+
+        final int deleted = jdbc.update(DELETE, statement -> statement.setBytes(1, hash.getHashBytes()));
+        if (deleted == 0) {
+            throw new EntityNotFoundException();
+        }
+
+        jdbc.update(DELETE_RECIPIENTS, statement -> statement.setBytes(1, hash.getHashBytes()));
+    }
+
+    private EncryptedTransaction map(final ResultSet resultSet) throws SQLException {
+        final EncryptedTransaction transaction =
+                new EncryptedTransaction(
+                        new MessageHash(resultSet.getBytes(1)), resultSet.getBytes(2), resultSet.getBytes(3));
+        transaction.setTimestamp(resultSet.getLong(4));
+        return transaction;
+    }
+}
@@ -0,0 +1,160 @@
+package com.quorum.tessera.data;
+
+import javax.persistence.PersistenceException;
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Locale;
+import java.util.Objects;
+
+/**
+ * Runs statements for the plain JDBC data access objects
+ *
+ * <p>A connection is taken from the data source for each operation and handed back straight after, so when the data
+ * source is aware of the current transaction every statement runs as part of it. Statements are always prepared from
+ * the same constant SQL, so that driver and pool statement caches can reuse them. Failures are rethrown as a
+ * {@link PersistenceException}, the same as the JPA implementations.
+ */
+final class JdbcSupport {
+
+    @FunctionalInterface
+    interface Binder {
+        void bind(PreparedStatement statement) throws SQLException;
+    }
+
+    @FunctionalInterface
+    interface ItemBinder<T> {
+        void bind(PreparedStatement statement, T item) throws SQLException;
+    }
+
+    @FunctionalInterface
+    interface RowMapper<T> {
+        T map(ResultSet resultSet) throws SQLException;
+    }
+
+    // the databases that do not support the standard OFFSET and FETCH clauses
+    private static final List<String> LIMIT_CLAUSE_DATABASES = Arrays.asList("sqlite", "mysql", "mariadb");
+
+    private final DataSource dataSource;
+
+    private final int fetchSize;
+
+    private volatile Boolean limitClause;
+
+    JdbcSupport(final DataSource dataSource, final int fetchSize) {
+        this.dataSource = Objects.requireNonNull(dataSource);
+        this.fetchSize = fetchSize;
+    }
+
+    /**
+     * Runs a query, reading the rows in pages of the configured fetch size
+     *
+     * @param sql the query
+     * @param maxRows the maximum number of rows to return
+     * @param binder sets the parameters of the query
+     * @param mapper reads a single row
+     * @return the rows that were read
+     */
+    <T> List<T> query(final String sql, final int maxRows, final Binder binder, final RowMapper<T> mapper) {
+        try (Connection connection = dataSource.getConnection();
+                PreparedStatement statement = connection.prepareStatement(sql)) {
+
+            binder.bind(statement);
+            statement.setMaxRows(maxRows);
+            if (fetchSize > 0) {
+                statement.setFetchSize(Math.min(fetchSize, maxRows));
+            }
+
+            try (ResultSet resultSet = statement.executeQuery()) {
+                final List<T> results = new ArrayList<>();
+                while (resultSet.next()) {
+                    results.add(mapper.map(resultSet));
+                }
+                return results;
+            }
+        } catch (final SQLException ex) {
+            throw new PersistenceException(ex);
+        }
+    }
+
+    /**
+     * Runs an ordered query that has no parameters, returning only the rows from an offset onwards. The offset is
+     * applied by the database, using whichever paging clause it supports, so the skipped rows are never sent back.
+     *
+     * @param sql the query, which must end with its ORDER BY clause
+     * @param offset the number of leading rows to skip
+     * @param maxRows the maximum number of rows to return
+     * @param mapper reads a single row
+     * @return the rows that were read
+     */
+    <T> List<T> page(final String sql, final int offset, final int maxRows, final RowMapper<T> mapper) {
+        final boolean limitFirst = this.usesLimitClause();
+        return this.query(
+                sql + (limitFirst ? " LIMIT ? OFFSET ?" : " OFFSET ? ROWS FETCH NEXT ? ROWS ONLY"),
+                maxRows,
+                statement -> {
+                    statement.setInt(limitFirst ? 1 : 2, maxRows);
+                    statement.setInt(limitFirst ? 2 : 1, offset);
+                },
+                mapper);
+    }
+
+    /**
+     * Whether the database only understands LIMIT and OFFSET, rather than the standard OFFSET and FETCH clauses, which
+     * is looked up once from the database itself
+     */
+    private boolean usesLimitClause() {
+        if (limitClause == null) {
+            try (Connection connection = dataSource.getConnection()) {
+                final String product = connection.getMetaData().getDatabaseProductName().toLowerCase(Locale.ROOT);
+                limitClause = LIMIT_CLAUSE_DATABASES.stream().anyMatch(product::contains);
+            } catch (final SQLException ex) {
+                throw new PersistenceException(ex);
+            }
+        }
+        return limitClause;
+    }
+
+    /**
+     * Runs an insert, update or delete
+     *
+     * @return the number of rows changed
+     */
+    int update(final String sql, final Binder binder) {
+        try (Connection connection = dataSource.getConnection();
+                PreparedStatement statement = connection.prepareStatement(sql)) {
+            binder.bind(statement);
+            return statement.executeUpdate();
+        } catch (final SQLException ex) {
+            throw new PersistenceException(ex);
+        }
+    }
+
+    /** Runs the same statement once for each item, sent to the database as a single JDBC batch */
+    <T> void batch(final String sql, final Collection<T> items, final ItemBinder<T> binder) {
+        if (items.isEmpty()) {
+            return;
+        }
+
+        try (Connection connection = dataSource.getConnection();
+                PreparedStatement statement = connection.prepareStatement(sql)) {
+            for (final T item : items) {
+                binder.bind(statement, item);
+                statement.addBatch();
+            }
+            statement.executeBatch();
+        } catch (final SQLException ex) {
+            throw new PersistenceException(ex);
+        }
+    }
+
+    static byte[] bytesOf(final MessageHash hash) {
+        return hash == null ? null : hash.getHashBytes();
+    }
+}
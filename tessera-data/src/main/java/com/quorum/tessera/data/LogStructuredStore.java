@@ -0,0 +1,931 @@
+package com.quorum.tessera.data;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * An embedded key/value store kept in an append-only log file, used in place of a database by the embedded data
+ * access objects
+ *
+ * <p>Values are grouped into tables, and each has a key and a timestamp. Every batch of changes is appended to the log
+ * followed by a commit marker and flushed to disk before it is applied, so after a crash a batch is either recovered
+ * whole or not at all. Where each live value sits in the log is kept in memory, ordered both by key and by timestamp so
+ * that the ordered scans the data access objects need are answered without reading the log.
+ *
+ * <p>The in-memory index is written to a snapshot whenever enough has been appended since the last one, so on startup
+ * only the log written after the snapshot needs to be read. Replaced and deleted values stay in the log until more of
+ * it is dead than live, at which point the live values are copied to a new log that replaces the old one. Both run on
+ * a background thread. Compaction copies the live values while writes carry on, and only holds up writes while it
+ * copies over the changes made in the meantime and swaps in the new log; reads are only held up by the swap.
+ *
+ * <p>A new log is written under a temporary name and only renamed once it is complete, so on startup the newest log
+ * is always a complete one. The log named by the snapshot is recovered, or the newest log if there is no snapshot.
+ */
+public class LogStructuredStore {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(LogStructuredStore.class);
+
+    private static final Pattern LOG_NAME = Pattern.compile("log-(\\d{8})\\.dat");
+
+    private static final Pattern PARTIAL_LOG_NAME = Pattern.compile("log-(\\d{8})\\.dat\\.tmp");
+
+    private static final String SNAPSHOT = "snapshot.dat";
+
+    private static final int SNAPSHOT_MAGIC = 0x54534c53;
+
+    private static final byte PUT = 1;
+
+    private static final byte DELETE = 2;
+
+    private static final byte COMMIT = 3;
+
+    // length and checksum of the record body
+    private static final int RECORD_HEADER = Integer.BYTES + Integer.BYTES;
+
+    private static final int COMPACTION_BATCH = 1_000;
+
+    /** Orders keys as unsigned bytes, the same as the hash columns of the database */
+    static final Comparator<byte[]> KEY_ORDER =
+            (first, second) -> {
+                final int common = Math.min(first.length, second.length);
+                for (int i = 0; i < common; i++) {
+                    final int compared = Integer.compare(first[i] & 0xff, second[i] & 0xff);
+                    if (compared != 0) {
+                        return compared;
+                    }
+                }
+                return Integer.compare(first.length, second.length);
+            };
+
+    private static final Comparator<Entry> TIME_ORDER =
+            Comparator.<Entry>comparingLong(entry -> entry.timestamp).thenComparing(entry -> entry.key, KEY_ORDER);
+
+    private final Path directory;
+
+    private final long snapshotThreshold;
+
+    private final long compactionThreshold;
+
+    private final Object writeLock = new Object();
+
+    // only one compaction runs at a time, and it is taken before the write lock
+    private final Object compactionLock = new Object();
+
+    // held for writing only while compaction swaps in the new log, so no read is left with a location in the old one
+    private final ReadWriteLock swapLock = new ReentrantReadWriteLock();
+
+    private volatile Map<Byte, Table> tables = new ConcurrentHashMap<>();
+
+    private ScheduledExecutorService maintenance;
+
+    private FileChannel log;
+
+    private int generation;
+
+    private long position;
+
+    private long liveBytes;
+
+    private long snapshotPosition;
+
+    // the changes written while a compaction is copying the live values, which it copies over before swapping logs
+    private List<Change> writtenDuringCompaction;
+
+    /**
+     * @param directory the directory holding the log and snapshot
+     * @param snapshotThreshold how many bytes are appended to the log before the index is written to a new snapshot
+     * @param compactionThreshold how many dead bytes the log must hold before it is compacted
+     */
+    public LogStructuredStore(final Path directory, final long snapshotThreshold, final long compactionThreshold) {
+        this.directory = Objects.requireNonNull(directory, "A directory is needed for the embedded store");
+        this.snapshotThreshold = snapshotThreshold;
+        this.compactionThreshold = compactionThreshold;
+    }
+
+    /** Loads the latest snapshot, replays the log written after it and starts background maintenance */
+    @PostConstruct
+    public void init() {
+        synchronized (writeLock) {
+            try {
+                this.recover();
+            } catch (final IOException ex) {
+                throw new UncheckedIOException(ex);
+            }
+        }
+
+        this.maintenance =
+                Executors.newSingleThreadScheduledExecutor(
+                        runnable -> {
+                            final Thread thread = new Thread(runnable, "embedded-store-maintenance");
+                            thread.setDaemon(true);
+                            return thread;
+                        });
+        this.maintenance.scheduleWithFixedDelay(this::maintain, 1, 1, TimeUnit.MINUTES);
+
+        LOGGER.info("Opened embedded store in {} with {} bytes of log", directory, position);
+    }
+
+    /** Stops background maintenance and writes a final snapshot, so the next startup has nothing to replay */
+    @PreDestroy
+    public void close() {
+        if (maintenance != null) {
+            maintenance.shutdown();
+            try {
+                maintenance.awaitTermination(1, TimeUnit.MINUTES);
+            } catch (final InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        synchronized (writeLock) {
+            if (log == null) {
+                return;
+            }
+            try {
+                if (position > snapshotPosition) {
+                    this.writeSnapshot(generation, position, tables);
+                    this.snapshotPosition = position;
+                }
+                log.close();
+            } catch (final IOException ex) {
+                throw new UncheckedIOException(ex);
+            } finally {
+                this.log = null;
+            }
+        }
+    }
+
+    /**
+     * Appends a batch of changes to the log, flushing it to disk, and then applies them to the index
+     *
+     * @param changes the changes to make together
+     */
+    void write(final List<Change> changes) {
+        if (changes.isEmpty()) {
+            return;
+        }
+
+        synchronized (writeLock) {
+            if (log == null) {
+                throw new IllegalStateException("Embedded store is not open");
+            }
+
+            final int size = changes.stream().mapToInt(Change::recordSize).sum() + RECORD_HEADER + Byte.BYTES;
+            final ByteBuffer buffer = ByteBuffer.allocate(size);
+            final List<Entry> entries = new ArrayList<>(changes.size());
+            for (final Change change : changes) {
+                entries.add(change.writeTo(buffer, position));
+            }
+            writeCommit(buffer);
+            buffer.flip();
+
+            try {
+                writeFully(log, buffer, position);
+                log.force(false);
+            } catch (final IOException ex) {
+                throw new UncheckedIOException(ex);
+            }
+
+            this.position += size;
+            if (writtenDuringCompaction != null) {
+                writtenDuringCompaction.addAll(changes);
+            }
+            for (int i = 0; i < changes.size(); i++) {
+                this.apply(tables, changes.get(i).table, changes.get(i).key, entries.get(i));
+            }
+        }
+    }
+
+    Optional<Value> get(final byte table, final byte[] key) {
+        return this.read(
+                current -> Optional.ofNullable(this.table(current, table).byKey.get(key)).map(this::value));
+    }
+
+    /** @return the values stored under any of the given keys, leaving out keys that are not stored */
+    List<Value> getAll(final byte table, final Collection<byte[]> keys) {
+        return this.read(
+                current -> {
+                    final NavigableMap<byte[], Entry> byKey = this.table(current, table).byKey;
+                    final List<Value> values = new ArrayList<>();
+                    final TreeSet<byte[]> distinct = new TreeSet<>(KEY_ORDER);
+                    distinct.addAll(keys);
+                    for (final byte[] key : distinct) {
+                        final Entry entry = byKey.get(key);
+                        if (entry != null) {
+                            values.add(this.value(entry));
+                        }
+                    }
+                    return values;
+                });
+    }
+
+    boolean contains(final byte table, final byte[] key) {
+        return this.table(tables, table).byKey.containsKey(key);
+    }
+
+    long timestampOf(final byte table, final byte[] key) {
+        final Entry entry = this.table(tables, table).byKey.get(key);
+        return entry == null ? 0L : entry.timestamp;
+    }
+
+    int size(final byte table) {
+        return this.table(tables, table).byKey.size();
+    }
+
+    /** @return the next keys of a table in key order, starting after the given key or from the start if it is null */
+    List<byte[]> keys(final byte table, final byte[] after, final int max) {
+        final NavigableMap<byte[], Entry> byKey = this.table(tables, table).byKey;
+        final NavigableMap<byte[], Entry> from = after == null ? byKey : byKey.tailMap(after, false);
+        final List<byte[]> keys = new ArrayList<>(Math.min(max, 1024));
+        for (final Iterator<byte[]> it = from.keySet().iterator(); it.hasNext() && keys.size() < max; ) {
+            keys.add(it.next());
+        }
+        return keys;
+    }
+
+    /**
+     * @return the next values of a table in key order that match the filter, starting after the given key or from the
+     *     start if it is null
+     */
+    List<Value> scanByKey(final byte table, final byte[] after, final int max, final Predicate<byte[]> filter) {
+        return this.read(
+                current -> {
+                    final NavigableMap<byte[], Entry> byKey = this.table(current, table).byKey;
+                    final NavigableMap<byte[], Entry> from = after == null ? byKey : byKey.tailMap(after, false);
+                    final List<Value> values = new ArrayList<>(Math.min(max, 1024));
+                    for (final Iterator<Entry> it = from.values().iterator(); it.hasNext() && values.size() < max; ) {
+                        final Entry entry = it.next();
+                        if (filter.test(entry.key)) {
+                            values.add(this.value(entry));
+                        }
+                    }
+                    return values;
+                });
+    }
+
+    /** @return the values of a table ordered by timestamp and then key, skipping the given number of values */
+    List<Value> scanByTime(final byte table, final int skip, final int max) {
+        return this.read(
+                current -> {
+                    final Iterator<Entry> it = this.table(current, table).byTime.iterator();
+                    for (int skipped = 0; skipped < skip && it.hasNext(); skipped++) {
+                        it.next();
+                    }
+                    final List<Value> values = new ArrayList<>(Math.min(max, 1024));
+                    while (it.hasNext() && values.size() < max) {
+                        values.add(this.value(it.next()));
+                    }
+                    return values;
+                });
+    }
+
+    /** Passes every value of a table to the consumer, in key order */
+    void forEach(final byte table, final Consumer<Value> consumer) {
+        byte[] after = null;
+        List<Value> page;
+        do {
+            page = this.scanByKey(table, after, COMPACTION_BATCH, key -> true);
+            page.forEach(consumer);
+            if (!page.isEmpty()) {
+                after = page.get(page.size() - 1).getKey();
+            }
+        } while (page.size() == COMPACTION_BATCH);
+    }
+
+    /** Writes a snapshot if enough has been appended since the last one, or compacts the log if enough of it is dead */
+    void maintain() {
+        try {
+            final boolean compact;
+            synchronized (writeLock) {
+                if (log == null) {
+                    return;
+                }
+                final long dead = position - liveBytes;
+                compact = dead > liveBytes && dead > compactionThreshold;
+                if (!compact && position - snapshotPosition > snapshotThreshold) {
+                    this.snapshot();
+                }
+            }
+            if (compact) {
+                this.compact();
+            }
+        } catch (final RuntimeException ex) {
+            LOGGER.warn("Embedded store maintenance failed: {}", ex.getMessage());
+            LOGGER.debug(null, ex);
+        }
+    }
+
+    void snapshot() {
+        synchronized (writeLock) {
+            try {
+                this.writeSnapshot(generation, position, tables);
+            } catch (final IOException ex) {
+                throw new UncheckedIOException(ex);
+            }
+            this.snapshotPosition = position;
+            LOGGER.debug("Wrote embedded store snapshot at {} bytes of log", position);
+        }
+    }
+
+    /**
+     * Copies the live values to a new log, then switches reads and writes over to it and deletes the old log
+     *
+     * <p>The live values are copied without holding up writes. Anything written in the meantime is recorded, and is
+     * copied to the new log once the write lock is taken for the swap, in the order it was written, so the new log
+     * ends up the same as if writes had been held up throughout.
+     */
+    void compact() {
+        synchronized (compactionLock) {
+            final Map<Byte, Table> current;
+            final int next;
+            synchronized (writeLock) {
+                if (log == null) {
+                    return;
+                }
+                current = this.tables;
+                next = generation + 1;
+                this.writtenDuringCompaction = new ArrayList<>();
+            }
+
+            final Path partialFile = this.partialLogFile(next);
+            final Map<Byte, Table> compacted = new ConcurrentHashMap<>();
+            FileChannel nextLog = null;
+            try {
+                nextLog =
+                        FileChannel.open(
+                                partialFile,
+                                StandardOpenOption.CREATE,
+                                StandardOpenOption.TRUNCATE_EXISTING,
+                                StandardOpenOption.READ,
+                                StandardOpenOption.WRITE);
+
+                long nextPosition = 0;
+                for (final Map.Entry<Byte, Table> table : current.entrySet()) {
+                    final List<Change> batch = new ArrayList<>(COMPACTION_BATCH);
+                    for (final Entry entry : table.getValue().byKey.values()) {
+                        batch.add(Change.put(table.getKey(), entry.key, entry.timestamp, this.readValue(entry)));
+                        if (batch.size() == COMPACTION_BATCH) {
+                            nextPosition = appendTo(nextLog, nextPosition, batch, compacted);
+                            batch.clear();
+                        }
+                    }
+                    nextPosition = appendTo(nextLog, nextPosition, batch, compacted);
+                }
+
+                synchronized (writeLock) {
+                    if (log == null) {
+                        throw new IllegalStateException("Embedded store was closed while being compacted");
+                    }
+
+                    final List<Change> written = this.writtenDuringCompaction;
+                    for (int from = 0; from < written.size(); from += COMPACTION_BATCH) {
+                        final List<Change> batch =
+                                written.subList(from, Math.min(from + COMPACTION_BATCH, written.size()));
+                        nextPosition = appendTo(nextLog, nextPosition, batch, compacted);
+                    }
+                    nextLog.force(false);
+
+                    // once renamed the new log is complete, and once this snapshot is in place it is the one
+                    // recovered on startup
+                    Files.move(partialFile, this.logFile(next), StandardCopyOption.ATOMIC_MOVE);
+                    this.writeSnapshot(next, nextPosition, compacted);
+
+                    this.swap(nextLog, compacted, next, nextPosition);
+                    nextLog = null;
+                }
+            } catch (final IOException ex) {
+                throw new UncheckedIOException(ex);
+            } finally {
+                synchronized (writeLock) {
+                    this.writtenDuringCompaction = null;
+                }
+                if (nextLog != null) {
+                    this.discard(nextLog, next);
+                }
+            }
+        }
+    }
+
+    /** Switches reads and writes over to a compacted log, and deletes the old one */
+    private void swap(
+            final FileChannel nextLog, final Map<Byte, Table> compacted, final int next, final long nextPosition) {
+        final FileChannel previous = this.log;
+        final int previousGeneration = generation;
+        final long previousSize = position;
+
+        swapLock.writeLock().lock();
+        try {
+            this.log = nextLog;
+            this.tables = compacted;
+            this.generation = next;
+            this.position = nextPosition;
+            this.liveBytes = nextPosition;
+            this.snapshotPosition = nextPosition;
+        } finally {
+            swapLock.writeLock().unlock();
+        }
+
+        try {
+            previous.close();
+            Files.deleteIfExists(this.logFile(previousGeneration));
+        } catch (final IOException ex) {
+            LOGGER.warn("Unable to delete compacted log {}: {}", previousGeneration, ex.getMessage());
+        }
+
+        LOGGER.info("Compacted embedded store log from {} to {} bytes", previousSize, nextPosition);
+    }
+
+    /** Deletes a compacted log that was never switched over to, whether or not it was finished */
+    private void discard(final FileChannel unused, final int unusedGeneration) {
+        try {
+            unused.close();
+            Files.deleteIfExists(this.partialLogFile(unusedGeneration));
+            Files.deleteIfExists(this.logFile(unusedGeneration));
+        } catch (final IOException ex) {
+            LOGGER.warn("Unable to delete unused compacted log {}: {}", unusedGeneration, ex.getMessage());
+        }
+    }
+
+    private long appendTo(
+            final FileChannel channel, final long at, final List<Change> batch, final Map<Byte, Table> index)
+            throws IOException {
+        if (batch.isEmpty()) {
+            return at;
+        }
+
+        final int size = batch.stream().mapToInt(Change::recordSize).sum() + RECORD_HEADER + Byte.BYTES;
+        final ByteBuffer buffer = ByteBuffer.allocate(size);
+        for (final Change change : batch) {
+            this.apply(index, change.table, change.key, change.writeTo(buffer, at));
+        }
+        writeCommit(buffer);
+        buffer.flip();
+        writeFully(channel, buffer, at);
+        return at + size;
+    }
+
+    private void apply(final Map<Byte, Table> index, final byte table, final byte[] key, final Entry entry) {
+        final Table target = this.table(index, table);
+
+        final Entry previous = entry == null ? target.byKey.remove(key) : target.byKey.put(key, entry);
+        if (previous != null) {
+            target.byTime.remove(previous);
+            if (index == tables) {
+                this.liveBytes -= previous.recordSize();
+            }
+        }
+        if (entry != null) {
+            target.byTime.add(entry);
+            if (index == tables) {
+                this.liveBytes += entry.recordSize();
+            }
+        }
+    }
+
+    private Table table(final Map<Byte, Table> index, final byte table) {
+        return index.computeIfAbsent(table, id -> new Table());
+    }
+
+    private <T> T read(final Function<Map<Byte, Table>, T> reader) {
+        swapLock.readLock().lock();
+        try {
+            return reader.apply(tables);
+        } finally {
+            swapLock.readLock().unlock();
+        }
+    }
+
+    private Value value(final Entry entry) {
+        try {
+            return new Value(entry.key, entry.timestamp, this.readValue(entry));
+        } catch (final IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    private byte[] readValue(final Entry entry) throws IOException {
+        final ByteBuffer buffer = ByteBuffer.allocate(entry.length);
+        long at = entry.offset;
+        while (buffer.hasRemaining()) {
+            final int read = log.read(buffer, at);
+            if (read < 0) {
+                throw new IOException("Embedded store log ends before value at " + entry.offset);
+            }
+            at += read;
+        }
+        return buffer.array();
+    }
+
+    private void recover() throws IOException {
+        Files.createDirectories(directory);
+
+        final Optional<Snapshot> snapshot = this.readSnapshot();
+        final List<Integer> generations = this.generations(LOG_NAME);
+
+        // without a snapshot to say otherwise the newest log is recovered, as a log is only given its name once
+        // compaction has finished writing it, and from then on it is the one that is written to
+        this.generation =
+                snapshot.map(s -> s.generation)
+                        .orElseGet(() -> generations.isEmpty() ? 0 : generations.get(generations.size() - 1));
+        this.tables = snapshot.map(s -> s.tables).orElseGet(ConcurrentHashMap::new);
+        this.position = snapshot.map(s -> s.position).orElse(0L);
+        this.snapshotPosition = position;
+        this.liveBytes =
+                tables.values().stream()
+                        .flatMap(table -> table.byKey.values().stream())
+                        .mapToLong(Entry::recordSize)
+                        .sum();
+
+        // logs left behind by a compaction that did not finish, or that finished but could not delete the old log
+        for (final int other : generations) {
+            if (other != generation) {
+                LOGGER.info("Deleting unused embedded store log {}", other);
+                Files.delete(this.logFile(other));
+            }
+        }
+        for (final int partial : this.generations(PARTIAL_LOG_NAME)) {
+            LOGGER.info("Deleting incomplete embedded store log {}", partial);
+            Files.delete(this.partialLogFile(partial));
+        }
+
+        this.log =
+                FileChannel.open(
+                        this.logFile(generation),
+                        StandardOpenOption.CREATE,
+                        StandardOpenOption.READ,
+                        StandardOpenOption.WRITE);
+
+        if (log.size() < position) {
+            throw new IllegalStateException("Embedded store log is shorter than its snapshot, so cannot be recovered");
+        }
+
+        this.replay();
+    }
+
+    private void replay() throws IOException {
+        final long size = log.size();
+        final List<Change> pending = new ArrayList<>();
+        final List<Entry> pendingEntries = new ArrayList<>();
+        final ByteBuffer header = ByteBuffer.allocate(RECORD_HEADER);
+
+        long at = position;
+        int batches = 0;
+        while (at + RECORD_HEADER <= size) {
+            header.clear();
+            readFully(log, header, at);
+            header.flip();
+            final int length = header.getInt();
+            final int checksum = header.getInt();
+            if (length < 1 || length > size - at - RECORD_HEADER) {
+                break;
+            }
+
+            final ByteBuffer body = ByteBuffer.allocate(length);
+            readFully(log, body, at + RECORD_HEADER);
+            final CRC32 crc = new CRC32();
+            crc.update(body.array());
+            if ((int) crc.getValue() != checksum) {
+                break;
+            }
+
+            body.flip();
+            final long recordStart = at;
+            at += RECORD_HEADER + length;
+
+            final byte type = body.get();
+            if (type == COMMIT) {
+                for (int i = 0; i < pending.size(); i++) {
+                    this.apply(tables, pending.get(i).table, pending.get(i).key, pendingEntries.get(i));
+                }
+                pending.clear();
+                pendingEntries.clear();
+                this.position = at;
+                batches++;
+                continue;
+            }
+
+            final byte table = body.get();
+            final byte[] key = new byte[body.getInt()];
+            body.get(key);
+            if (type == PUT) {
+                final long timestamp = body.getLong();
+                final long valueOffset = recordStart + RECORD_HEADER + body.position();
+                pending.add(Change.put(table, key, timestamp, null));
+                pendingEntries.add(new Entry(key, timestamp, valueOffset, body.remaining()));
+            } else {
+                pending.add(Change.delete(table, key));
+                pendingEntries.add(null);
+            }
+        }
+
+        if (size > position) {
+            LOGGER.warn("Discarding {} bytes of incomplete embedded store log", size - position);
+            log.truncate(position);
+        }
+
+        LOGGER.debug("Replayed {} batches of embedded store log", batches);
+    }
+
+    /** @return the generations of the logs with names matching the pattern, oldest first */
+    private List<Integer> generations(final Pattern names) throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            final List<Integer> generations = new ArrayList<>();
+            files.forEach(
+                    file -> {
+                        final Matcher matcher = names.matcher(file.getFileName().toString());
+                        if (matcher.matches()) {
+                            generations.add(Integer.parseInt(matcher.group(1)));
+                        }
+                    });
+            generations.sort(Integer::compare);
+            return generations;
+        }
+    }
+
+    private Path logFile(final int logGeneration) {
+        return directory.resolve(String.format("log-%08d.dat", logGeneration));
+    }
+
+    private Path partialLogFile(final int logGeneration) {
+        return directory.resolve(String.format("log-%08d.dat.tmp", logGeneration));
+    }
+
+    private void writeSnapshot(final int logGeneration, final long logPosition, final Map<Byte, Table> index)
+            throws IOException {
+        final Path temporary = directory.resolve(SNAPSHOT + ".tmp");
+        final CRC32 crc = new CRC32();
+
+        try (OutputStream file = new BufferedOutputStream(Files.newOutputStream(temporary))) {
+            final DataOutputStream out = new DataOutputStream(new CheckedOutputStream(file, crc));
+            out.writeInt(SNAPSHOT_MAGIC);
+            out.writeInt(logGeneration);
+            out.writeLong(logPosition);
+            out.writeInt(index.size());
+            for (final Map.Entry<Byte, Table> table : index.entrySet()) {
+                out.writeByte(table.getKey());
+                out.writeInt(table.getValue().byKey.size());
+                for (final Entry entry : table.getValue().byKey.values()) {
+                    out.writeInt(entry.key.length);
+                    out.write(entry.key);
+                    out.writeLong(entry.timestamp);
+                    out.writeLong(entry.offset);
+                    out.writeInt(entry.length);
+                }
+            }
+            out.flush();
+            new DataOutputStream(file).writeLong(crc.getValue());
+        }
+
+        try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.WRITE)) {
+            channel.force(true);
+        }
+        Files.move(
+                temporary,
+                directory.resolve(SNAPSHOT),
+                StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private Optional<Snapshot> readSnapshot() throws IOException {
+        final Path file = directory.resolve(SNAPSHOT);
+        if (!Files.exists(file)) {
+            return Optional.empty();
+        }
+
+        final CRC32 crc = new CRC32();
+        try (InputStream raw = new BufferedInputStream(Files.newInputStream(file))) {
+            final DataInputStream in = new DataInputStream(new CheckedInputStream(raw, crc));
+            if (in.readInt() != SNAPSHOT_MAGIC) {
+                LOGGER.warn("Ignoring embedded store snapshot that is not in the expected format");
+                return Optional.empty();
+            }
+
+            final int logGeneration = in.readInt();
+            final long logPosition = in.readLong();
+            final Map<Byte, Table> index = new ConcurrentHashMap<>();
+            final int tableCount = in.readInt();
+            for (int t = 0; t < tableCount; t++) {
+                final Table table = this.table(index, in.readByte());
+                final int count = in.readInt();
+                for (int i = 0; i < count; i++) {
+                    final byte[] key = new byte[in.readInt()];
+                    in.readFully(key);
+                    final Entry entry = new Entry(key, in.readLong(), in.readLong(), in.readInt());
+                    table.byKey.put(key, entry);
+                    table.byTime.add(entry);
+                }
+            }
+
+            final long expected = crc.getValue();
+            if (new DataInputStream(raw).readLong() != expected) {
+                LOGGER.warn("Ignoring embedded store snapshot with a bad checksum");
+                return Optional.empty();
+            }
+
+            return Optional.of(new Snapshot(logGeneration, logPosition, index));
+        } catch (final EOFException ex) {
+            LOGGER.warn("Ignoring incomplete embedded store snapshot");
+            return Optional.empty();
+        }
+    }
+
+    private static void writeCommit(final ByteBuffer buffer) {
+        final byte[] body = {COMMIT};
+        buffer.putInt(body.length).putInt(checksum(body, 0, body.length)).put(body);
+    }
+
+    private static int checksum(final byte[] bytes, final int offset, final int length) {
+        final CRC32 crc = new CRC32();
+        crc.update(bytes, offset, length);
+        return (int) crc.getValue();
+    }
+
+    private static void writeFully(final FileChannel channel, final ByteBuffer buffer, final long at)
+            throws IOException {
+        long to = at;
+        while (buffer.hasRemaining()) {
+            to += channel.write(buffer, to);
+        }
+    }
+
+    private static void readFully(final FileChannel channel, final ByteBuffer buffer, final long at)
+            throws IOException {
+        long from = at;
+        while (buffer.hasRemaining()) {
+            final int read = channel.read(buffer, from);
+            if (read < 0) {
+                throw new IOException("Unexpected end of embedded store log");
+            }
+            from += read;
+        }
+    }
+
+    /** A change to a single key, either storing a value under it or deleting it */
+    static final class Change {
+
+        private final byte table;
+
+        private final byte[] key;
+
+        private final long timestamp;
+
+        private final byte[] value;
+
+        private Change(final byte table, final byte[] key, final long timestamp, final byte[] value) {
+            this.table = table;
+            this.key = Objects.requireNonNull(key);
+            this.timestamp = timestamp;
+            this.value = value;
+        }
+
+        static Change put(final byte table, final byte[] key, final long timestamp, final byte[] value) {
+            return new Change(table, key, timestamp, value == null ? new byte[0] : value);
+        }
+
+        static Change delete(final byte table, final byte[] key) {
+            return new Change(table, key, 0L, null);
+        }
+
+        private int recordSize() {
+            final int body = Byte.BYTES + Byte.BYTES + Integer.BYTES + key.length;
+            return RECORD_HEADER + body + (value == null ? 0 : Long.BYTES + value.length);
+        }
+
+        /** Writes this change as a record at the given log position, returning its index entry if it stores a value */
+        private Entry writeTo(final ByteBuffer buffer, final long logPosition) {
+            final int recordStart = buffer.position();
+            final int bodyLength = this.recordSize() - RECORD_HEADER;
+
+            buffer.putInt(bodyLength).putInt(0);
+            buffer.put(value == null ? DELETE : PUT).put(table).putInt(key.length).put(key);
+
+            Entry entry = null;
+            if (value != null) {
+                buffer.putLong(timestamp);
+                entry = new Entry(key, timestamp, logPosition + buffer.position(), value.length);
+                buffer.put(value);
+            }
+
+            final int checksum = checksum(buffer.array(), recordStart + RECORD_HEADER, bodyLength);
+            buffer.putInt(recordStart + Integer.BYTES, checksum);
+            return entry;
+        }
+    }
+
+    /** A stored value along with its key and timestamp */
+    static final class Value {
+
+        private final byte[] key;
+
+        private final long timestamp;
+
+        private final byte[] bytes;
+
+        private Value(final byte[] key, final long timestamp, final byte[] bytes) {
+            this.key = key;
+            this.timestamp = timestamp;
+            this.bytes = bytes;
+        }
+
+        byte[] getKey() {
+            return key.clone();
+        }
+
+        long getTimestamp() {
+            return timestamp;
+        }
+
+        byte[] getBytes() {
+            return bytes;
+        }
+    }
+
+    private static final class Entry {
+
+        private final byte[] key;
+
+        private final long timestamp;
+
+        private final long offset;
+
+        private final int length;
+
+        private Entry(final byte[] key, final long timestamp, final long offset, final int length) {
+            this.key = key;
+            this.timestamp = timestamp;
+            this.offset = offset;
+            this.length = length;
+        }
+
+        private long recordSize() {
+            return RECORD_HEADER + Byte.BYTES + Byte.BYTES + Integer.BYTES + key.length + Long.BYTES + length;
+        }
+    }
+
+    private static final class Table {
+
+        private final NavigableMap<byte[], Entry> byKey = new ConcurrentSkipListMap<>(KEY_ORDER);
+
+        private final ConcurrentSkipListSet<Entry> byTime = new ConcurrentSkipListSet<>(TIME_ORDER);
+    }
+
+    private static final class Snapshot {
+
+        private final int generation;
+
+        private final long position;
+
+        private final Map<Byte, Table> tables;
+
+        private Snapshot(final int generation, final long position, final Map<Byte, Table> tables) {
+            this.generation = generation;
+            this.position = position;
+            this.tables = tables;
+        }
+    }
+}
@@ -1,7 +1,6 @@
 package com.quorum.tessera.data;
 
 import javax.persistence.Embeddable;
-import javax.persistence.Lob;
 import java.io.Serializable;
 import java.util.Arrays;
 import java.util.Base64;
@@ -9,7 +8,13 @@ import java.util.Base64;
 @Embeddable
 public class MessageHash implements Serializable {
 
-    @Lob private byte[] hashBytes;
+    /**
+     * The length in bytes of a SHA3-512 transaction hash, which is the width of every hash column so that lookups
+     * compare fixed-width keys rather than LOBs
+     */
+    public static final int LENGTH = 64;
+
+    private byte[] hashBytes;
 
     public MessageHash() {}
 
@@ -0,0 +1,96 @@
+package com.quorum.tessera.data;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A Bloom filter over {@link MessageHash} values, used to answer "definitely not stored" without a database query
+ *
+ * <p>A hash that has been added is always reported as possibly present. A hash that has not been added is reported
+ * as possibly present with roughly the false positive rate the filter was sized for, as long as no more than the
+ * expected number of hashes have been added. Adding more than that is safe, but the false positive rate rises. Hashes
+ * cannot be removed. The filter is safe for concurrent use.
+ */
+public class MessageHashFilter {
+
+    private final AtomicLongArray bits;
+
+    private final long numberOfBits;
+
+    private final int numberOfHashFunctions;
+
+    public MessageHashFilter(final long expectedInsertions, final double falsePositiveRate) {
+        if (expectedInsertions <= 0) {
+            throw new IllegalArgumentException("Expected insertions must be positive");
+        }
+        if (falsePositiveRate <= 0 || falsePositiveRate >= 1) {
+            throw new IllegalArgumentException("False positive rate must be between 0 and 1");
+        }
+
+        final double ln2 = Math.log(2);
+        final long optimalBits = (long) Math.ceil(-expectedInsertions * Math.log(falsePositiveRate) / (ln2 * ln2));
+        final int words = Math.toIntExact((optimalBits + Long.SIZE - 1) / Long.SIZE);
+
+        this.bits = new AtomicLongArray(words);
+        this.numberOfBits = (long) words * Long.SIZE;
+        this.numberOfHashFunctions =
+                Math.max(1, (int) Math.round((double) numberOfBits / expectedInsertions * ln2));
+    }
+
+    /**
+     * Records a hash as present
+     *
+     * @param hash the hash to add
+     */
+    public void put(final MessageHash hash) {
+        final long first = hash(hash.getHashBytes());
+        final long second = mix(first) | 1;
+
+        for (int i = 0; i < numberOfHashFunctions; i++) {
+            final long index = Math.floorMod(first + i * second, numberOfBits);
+            final int word = (int) (index >>> 6);
+            final long mask = 1L << index;
+
+            long current;
+            do {
+                current = bits.get(word);
+            } while ((current & mask) == 0 && !bits.compareAndSet(word, current, current | mask));
+        }
+    }
+
+    /**
+     * @param hash the hash to check
+     * @return {@code false} if the hash has definitely not been added, {@code true} if it may have been
+     */
+    public boolean mightContain(final MessageHash hash) {
+        final long first = hash(hash.getHashBytes());
+        final long second = mix(first) | 1;
+
+        for (int i = 0; i < numberOfHashFunctions; i++) {
+            final long index = Math.floorMod(first + i * second, numberOfBits);
+            if ((bits.get((int) (index >>> 6)) & (1L << index)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // FNV-1a, followed by a finaliser so that short or similar inputs still spread across the whole range
+    private static long hash(final byte[] data) {
+        long hash = 0xcbf29ce484222325L;
+        for (final byte b : data) {
+            hash ^= b & 0xff;
+            hash *= 0x100000001b3L;
+        }
+        return mix(hash);
+    }
+
+    private static long mix(final long value) {
+        long mixed = value;
+        mixed ^= mixed >>> 33;
+        mixed *= 0xff51afd7ed558ccdL;
+        mixed ^= mixed >>> 33;
+        mixed *= 0xc4ceb9fe1a85ec53L;
+        mixed ^= mixed >>> 33;
+        return mixed;
+    }
+}
@@ -0,0 +1,87 @@
+package com.quorum.tessera.data;
+
+import javax.persistence.*;
+import java.io.Serializable;
+import java.util.Objects;
+
+/**
+ * The JPA entity for a pending delivery of a stored {@link EncryptedTransaction} to a single recipient
+ *
+ * <p>Entries are written in the same database transaction as the transaction itself, and removed once the payload has
+ * been successfully pushed to the recipient
+ */
+@Entity
+@Table(name = "ENCRYPTED_TRANSACTION_OUTBOX")
+public class OutboxEntry implements Serializable {
+
+    @EmbeddedId private OutboxEntryId id;
+
+    @Column(name = "ATTEMPTS", nullable = false)
+    private int attempts;
+
+    @Column(name = "NEXT_ATTEMPT", nullable = false)
+    private long nextAttempt;
+
+    @Column(name = "TIMESTAMP", updatable = false)
+    private long timestamp;
+
+    public OutboxEntry(final MessageHash hash, final byte[] recipient) {
+        this.id = new OutboxEntryId(hash.getHashBytes(), recipient);
+    }
+
+    public OutboxEntry() {}
+
+    @PrePersist
+    public void onPersist() {
+        this.timestamp = System.currentTimeMillis();
+        if (this.nextAttempt == 0L) {
+            this.nextAttempt = this.timestamp;
+        }
+    }
+
+    public OutboxEntryId getId() {
+        return id;
+    }
+
+    public void setId(final OutboxEntryId id) {
+        this.id = id;
+    }
+
+    public MessageHash getHash() {
+        return new MessageHash(id.getHash());
+    }
+
+    public byte[] getRecipient() {
+        return id.getRecipient();
+    }
+
+    public int getAttempts() {
+        return attempts;
+    }
+
+    public void setAttempts(final int attempts) {
+        this.attempts = attempts;
+    }
+
+    public long getNextAttempt() {
+        return nextAttempt;
+    }
+
+    public void setNextAttempt(final long nextAttempt) {
+        this.nextAttempt = nextAttempt;
+    }
+
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    @Override
+    public int hashCode() {
+        return 47 * 3 + Objects.hashCode(this.id);
+    }
+
+    @Override
+    public boolean equals(final Object obj) {
+        return (obj instanceof OutboxEntry) && Objects.equals(this.id, ((OutboxEntry) obj).id);
+    }
+}
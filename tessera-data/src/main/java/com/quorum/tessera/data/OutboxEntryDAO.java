@@ -0,0 +1,39 @@
+package com.quorum.tessera.data;
+
+import java.util.List;
+
+/** A data store for deliveries of transactions that have not yet reached their recipients */
+public interface OutboxEntryDAO {
+
+    /**
+     * Records a new pending delivery
+     *
+     * @param entry The entry to be persisted
+     * @return The entry that was persisted
+     */
+    OutboxEntry save(OutboxEntry entry);
+
+    /**
+     * Retrieves the pending deliveries that are due to be attempted, earliest first
+     *
+     * @param now the current time in milliseconds, entries scheduled after this are not returned
+     * @param maxResult the maximum number of entries to return
+     * @return the entries that are due
+     */
+    List<OutboxEntry> retrieveDue(long now, int maxResult);
+
+    /**
+     * Updates the retry information of an existing entry
+     *
+     * @param entry the entry to update
+     * @return the updated entry
+     */
+    OutboxEntry update(OutboxEntry entry);
+
+    /**
+     * Removes an entry, once it has been delivered or can no longer be delivered
+     *
+     * @param entry the entry to remove
+     */
+    void delete(OutboxEntry entry);
+}
@@ -0,0 +1,49 @@
+package com.quorum.tessera.data;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import javax.transaction.Transactional;
+import java.util.List;
+import java.util.Optional;
+
+/** A JPA implementation of {@link OutboxEntryDAO} */
+@Transactional
+public class OutboxEntryDAOImpl implements OutboxEntryDAO {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(OutboxEntryDAOImpl.class);
+
+    private static final String FIND_DUE =
+            "SELECT oe FROM OutboxEntry oe WHERE oe.nextAttempt <= :now ORDER BY oe.nextAttempt";
+
+    @PersistenceContext(unitName = "tessera")
+    private EntityManager entityManager;
+
+    @Override
+    public OutboxEntry save(final OutboxEntry entry) {
+        entityManager.persist(entry);
+        LOGGER.debug("Queued delivery of transaction {}", entry.getHash());
+        return entry;
+    }
+
+    @Override
+    public List<OutboxEntry> retrieveDue(final long now, final int maxResult) {
+        return entityManager
+                .createQuery(FIND_DUE, OutboxEntry.class)
+                .setParameter("now", now)
+                .setMaxResults(maxResult)
+                .getResultList();
+    }
+
+    @Override
+    public OutboxEntry update(final OutboxEntry entry) {
+        return entityManager.merge(entry);
+    }
+
+    @Override
+    public void delete(final OutboxEntry entry) {
+        Optional.ofNullable(entityManager.find(OutboxEntry.class, entry.getId())).ifPresent(entityManager::remove);
+    }
+}
@@ -0,0 +1,55 @@
+package com.quorum.tessera.data;
+
+import javax.persistence.Column;
+import javax.persistence.Embeddable;
+import java.io.Serializable;
+import java.util.Arrays;
+
+/** The composite key of an {@link OutboxEntry}, being the transaction hash and the recipient it is to be sent to */
+@Embeddable
+public class OutboxEntryId implements Serializable {
+
+    @Column(name = "HASH", length = MessageHash.LENGTH, nullable = false, updatable = false)
+    private byte[] hash;
+
+    @Column(name = "RECIPIENT", nullable = false, updatable = false)
+    private byte[] recipient;
+
+    public OutboxEntryId(final byte[] hash, final byte[] recipient) {
+        this.hash = hash;
+        this.recipient = recipient;
+    }
+
+    public OutboxEntryId() {}
+
+    public byte[] getHash() {
+        return hash;
+    }
+
+    public void setHash(final byte[] hash) {
+        this.hash = hash;
+    }
+
+    public byte[] getRecipient() {
+        return recipient;
+    }
+
+    public void setRecipient(final byte[] recipient) {
+        this.recipient = recipient;
+    }
+
+    @Override
+    public boolean equals(final Object o) {
+        if (!(o instanceof OutboxEntryId)) {
+            return false;
+        }
+
+        final OutboxEntryId other = (OutboxEntryId) o;
+        return Arrays.equals(hash, other.hash) && Arrays.equals(recipient, other.recipient);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * Arrays.hashCode(hash) + Arrays.hashCode(recipient);
+    }
+}
@@ -0,0 +1,85 @@
+package com.quorum.tessera.data;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.Optional;
+
+/**
+ * The location of a payload held in a {@link PayloadSegmentStore}, which is what gets stored in the database in place
+ * of the payload itself
+ *
+ * <p>The stored form starts with a marker byte that an encoded payload can never start with (an encoded payload
+ * starts with the length of the sender key as a long), so stored pointers and payloads stored before the segment store
+ * was enabled can be told apart.
+ */
+final class PayloadPointer {
+
+    private static final byte[] MARKER = {(byte) 0xFF, 'S', 'E', 'G'};
+
+    static final int ENCODED_LENGTH = MARKER.length + Integer.BYTES + Long.BYTES + Integer.BYTES;
+
+    private final int segment;
+
+    private final long offset;
+
+    private final int length;
+
+    PayloadPointer(final int segment, final long offset, final int length) {
+        this.segment = segment;
+        this.offset = offset;
+        this.length = length;
+    }
+
+    int getSegment() {
+        return segment;
+    }
+
+    long getOffset() {
+        return offset;
+    }
+
+    int getLength() {
+        return length;
+    }
+
+    byte[] encode() {
+        return ByteBuffer.allocate(ENCODED_LENGTH).put(MARKER).putInt(segment).putLong(offset).putInt(length).array();
+    }
+
+    /**
+     * Reads a pointer from the value stored for a transaction
+     *
+     * @param stored the stored payload column
+     * @return the pointer, or empty if the payload itself is stored
+     */
+    static Optional<PayloadPointer> decode(final byte[] stored) {
+        if (stored == null
+                || stored.length != ENCODED_LENGTH
+                || !Arrays.equals(MARKER, Arrays.copyOf(stored, MARKER.length))) {
+            return Optional.empty();
+        }
+
+        final ByteBuffer buffer = ByteBuffer.wrap(stored, MARKER.length, ENCODED_LENGTH - MARKER.length);
+        return Optional.of(new PayloadPointer(buffer.getInt(), buffer.getLong(), buffer.getInt()));
+    }
+
+    @Override
+    public boolean equals(final Object o) {
+        if (!(o instanceof PayloadPointer)) {
+            return false;
+        }
+        final PayloadPointer that = (PayloadPointer) o;
+        return segment == that.segment && offset == that.offset && length == that.length;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(segment, offset, length);
+    }
+
+    @Override
+    public String toString() {
+        return "PayloadPointer{segment=" + segment + ", offset=" + offset + ", length=" + length + "}";
+    }
+}
@@ -0,0 +1,163 @@
+package com.quorum.tessera.data;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.persistence.EntityNotFoundException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+
+/**
+ * Reclaims the space in a {@link PayloadSegmentStore} taken by payloads that are no longer pointed at, such as those of
+ * deleted transactions or those replaced by an update
+ *
+ * <p>Each run scans the stored pointers to find how much of each segment is still live. Any segment other than the
+ * active one whose live share is below the threshold has its live payloads copied to the active segment, with each row
+ * repointed as its payload is copied. Each move happens under the store's compaction lock, which waits for any
+ * transaction that is updating pointers to finish, and the row is read again under the lock so that a newer payload is
+ * never overwritten with an older one.
+ *
+ * <p>A segment that has been emptied is only deleted on the following run, so that a read which looked up a pointer
+ * before it was moved can still finish, and only once that run's scan has found nothing pointing into it. Anything
+ * still found there is moved again instead.
+ *
+ * <p>The given DAO must be the one the pointers are stored through, not a {@link SegmentStoringEncryptedTransactionDAO}
+ * in front of it.
+ */
+public class PayloadSegmentCompactor implements Runnable {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(PayloadSegmentCompactor.class);
+
+    private static final int SCAN_PAGE_SIZE = 1_000;
+
+    private static final long LOCK_TIMEOUT_SECONDS = 1;
+
+    private final EncryptedTransactionDAO encryptedTransactionDAO;
+
+    private final PayloadSegmentStore store;
+
+    private final double threshold;
+
+    private final Set<Integer> retired = new HashSet<>();
+
+    public PayloadSegmentCompactor(
+            final EncryptedTransactionDAO encryptedTransactionDAO,
+            final PayloadSegmentStore store,
+            final double threshold) {
+        this.encryptedTransactionDAO = Objects.requireNonNull(encryptedTransactionDAO);
+        this.store = Objects.requireNonNull(store);
+        this.threshold = threshold;
+    }
+
+    @Override
+    public synchronized void run() {
+        if (!store.isEnabled()) {
+            return;
+        }
+
+        final int active = store.getActiveSegment();
+        final Map<Integer, Long> sizes = store.segmentSizes();
+        final Map<Integer, Long> live = new HashMap<>();
+        final Map<Integer, List<MessageHash>> hashes = new HashMap<>();
+
+        // paged by hash rather than by offset, so that rows deleted during the scan cannot move a live row into a page
+        // that has already been read
+        MessageHash last = null;
+        List<MessageHash> page;
+        do {
+            page = encryptedTransactionDAO.retrieveHashes(last, SCAN_PAGE_SIZE);
+            if (page.isEmpty()) {
+                break;
+            }
+
+            for (final EncryptedTransaction transaction : encryptedTransactionDAO.retrieveByHashes(page)) {
+                PayloadPointer.decode(transaction.getEncodedPayload())
+                        .ifPresent(
+                                pointer -> {
+                                    live.merge(pointer.getSegment(), (long) pointer.getLength(), Long::sum);
+                                    hashes.computeIfAbsent(pointer.getSegment(), s -> new ArrayList<>())
+                                            .add(transaction.getHash());
+                                });
+            }
+            last = page.get(page.size() - 1);
+        } while (page.size() == SCAN_PAGE_SIZE);
+
+        // segments emptied on the last run are only deleted once this scan has found nothing pointing into them
+        final Iterator<Integer> emptied = retired.iterator();
+        while (emptied.hasNext()) {
+            final int number = emptied.next();
+            if (hashes.containsKey(number)) {
+                LOGGER.warn("Payload segment {} is still pointed into after being compacted", number);
+                continue;
+            }
+            store.deleteSegment(number);
+            sizes.remove(number);
+            emptied.remove();
+        }
+
+        for (final Map.Entry<Integer, Long> segment : sizes.entrySet()) {
+            final int number = segment.getKey();
+            final long liveBytes = live.getOrDefault(number, 0L);
+            if (number == active || (!retired.contains(number) && liveBytes >= threshold * segment.getValue())) {
+                continue;
+            }
+
+            LOGGER.info("Compacting payload segment {}, {} of {} bytes live", number, liveBytes, segment.getValue());
+
+            final boolean moved =
+                    hashes.getOrDefault(number, new ArrayList<>()).stream().allMatch(hash -> this.move(hash, number));
+            if (moved) {
+                retired.add(number);
+            } else {
+                retired.remove(number);
+            }
+        }
+    }
+
+    /** @return whether the payload no longer needs moving, or false if the row could not be locked in time */
+    private boolean move(final MessageHash hash, final int segment) {
+        final Lock lock = store.compactionLock();
+        try {
+            // gives way to transactions that are updating pointers, rather than queueing behind them indefinitely
+            if (!lock.tryLock(LOCK_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                LOGGER.info("Payload segment {} is busy, compacting it again on the next run", segment);
+                return false;
+            }
+        } catch (final InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+
+        try {
+            // the row is read again so that a transaction deleted or updated since the scan is left alone
+            final Optional<EncryptedTransaction> current = encryptedTransactionDAO.retrieveByHash(hash);
+            final Optional<PayloadPointer> pointer =
+                    current.flatMap(transaction -> PayloadPointer.decode(transaction.getEncodedPayload()))
+                            .filter(p -> p.getSegment() == segment);
+            if (!pointer.isPresent()) {
+                return true;
+            }
+
+            final EncryptedTransaction transaction = current.get();
+            final PayloadPointer moved = store.append(store.read(pointer.get()));
+            try {
+                encryptedTransactionDAO.update(
+                        new EncryptedTransaction(transaction.getHash(), moved.encode(), transaction.getRecipientKey()));
+            } catch (final EntityNotFoundException ex) {
+                LOGGER.debug("Transaction {} was deleted while being compacted", hash);
+            }
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+}
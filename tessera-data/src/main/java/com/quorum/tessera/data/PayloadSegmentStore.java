@@ -0,0 +1,293 @@
+package com.quorum.tessera.data;
+
+import com.quorum.tessera.io.IOCallback;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * Keeps transaction payloads in append-only segment files on local disk, so the database only has to hold a small
+ * {@link PayloadPointer} for each transaction
+ *
+ * <p>Payloads are appended to the newest segment until it reaches the maximum segment size, when a new segment is
+ * started. Each append is flushed to disk before its pointers are handed out, so a pointer committed to the database
+ * never refers to bytes that could be lost. Segments are read through read-only memory mappings, so reading a payload
+ * is a copy out of the page cache rather than a database LOB fetch.
+ *
+ * <p>Segments are never modified once written, which also means a backup only needs to copy the segments that are new
+ * since the last one. Space taken by deleted and replaced payloads is reclaimed by {@link PayloadSegmentCompactor}.
+ *
+ * <p>If no directory is given the store is disabled, and payloads stay in the database.
+ */
+public class PayloadSegmentStore {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(PayloadSegmentStore.class);
+
+    private static final Pattern SEGMENT_NAME = Pattern.compile("segment-(\\d{8})\\.dat");
+
+    private final Path directory;
+
+    private final long maxSegmentSize;
+
+    private final ConcurrentMap<Integer, MappedByteBuffer> mappings = new ConcurrentHashMap<>();
+
+    // shared by the transactions that update stored pointers, and taken exclusively by compaction to move one
+    private final ReadWriteLock pointerLock = new ReentrantReadWriteLock();
+
+    private int activeSegment;
+
+    private FileChannel activeChannel;
+
+    private long activeSize;
+
+    public PayloadSegmentStore(final Path directory, final long maxSegmentSize) {
+        if (maxSegmentSize < 1 || maxSegmentSize > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Segment size must be between 1 and " + Integer.MAX_VALUE + " bytes");
+        }
+        this.directory = directory;
+        this.maxSegmentSize = maxSegmentSize;
+    }
+
+    public boolean isEnabled() {
+        return directory != null;
+    }
+
+    /** Opens the newest segment for appending, creating the directory and first segment if needed */
+    @PostConstruct
+    public synchronized void init() {
+        if (!isEnabled()) {
+            return;
+        }
+
+        IOCallback.execute(() -> Files.createDirectories(directory));
+
+        final int newest = this.segmentSizes().keySet().stream().max(Integer::compare).orElse(0);
+        this.openSegment(newest);
+
+        LOGGER.info("Storing payloads in {}, appending to segment {}", directory, activeSegment);
+    }
+
+    @PreDestroy
+    public synchronized void close() {
+        if (activeChannel != null) {
+            IOCallback.execute(
+                    () -> {
+                        activeChannel.close();
+                        return null;
+                    });
+            activeChannel = null;
+        }
+        mappings.clear();
+    }
+
+    /**
+     * Appends payloads to the active segment, flushing them to disk once all have been written
+     *
+     * @param payloads the payloads to append
+     * @return the location of each payload, in the same order
+     */
+    synchronized List<PayloadPointer> append(final List<byte[]> payloads) {
+        if (activeChannel == null) {
+            throw new IllegalStateException("Payload segment store is not open");
+        }
+
+        final List<PayloadPointer> pointers = new ArrayList<>(payloads.size());
+        boolean written = false;
+
+        for (final byte[] payload : payloads) {
+            if (activeSize > 0 && activeSize + payload.length > maxSegmentSize) {
+                if (written) {
+                    this.force();
+                    written = false;
+                }
+                this.openSegment(activeSegment + 1);
+            }
+
+            final long offset = activeSize;
+            final ByteBuffer buffer = ByteBuffer.wrap(payload);
+            IOCallback.execute(
+                    () -> {
+                        long position = offset;
+                        while (buffer.hasRemaining()) {
+                            position += activeChannel.write(buffer, position);
+                        }
+                        return null;
+                    });
+
+            activeSize += payload.length;
+            written = true;
+            pointers.add(new PayloadPointer(activeSegment, offset, payload.length));
+        }
+
+        if (written) {
+            this.force();
+        }
+
+        return pointers;
+    }
+
+    PayloadPointer append(final byte[] payload) {
+        return this.append(Collections.singletonList(payload)).get(0);
+    }
+
+    /**
+     * Reads a payload from its segment
+     *
+     * @param pointer the location of the payload
+     * @return a copy of the payload
+     */
+    byte[] read(final PayloadPointer pointer) {
+        if (!isEnabled()) {
+            throw new IllegalStateException("Transaction payload is in segment " + pointer.getSegment()
+                    + " but no payload directory is configured");
+        }
+
+        final long end = pointer.getOffset() + pointer.getLength();
+
+        final MappedByteBuffer mapping =
+                mappings.compute(
+                        pointer.getSegment(),
+                        (segment, existing) -> {
+                            // the active segment grows, so an older mapping of it may not cover newer payloads
+                            if (existing != null && existing.capacity() >= end) {
+                                return existing;
+                            }
+                            return this.map(segment);
+                        });
+
+        if (mapping.capacity() < end) {
+            throw new IllegalStateException("Segment " + pointer.getSegment() + " does not contain " + pointer);
+        }
+
+        final ByteBuffer view = mapping.duplicate();
+        view.position((int) pointer.getOffset());
+
+        final byte[] payload = new byte[pointer.getLength()];
+        view.get(payload);
+        return payload;
+    }
+
+    /**
+     * Held by a transaction that updates stored pointers until it has committed or rolled back, so that compaction
+     * never moves a payload from under an update that it cannot see yet
+     */
+    Lock updateLock() {
+        return pointerLock.readLock();
+    }
+
+    /** Held by compaction while it reads, copies and repoints a single payload, which waits for open updates */
+    Lock compactionLock() {
+        return pointerLock.writeLock();
+    }
+
+    synchronized int getActiveSegment() {
+        return activeSegment;
+    }
+
+    /** @return the size in bytes of each segment, keyed and ordered by segment number */
+    Map<Integer, Long> segmentSizes() {
+        if (!isEnabled()) {
+            return Collections.emptyMap();
+        }
+
+        try (Stream<Path> files = Files.list(directory)) {
+            final Map<Integer, Long> sizes = new TreeMap<>();
+            files.forEach(file -> segmentNumber(file).ifPresent(segment -> sizes.put(segment, sizeOf(file))));
+            return sizes;
+        } catch (final IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    /**
+     * Deletes a segment that no stored transaction points into any more
+     *
+     * @param segment the segment to delete, which must not be the active segment
+     */
+    synchronized void deleteSegment(final int segment) {
+        if (segment == activeSegment) {
+            throw new IllegalArgumentException("Cannot delete the active segment " + segment);
+        }
+
+        // an existing mapping stays readable until it is collected, even once the file is gone
+        mappings.remove(segment);
+        IOCallback.execute(() -> Files.deleteIfExists(this.segmentFile(segment)));
+
+        LOGGER.info("Deleted payload segment {}", segment);
+    }
+
+    private void openSegment(final int segment) {
+        if (activeChannel != null) {
+            IOCallback.execute(
+                    () -> {
+                        activeChannel.close();
+                        return null;
+                    });
+        }
+
+        this.activeChannel =
+                IOCallback.execute(
+                        () ->
+                                FileChannel.open(
+                                        this.segmentFile(segment),
+                                        StandardOpenOption.CREATE,
+                                        StandardOpenOption.READ,
+                                        StandardOpenOption.WRITE));
+        this.activeSegment = segment;
+        this.activeSize = IOCallback.execute(activeChannel::size);
+    }
+
+    private void force() {
+        IOCallback.execute(
+                () -> {
+                    activeChannel.force(false);
+                    return null;
+                });
+    }
+
+    private MappedByteBuffer map(final int segment) {
+        return IOCallback.execute(
+                () -> {
+                    try (FileChannel channel = FileChannel.open(this.segmentFile(segment), StandardOpenOption.READ)) {
+                        return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+                    }
+                });
+    }
+
+    private static long sizeOf(final Path file) {
+        return IOCallback.execute(() -> Files.size(file));
+    }
+
+    private Path segmentFile(final int segment) {
+        return directory.resolve(String.format("segment-%08d.dat", segment));
+    }
+
+    private static Optional<Integer> segmentNumber(final Path file) {
+        final Matcher matcher = SEGMENT_NAME.matcher(file.getFileName().toString());
+        return matcher.matches() ? Optional.of(Integer.parseInt(matcher.group(1))) : Optional.empty();
+    }
+}
@@ -0,0 +1,166 @@
+package com.quorum.tessera.data;
+
+import com.quorum.tessera.encryption.PublicKey;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.persistence.PersistenceException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.Supplier;
+
+/**
+ * An {@link EncryptedTransactionDAO} that sends reads which can tolerate replication lag to a read replica, and
+ * everything else to the primary database
+ *
+ * <p>The paged scans, such as those for resending, are answered by the replica, as a resend that misses a transaction
+ * stored in the last moments can simply be asked for again. Lookups by hash for reading only, such as those made to
+ * receive a payload, go to the replica first, and any transaction it does not have yet is looked for on the primary,
+ * so a payload is found as soon as it has been stored. Other lookups by hash stay on the primary: they are made inside
+ * transactions that go on to write what they read, such as merging a resent payload, recording a recipient key or
+ * moving a payload between segments, and a replica that is behind could hand back an old version of a transaction or
+ * one that has since been deleted. Hash scans and unindexed scans stay on the primary too, as they are used to build
+ * state that must not miss recent transactions, and so does the transaction count, which the primary keeps without a
+ * query. Any read that fails on the replica is retried on the primary.
+ *
+ * <p>If no replica is given, every call goes to the primary.
+ */
+public class ReplicaRoutingEncryptedTransactionDAO implements EncryptedTransactionDAO {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ReplicaRoutingEncryptedTransactionDAO.class);
+
+    private final EncryptedTransactionDAO primary;
+
+    private final EncryptedTransactionDAO replica;
+
+    public ReplicaRoutingEncryptedTransactionDAO(
+            final EncryptedTransactionDAO primary, final EncryptedTransactionDAO replica) {
+        this.primary = Objects.requireNonNull(primary);
+        this.replica = replica;
+    }
+
+    @Override
+    public EncryptedTransaction save(final EncryptedTransaction entity) {
+        return primary.save(entity);
+    }
+
+    @Override
+    public List<EncryptedTransaction> saveAll(final List<EncryptedTransaction> entities) {
+        return primary.saveAll(entities);
+    }
+
+    @Override
+    public EncryptedTransaction update(final EncryptedTransaction entity) {
+        return primary.update(entity);
+    }
+
+    @Override
+    public Optional<EncryptedTransaction> retrieveByHash(final MessageHash hash) {
+        return primary.retrieveByHash(hash);
+    }
+
+    @Override
+    public List<EncryptedTransaction> retrieveByHashes(final Collection<MessageHash> hashes) {
+        return primary.retrieveByHashes(hashes);
+    }
+
+    @Override
+    public Optional<EncryptedTransaction> retrieveByHashForRead(final MessageHash hash) {
+        if (replica == null) {
+            return primary.retrieveByHash(hash);
+        }
+
+        final Optional<EncryptedTransaction> replicated =
+                this.fromReplica(() -> replica.retrieveByHash(hash), Optional::empty);
+        return replicated.isPresent() ? replicated : primary.retrieveByHash(hash);
+    }
+
+    @Override
+    public List<EncryptedTransaction> retrieveByHashesForRead(final Collection<MessageHash> hashes) {
+        if (replica == null) {
+            return primary.retrieveByHashes(hashes);
+        }
+
+        final List<EncryptedTransaction> found =
+                new ArrayList<>(this.fromReplica(() -> replica.retrieveByHashes(hashes), Collections::emptyList));
+
+        final Set<MessageHash> missing = new HashSet<>(hashes);
+        found.forEach(transaction -> missing.remove(transaction.getHash()));
+        if (!missing.isEmpty()) {
+            found.addAll(primary.retrieveByHashes(missing));
+        }
+        return found;
+    }
+
+    @Override
+    public List<EncryptedTransaction> retrieveTransactions(final int offset, final int maxResult) {
+        return this.fromReplica(
+                () -> replica.retrieveTransactions(offset, maxResult),
+                () -> primary.retrieveTransactions(offset, maxResult));
+    }
+
+    @Override
+    public void saveRecipients(final EncryptedTransaction transaction, final Collection<PublicKey> recipients) {
+        primary.saveRecipients(transaction, recipients);
+    }
+
+    @Override
+    public List<PublicKey> retrieveRecipients(final MessageHash hash) {
+        return primary.retrieveRecipients(hash);
+    }
+
+    @Override
+    public void saveAllWithRecipients(final Map<EncryptedTransaction, ? extends Collection<PublicKey>> transactions) {
+        primary.saveAllWithRecipients(transactions);
+    }
+
+    @Override
+    public List<EncryptedTransaction> retrieveTransactionsForRecipient(
+            final PublicKey recipient, final EncryptedTransaction after, final int maxResult) {
+        return this.fromReplica(
+                () -> replica.retrieveTransactionsForRecipient(recipient, after, maxResult),
+                () -> primary.retrieveTransactionsForRecipient(recipient, after, maxResult));
+    }
+
+    @Override
+    public List<EncryptedTransaction> retrieveUnindexedTransactions(
+            final EncryptedTransaction after, final int maxResult) {
+        return primary.retrieveUnindexedTransactions(after, maxResult);
+    }
+
+    @Override
+    public List<MessageHash> retrieveHashes(final MessageHash after, final int maxResult) {
+        return primary.retrieveHashes(after, maxResult);
+    }
+
+    @Override
+    public long transactionCount() {
+        return primary.transactionCount();
+    }
+
+    @Override
+    public void delete(final MessageHash hash) {
+        primary.delete(hash);
+    }
+
+    private <T> T fromReplica(final Supplier<T> replicaRead, final Supplier<T> primaryRead) {
+        if (replica == null) {
+            return primaryRead.get();
+        }
+
+        try {
+            return replicaRead.get();
+        } catch (final PersistenceException ex) {
+            LOGGER.warn("Read from read replica failed, reading from the primary instead: {}", ex.getMessage());
+            LOGGER.debug(null, ex);
+            return primaryRead.get();
+        }
+    }
+}
@@ -0,0 +1,222 @@
+package com.quorum.tessera.data;
+
+import com.quorum.tessera.encryption.PublicKey;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.locks.Lock;
+import java.util.stream.Collectors;
+
+/**
+ * An {@link EncryptedTransactionDAO} that keeps payloads in a {@link PayloadSegmentStore}, storing only a {@link
+ * PayloadPointer} in the database in place of each payload
+ *
+ * <p>Payloads are appended to the segment store, and flushed to disk, before the rows pointing at them are written, so
+ * a committed row always has its payload. A row whose insert then fails leaves unreferenced bytes behind in the
+ * segment, which compaction reclaims. Rows stored before the segment store was enabled still hold their payload and
+ * are returned as they are.
+ *
+ * <p>Retrieved transactions are detached copies with the payload read back from its segment, so changes made to them
+ * must be written with {@link #update} rather than relying on the persistence context. An update holds the store's
+ * update lock until its transaction has finished, so that {@link PayloadSegmentCompactor} cannot overwrite it.
+ */
+public class SegmentStoringEncryptedTransactionDAO implements EncryptedTransactionDAO {
+
+    private final EncryptedTransactionDAO delegate;
+
+    private final PayloadSegmentStore store;
+
+    public SegmentStoringEncryptedTransactionDAO(
+            final EncryptedTransactionDAO delegate, final PayloadSegmentStore store) {
+        this.delegate = Objects.requireNonNull(delegate);
+        this.store = Objects.requireNonNull(store);
+    }
+
+    @Override
+    public EncryptedTransaction save(final EncryptedTransaction entity) {
+        if (!store.isEnabled()) {
+            return delegate.save(entity);
+        }
+
+        final EncryptedTransaction stored = withPointer(entity, store.append(entity.getEncodedPayload()));
+        delegate.save(stored);
+        entity.setTimestamp(stored.getTimestamp());
+        return entity;
+    }
+
+    @Override
+    public List<EncryptedTransaction> saveAll(final List<EncryptedTransaction> entities) {
+        if (!store.isEnabled()) {
+            return delegate.saveAll(entities);
+        }
+
+        final List<EncryptedTransaction> stored = this.appendAll(entities);
+        delegate.saveAll(stored);
+
+        for (int i = 0; i < entities.size(); i++) {
+            entities.get(i).setTimestamp(stored.get(i).getTimestamp());
+        }
+        return entities;
+    }
+
+    @Override
+    public void saveAllWithRecipients(final Map<EncryptedTransaction, ? extends Collection<PublicKey>> transactions) {
+        if (!store.isEnabled()) {
+            delegate.saveAllWithRecipients(transactions);
+            return;
+        }
+
+        final List<EncryptedTransaction> originals = new ArrayList<>(transactions.keySet());
+        final Iterator<EncryptedTransaction> stored = this.appendAll(originals).iterator();
+
+        final Map<EncryptedTransaction, Collection<PublicKey>> storedTransactions = new LinkedHashMap<>();
+        originals.forEach(original -> storedTransactions.put(stored.next(), transactions.get(original)));
+
+        delegate.saveAllWithRecipients(storedTransactions);
+
+        final Iterator<EncryptedTransaction> saved = storedTransactions.keySet().iterator();
+        originals.forEach(original -> original.setTimestamp(saved.next().getTimestamp()));
+    }
+
+    @Override
+    public EncryptedTransaction update(final EncryptedTransaction entity) {
+        if (!store.isEnabled()) {
+            return delegate.update(entity);
+        }
+
+        final Lock lock = store.updateLock();
+        lock.lock();
+        try {
+            // updates that only record the recipient key keep the payload where it already is
+            final PayloadPointer pointer =
+                    delegate.retrieveByHash(entity.getHash())
+                            .flatMap(current -> PayloadPointer.decode(current.getEncodedPayload()))
+                            .filter(current -> Arrays.equals(store.read(current), entity.getEncodedPayload()))
+                            .orElseGet(() -> store.append(entity.getEncodedPayload()));
+
+            delegate.update(withPointer(entity, pointer));
+            return entity;
+        } finally {
+            TransactionCallbacks.afterCompletion(lock::unlock);
+        }
+    }
+
+    @Override
+    public Optional<EncryptedTransaction> retrieveByHash(final MessageHash hash) {
+        return delegate.retrieveByHash(hash).map(this::resolve);
+    }
+
+    @Override
+    public List<EncryptedTransaction> retrieveByHashes(final Collection<MessageHash> hashes) {
+        return this.resolveAll(delegate.retrieveByHashes(hashes));
+    }
+
+    @Override
+    public Optional<EncryptedTransaction> retrieveByHashForRead(final MessageHash hash) {
+        return delegate.retrieveByHashForRead(hash).flatMap(this::resolveForRead);
+    }
+
+    @Override
+    public List<EncryptedTransaction> retrieveByHashesForRead(final Collection<MessageHash> hashes) {
+        return delegate.retrieveByHashesForRead(hashes).stream()
+                .map(this::resolveForRead)
+                .filter(Optional::isPresent)
+                .map(Optional::get)
+                .collect(Collectors.toList());
+    }
+
+    @Override
+    public List<EncryptedTransaction> retrieveTransactions(final int offset, final int maxResult) {
+        return this.resolveAll(delegate.retrieveTransactions(offset, maxResult));
+    }
+
+    @Override
+    public void saveRecipients(final EncryptedTransaction transaction, final Collection<PublicKey> recipients) {
+        delegate.saveRecipients(transaction, recipients);
+    }
+
+    @Override
+    public List<PublicKey> retrieveRecipients(final MessageHash hash) {
+        return delegate.retrieveRecipients(hash);
+    }
+
+    @Override
+    public List<EncryptedTransaction> retrieveTransactionsForRecipient(
+            final PublicKey recipient, final EncryptedTransaction after, final int maxResult) {
+        return this.resolveAll(delegate.retrieveTransactionsForRecipient(recipient, after, maxResult));
+    }
+
+    @Override
+    public List<EncryptedTransaction> retrieveUnindexedTransactions(
+            final EncryptedTransaction after, final int maxResult) {
+        return this.resolveAll(delegate.retrieveUnindexedTransactions(after, maxResult));
+    }
+
+    @Override
+    public List<MessageHash> retrieveHashes(final MessageHash after, final int maxResult) {
+        return delegate.retrieveHashes(after, maxResult);
+    }
+
+    @Override
+    public long transactionCount() {
+        return delegate.transactionCount();
+    }
+
+    @Override
+    public void delete(final MessageHash hash) {
+        delegate.delete(hash);
+    }
+
+    private List<EncryptedTransaction> appendAll(final List<EncryptedTransaction> entities) {
+        final List<PayloadPointer> pointers =
+                store.append(
+                        entities.stream().map(EncryptedTransaction::getEncodedPayload).collect(Collectors.toList()));
+
+        final Iterator<PayloadPointer> pointer = pointers.iterator();
+        return entities.stream().map(entity -> withPointer(entity, pointer.next())).collect(Collectors.toList());
+    }
+
+    private List<EncryptedTransaction> resolveAll(final List<EncryptedTransaction> transactions) {
+        return transactions.stream().map(this::resolve).collect(Collectors.toList());
+    }
+
+    /**
+     * Resolves a transaction that may have been read from a copy that lags behind, whose pointer can name a segment
+     * that compaction has since removed. Such a transaction is read again by the lookup that is always current, and is
+     * left out if it has been deleted in the meantime
+     */
+    private Optional<EncryptedTransaction> resolveForRead(final EncryptedTransaction stored) {
+        try {
+            return Optional.of(this.resolve(stored));
+        } catch (final RuntimeException ex) {
+            return delegate.retrieveByHash(stored.getHash()).map(this::resolve);
+        }
+    }
+
+    private EncryptedTransaction resolve(final EncryptedTransaction stored) {
+        return PayloadPointer.decode(stored.getEncodedPayload())
+                .map(
+                        pointer -> {
+                            final EncryptedTransaction resolved =
+                                    new EncryptedTransaction(
+                                            stored.getHash(), store.read(pointer), stored.getRecipientKey());
+                            resolved.setTimestamp(stored.getTimestamp());
+                            return resolved;
+                        })
+                .orElse(stored);
+    }
+
+    private static EncryptedTransaction withPointer(final EncryptedTransaction entity, final PayloadPointer pointer) {
+        final EncryptedTransaction stored =
+                new EncryptedTransaction(entity.getHash(), pointer.encode(), entity.getRecipientKey());
+        stored.setTimestamp(entity.getTimestamp());
+        return stored;
+    }
+}
@@ -0,0 +1,430 @@
+package com.quorum.tessera.data;
+
+import com.quorum.tessera.encryption.PublicKey;
+import com.zaxxer.hikari.HikariDataSource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.PreDestroy;
+import javax.persistence.EntityNotFoundException;
+import javax.persistence.PersistenceException;
+import javax.sql.DataSource;
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * An {@link EncryptedTransactionDAO} that spreads transactions over several databases, each holding the transactions
+ * whose hashes fall in one range
+ *
+ * <p>The range of a hash is chosen from its first two bytes, so lookups, writes and deletes of a single transaction go
+ * to exactly one shard, and the shards hold contiguous runs of hashes. Scans ordered by hash go through the shards one
+ * after the other. Scans ordered by timestamp are run on every shard at once and the results merged, as is counting.
+ * Pages of all transactions are read by seeking each shard past the last of its transactions on the page before,
+ * which is remembered for the most recently read pages, so reading the pages in turn only loads one page from each
+ * shard at a time.
+ *
+ * <p>Each shard is written on its own connections and commits straight away, so writes are made to look part of the
+ * caller's transaction by undoing them if it rolls back: saved transactions are deleted again and updated ones are put
+ * back as they were. Deletes are held back until the caller's transaction has committed. A batch that fails on any
+ * shard is deleted from every shard it was written to before the failure is rethrown. Recipients recorded on their own
+ * are not undone, as they only ever describe the transaction they were recorded against. The number of shards cannot
+ * be changed once transactions have been stored, as that would move the ranges.
+ */
+public class ShardedEncryptedTransactionDAO implements EncryptedTransactionDAO {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ShardedEncryptedTransactionDAO.class);
+
+    // the order the supported databases sort binary columns in, so merged pages continue where each shard left off
+    private static final Comparator<EncryptedTransaction> TIMESTAMP_ORDER =
+            Comparator.comparingLong(EncryptedTransaction::getTimestamp)
+                    .thenComparing(tx -> tx.getHash().getHashBytes(), LogStructuredStore.KEY_ORDER);
+
+    // how many page cursors are remembered, being enough for a few callers paging through the transactions at once
+    private static final int MAX_CURSORS = 16;
+
+    private final List<JdbcEncryptedTransactionDAO> shards;
+
+    private final ExecutorService executor;
+
+    private final List<DataSource> dataSources;
+
+    // the last transaction taken from each shard by the time a given offset is reached, by offset
+    private final TreeMap<Integer, EncryptedTransaction[]> cursors = new TreeMap<>();
+
+    public ShardedEncryptedTransactionDAO(
+            final List<String> urls,
+            final String username,
+            final String password,
+            final int poolSize,
+            final int fetchSize) {
+        this(
+                urls.stream()
+                        .map(url -> connect(url, username, password, poolSize))
+                        .collect(Collectors.toList()),
+                fetchSize);
+    }
+
+    private ShardedEncryptedTransactionDAO(final List<DataSource> dataSources, final int fetchSize) {
+        this(
+                dataSources.stream()
+                        .map(dataSource -> new JdbcEncryptedTransactionDAO(dataSource, fetchSize))
+                        .collect(Collectors.toList()),
+                Executors.newFixedThreadPool(Math.max(1, dataSources.size())),
+                dataSources);
+    }
+
+    ShardedEncryptedTransactionDAO(
+            final List<JdbcEncryptedTransactionDAO> shards,
+            final ExecutorService executor,
+            final List<DataSource> dataSources) {
+        if (shards.isEmpty()) {
+            throw new IllegalArgumentException("At least one shard is required");
+        }
+        this.shards = new ArrayList<>(shards);
+        this.executor = Objects.requireNonNull(executor);
+        this.dataSources = new ArrayList<>(dataSources);
+    }
+
+    private static DataSource connect(
+            final String url, final String username, final String password, final int poolSize) {
+        final HikariDataSource dataSource = new HikariDataSource();
+        dataSource.setJdbcUrl(url);
+        dataSource.setUsername(username);
+        dataSource.setPassword(password);
+        dataSource.setMaximumPoolSize(poolSize);
+        return dataSource;
+    }
+
+    @PreDestroy
+    public void close() {
+        executor.shutdown();
+        for (final DataSource dataSource : dataSources) {
+            if (dataSource instanceof Closeable) {
+                try {
+                    ((Closeable) dataSource).close();
+                } catch (final IOException ex) {
+                    LOGGER.warn("Unable to close shard connections", ex);
+                }
+            }
+        }
+    }
+
+    /** The index of the shard holding the given hash */
+    int shardOf(final MessageHash hash) {
+        final byte[] bytes = hash.getHashBytes();
+        final int first = bytes.length > 0 ? bytes[0] & 0xFF : 0;
+        final int second = bytes.length > 1 ? bytes[1] & 0xFF : 0;
+        return (int) ((((long) first << 8) | second) * shards.size() >>> 16);
+    }
+
+    private EncryptedTransactionDAO shardFor(final MessageHash hash) {
+        return shards.get(this.shardOf(hash));
+    }
+
+    @Override
+    public EncryptedTransaction save(final EncryptedTransaction entity) {
+        final EncryptedTransaction saved = this.shardFor(entity.getHash()).save(entity);
+        this.deleteOnRollback(Collections.singletonList(entity.getHash()));
+        return saved;
+    }
+
+    @Override
+    public List<EncryptedTransaction> saveAll(final List<EncryptedTransaction> entities) {
+        final Map<Integer, List<EncryptedTransaction>> byShard =
+                entities.stream().collect(Collectors.groupingBy(tx -> this.shardOf(tx.getHash())));
+
+        this.writeToEachShard(
+                hashesOf(entities),
+                byShard.keySet(),
+                shard -> shards.get(shard).saveAll(byShard.get(shard)));
+        return entities;
+    }
+
+    @Override
+    public EncryptedTransaction update(final EncryptedTransaction entity) {
+        final EncryptedTransactionDAO shard = this.shardFor(entity.getHash());
+
+        final Optional<EncryptedTransaction> previous = shard.retrieveByHash(entity.getHash());
+        final EncryptedTransaction updated = shard.update(entity);
+
+        previous.ifPresent(
+                tx -> TransactionCallbacks.afterRollback(() -> this.undo(tx.getHash(), () -> shard.update(tx))));
+        return updated;
+    }
+
+    @Override
+    public Optional<EncryptedTransaction> retrieveByHash(final MessageHash hash) {
+        return this.shardFor(hash).retrieveByHash(hash);
+    }
+
+    @Override
+    public List<EncryptedTransaction> retrieveByHashes(final Collection<MessageHash> hashes) {
+        final Map<Integer, List<MessageHash>> byShard =
+                hashes.stream().collect(Collectors.groupingBy(this::shardOf));
+
+        return this.onEachShard(byShard.keySet(), shard -> shards.get(shard).retrieveByHashes(byShard.get(shard)))
+                .stream()
+                .flatMap(List::stream)
+                .collect(Collectors.toList());
+    }
+
+    @Override
+    public Optional<EncryptedTransaction> retrieveByHashForRead(final MessageHash hash) {
+        return this.retrieveByHash(hash);
+    }
+
+    @Override
+    public List<EncryptedTransaction> retrieveByHashesForRead(final Collection<MessageHash> hashes) {
+        return this.retrieveByHashes(hashes);
+    }
+
+    /**
+     * Continues from the cursor remembered for the nearest offset at or before the one asked for, skipping forward a
+     * page at a time if that is not the offset itself, so no shard is ever asked for more than a page of transactions
+     */
+    @Override
+    public List<EncryptedTransaction> retrieveTransactions(final int offset, final int maxResult) {
+        if (maxResult <= 0) {
+            return Collections.emptyList();
+        }
+
+        final Map.Entry<Integer, EncryptedTransaction[]> nearest;
+        synchronized (cursors) {
+            nearest = cursors.floorEntry(offset);
+        }
+
+        int position = nearest == null ? 0 : nearest.getKey();
+        final EncryptedTransaction[] cursor =
+                nearest == null ? new EncryptedTransaction[shards.size()] : nearest.getValue().clone();
+
+        while (position < offset) {
+            final int skipped = this.nextPage(cursor, Math.min(offset - position, Math.max(1, maxResult))).size();
+            if (skipped == 0) {
+                return Collections.emptyList();
+            }
+            position += skipped;
+        }
+
+        final List<EncryptedTransaction> page = this.nextPage(cursor, maxResult);
+        if (!page.isEmpty()) {
+            this.remember(position + page.size(), cursor);
+        }
+        return page;
+    }
+
+    /** Reads the next page from every shard, merges them and moves the cursor of each shard past what was taken */
+    private List<EncryptedTransaction> nextPage(final EncryptedTransaction[] cursor, final int maxResult) {
+        final List<List<EncryptedTransaction>> pages =
+                this.onAllShards(shard -> shards.get(shard).retrieveTransactionsAfter(cursor[shard], maxResult));
+
+        final List<EncryptedTransaction> page = this.merge(pages, 0, maxResult);
+        for (final EncryptedTransaction transaction : page) {
+            cursor[this.shardOf(transaction.getHash())] = transaction;
+        }
+        return page;
+    }
+
+    private void remember(final int offset, final EncryptedTransaction[] cursor) {
+        synchronized (cursors) {
+            cursors.put(offset, cursor.clone());
+            if (cursors.size() > MAX_CURSORS) {
+                cursors.pollFirstEntry();
+            }
+        }
+    }
+
+    @Override
+    public void saveRecipients(final EncryptedTransaction transaction, final Collection<PublicKey> recipients) {
+        this.shardFor(transaction.getHash()).saveRecipients(transaction, recipients);
+    }
+
+    @Override
+    public List<PublicKey> retrieveRecipients(final MessageHash hash) {
+        return this.shardFor(hash).retrieveRecipients(hash);
+    }
+
+    @Override
+    public void saveAllWithRecipients(final Map<EncryptedTransaction, ? extends Collection<PublicKey>> transactions) {
+        final Map<Integer, Map<EncryptedTransaction, Collection<PublicKey>>> byShard = new LinkedHashMap<>();
+        transactions.forEach(
+                (transaction, recipients) ->
+                        byShard.computeIfAbsent(this.shardOf(transaction.getHash()), s -> new LinkedHashMap<>())
+                                .put(transaction, recipients));
+
+        this.writeToEachShard(
+                hashesOf(transactions.keySet()),
+                byShard.keySet(),
+                shard -> shards.get(shard).saveAllWithRecipients(byShard.get(shard)));
+    }
+
+    @Override
+    public List<EncryptedTransaction> retrieveTransactionsForRecipient(
+            final PublicKey recipient, final EncryptedTransaction after, final int maxResult) {
+        return this.merge(
+                this.onAllShards(
+                        shard -> shards.get(shard).retrieveTransactionsForRecipient(recipient, after, maxResult)),
+                0,
+                maxResult);
+    }
+
+    @Override
+    public List<EncryptedTransaction> retrieveUnindexedTransactions(
+            final EncryptedTransaction after, final int maxResult) {
+        final List<EncryptedTransaction> results = new ArrayList<>();
+
+        EncryptedTransaction from = after;
+        int shard = after == null ? 0 : this.shardOf(after.getHash());
+        while (shard < shards.size() && results.size() < maxResult) {
+            results.addAll(shards.get(shard).retrieveUnindexedTransactions(from, maxResult - results.size()));
+            from = null;
+            shard++;
+        }
+        return results;
+    }
+
+    @Override
+    public List<MessageHash> retrieveHashes(final MessageHash after, final int maxResult) {
+        final List<MessageHash> results = new ArrayList<>();
+
+        MessageHash from = after;
+        int shard = after == null ? 0 : this.shardOf(after);
+        while (shard < shards.size() && results.size() < maxResult) {
+            results.addAll(shards.get(shard).retrieveHashes(from, maxResult - results.size()));
+            from = null;
+            shard++;
+        }
+        return results;
+    }
+
+    @Override
+    public long transactionCount() {
+        return this.onAllShards(shard -> shards.get(shard).transactionCount())
+                .stream()
+                .mapToLong(Long::longValue)
+                .sum();
+    }
+
+    /**
+     * Checks the transaction is stored straight away, so a missing one fails the same as on a single database, but
+     * only deletes it once the caller's transaction has committed, as a delete could not be undone
+     */
+    @Override
+    public void delete(final MessageHash hash) {
+        final EncryptedTransactionDAO shard = this.shardFor(hash);
+        if (!shard.retrieveByHash(hash).isPresent()) {
+            throw new EntityNotFoundException("No transaction with hash " + hash);
+        }
+
+        TransactionCallbacks.afterCommit(() -> shard.delete(hash));
+    }
+
+    /**
+     * Writes part of a batch to each of the given shards at the same time. If any of them fails, the whole batch is
+     * deleted from every shard once they have all finished, so that none of it is left behind, and the failure is
+     * rethrown. Otherwise the batch is deleted again if the caller's transaction rolls back.
+     */
+    private void writeToEachShard(
+            final List<MessageHash> hashes, final Collection<Integer> indexes, final Consumer<Integer> write) {
+        try {
+            this.onEachShard(
+                    indexes,
+                    shard -> {
+                        write.accept(shard);
+                        return null;
+                    });
+        } catch (final RuntimeException ex) {
+            this.deleteAll(hashes);
+            throw ex;
+        }
+
+        this.deleteOnRollback(hashes);
+    }
+
+    private void deleteOnRollback(final List<MessageHash> hashes) {
+        TransactionCallbacks.afterRollback(() -> this.deleteAll(hashes));
+    }
+
+    private void deleteAll(final List<MessageHash> hashes) {
+        for (final MessageHash hash : hashes) {
+            final EncryptedTransactionDAO shard = this.shardFor(hash);
+            this.undo(hash, () -> shard.delete(hash));
+        }
+    }
+
+    /** Undoes a write that was already committed on a shard, logging rather than throwing if it cannot be undone */
+    private void undo(final MessageHash hash, final Runnable action) {
+        try {
+            action.run();
+        } catch (final EntityNotFoundException ex) {
+            LOGGER.debug("Transaction {} was not written, so there is nothing to undo", hash);
+        } catch (final PersistenceException ex) {
+            LOGGER.warn("Unable to undo write of transaction {} to its shard: {}", hash, ex.getMessage());
+            LOGGER.debug(null, ex);
+        }
+    }
+
+    private static List<MessageHash> hashesOf(final Collection<EncryptedTransaction> transactions) {
+        return transactions.stream().map(EncryptedTransaction::getHash).collect(Collectors.toList());
+    }
+
+    private List<EncryptedTransaction> merge(
+            final List<List<EncryptedTransaction>> pages, final int offset, final int maxResult) {
+        return pages.stream()
+                .flatMap(List::stream)
+                .sorted(TIMESTAMP_ORDER)
+                .skip(offset)
+                .limit(maxResult)
+                .collect(Collectors.toList());
+    }
+
+    private <T> List<T> onAllShards(final Function<Integer, T> call) {
+        return this.onEachShard(IntStream.range(0, shards.size()).boxed().collect(Collectors.toList()), call);
+    }
+
+    /** Runs the call for each of the given shards at the same time, rethrowing the first failure once all are done */
+    private <T> List<T> onEachShard(final Collection<Integer> indexes, final Function<Integer, T> call) {
+        if (indexes.size() == 1) {
+            return Collections.singletonList(call.apply(indexes.iterator().next()));
+        }
+
+        final List<CompletableFuture<T>> futures =
+                indexes.stream()
+                        .map(shard -> CompletableFuture.supplyAsync(() -> call.apply(shard), executor))
+                        .collect(Collectors.toList());
+
+        final List<T> results = new ArrayList<>(futures.size());
+        RuntimeException failure = null;
+        for (final CompletableFuture<T> future : futures) {
+            try {
+                results.add(future.join());
+            } catch (final CompletionException ex) {
+                if (failure == null) {
+                    failure = ex.getCause() instanceof RuntimeException ? (RuntimeException) ex.getCause() : ex;
+                }
+            }
+        }
+
+        if (failure != null) {
+            throw failure;
+        }
+        return results;
+    }
+}
@@ -0,0 +1,72 @@
+package com.quorum.tessera.data;
+
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Defers work until the transaction that the calling thread is running in has finished
+ *
+ * <p>Anything that other threads can observe, such as a cache entry, a counter or a lock, should only change once the
+ * database changes it goes with are committed, otherwise another thread may act on changes that are later rolled back
+ * or that it cannot yet see. When the calling thread is not in a transaction, the work is run straight away.
+ *
+ * <p>Work can also be registered to undo changes that were committed outside of the transaction, such as those to a
+ * separate database, should the transaction roll back.
+ */
+public final class TransactionCallbacks {
+
+    private TransactionCallbacks() {}
+
+    /** Runs the action once the current transaction has committed, and not at all if it rolls back */
+    public static void afterCommit(final Runnable action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            action.run();
+            return;
+        }
+
+        TransactionSynchronizationManager.registerSynchronization(
+                new TransactionSynchronizationAdapter() {
+                    @Override
+                    public void afterCommit() {
+                        action.run();
+                    }
+                });
+    }
+
+    /** Runs the action once the current transaction has finished, whether it committed or rolled back */
+    public static void afterCompletion(final Runnable action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            action.run();
+            return;
+        }
+
+        TransactionSynchronizationManager.registerSynchronization(
+                new TransactionSynchronizationAdapter() {
+                    @Override
+                    public void afterCompletion(final int status) {
+                        action.run();
+                    }
+                });
+    }
+
+    /**
+     * Runs the action if the current transaction rolls back. When the calling thread is not in a transaction there is
+     * nothing to roll back, so the action is never run
+     */
+    public static void afterRollback(final Runnable action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            return;
+        }
+
+        TransactionSynchronizationManager.registerSynchronization(
+                new TransactionSynchronizationAdapter() {
+                    @Override
+                    public void afterCompletion(final int status) {
+                        if (status == TransactionSynchronization.STATUS_ROLLED_BACK) {
+                            action.run();
+                        }
+                    }
+                });
+    }
+}
@@ -0,0 +1,142 @@
+package com.quorum.tessera.data;
+
+import com.quorum.tessera.encryption.PublicKey;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.persistence.EntityExistsException;
+import javax.persistence.EntityNotFoundException;
+import java.util.Arrays;
+import java.util.List;
+
+import static java.util.Collections.singletonList;
+import static java.util.Collections.singletonMap;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.catchThrowable;
+import static org.mockito.Mockito.*;
+
+public class CountingEncryptedTransactionDAOTest {
+
+    private EncryptedTransactionDAO delegate;
+
+    private CountingEncryptedTransactionDAO encryptedTransactionDAO;
+
+    @Before
+    public void onSetUp() {
+        delegate = mock(EncryptedTransactionDAO.class);
+        when(delegate.transactionCount()).thenReturn(10L);
+        encryptedTransactionDAO = new CountingEncryptedTransactionDAO(delegate);
+        encryptedTransactionDAO.init();
+    }
+
+    @After
+    public void onTearDown() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+        verify(delegate).transactionCount();
+        verifyNoMoreInteractions(delegate);
+    }
+
+    @Test
+    public void countIsSeededOnceFromDelegate() {
+        encryptedTransactionDAO.init();
+
+        assertThat(encryptedTransactionDAO.transactionCount()).isEqualTo(10L);
+        assertThat(encryptedTransactionDAO.transactionCount()).isEqualTo(10L);
+        assertThat(encryptedTransactionDAO.getTransactionCount()).isEqualTo(10L);
+    }
+
+    @Test
+    public void savesAndDeletesAdjustTheCount() {
+        final EncryptedTransaction transaction = transaction(1);
+        final List<EncryptedTransaction> transactions = Arrays.asList(transaction(2), transaction(3));
+        final List<PublicKey> recipients = singletonList(PublicKey.from(new byte[] {7}));
+
+        encryptedTransactionDAO.save(transaction);
+        encryptedTransactionDAO.saveAll(transactions);
+        encryptedTransactionDAO.saveAllWithRecipients(singletonMap(transaction(4), recipients));
+        encryptedTransactionDAO.update(transaction);
+        encryptedTransactionDAO.delete(transaction.getHash());
+
+        assertThat(encryptedTransactionDAO.transactionCount()).isEqualTo(13L);
+
+        verify(delegate).save(transaction);
+        verify(delegate).saveAll(transactions);
+        verify(delegate).saveAllWithRecipients(singletonMap(transaction(4), recipients));
+        verify(delegate).update(transaction);
+        verify(delegate).delete(transaction.getHash());
+    }
+
+    @Test
+    public void failedWritesAreNotCounted() {
+        final EncryptedTransaction transaction = transaction(1);
+        when(delegate.save(transaction)).thenThrow(new EntityExistsException());
+        doThrow(new EntityNotFoundException()).when(delegate).delete(transaction.getHash());
+
+        assertThat(catchThrowable(() -> encryptedTransactionDAO.save(transaction)))
+                .isInstanceOf(EntityExistsException.class);
+        assertThat(catchThrowable(() -> encryptedTransactionDAO.delete(transaction.getHash())))
+                .isInstanceOf(EntityNotFoundException.class);
+
+        assertThat(encryptedTransactionDAO.transactionCount()).isEqualTo(10L);
+
+        verify(delegate).save(transaction);
+        verify(delegate).delete(transaction.getHash());
+    }
+
+    @Test
+    public void writesAreCountedOnlyOnceTheirTransactionCommits() {
+        final EncryptedTransaction transaction = transaction(1);
+        TransactionSynchronizationManager.initSynchronization();
+
+        encryptedTransactionDAO.save(transaction);
+
+        assertThat(encryptedTransactionDAO.transactionCount()).isEqualTo(10L);
+
+        TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization::afterCommit);
+
+        assertThat(encryptedTransactionDAO.transactionCount()).isEqualTo(11L);
+
+        verify(delegate).save(transaction);
+    }
+
+    @Test
+    public void writesRolledBackByTheirTransactionAreNotCounted() {
+        final EncryptedTransaction transaction = transaction(1);
+        TransactionSynchronizationManager.initSynchronization();
+
+        encryptedTransactionDAO.save(transaction);
+        encryptedTransactionDAO.delete(transaction(2).getHash());
+
+        TransactionSynchronizationManager.getSynchronizations()
+                .forEach(s -> s.afterCompletion(TransactionSynchronization.STATUS_ROLLED_BACK));
+
+        assertThat(encryptedTransactionDAO.transactionCount()).isEqualTo(10L);
+
+        verify(delegate).save(transaction);
+        verify(delegate).delete(transaction(2).getHash());
+    }
+
+    @Test
+    public void readsArePassedThrough() {
+        final MessageHash hash = transaction(1).getHash();
+
+        encryptedTransactionDAO.retrieveByHash(hash);
+        encryptedTransactionDAO.retrieveByHashForRead(hash);
+        encryptedTransactionDAO.retrieveTransactions(0, 10);
+        encryptedTransactionDAO.retrieveHashes(null, 10);
+
+        verify(delegate).retrieveByHash(hash);
+        verify(delegate).retrieveByHashForRead(hash);
+        verify(delegate).retrieveTransactions(0, 10);
+        verify(delegate).retrieveHashes(null, 10);
+    }
+
+    private static EncryptedTransaction transaction(final int i) {
+        return new EncryptedTransaction(new MessageHash(new byte[] {(byte) i}), new byte[] {(byte) i});
+    }
+}
@@ -0,0 +1,100 @@
+package com.quorum.tessera.data;
+
+import com.quorum.tessera.data.jpatest.JpaConfig;
+import com.quorum.tessera.data.jpatest.JpaH2Config;
+import com.quorum.tessera.data.jpatest.JpaSqliteConfig;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.jdbc.datasource.TransactionAwareDataSourceProxy;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.Random;
+import java.util.function.IntFunction;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * Compares the throughput of the JPA and plain JDBC transaction DAOs against in-memory H2 and SQLite databases
+ *
+ * <p>Not run as part of the build; start it from the test classpath with an optional transaction count argument.
+ */
+public class DataAccessBenchmark {
+
+    private static final int PAYLOAD_SIZE = 1024;
+
+    public static void main(final String... args) {
+        final int count = args.length > 0 ? Integer.parseInt(args[0]) : 10_000;
+
+        run(JpaH2Config.class, "JPA", "H2", count, false);
+        run(JpaH2Config.class, "JDBC", "H2", count, true);
+        run(JpaSqliteConfig.class, "JPA", "SQLite", count, false);
+        run(JpaSqliteConfig.class, "JDBC", "SQLite", count, true);
+    }
+
+    private static void run(
+            final Class<? extends JpaConfig> config,
+            final String access,
+            final String database,
+            final int count,
+            final boolean jdbc) {
+
+        try (AnnotationConfigApplicationContext context = new AnnotationConfigApplicationContext(config)) {
+            final TransactionTemplate transactions =
+                    new TransactionTemplate(context.getBean(PlatformTransactionManager.class));
+
+            final EncryptedTransactionDAO dao =
+                    jdbc
+                            ? new JdbcEncryptedTransactionDAO(
+                                    new TransactionAwareDataSourceProxy(context.getBean(DataSource.class)), 1000)
+                            : context.getBean(EncryptedTransactionDAO.class);
+
+            final Random random = new Random(1);
+            final IntFunction<EncryptedTransaction> transaction =
+                    i -> {
+                        final byte[] payload = new byte[PAYLOAD_SIZE];
+                        random.nextBytes(payload);
+                        return new EncryptedTransaction(hash(i), payload);
+                    };
+
+            final long saveStart = System.nanoTime();
+            IntStream.range(0, count)
+                    .forEach(i -> transactions.execute(status -> dao.save(transaction.apply(i))));
+            final long saveTime = System.nanoTime() - saveStart;
+
+            final List<EncryptedTransaction> batch =
+                    IntStream.range(count, 2 * count).mapToObj(transaction).collect(Collectors.toList());
+            final long batchStart = System.nanoTime();
+            transactions.execute(status -> dao.saveAll(batch));
+            final long batchTime = System.nanoTime() - batchStart;
+
+            final long lookupStart = System.nanoTime();
+            IntStream.range(0, count)
+                    .forEach(i -> transactions.execute(status -> dao.retrieveByHash(hash(random.nextInt(count)))));
+            final long lookupTime = System.nanoTime() - lookupStart;
+
+            final long scanStart = System.nanoTime();
+            transactions.execute(status -> dao.retrieveTransactions(0, 2 * count));
+            final long scanTime = System.nanoTime() - scanStart;
+
+            System.out.printf(
+                    "%-5s %-7s save %8.0f/s  saveAll %8.0f/s  lookup %8.0f/s  scan %8.0f/s%n",
+                    access,
+                    database,
+                    rate(count, saveTime),
+                    rate(count, batchTime),
+                    rate(count, lookupTime),
+                    rate(2 * count, scanTime));
+        }
+    }
+
+    private static MessageHash hash(final int i) {
+        return new MessageHash(ByteBuffer.allocate(64).putInt(i).array());
+    }
+
+    private static double rate(final int operations, final long nanos) {
+        return operations / (nanos / 1_000_000_000d);
+    }
+}
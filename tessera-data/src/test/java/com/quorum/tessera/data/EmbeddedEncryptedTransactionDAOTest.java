@@ -0,0 +1,283 @@
+package com.quorum.tessera.data;
+
+import com.quorum.tessera.encryption.PublicKey;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.persistence.EntityExistsException;
+import javax.persistence.EntityNotFoundException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static java.util.Collections.singletonList;
+import static java.util.Collections.singletonMap;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.catchThrowable;
+
+public class EmbeddedEncryptedTransactionDAOTest {
+
+    @Rule public TemporaryFolder folder = new TemporaryFolder();
+
+    private LogStructuredStore store;
+
+    private EmbeddedEncryptedTransactionDAO encryptedTransactionDAO;
+
+    private EmbeddedEncryptedRawTransactionDAO encryptedRawTransactionDAO;
+
+    @Before
+    public void onSetUp() {
+        store = new LogStructuredStore(folder.getRoot().toPath(), Long.MAX_VALUE, Long.MAX_VALUE);
+        store.init();
+        encryptedTransactionDAO = new EmbeddedEncryptedTransactionDAO(store);
+        encryptedTransactionDAO.init();
+        encryptedRawTransactionDAO = new EmbeddedEncryptedRawTransactionDAO(store);
+    }
+
+    @After
+    public void onTearDown() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+        store.close();
+    }
+
+    @Test
+    public void saveAndRetrieveByHash() {
+        final EncryptedTransaction transaction =
+                new EncryptedTransaction(new MessageHash(new byte[] {1}), new byte[] {2}, new byte[] {3});
+
+        encryptedTransactionDAO.save(transaction);
+
+        final EncryptedTransaction retrieved =
+                encryptedTransactionDAO.retrieveByHash(new MessageHash(new byte[] {1})).get();
+        assertThat(retrieved.getEncodedPayload()).containsExactly(2);
+        assertThat(retrieved.getRecipientKey()).containsExactly(3);
+        assertThat(retrieved.getTimestamp()).isNotZero().isEqualTo(transaction.getTimestamp());
+
+        assertThat(encryptedTransactionDAO.retrieveByHash(new MessageHash(new byte[] {9}))).isNotPresent();
+    }
+
+    @Test
+    public void savingAStoredTransactionFails() {
+        encryptedTransactionDAO.save(transaction(1));
+
+        final Throwable throwable = catchThrowable(() -> encryptedTransactionDAO.save(transaction(1)));
+
+        assertThat(throwable).isInstanceOf(EntityExistsException.class);
+    }
+
+    @Test
+    public void updateKeepsTheOriginalTimestamp() {
+        final EncryptedTransaction transaction = transaction(1);
+        encryptedTransactionDAO.save(transaction);
+
+        encryptedTransactionDAO.update(
+                new EncryptedTransaction(new MessageHash(new byte[] {1}), new byte[] {4}, new byte[] {5}));
+
+        final EncryptedTransaction retrieved =
+                encryptedTransactionDAO.retrieveByHash(new MessageHash(new byte[] {1})).get();
+        assertThat(retrieved.getEncodedPayload()).containsExactly(4);
+        assertThat(retrieved.getRecipientKey()).containsExactly(5);
+        assertThat(retrieved.getTimestamp()).isEqualTo(transaction.getTimestamp());
+
+        assertThat(catchThrowable(() -> encryptedTransactionDAO.update(transaction(2))))
+                .isInstanceOf(EntityNotFoundException.class);
+    }
+
+    @Test
+    public void retrieveTransactionsPagesInTimestampOrder() {
+        IntStream.range(0, 5).mapToObj(EmbeddedEncryptedTransactionDAOTest::transaction).forEach(this::restore);
+
+        assertThat(encryptedTransactionDAO.retrieveTransactions(0, 10)).hasSize(5);
+        assertThat(encryptedTransactionDAO.retrieveTransactions(3, 10))
+                .containsExactly(transaction(3), transaction(4));
+        assertThat(encryptedTransactionDAO.retrieveByHashes(Arrays.asList(hash(0), hash(2), hash(7))))
+                .containsExactlyInAnyOrder(transaction(0), transaction(2));
+        assertThat(encryptedTransactionDAO.transactionCount()).isEqualTo(5);
+    }
+
+    @Test
+    public void retrieveTransactionsForRecipientSeeksThroughOnlyThatRecipientsTransactions() {
+        final PublicKey recipient = PublicKey.from(new byte[] {7});
+        final PublicKey other = PublicKey.from(new byte[] {8});
+
+        final List<EncryptedTransaction> transactions =
+                IntStream.range(0, 5)
+                        .mapToObj(EmbeddedEncryptedTransactionDAOTest::transaction)
+                        .peek(this::restore)
+                        .collect(Collectors.toList());
+
+        transactions.forEach(
+                tx ->
+                        encryptedTransactionDAO.saveRecipients(
+                                tx,
+                                tx.getHash().getHashBytes()[0] % 2 == 0
+                                        ? Arrays.asList(recipient, other)
+                                        : singletonList(other)));
+
+        final List<EncryptedTransaction> retrieved = new ArrayList<>();
+        EncryptedTransaction last = null;
+        List<EncryptedTransaction> page;
+        while (!(page = encryptedTransactionDAO.retrieveTransactionsForRecipient(recipient, last, 2)).isEmpty()) {
+            assertThat(page.size()).isLessThanOrEqualTo(2);
+            retrieved.addAll(page);
+            last = page.get(page.size() - 1);
+        }
+
+        assertThat(retrieved).containsExactly(transactions.get(0), transactions.get(2), transactions.get(4));
+        assertThat(encryptedTransactionDAO.retrieveTransactionsForRecipient(other, null, 10)).hasSize(5);
+
+        final Throwable throwable =
+                catchThrowable(() -> encryptedTransactionDAO.saveRecipients(transactions.get(0), singletonList(other)));
+        assertThat(throwable).isInstanceOf(EntityExistsException.class);
+    }
+
+    @Test
+    public void recipientIndexIsRebuiltOnStartup() {
+        final PublicKey recipient = PublicKey.from(new byte[] {7});
+        encryptedTransactionDAO.saveAllWithRecipients(singletonMap(transaction(1), singletonList(recipient)));
+
+        final EmbeddedEncryptedTransactionDAO restarted = new EmbeddedEncryptedTransactionDAO(store);
+        restarted.init();
+
+        assertThat(restarted.retrieveTransactionsForRecipient(recipient, null, 10)).containsExactly(transaction(1));
+    }
+
+    @Test
+    public void retrieveUnindexedTransactionsOnlyReturnsTransactionsWithoutRecipients() {
+        final EncryptedTransaction indexed = transaction(1);
+        final EncryptedTransaction unindexed = transaction(2);
+        encryptedTransactionDAO.save(indexed);
+        encryptedTransactionDAO.save(unindexed);
+        encryptedTransactionDAO.saveRecipients(indexed, singletonList(PublicKey.from(new byte[] {7})));
+
+        assertThat(encryptedTransactionDAO.retrieveUnindexedTransactions(null, 10)).containsExactly(unindexed);
+        assertThat(encryptedTransactionDAO.retrieveUnindexedTransactions(unindexed, 10)).isEmpty();
+        assertThat(encryptedTransactionDAO.retrieveHashes(null, 10)).containsExactly(hash(1), hash(2));
+        assertThat(encryptedTransactionDAO.retrieveHashes(hash(1), 10)).containsExactly(hash(2));
+    }
+
+    @Test
+    public void deleteTransactionRemovesItsRecipients() {
+        final PublicKey recipient = PublicKey.from(new byte[] {7});
+        encryptedTransactionDAO.saveAllWithRecipients(singletonMap(transaction(1), singletonList(recipient)));
+
+        assertThat(encryptedTransactionDAO.retrieveRecipients(hash(1))).containsExactly(recipient);
+
+        encryptedTransactionDAO.delete(hash(1));
+
+        assertThat(encryptedTransactionDAO.retrieveByHash(hash(1))).isNotPresent();
+        assertThat(encryptedTransactionDAO.retrieveTransactionsForRecipient(recipient, null, 10)).isEmpty();
+        assertThat(encryptedTransactionDAO.retrieveRecipients(hash(1))).isEmpty();
+        assertThat(catchThrowable(() -> encryptedTransactionDAO.delete(hash(1))))
+                .isInstanceOf(EntityNotFoundException.class);
+    }
+
+    @Test
+    public void writesAreUndoneIfTheCallersTransactionRollsBack() {
+        final PublicKey recipient = PublicKey.from(new byte[] {7});
+        final EncryptedTransaction stored = transaction(1);
+        encryptedTransactionDAO.save(stored);
+
+        TransactionSynchronizationManager.initSynchronization();
+
+        encryptedTransactionDAO.saveAllWithRecipients(singletonMap(transaction(2), singletonList(recipient)));
+        encryptedTransactionDAO.update(new EncryptedTransaction(hash(1), new byte[] {4}));
+        encryptedTransactionDAO.delete(hash(1));
+
+        assertThat(encryptedTransactionDAO.retrieveByHash(hash(2))).isPresent();
+        assertThat(encryptedTransactionDAO.retrieveByHash(hash(1)).get().getEncodedPayload()).containsExactly(4);
+
+        TransactionSynchronizationManager.getSynchronizations()
+                .forEach(s -> s.afterCompletion(TransactionSynchronization.STATUS_ROLLED_BACK));
+
+        assertThat(encryptedTransactionDAO.retrieveByHash(hash(2))).isNotPresent();
+        assertThat(encryptedTransactionDAO.retrieveRecipients(hash(2))).isEmpty();
+        assertThat(encryptedTransactionDAO.retrieveTransactionsForRecipient(recipient, null, 10)).isEmpty();
+        assertThat(encryptedTransactionDAO.retrieveByHash(hash(1))).contains(stored);
+        assertThat(encryptedTransactionDAO.retrieveByHash(hash(1)).get().getEncodedPayload()).containsExactly(1);
+    }
+
+    @Test
+    public void deletesAreMadeOnceTheCallersTransactionCommits() {
+        final PublicKey recipient = PublicKey.from(new byte[] {7});
+        encryptedTransactionDAO.saveAllWithRecipients(singletonMap(transaction(1), singletonList(recipient)));
+
+        TransactionSynchronizationManager.initSynchronization();
+
+        encryptedTransactionDAO.delete(hash(1));
+
+        assertThat(encryptedTransactionDAO.retrieveByHash(hash(1))).isPresent();
+
+        TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization::afterCommit);
+        TransactionSynchronizationManager.getSynchronizations()
+                .forEach(s -> s.afterCompletion(TransactionSynchronization.STATUS_COMMITTED));
+
+        assertThat(encryptedTransactionDAO.retrieveByHash(hash(1))).isNotPresent();
+        assertThat(encryptedTransactionDAO.retrieveTransactionsForRecipient(recipient, null, 10)).isEmpty();
+    }
+
+    @Test
+    public void rawTransactionSaveRetrieveAndDelete() {
+        final EncryptedRawTransaction transaction =
+                new EncryptedRawTransaction(hash(1), new byte[] {2}, new byte[] {3}, new byte[] {4}, new byte[] {5});
+
+        encryptedRawTransactionDAO.save(transaction);
+
+        final EncryptedRawTransaction retrieved = encryptedRawTransactionDAO.retrieveByHash(hash(1)).get();
+        assertThat(retrieved.getEncryptedPayload()).containsExactly(2);
+        assertThat(retrieved.getEncryptedKey()).containsExactly(3);
+        assertThat(retrieved.getNonce()).containsExactly(4);
+        assertThat(retrieved.getSender()).containsExactly(5);
+        assertThat(retrieved.getTimestamp()).isEqualTo(transaction.getTimestamp());
+
+        encryptedRawTransactionDAO.delete(hash(1));
+
+        assertThat(encryptedRawTransactionDAO.retrieveByHash(hash(1))).isNotPresent();
+        assertThat(catchThrowable(() -> encryptedRawTransactionDAO.delete(hash(1))))
+                .isInstanceOf(EntityNotFoundException.class);
+    }
+
+    @Test
+    public void rawTransactionsOlderThanExpiryAreDeletedOldestFirst() {
+        encryptedRawTransactionDAO.restore(Arrays.asList(rawTransaction(1, 100L), rawTransaction(2, 300L)));
+        encryptedRawTransactionDAO.restore(singletonList(rawTransaction(3, 200L)));
+
+        assertThat(encryptedRawTransactionDAO.deleteOlderThan(100L, 10)).isZero();
+        assertThat(encryptedRawTransactionDAO.deleteOlderThan(1000L, 2)).isEqualTo(2);
+
+        assertThat(encryptedRawTransactionDAO.retrieveByHash(hash(1))).isNotPresent();
+        assertThat(encryptedRawTransactionDAO.retrieveByHash(hash(3))).isNotPresent();
+        assertThat(encryptedRawTransactionDAO.retrieveByHash(hash(2))).isPresent();
+    }
+
+    private void restore(final EncryptedTransaction transaction) {
+        encryptedTransactionDAO.restore(singletonMap(transaction, Collections.<PublicKey>emptyList()));
+    }
+
+    private static EncryptedTransaction transaction(final int i) {
+        final EncryptedTransaction transaction = new EncryptedTransaction(hash(i), new byte[] {(byte) i});
+        transaction.setTimestamp(100L + i);
+        return transaction;
+    }
+
+    private static EncryptedRawTransaction rawTransaction(final int i, final long timestamp) {
+        final EncryptedRawTransaction transaction =
+                new EncryptedRawTransaction(hash(i), new byte[] {2}, new byte[] {3}, new byte[] {4}, new byte[] {5});
+        transaction.setTimestamp(timestamp);
+        return transaction;
+    }
+
+    private static MessageHash hash(final int i) {
+        return new MessageHash(new byte[] {(byte) i});
+    }
+}
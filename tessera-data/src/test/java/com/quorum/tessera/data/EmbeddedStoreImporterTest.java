@@ -0,0 +1,88 @@
+package com.quorum.tessera.data;
+
+import com.quorum.tessera.data.jpatest.JpaH2Config;
+import com.quorum.tessera.encryption.PublicKey;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import javax.inject.Inject;
+import javax.sql.DataSource;
+import java.sql.Connection;
+
+import static java.util.Collections.singletonList;
+import static org.assertj.core.api.Assertions.assertThat;
+
+@RunWith(SpringRunner.class)
+@ContextConfiguration(classes = JpaH2Config.class)
+@DirtiesContext(classMode = DirtiesContext.ClassMode.AFTER_CLASS)
+public class EmbeddedStoreImporterTest {
+
+    @Rule public TemporaryFolder folder = new TemporaryFolder();
+
+    @Inject private DataSource dataSource;
+
+    private LogStructuredStore store;
+
+    @Before
+    public void onSetUp() {
+        store = new LogStructuredStore(folder.getRoot().toPath(), Long.MAX_VALUE, Long.MAX_VALUE);
+        store.init();
+    }
+
+    @After
+    public void onTearDown() {
+        store.close();
+    }
+
+    @Test
+    public void storedRowsAreCopiedWithTheirTimestamps() throws Exception {
+        final PublicKey recipient = PublicKey.from(new byte[] {7});
+        final EncryptedTransactionDAO source = new JdbcEncryptedTransactionDAO(dataSource, 100);
+        final EncryptedTransaction transaction =
+                new EncryptedTransaction(new MessageHash(new byte[] {1}), new byte[] {2}, new byte[] {3});
+        source.save(transaction);
+        source.saveRecipients(transaction, singletonList(recipient));
+        source.save(new EncryptedTransaction(new MessageHash(new byte[] {4}), new byte[] {5}));
+
+        final EncryptedRawTransaction raw =
+                new EncryptedRawTransaction(
+                        new MessageHash(new byte[] {6}),
+                        new byte[] {7},
+                        new byte[] {8},
+                        new byte[] {9},
+                        new byte[] {10});
+        new JdbcEncryptedRawTransactionDAO(dataSource).save(raw);
+
+        final EmbeddedEncryptedTransactionDAO encryptedTransactionDAO = new EmbeddedEncryptedTransactionDAO(store);
+        final EmbeddedEncryptedRawTransactionDAO encryptedRawTransactionDAO =
+                new EmbeddedEncryptedRawTransactionDAO(store);
+
+        final long imported;
+        try (Connection connection = dataSource.getConnection()) {
+            imported =
+                    new EmbeddedStoreImporter(encryptedTransactionDAO, encryptedRawTransactionDAO, 1)
+                            .importFrom(connection);
+        }
+
+        assertThat(imported).isEqualTo(4);
+        assertThat(encryptedTransactionDAO.transactionCount()).isEqualTo(2);
+
+        final EncryptedTransaction copied =
+                encryptedTransactionDAO.retrieveByHash(new MessageHash(new byte[] {1})).get();
+        assertThat(copied.getEncodedPayload()).containsExactly(2);
+        assertThat(copied.getRecipientKey()).containsExactly(3);
+        assertThat(copied.getTimestamp()).isEqualTo(transaction.getTimestamp());
+
+        assertThat(encryptedTransactionDAO.retrieveTransactionsForRecipient(recipient, null, 10))
+                .containsExactly(transaction);
+        assertThat(encryptedRawTransactionDAO.retrieveByHash(raw.getHash()).get().getTimestamp())
+                .isEqualTo(raw.getTimestamp());
+    }
+}
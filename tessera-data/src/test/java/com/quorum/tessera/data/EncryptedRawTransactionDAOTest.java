@@ -194,6 +194,30 @@ public class EncryptedRawTransactionDAOTest {
             assertThat(retrieved).isNotNull().isEqualToComparingFieldByField(encryptedRawTransaction);
         }
 
+        @Test
+        public void deleteOlderThanDeletesOnlyExpiredTransactionsUpToTheLimit() {
+            for (int i = 1; i <= 3; i++) {
+                final EncryptedRawTransaction encryptedRawTransaction = new EncryptedRawTransaction();
+                encryptedRawTransaction.setEncryptedPayload(new byte[] {5});
+                encryptedRawTransaction.setHash(new MessageHash(new byte[] {(byte) i}));
+                encryptedRawTransaction.setEncryptedKey("key".getBytes());
+                encryptedRawTransaction.setNonce("nonce".getBytes());
+                encryptedRawTransaction.setSender("from".getBytes());
+                encryptedRawTransactionDAO.save(encryptedRawTransaction);
+            }
+            entityManager.flush();
+
+            final long expiry = System.currentTimeMillis() + 1000;
+
+            assertThat(encryptedRawTransactionDAO.deleteOlderThan(0, 10)).isZero();
+            assertThat(encryptedRawTransactionDAO.deleteOlderThan(expiry, 2)).isEqualTo(2);
+            assertThat(encryptedRawTransactionDAO.deleteOlderThan(expiry, 2)).isEqualTo(1);
+            assertThat(encryptedRawTransactionDAO.deleteOlderThan(expiry, 2)).isZero();
+
+            entityManager.clear();
+            assertThat(encryptedRawTransactionDAO.retrieveByHash(new MessageHash(new byte[] {1}))).isNotPresent();
+        }
+
         @Test
         public void deleteTransactionRemovesFromDatabaseAndReturnsTrue() {
 
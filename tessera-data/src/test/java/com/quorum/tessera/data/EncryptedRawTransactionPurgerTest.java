@@ -0,0 +1,46 @@
+package com.quorum.tessera.data;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+public class EncryptedRawTransactionPurgerTest {
+
+    private EncryptedRawTransactionDAO encryptedRawTransactionDAO;
+
+    @Before
+    public void onSetUp() {
+        encryptedRawTransactionDAO = mock(EncryptedRawTransactionDAO.class);
+    }
+
+    @After
+    public void onTearDown() {
+        verifyNoMoreInteractions(encryptedRawTransactionDAO);
+    }
+
+    @Test
+    public void expiredTransactionsAreDeletedUntilABatchIsNotFull() {
+        when(encryptedRawTransactionDAO.deleteOlderThan(anyLong(), eq(10))).thenReturn(10, 10, 3);
+
+        final long before = System.currentTimeMillis();
+        new EncryptedRawTransactionPurger(encryptedRawTransactionDAO, 60000L, 10).run();
+        final long after = System.currentTimeMillis();
+
+        final ArgumentCaptor<Long> expiry = ArgumentCaptor.forClass(Long.class);
+        verify(encryptedRawTransactionDAO, times(3)).deleteOlderThan(expiry.capture(), eq(10));
+
+        assertThat(expiry.getAllValues()).containsOnly(expiry.getValue());
+        assertThat(expiry.getValue()).isBetween(before - 60000L, after - 60000L);
+    }
+
+    @Test
+    public void nothingIsDeletedWithoutRetention() {
+        new EncryptedRawTransactionPurger(encryptedRawTransactionDAO, 0L, 10).run();
+    }
+}
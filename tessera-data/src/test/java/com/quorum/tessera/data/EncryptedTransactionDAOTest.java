@@ -3,6 +3,7 @@ package com.quorum.tessera.data;
 import com.quorum.tessera.data.jpatest.JpaHsqlConfig;
 import com.quorum.tessera.data.jpatest.JpaSqliteConfig;
 import com.quorum.tessera.data.jpatest.JpaH2Config;
+import com.quorum.tessera.encryption.PublicKey;
 
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -17,11 +18,14 @@ import javax.persistence.EntityNotFoundException;
 import javax.persistence.PersistenceContext;
 import javax.persistence.PersistenceException;
 import javax.transaction.Transactional;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Optional;
 import java.util.stream.Collectors;
 import java.util.stream.IntStream;
 
+import static java.util.Collections.singletonList;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.catchThrowable;
 
@@ -104,6 +108,23 @@ public class EncryptedTransactionDAOTest {
                     .hasMessageContaining("ENCRYPTED_TRANSACTION(HASH)");
         }
 
+        @Test
+        public void updateWritesChangedPayloadAndRecipientKey() {
+            final MessageHash hash = new MessageHash(new byte[] {1});
+            encryptedTransactionDAO.save(new EncryptedTransaction(hash, new byte[] {1}));
+            entityManager.flush();
+            entityManager.clear();
+
+            final EncryptedTransaction changed = new EncryptedTransaction(hash, new byte[] {2}, new byte[] {3});
+            encryptedTransactionDAO.update(changed);
+            entityManager.flush();
+            entityManager.clear();
+
+            final EncryptedTransaction retrieved = encryptedTransactionDAO.retrieveByHash(hash).get();
+            assertThat(retrieved.getEncodedPayload()).containsExactly(2);
+            assertThat(retrieved.getRecipientKey()).containsExactly(3);
+        }
+
         @Test
         public void validEncryptedTransactionCanBePersisted() {
 
@@ -118,6 +139,41 @@ public class EncryptedTransactionDAOTest {
             assertThat(retrieved).isNotNull().isEqualToComparingFieldByField(encryptedTransaction);
         }
 
+        @Test
+        public void recipientKeyIsPersistedAlongsidePayload() {
+
+            final EncryptedTransaction encryptedTransaction =
+                    new EncryptedTransaction(new MessageHash(new byte[] {1}), new byte[] {5}, new byte[] {9});
+            encryptedTransactionDAO.save(encryptedTransaction);
+            entityManager.flush();
+            entityManager.clear();
+
+            final Optional<EncryptedTransaction> retrieved =
+                    encryptedTransactionDAO.retrieveByHash(new MessageHash(new byte[] {1}));
+
+            assertThat(retrieved).isPresent();
+            assertThat(retrieved.get().getRecipientKey()).isEqualTo(new byte[] {9});
+        }
+
+        @Test
+        public void saveAllPersistsEveryTransaction() {
+
+            final List<EncryptedTransaction> transactions =
+                    IntStream.range(0, 10)
+                            .mapToObj(
+                                    i ->
+                                            new EncryptedTransaction(
+                                                    new MessageHash(new byte[] {(byte) i}), new byte[] {(byte) i}))
+                            .collect(Collectors.toList());
+
+            final List<EncryptedTransaction> saved = encryptedTransactionDAO.saveAll(transactions);
+
+            assertThat(saved).containsExactlyElementsOf(transactions);
+            assertThat(encryptedTransactionDAO.transactionCount()).isEqualTo(10);
+            transactions.forEach(
+                    tx -> assertThat(entityManager.find(EncryptedTransaction.class, tx.getHash())).isNotNull());
+        }
+
         @Test
         public void fetchingAllTransactionsReturnsAll() {
 
@@ -183,6 +239,25 @@ public class EncryptedTransactionDAOTest {
             assertThat(retrieved.get()).isEqualToComparingFieldByField(encryptedTransaction);
         }
 
+        @Test
+        public void retrieveByHashesReturnsOnlyStoredTransactions() {
+            encryptedTransactionDAO.save(new EncryptedTransaction(new MessageHash(new byte[] {1}), new byte[] {1}));
+            encryptedTransactionDAO.save(new EncryptedTransaction(new MessageHash(new byte[] {2}), new byte[] {2}));
+            encryptedTransactionDAO.save(new EncryptedTransaction(new MessageHash(new byte[] {3}), new byte[] {3}));
+            entityManager.flush();
+
+            final List<EncryptedTransaction> retrieved =
+                    encryptedTransactionDAO.retrieveByHashes(
+                            Arrays.asList(
+                                    new MessageHash(new byte[] {1}),
+                                    new MessageHash(new byte[] {3}),
+                                    new MessageHash(new byte[] {4})));
+
+            assertThat(retrieved)
+                    .extracting(EncryptedTransaction::getHash)
+                    .containsExactlyInAnyOrder(new MessageHash(new byte[] {1}), new MessageHash(new byte[] {3}));
+        }
+
         @Test
         public void retrieveByHashThrowsExceptionWhenNotPresent() {
             final MessageHash searchHash = new MessageHash(new byte[] {1});
@@ -207,6 +282,93 @@ public class EncryptedTransactionDAOTest {
             assertThat(retrieved).isNotNull();
             assertThat(retrieved.getTimestamp()).isNotZero();
         }
+
+        @Test
+        public void retrieveTransactionsForRecipientSeeksThroughOnlyThatRecipientsTransactions() {
+            final PublicKey recipient = PublicKey.from(new byte[] {7});
+            final PublicKey other = PublicKey.from(new byte[] {8});
+
+            final List<EncryptedTransaction> transactions =
+                    IntStream.range(0, 5)
+                            .mapToObj(
+                                    i ->
+                                            new EncryptedTransaction(
+                                                    new MessageHash(new byte[] {(byte) i}), new byte[] {(byte) i}))
+                            .peek(encryptedTransactionDAO::save)
+                            .collect(Collectors.toList());
+
+            transactions.forEach(
+                    tx ->
+                            encryptedTransactionDAO.saveRecipients(
+                                    tx,
+                                    tx.getHash().getHashBytes()[0] % 2 == 0
+                                            ? Arrays.asList(recipient, other)
+                                            : singletonList(other)));
+            entityManager.flush();
+
+            final List<EncryptedTransaction> retrieved = new ArrayList<>();
+            EncryptedTransaction last = null;
+            List<EncryptedTransaction> page;
+            while (!(page = encryptedTransactionDAO.retrieveTransactionsForRecipient(recipient, last, 2)).isEmpty()) {
+                assertThat(page.size()).isLessThanOrEqualTo(2);
+                retrieved.addAll(page);
+                last = page.get(page.size() - 1);
+            }
+
+            assertThat(retrieved).containsExactly(transactions.get(0), transactions.get(2), transactions.get(4));
+            assertThat(encryptedTransactionDAO.retrieveTransactionsForRecipient(other, null, 10)).hasSize(5);
+        }
+
+        @Test
+        public void retrieveUnindexedTransactionsOnlyReturnsTransactionsWithoutRecipients() {
+            final EncryptedTransaction indexed =
+                    new EncryptedTransaction(new MessageHash(new byte[] {1}), new byte[] {1});
+            final EncryptedTransaction unindexed =
+                    new EncryptedTransaction(new MessageHash(new byte[] {2}), new byte[] {2});
+            encryptedTransactionDAO.save(indexed);
+            encryptedTransactionDAO.save(unindexed);
+            encryptedTransactionDAO.saveRecipients(indexed, singletonList(PublicKey.from(new byte[] {7})));
+            entityManager.flush();
+
+            assertThat(encryptedTransactionDAO.retrieveUnindexedTransactions(null, 10)).containsExactly(unindexed);
+            assertThat(encryptedTransactionDAO.retrieveUnindexedTransactions(unindexed, 10)).isEmpty();
+        }
+
+        @Test
+        public void deleteTransactionRemovesItsRecipients() {
+            final PublicKey recipient = PublicKey.from(new byte[] {7});
+            final EncryptedTransaction transaction =
+                    new EncryptedTransaction(new MessageHash(new byte[] {1}), new byte[] {1});
+            encryptedTransactionDAO.save(transaction);
+            encryptedTransactionDAO.saveRecipients(transaction, singletonList(recipient));
+            entityManager.flush();
+
+            assertThat(encryptedTransactionDAO.retrieveRecipients(transaction.getHash())).containsExactly(recipient);
+
+            encryptedTransactionDAO.delete(new MessageHash(new byte[] {1}));
+            entityManager.flush();
+
+            assertThat(
+                            entityManager.find(
+                                    EncryptedTransactionRecipient.class,
+                                    new EncryptedTransactionRecipientId(new byte[] {1}, recipient.getKeyBytes())))
+                    .isNull();
+            assertThat(encryptedTransactionDAO.retrieveTransactionsForRecipient(recipient, null, 10)).isEmpty();
+            assertThat(encryptedTransactionDAO.retrieveRecipients(transaction.getHash())).isEmpty();
+        }
+
+        @Test
+        public void retrieveHashesPagesThroughStoredHashesInOrder() {
+            encryptedTransactionDAO.save(new EncryptedTransaction(new MessageHash(new byte[] {3}), new byte[] {3}));
+            encryptedTransactionDAO.save(new EncryptedTransaction(new MessageHash(new byte[] {1}), new byte[] {1}));
+            encryptedTransactionDAO.save(new EncryptedTransaction(new MessageHash(new byte[] {2}), new byte[] {2}));
+            entityManager.flush();
+
+            assertThat(encryptedTransactionDAO.retrieveHashes(null, 2))
+                    .containsExactly(new MessageHash(new byte[] {1}), new MessageHash(new byte[] {2}));
+            assertThat(encryptedTransactionDAO.retrieveHashes(new MessageHash(new byte[] {2}), 2))
+                    .containsExactly(new MessageHash(new byte[] {3}));
+        }
     }
 
     @Transactional
@@ -280,6 +442,23 @@ public class EncryptedTransactionDAOTest {
                     .hasMessageContaining("ENCRYPTED_TRANSACTION");
         }
 
+        @Test
+        public void updateWritesChangedPayloadAndRecipientKey() {
+            final MessageHash hash = new MessageHash(new byte[] {1});
+            encryptedTransactionDAO.save(new EncryptedTransaction(hash, new byte[] {1}));
+            entityManager.flush();
+            entityManager.clear();
+
+            final EncryptedTransaction changed = new EncryptedTransaction(hash, new byte[] {2}, new byte[] {3});
+            encryptedTransactionDAO.update(changed);
+            entityManager.flush();
+            entityManager.clear();
+
+            final EncryptedTransaction retrieved = encryptedTransactionDAO.retrieveByHash(hash).get();
+            assertThat(retrieved.getEncodedPayload()).containsExactly(2);
+            assertThat(retrieved.getRecipientKey()).containsExactly(3);
+        }
+
         @Test
         public void validEncryptedTransactionCanBePersisted() {
 
@@ -359,6 +538,25 @@ public class EncryptedTransactionDAOTest {
             assertThat(retrieved.get()).isEqualToComparingFieldByField(encryptedTransaction);
         }
 
+        @Test
+        public void retrieveByHashesReturnsOnlyStoredTransactions() {
+            encryptedTransactionDAO.save(new EncryptedTransaction(new MessageHash(new byte[] {1}), new byte[] {1}));
+            encryptedTransactionDAO.save(new EncryptedTransaction(new MessageHash(new byte[] {2}), new byte[] {2}));
+            encryptedTransactionDAO.save(new EncryptedTransaction(new MessageHash(new byte[] {3}), new byte[] {3}));
+            entityManager.flush();
+
+            final List<EncryptedTransaction> retrieved =
+                    encryptedTransactionDAO.retrieveByHashes(
+                            Arrays.asList(
+                                    new MessageHash(new byte[] {1}),
+                                    new MessageHash(new byte[] {3}),
+                                    new MessageHash(new byte[] {4})));
+
+            assertThat(retrieved)
+                    .extracting(EncryptedTransaction::getHash)
+                    .containsExactlyInAnyOrder(new MessageHash(new byte[] {1}), new MessageHash(new byte[] {3}));
+        }
+
         @Test
         public void retrieveByHashThrowsExceptionWhenNotPresent() {
             final MessageHash searchHash = new MessageHash(new byte[] {1});
@@ -383,6 +581,93 @@ public class EncryptedTransactionDAOTest {
             assertThat(retrieved).isNotNull();
             assertThat(retrieved.getTimestamp()).isNotZero();
         }
+
+        @Test
+        public void retrieveTransactionsForRecipientSeeksThroughOnlyThatRecipientsTransactions() {
+            final PublicKey recipient = PublicKey.from(new byte[] {7});
+            final PublicKey other = PublicKey.from(new byte[] {8});
+
+            final List<EncryptedTransaction> transactions =
+                    IntStream.range(0, 5)
+                            .mapToObj(
+                                    i ->
+                                            new EncryptedTransaction(
+                                                    new MessageHash(new byte[] {(byte) i}), new byte[] {(byte) i}))
+                            .peek(encryptedTransactionDAO::save)
+                            .collect(Collectors.toList());
+
+            transactions.forEach(
+                    tx ->
+                            encryptedTransactionDAO.saveRecipients(
+                                    tx,
+                                    tx.getHash().getHashBytes()[0] % 2 == 0
+                                            ? Arrays.asList(recipient, other)
+                                            : singletonList(other)));
+            entityManager.flush();
+
+            final List<EncryptedTransaction> retrieved = new ArrayList<>();
+            EncryptedTransaction last = null;
+            List<EncryptedTransaction> page;
+            while (!(page = encryptedTransactionDAO.retrieveTransactionsForRecipient(recipient, last, 2)).isEmpty()) {
+                assertThat(page.size()).isLessThanOrEqualTo(2);
+                retrieved.addAll(page);
+                last = page.get(page.size() - 1);
+            }
+
+            assertThat(retrieved).containsExactly(transactions.get(0), transactions.get(2), transactions.get(4));
+            assertThat(encryptedTransactionDAO.retrieveTransactionsForRecipient(other, null, 10)).hasSize(5);
+        }
+
+        @Test
+        public void retrieveUnindexedTransactionsOnlyReturnsTransactionsWithoutRecipients() {
+            final EncryptedTransaction indexed =
+                    new EncryptedTransaction(new MessageHash(new byte[] {1}), new byte[] {1});
+            final EncryptedTransaction unindexed =
+                    new EncryptedTransaction(new MessageHash(new byte[] {2}), new byte[] {2});
+            encryptedTransactionDAO.save(indexed);
+            encryptedTransactionDAO.save(unindexed);
+            encryptedTransactionDAO.saveRecipients(indexed, singletonList(PublicKey.from(new byte[] {7})));
+            entityManager.flush();
+
+            assertThat(encryptedTransactionDAO.retrieveUnindexedTransactions(null, 10)).containsExactly(unindexed);
+            assertThat(encryptedTransactionDAO.retrieveUnindexedTransactions(unindexed, 10)).isEmpty();
+        }
+
+        @Test
+        public void deleteTransactionRemovesItsRecipients() {
+            final PublicKey recipient = PublicKey.from(new byte[] {7});
+            final EncryptedTransaction transaction =
+                    new EncryptedTransaction(new MessageHash(new byte[] {1}), new byte[] {1});
+            encryptedTransactionDAO.save(transaction);
+            encryptedTransactionDAO.saveRecipients(transaction, singletonList(recipient));
+            entityManager.flush();
+
+            assertThat(encryptedTransactionDAO.retrieveRecipients(transaction.getHash())).containsExactly(recipient);
+
+            encryptedTransactionDAO.delete(new MessageHash(new byte[] {1}));
+            entityManager.flush();
+
+            assertThat(
+                            entityManager.find(
+                                    EncryptedTransactionRecipient.class,
+                                    new EncryptedTransactionRecipientId(new byte[] {1}, recipient.getKeyBytes())))
+                    .isNull();
+            assertThat(encryptedTransactionDAO.retrieveTransactionsForRecipient(recipient, null, 10)).isEmpty();
+            assertThat(encryptedTransactionDAO.retrieveRecipients(transaction.getHash())).isEmpty();
+        }
+
+        @Test
+        public void retrieveHashesPagesThroughStoredHashesInOrder() {
+            encryptedTransactionDAO.save(new EncryptedTransaction(new MessageHash(new byte[] {3}), new byte[] {3}));
+            encryptedTransactionDAO.save(new EncryptedTransaction(new MessageHash(new byte[] {1}), new byte[] {1}));
+            encryptedTransactionDAO.save(new EncryptedTransaction(new MessageHash(new byte[] {2}), new byte[] {2}));
+            entityManager.flush();
+
+            assertThat(encryptedTransactionDAO.retrieveHashes(null, 2))
+                    .containsExactly(new MessageHash(new byte[] {1}), new MessageHash(new byte[] {2}));
+            assertThat(encryptedTransactionDAO.retrieveHashes(new MessageHash(new byte[] {2}), 2))
+                    .containsExactly(new MessageHash(new byte[] {3}));
+        }
     }
 
     @Transactional
@@ -34,6 +34,22 @@ public class EncryptedTransactionTest {
         assertThat(encryptedTransaction.getEncodedPayload()).isSameAs(payload);
     }
 
+    @Test
+    public void createInstanceWithRecipientKey() {
+
+        byte[] payload = "PAYLOAD".getBytes();
+        byte[] recipientKey = "RECIPIENT".getBytes();
+        MessageHash hash = mock(MessageHash.class);
+        EncryptedTransaction encryptedTransaction = new EncryptedTransaction(hash, payload, recipientKey);
+
+        assertThat(encryptedTransaction.getHash()).isSameAs(hash);
+        assertThat(encryptedTransaction.getEncodedPayload()).isSameAs(payload);
+        assertThat(encryptedTransaction.getRecipientKey()).isSameAs(recipientKey);
+
+        encryptedTransaction.setRecipientKey(null);
+        assertThat(encryptedTransaction.getRecipientKey()).isNull();
+    }
+
     @Test
     public void subclassesEqual() {
 
@@ -0,0 +1,247 @@
+package com.quorum.tessera.data;
+
+import com.quorum.tessera.encryption.PublicKey;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import static java.util.Collections.emptyList;
+import static java.util.Collections.singletonList;
+import static java.util.Collections.singletonMap;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.*;
+
+public class FilteringEncryptedTransactionDAOTest {
+
+    private static final MessageHash STORED = new MessageHash("STORED".getBytes());
+
+    private static final MessageHash MISSING = new MessageHash("MISSING".getBytes());
+
+    private EncryptedTransactionDAO delegate;
+
+    private FilteringEncryptedTransactionDAO encryptedTransactionDAO;
+
+    @Before
+    public void onSetUp() {
+        delegate = mock(EncryptedTransactionDAO.class);
+        encryptedTransactionDAO = new FilteringEncryptedTransactionDAO(delegate, true);
+    }
+
+    @After
+    public void onTearDown() {
+        verifyNoMoreInteractions(delegate);
+    }
+
+    @Test
+    public void lookupOfTransactionThatIsNotStoredSkipsTheDatabase() {
+        when(delegate.retrieveHashes(null, 10_000)).thenReturn(singletonList(STORED));
+
+        encryptedTransactionDAO.init();
+
+        assertThat(encryptedTransactionDAO.retrieveByHash(MISSING)).isEmpty();
+
+        verify(delegate).transactionCount();
+        verify(delegate).retrieveHashes(null, 10_000);
+    }
+
+    @Test
+    public void lookupOfStoredTransactionGoesToTheDatabase() {
+        final EncryptedTransaction transaction = new EncryptedTransaction(STORED, "PAYLOAD".getBytes());
+        when(delegate.retrieveHashes(null, 10_000)).thenReturn(singletonList(STORED));
+        when(delegate.retrieveByHash(STORED)).thenReturn(Optional.of(transaction));
+
+        encryptedTransactionDAO.init();
+
+        assertThat(encryptedTransactionDAO.retrieveByHash(STORED)).containsSame(transaction);
+
+        verify(delegate).transactionCount();
+        verify(delegate).retrieveHashes(null, 10_000);
+        verify(delegate).retrieveByHash(STORED);
+    }
+
+    @Test
+    public void batchLookupOnlyQueriesHashesThatMayBeStored() {
+        final EncryptedTransaction transaction = new EncryptedTransaction(STORED, "PAYLOAD".getBytes());
+        when(delegate.retrieveHashes(null, 10_000)).thenReturn(singletonList(STORED));
+        when(delegate.retrieveByHashes(singletonList(STORED))).thenReturn(singletonList(transaction));
+
+        encryptedTransactionDAO.init();
+
+        assertThat(encryptedTransactionDAO.retrieveByHashes(Arrays.asList(STORED, MISSING)))
+                .containsExactly(transaction);
+
+        verify(delegate).transactionCount();
+        verify(delegate).retrieveHashes(null, 10_000);
+        verify(delegate).retrieveByHashes(singletonList(STORED));
+    }
+
+    @Test
+    public void readOnlyLookupsAreFilteredTheSameWay() {
+        final EncryptedTransaction transaction = new EncryptedTransaction(STORED, "PAYLOAD".getBytes());
+        when(delegate.retrieveHashes(null, 10_000)).thenReturn(singletonList(STORED));
+        when(delegate.retrieveByHashForRead(STORED)).thenReturn(Optional.of(transaction));
+        when(delegate.retrieveByHashesForRead(singletonList(STORED))).thenReturn(singletonList(transaction));
+
+        encryptedTransactionDAO.init();
+
+        assertThat(encryptedTransactionDAO.retrieveByHashForRead(MISSING)).isEmpty();
+        assertThat(encryptedTransactionDAO.retrieveByHashForRead(STORED)).containsSame(transaction);
+        assertThat(encryptedTransactionDAO.retrieveByHashesForRead(Arrays.asList(STORED, MISSING)))
+                .containsExactly(transaction);
+
+        verify(delegate).transactionCount();
+        verify(delegate).retrieveHashes(null, 10_000);
+        verify(delegate).retrieveByHashForRead(STORED);
+        verify(delegate).retrieveByHashesForRead(singletonList(STORED));
+    }
+
+    @Test
+    public void batchLookupOfTransactionsThatAreNotStoredSkipsTheDatabase() {
+        when(delegate.retrieveHashes(null, 10_000)).thenReturn(singletonList(STORED));
+
+        encryptedTransactionDAO.init();
+
+        assertThat(encryptedTransactionDAO.retrieveByHashes(singletonList(MISSING))).isEmpty();
+
+        verify(delegate).transactionCount();
+        verify(delegate).retrieveHashes(null, 10_000);
+    }
+
+    @Test
+    public void startupScanPagesThroughEveryStoredHash() {
+        final MessageHash[] firstPage = new MessageHash[10_000];
+        for (int i = 0; i < firstPage.length; i++) {
+            firstPage[i] = new MessageHash(("HASH" + i).getBytes());
+        }
+        final MessageHash last = firstPage[firstPage.length - 1];
+        when(delegate.retrieveHashes(null, 10_000)).thenReturn(Arrays.asList(firstPage));
+        when(delegate.retrieveHashes(last, 10_000)).thenReturn(singletonList(STORED));
+        when(delegate.retrieveByHash(STORED)).thenReturn(Optional.empty());
+
+        encryptedTransactionDAO.init();
+        encryptedTransactionDAO.retrieveByHash(STORED);
+
+        verify(delegate).transactionCount();
+        verify(delegate).retrieveHashes(null, 10_000);
+        verify(delegate).retrieveHashes(last, 10_000);
+        verify(delegate).retrieveByHash(STORED);
+    }
+
+    @Test
+    public void savedTransactionsAreAddedToTheFilter() {
+        final EncryptedTransaction transaction = new EncryptedTransaction(MISSING, "PAYLOAD".getBytes());
+        when(delegate.retrieveHashes(null, 10_000)).thenReturn(emptyList());
+        when(delegate.retrieveByHash(MISSING)).thenReturn(Optional.of(transaction));
+
+        encryptedTransactionDAO.init();
+        encryptedTransactionDAO.save(transaction);
+
+        assertThat(encryptedTransactionDAO.retrieveByHash(MISSING)).containsSame(transaction);
+
+        verify(delegate).transactionCount();
+        verify(delegate).retrieveHashes(null, 10_000);
+        verify(delegate).save(transaction);
+        verify(delegate).retrieveByHash(MISSING);
+    }
+
+    @Test
+    public void batchSavedTransactionsAreAddedToTheFilter() {
+        final EncryptedTransaction transaction = new EncryptedTransaction(MISSING, "PAYLOAD".getBytes());
+        when(delegate.retrieveHashes(null, 10_000)).thenReturn(emptyList());
+        when(delegate.retrieveByHash(MISSING)).thenReturn(Optional.of(transaction));
+
+        encryptedTransactionDAO.init();
+        encryptedTransactionDAO.saveAll(singletonList(transaction));
+
+        assertThat(encryptedTransactionDAO.retrieveByHash(MISSING)).containsSame(transaction);
+
+        verify(delegate).transactionCount();
+        verify(delegate).retrieveHashes(null, 10_000);
+        verify(delegate).saveAll(singletonList(transaction));
+        verify(delegate).retrieveByHash(MISSING);
+    }
+
+    @Test
+    public void transactionsSavedWithRecipientsAreAddedToTheFilter() {
+        final EncryptedTransaction transaction = new EncryptedTransaction(MISSING, "PAYLOAD".getBytes());
+        final Map<EncryptedTransaction, List<PublicKey>> transactions =
+                singletonMap(transaction, singletonList(PublicKey.from("RECIPIENT".getBytes())));
+        when(delegate.retrieveHashes(null, 10_000)).thenReturn(emptyList());
+        when(delegate.retrieveByHash(MISSING)).thenReturn(Optional.of(transaction));
+
+        encryptedTransactionDAO.init();
+        encryptedTransactionDAO.saveAllWithRecipients(transactions);
+
+        assertThat(encryptedTransactionDAO.retrieveByHash(MISSING)).containsSame(transaction);
+
+        verify(delegate).transactionCount();
+        verify(delegate).retrieveHashes(null, 10_000);
+        verify(delegate).saveAllWithRecipients(transactions);
+        verify(delegate).retrieveByHash(MISSING);
+    }
+
+    @Test
+    public void deletedTransactionsAreStillLookedUp() {
+        when(delegate.retrieveHashes(null, 10_000)).thenReturn(singletonList(STORED));
+        when(delegate.retrieveByHash(STORED)).thenReturn(Optional.empty());
+
+        encryptedTransactionDAO.init();
+        encryptedTransactionDAO.delete(STORED);
+
+        assertThat(encryptedTransactionDAO.retrieveByHash(STORED)).isEmpty();
+
+        verify(delegate).transactionCount();
+        verify(delegate).retrieveHashes(null, 10_000);
+        verify(delegate).delete(STORED);
+        verify(delegate).retrieveByHash(STORED);
+    }
+
+    @Test
+    public void disabledFilterAlwaysGoesToTheDatabase() {
+        final FilteringEncryptedTransactionDAO disabled = new FilteringEncryptedTransactionDAO(delegate, false);
+        when(delegate.retrieveByHash(MISSING)).thenReturn(Optional.empty());
+
+        disabled.init();
+
+        assertThat(disabled.retrieveByHash(MISSING)).isEmpty();
+
+        verify(delegate).retrieveByHash(MISSING);
+    }
+
+    @Test
+    public void lookupsBeforeTheFilterIsBuiltGoToTheDatabase() {
+        when(delegate.retrieveByHash(MISSING)).thenReturn(Optional.empty());
+
+        assertThat(encryptedTransactionDAO.retrieveByHash(MISSING)).isEmpty();
+
+        verify(delegate).retrieveByHash(MISSING);
+    }
+
+    @Test
+    public void otherOperationsAreDelegated() {
+        final EncryptedTransaction transaction = new EncryptedTransaction(STORED, "PAYLOAD".getBytes());
+
+        encryptedTransactionDAO.update(transaction);
+        encryptedTransactionDAO.retrieveTransactions(0, 10);
+        encryptedTransactionDAO.saveRecipients(transaction, emptyList());
+        encryptedTransactionDAO.retrieveRecipients(STORED);
+        encryptedTransactionDAO.retrieveTransactionsForRecipient(null, transaction, 10);
+        encryptedTransactionDAO.retrieveUnindexedTransactions(transaction, 10);
+        encryptedTransactionDAO.retrieveHashes(STORED, 10);
+        encryptedTransactionDAO.transactionCount();
+
+        verify(delegate).update(transaction);
+        verify(delegate).retrieveTransactions(0, 10);
+        verify(delegate).saveRecipients(transaction, emptyList());
+        verify(delegate).retrieveRecipients(STORED);
+        verify(delegate).retrieveTransactionsForRecipient(null, transaction, 10);
+        verify(delegate).retrieveUnindexedTransactions(transaction, 10);
+        verify(delegate).retrieveHashes(STORED, 10);
+        verify(delegate).transactionCount();
+    }
+}
@@ -0,0 +1,137 @@
+package com.quorum.tessera.data;
+
+import com.quorum.tessera.encryption.PublicKey;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.persistence.PersistenceException;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+import static java.util.Collections.singletonList;
+import static java.util.Collections.singletonMap;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.catchThrowable;
+import static org.mockito.Mockito.*;
+
+public class GroupCommitWriterTest {
+
+    private static final List<PublicKey> RECIPIENTS = singletonList(PublicKey.from("RECIPIENT".getBytes()));
+
+    private EncryptedTransactionDAO encryptedTransactionDAO;
+
+    private GroupCommitWriter writer;
+
+    @Before
+    public void onSetUp() {
+        encryptedTransactionDAO = mock(EncryptedTransactionDAO.class);
+    }
+
+    @After
+    public void onTearDown() {
+        if (writer != null) {
+            writer.stop();
+        }
+        verifyNoMoreInteractions(encryptedTransactionDAO);
+    }
+
+    @Test
+    public void disabledWriterSavesOnTheCallingThread() {
+        writer = new GroupCommitWriter(encryptedTransactionDAO, false, 10, 1000);
+        writer.start();
+
+        final EncryptedTransaction transaction = transaction("ONE");
+
+        final CompletableFuture<EncryptedTransaction> future = writer.save(transaction, RECIPIENTS);
+
+        assertThat(future).isCompletedWithValue(transaction);
+        verify(encryptedTransactionDAO).saveAllWithRecipients(singletonMap(transaction, RECIPIENTS));
+    }
+
+    @Test
+    public void concurrentSavesAreCommittedTogether() {
+        writer = new GroupCommitWriter(encryptedTransactionDAO, true, 3, 10_000);
+        writer.start();
+
+        final EncryptedTransaction one = transaction("ONE");
+        final EncryptedTransaction two = transaction("TWO");
+        final EncryptedTransaction three = transaction("THREE");
+
+        final List<CompletableFuture<EncryptedTransaction>> futures =
+                Arrays.asList(
+                        writer.save(one, RECIPIENTS), writer.save(two, RECIPIENTS), writer.save(three, RECIPIENTS));
+        futures.forEach(CompletableFuture::join);
+
+        final Map<EncryptedTransaction, List<PublicKey>> expected = new LinkedHashMap<>();
+        expected.put(one, RECIPIENTS);
+        expected.put(two, RECIPIENTS);
+        expected.put(three, RECIPIENTS);
+        verify(encryptedTransactionDAO).saveAllWithRecipients(expected);
+    }
+
+    @Test
+    public void failedBatchIsRetriedSaveBySave() {
+        writer = new GroupCommitWriter(encryptedTransactionDAO, true, 2, 10_000);
+        writer.start();
+
+        final EncryptedTransaction good = transaction("GOOD");
+        final EncryptedTransaction bad = transaction("BAD");
+        final PersistenceException failure = new PersistenceException("duplicate");
+        doThrow(failure)
+                .when(encryptedTransactionDAO)
+                .saveAllWithRecipients(argThat(transactions -> transactions.containsKey(bad)));
+
+        final CompletableFuture<EncryptedTransaction> goodSave = writer.save(good, RECIPIENTS);
+        final CompletableFuture<EncryptedTransaction> badSave = writer.save(bad, RECIPIENTS);
+
+        assertThat(goodSave.join()).isSameAs(good);
+        assertThat(catchThrowable(badSave::join).getCause()).isSameAs(failure);
+
+        verify(encryptedTransactionDAO, times(2)).saveAllWithRecipients(argThat(map -> map.containsKey(bad)));
+        verify(encryptedTransactionDAO).saveAllWithRecipients(singletonMap(good, RECIPIENTS));
+    }
+
+    @Test
+    public void repeatedSaveOfTheSameTransactionIsWrittenSeparately() {
+        writer = new GroupCommitWriter(encryptedTransactionDAO, true, 2, 10_000);
+        writer.start();
+
+        final EncryptedTransaction first = transaction("SAME");
+        final EncryptedTransaction second = transaction("SAME");
+
+        final CompletableFuture<EncryptedTransaction> firstSave = writer.save(first, RECIPIENTS);
+        final CompletableFuture<EncryptedTransaction> secondSave = writer.save(second, RECIPIENTS);
+
+        assertThat(firstSave.join()).isSameAs(first);
+        assertThat(secondSave.join()).isSameAs(second);
+
+        verify(encryptedTransactionDAO, times(2)).saveAllWithRecipients(anyMap());
+    }
+
+    @Test
+    public void savesAfterStopAreWrittenOnTheCallingThread() {
+        writer = new GroupCommitWriter(encryptedTransactionDAO, true, 10, 10);
+        writer.start();
+        writer.stop();
+
+        final EncryptedTransaction transaction = transaction("ONE");
+
+        assertThat(writer.save(transaction, RECIPIENTS)).isCompletedWithValue(transaction);
+        verify(encryptedTransactionDAO).saveAllWithRecipients(singletonMap(transaction, RECIPIENTS));
+    }
+
+    @Test
+    public void batchSizeMustBePositive() {
+        final Throwable throwable = catchThrowable(() -> new GroupCommitWriter(encryptedTransactionDAO, true, 0, 10));
+
+        assertThat(throwable).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    private static EncryptedTransaction transaction(final String hash) {
+        return new EncryptedTransaction(new MessageHash(hash.getBytes()), "PAYLOAD".getBytes());
+    }
+}
@@ -0,0 +1,284 @@
+package com.quorum.tessera.data;
+
+import com.quorum.tessera.data.jpatest.JpaH2Config;
+import com.quorum.tessera.data.jpatest.JpaSqliteConfig;
+import com.quorum.tessera.encryption.PublicKey;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Suite;
+import org.springframework.jdbc.datasource.TransactionAwareDataSourceProxy;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import javax.inject.Inject;
+import javax.persistence.EntityNotFoundException;
+import javax.sql.DataSource;
+import javax.transaction.Transactional;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static java.util.Collections.singletonList;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.catchThrowable;
+
+@RunWith(Suite.class)
+@Suite.SuiteClasses({JdbcEncryptedTransactionDAOTest.H2Test.class, JdbcEncryptedTransactionDAOTest.SqliteTest.class})
+public class JdbcEncryptedTransactionDAOTest {
+
+    @Transactional
+    @RunWith(SpringRunner.class)
+    @ContextConfiguration(classes = JpaH2Config.class)
+    @DirtiesContext(classMode = DirtiesContext.ClassMode.AFTER_CLASS)
+    public static class H2Test extends JdbcDAOTests {}
+
+    @Transactional
+    @RunWith(SpringRunner.class)
+    @ContextConfiguration(classes = JpaSqliteConfig.class)
+    @DirtiesContext(classMode = DirtiesContext.ClassMode.AFTER_CLASS)
+    public static class SqliteTest extends JdbcDAOTests {}
+
+    // the test methods are declared here, so this is where the test transactions are looked for
+    @Transactional
+    public abstract static class JdbcDAOTests {
+
+        @Inject private DataSource dataSource;
+
+        private EncryptedTransactionDAO encryptedTransactionDAO;
+
+        private EncryptedRawTransactionDAO encryptedRawTransactionDAO;
+
+        private static EncryptedTransaction transaction(final int i) {
+            return new EncryptedTransaction(new MessageHash(new byte[] {(byte) i}), new byte[1]);
+        }
+
+        @Before
+        public void onSetUp() {
+            final DataSource transactionAware = new TransactionAwareDataSourceProxy(dataSource);
+            this.encryptedTransactionDAO = new JdbcEncryptedTransactionDAO(transactionAware, 100);
+            this.encryptedRawTransactionDAO = new JdbcEncryptedRawTransactionDAO(transactionAware);
+        }
+
+        @Test
+        public void saveAndRetrieveByHash() {
+            final EncryptedTransaction transaction =
+                    new EncryptedTransaction(new MessageHash(new byte[] {1}), new byte[] {2}, new byte[] {3});
+
+            encryptedTransactionDAO.save(transaction);
+
+            final Optional<EncryptedTransaction> retrieved =
+                    encryptedTransactionDAO.retrieveByHash(new MessageHash(new byte[] {1}));
+
+            assertThat(retrieved).isPresent();
+            assertThat(retrieved.get().getEncodedPayload()).containsExactly(2);
+            assertThat(retrieved.get().getRecipientKey()).containsExactly(3);
+            assertThat(retrieved.get().getTimestamp()).isNotZero().isEqualTo(transaction.getTimestamp());
+
+            assertThat(encryptedTransactionDAO.retrieveByHash(new MessageHash(new byte[] {9}))).isNotPresent();
+        }
+
+        @Test
+        public void saveAllIsReadBackByHashes() {
+            final List<EncryptedTransaction> transactions =
+                    IntStream.range(0, 3).mapToObj(JdbcDAOTests::transaction).collect(Collectors.toList());
+
+            encryptedTransactionDAO.saveAll(transactions);
+
+            final List<EncryptedTransaction> retrieved =
+                    encryptedTransactionDAO.retrieveByHashes(
+                            Arrays.asList(
+                                    new MessageHash(new byte[] {0}),
+                                    new MessageHash(new byte[] {2}),
+                                    new MessageHash(new byte[] {2}),
+                                    new MessageHash(new byte[] {7})));
+
+            assertThat(retrieved).containsExactlyInAnyOrder(transactions.get(0), transactions.get(2));
+            assertThat(encryptedTransactionDAO.transactionCount()).isEqualTo(3);
+        }
+
+        @Test
+        public void updateWritesChangedPayloadAndRecipientKey() {
+            encryptedTransactionDAO.save(new EncryptedTransaction(new MessageHash(new byte[] {1}), new byte[] {2}));
+
+            encryptedTransactionDAO.update(
+                    new EncryptedTransaction(new MessageHash(new byte[] {1}), new byte[] {4}, new byte[] {5}));
+
+            final EncryptedTransaction retrieved =
+                    encryptedTransactionDAO.retrieveByHash(new MessageHash(new byte[] {1})).get();
+
+            assertThat(retrieved.getEncodedPayload()).containsExactly(4);
+            assertThat(retrieved.getRecipientKey()).containsExactly(5);
+        }
+
+        @Test
+        public void updateOfMissingTransactionFails() {
+            final Throwable throwable =
+                    catchThrowable(
+                            () ->
+                                    encryptedTransactionDAO.update(
+                                            new EncryptedTransaction(new MessageHash(new byte[] {1}), new byte[1])));
+
+            assertThat(throwable).isInstanceOf(EntityNotFoundException.class);
+        }
+
+        @Test
+        public void retrieveTransactionsSkipsToOffset() {
+            IntStream.range(0, 5).mapToObj(JdbcDAOTests::transaction).forEach(encryptedTransactionDAO::save);
+
+            assertThat(encryptedTransactionDAO.retrieveTransactions(0, 10)).hasSize(5);
+            assertThat(encryptedTransactionDAO.retrieveTransactions(3, 10)).hasSize(2);
+            assertThat(encryptedTransactionDAO.retrieveTransactions(1, 2)).hasSize(2);
+        }
+
+        @Test
+        public void retrieveTransactionsAfterSeeksInTheSameOrderAsTheOffsetPages() {
+            IntStream.range(0, 5).mapToObj(JdbcDAOTests::transaction).forEach(encryptedTransactionDAO::save);
+            final JdbcEncryptedTransactionDAO jdbcDAO = (JdbcEncryptedTransactionDAO) encryptedTransactionDAO;
+
+            final List<EncryptedTransaction> retrieved = new ArrayList<>();
+            EncryptedTransaction last = null;
+            List<EncryptedTransaction> page;
+            while (!(page = jdbcDAO.retrieveTransactionsAfter(last, 2)).isEmpty()) {
+                assertThat(page.size()).isLessThanOrEqualTo(2);
+                retrieved.addAll(page);
+                last = page.get(page.size() - 1);
+            }
+
+            assertThat(retrieved).containsExactlyElementsOf(encryptedTransactionDAO.retrieveTransactions(0, 10));
+        }
+
+        @Test
+        public void retrieveTransactionsForRecipientSeeksThroughOnlyThatRecipientsTransactions() {
+            final PublicKey recipient = PublicKey.from(new byte[] {7});
+            final PublicKey other = PublicKey.from(new byte[] {8});
+
+            final List<EncryptedTransaction> transactions =
+                    IntStream.range(0, 5)
+                            .mapToObj(JdbcDAOTests::transaction)
+                            .peek(encryptedTransactionDAO::save)
+                            .collect(Collectors.toList());
+
+            transactions.forEach(
+                    tx ->
+                            encryptedTransactionDAO.saveRecipients(
+                                    tx,
+                                    tx.getHash().getHashBytes()[0] % 2 == 0
+                                            ? Arrays.asList(recipient, other)
+                                            : singletonList(other)));
+
+            final List<EncryptedTransaction> retrieved = new ArrayList<>();
+            EncryptedTransaction last = null;
+            List<EncryptedTransaction> page;
+            while (!(page = encryptedTransactionDAO.retrieveTransactionsForRecipient(recipient, last, 2)).isEmpty()) {
+                assertThat(page.size()).isLessThanOrEqualTo(2);
+                retrieved.addAll(page);
+                last = page.get(page.size() - 1);
+            }
+
+            assertThat(retrieved).containsExactly(transactions.get(0), transactions.get(2), transactions.get(4));
+            assertThat(encryptedTransactionDAO.retrieveTransactionsForRecipient(other, null, 10)).hasSize(5);
+        }
+
+        @Test
+        public void retrieveUnindexedTransactionsOnlyReturnsTransactionsWithoutRecipients() {
+            final EncryptedTransaction indexed = new EncryptedTransaction(new MessageHash(new byte[] {1}), new byte[1]);
+            final EncryptedTransaction unindexed =
+                    new EncryptedTransaction(new MessageHash(new byte[] {2}), new byte[1]);
+            encryptedTransactionDAO.save(indexed);
+            encryptedTransactionDAO.save(unindexed);
+            encryptedTransactionDAO.saveRecipients(indexed, singletonList(PublicKey.from(new byte[] {7})));
+
+            assertThat(encryptedTransactionDAO.retrieveUnindexedTransactions(null, 10)).containsExactly(unindexed);
+            assertThat(encryptedTransactionDAO.retrieveUnindexedTransactions(unindexed, 10)).isEmpty();
+        }
+
+        @Test
+        public void retrieveHashesPagesInHashOrder() {
+            IntStream.of(3, 1, 2)
+                    .mapToObj(JdbcDAOTests::transaction)
+                    .forEach(encryptedTransactionDAO::save);
+
+            assertThat(encryptedTransactionDAO.retrieveHashes(null, 2))
+                    .containsExactly(new MessageHash(new byte[] {1}), new MessageHash(new byte[] {2}));
+            assertThat(encryptedTransactionDAO.retrieveHashes(new MessageHash(new byte[] {2}), 2))
+                    .containsExactly(new MessageHash(new byte[] {3}));
+        }
+
+        @Test
+        public void deleteTransactionRemovesItsRecipients() {
+            final PublicKey recipient = PublicKey.from(new byte[] {7});
+            final EncryptedTransaction transaction =
+                    new EncryptedTransaction(new MessageHash(new byte[] {1}), new byte[1]);
+            encryptedTransactionDAO.save(transaction);
+            encryptedTransactionDAO.saveRecipients(transaction, singletonList(recipient));
+
+            assertThat(encryptedTransactionDAO.retrieveRecipients(transaction.getHash())).containsExactly(recipient);
+
+            encryptedTransactionDAO.delete(new MessageHash(new byte[] {1}));
+
+            assertThat(encryptedTransactionDAO.retrieveByHash(new MessageHash(new byte[] {1}))).isNotPresent();
+            assertThat(encryptedTransactionDAO.retrieveTransactionsForRecipient(recipient, null, 10)).isEmpty();
+            assertThat(encryptedTransactionDAO.retrieveRecipients(transaction.getHash())).isEmpty();
+        }
+
+        @Test
+        public void deleteOfMissingTransactionFails() {
+            final Throwable throwable =
+                    catchThrowable(() -> encryptedTransactionDAO.delete(new MessageHash(new byte[] {1})));
+
+            assertThat(throwable).isInstanceOf(EntityNotFoundException.class);
+        }
+
+        @Test
+        public void rawTransactionSaveRetrieveAndDelete() {
+            final EncryptedRawTransaction transaction =
+                    new EncryptedRawTransaction(
+                            new MessageHash(new byte[] {1}),
+                            new byte[] {2},
+                            new byte[] {3},
+                            new byte[] {4},
+                            new byte[] {5});
+
+            encryptedRawTransactionDAO.save(transaction);
+
+            final EncryptedRawTransaction retrieved =
+                    encryptedRawTransactionDAO.retrieveByHash(new MessageHash(new byte[] {1})).get();
+            assertThat(retrieved.getEncryptedPayload()).containsExactly(2);
+            assertThat(retrieved.getEncryptedKey()).containsExactly(3);
+            assertThat(retrieved.getNonce()).containsExactly(4);
+            assertThat(retrieved.getSender()).containsExactly(5);
+            assertThat(retrieved.getTimestamp()).isEqualTo(transaction.getTimestamp());
+
+            encryptedRawTransactionDAO.delete(new MessageHash(new byte[] {1}));
+
+            assertThat(encryptedRawTransactionDAO.retrieveByHash(new MessageHash(new byte[] {1}))).isNotPresent();
+            assertThat(catchThrowable(() -> encryptedRawTransactionDAO.delete(new MessageHash(new byte[] {1}))))
+                    .isInstanceOf(EntityNotFoundException.class);
+        }
+
+        @Test
+        public void rawTransactionsOlderThanExpiryAreDeletedInBatches() {
+            for (int i = 1; i <= 3; i++) {
+                encryptedRawTransactionDAO.save(
+                        new EncryptedRawTransaction(
+                                new MessageHash(new byte[] {(byte) i}),
+                                new byte[] {2},
+                                new byte[] {3},
+                                new byte[] {4},
+                                new byte[] {5}));
+            }
+
+            final long expiry = System.currentTimeMillis() + 1000;
+
+            assertThat(encryptedRawTransactionDAO.deleteOlderThan(0, 10)).isZero();
+            assertThat(encryptedRawTransactionDAO.deleteOlderThan(expiry, 2)).isEqualTo(2);
+            assertThat(encryptedRawTransactionDAO.deleteOlderThan(expiry, 2)).isEqualTo(1);
+            assertThat(encryptedRawTransactionDAO.retrieveByHash(new MessageHash(new byte[] {1}))).isNotPresent();
+        }
+    }
+}
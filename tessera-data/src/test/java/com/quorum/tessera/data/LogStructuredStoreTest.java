@@ -0,0 +1,211 @@
+package com.quorum.tessera.data;
+
+import com.quorum.tessera.data.LogStructuredStore.Change;
+import com.quorum.tessera.data.LogStructuredStore.Value;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static java.util.Collections.singletonList;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.catchThrowable;
+
+public class LogStructuredStoreTest {
+
+    private static final byte TABLE = 1;
+
+    @Rule public TemporaryFolder folder = new TemporaryFolder();
+
+    private Path directory;
+
+    private LogStructuredStore store;
+
+    @Before
+    public void onSetUp() {
+        directory = folder.getRoot().toPath();
+        store = new LogStructuredStore(directory, Long.MAX_VALUE, Long.MAX_VALUE);
+        store.init();
+    }
+
+    @After
+    public void onTearDown() {
+        store.close();
+    }
+
+    @Test
+    public void writtenValuesAreReadBack() {
+        store.write(Arrays.asList(put(1, 10, "ONE"), put(2, 20, "TWO")));
+
+        final Value value = store.get(TABLE, key(1)).get();
+        assertThat(value.getBytes()).isEqualTo("ONE".getBytes());
+        assertThat(value.getTimestamp()).isEqualTo(10);
+        assertThat(store.contains(TABLE, key(2))).isTrue();
+        assertThat(store.size(TABLE)).isEqualTo(2);
+        assertThat(store.get(TABLE, key(3))).isNotPresent();
+        assertThat(store.get((byte) 2, key(1))).isNotPresent();
+    }
+
+    @Test
+    public void replacedAndDeletedValuesAreNotReturned() {
+        store.write(Arrays.asList(put(1, 10, "ONE"), put(2, 20, "TWO")));
+        store.write(Arrays.asList(put(1, 10, "UNO"), Change.delete(TABLE, key(2))));
+
+        assertThat(store.get(TABLE, key(1)).get().getBytes()).isEqualTo("UNO".getBytes());
+        assertThat(store.get(TABLE, key(2))).isNotPresent();
+        assertThat(store.scanByTime(TABLE, 0, 10)).hasSize(1);
+    }
+
+    @Test
+    public void scansAreOrderedByKeyAndByTime() {
+        store.write(Arrays.asList(put(3, 10, "A"), put(1, 30, "B"), put(2, 20, "C"), put(0x80, 5, "D")));
+
+        assertThat(store.keys(TABLE, null, 10)).containsExactly(key(1), key(2), key(3), key(0x80));
+        assertThat(store.keys(TABLE, key(2), 1)).containsExactly(key(3));
+        assertThat(values(store.scanByTime(TABLE, 0, 10))).containsExactly("D", "A", "C", "B");
+        assertThat(values(store.scanByTime(TABLE, 1, 2))).containsExactly("A", "C");
+        assertThat(values(store.scanByKey(TABLE, key(1), 10, key -> key[0] != 3))).containsExactly("C", "D");
+    }
+
+    @Test
+    public void reopenedStoreReplaysTheLog() {
+        store.write(singletonList(put(1, 10, "ONE")));
+        store.write(singletonList(Change.delete(TABLE, key(1))));
+        store.write(singletonList(put(2, 20, "TWO")));
+
+        final LogStructuredStore reopened = this.reopenWithoutSnapshot();
+
+        assertThat(reopened.get(TABLE, key(1))).isNotPresent();
+        assertThat(reopened.get(TABLE, key(2)).get().getBytes()).isEqualTo("TWO".getBytes());
+        reopened.close();
+    }
+
+    @Test
+    public void reopenedStoreStartsFromItsSnapshot() {
+        store.write(singletonList(put(1, 10, "ONE")));
+        store.snapshot();
+        store.write(singletonList(put(2, 20, "TWO")));
+        store.close();
+
+        store = new LogStructuredStore(directory, Long.MAX_VALUE, Long.MAX_VALUE);
+        store.init();
+
+        assertThat(values(store.scanByTime(TABLE, 0, 10))).containsExactly("ONE", "TWO");
+    }
+
+    @Test
+    public void incompleteBatchAtTheEndOfTheLogIsDiscarded() throws Exception {
+        store.write(singletonList(put(1, 10, "ONE")));
+        store.write(Arrays.asList(put(2, 20, "TWO"), put(3, 30, "THREE")));
+
+        final Path log = directory.resolve("log-00000000.dat");
+        final long size = Files.size(log);
+        try (FileChannel channel = FileChannel.open(log, StandardOpenOption.WRITE)) {
+            channel.truncate(size - 3);
+        }
+
+        final LogStructuredStore reopened = this.reopenWithoutSnapshot();
+
+        assertThat(values(reopened.scanByTime(TABLE, 0, 10))).containsExactly("ONE");
+
+        reopened.write(singletonList(put(4, 40, "FOUR")));
+        assertThat(values(reopened.scanByTime(TABLE, 0, 10))).containsExactly("ONE", "FOUR");
+        reopened.close();
+    }
+
+    @Test
+    public void compactionKeepsOnlyLiveValues() throws Exception {
+        store.write(Arrays.asList(put(1, 10, "ONE"), put(2, 20, "TWO")));
+        store.write(singletonList(put(1, 10, "UNO")));
+        store.write(singletonList(Change.delete(TABLE, key(2))));
+        final long before = Files.size(directory.resolve("log-00000000.dat"));
+
+        store.compact();
+
+        assertThat(Files.exists(directory.resolve("log-00000000.dat"))).isFalse();
+        assertThat(Files.size(directory.resolve("log-00000001.dat"))).isLessThan(before);
+        assertThat(store.get(TABLE, key(1)).get().getBytes()).isEqualTo("UNO".getBytes());
+        assertThat(store.get(TABLE, key(2))).isNotPresent();
+
+        store.write(singletonList(put(3, 30, "THREE")));
+        store.close();
+
+        store = new LogStructuredStore(directory, Long.MAX_VALUE, Long.MAX_VALUE);
+        store.init();
+        assertThat(values(store.scanByTime(TABLE, 0, 10))).containsExactly("UNO", "THREE");
+    }
+
+    @Test
+    public void newestLogIsRecoveredWhenThereIsNoSnapshot() throws Exception {
+        store.write(singletonList(put(1, 10, "ONE")));
+        final byte[] oldLog = Files.readAllBytes(directory.resolve("log-00000000.dat"));
+
+        store.compact();
+        store.write(singletonList(put(2, 20, "TWO")));
+        store.close();
+
+        // an old log that compaction could not delete, and a snapshot that was lost
+        Files.write(directory.resolve("log-00000000.dat"), oldLog);
+        Files.delete(directory.resolve("snapshot.dat"));
+
+        store = this.reopenWithoutSnapshot();
+
+        assertThat(values(store.scanByTime(TABLE, 0, 10))).containsExactly("ONE", "TWO");
+        assertThat(Files.exists(directory.resolve("log-00000000.dat"))).isFalse();
+    }
+
+    @Test
+    public void incompleteCompactedLogIsDeletedOnRecovery() throws Exception {
+        store.write(singletonList(put(1, 10, "ONE")));
+        store.close();
+
+        // left behind by a compaction that did not finish
+        Files.write(directory.resolve("log-00000001.dat.tmp"), new byte[] {1, 2, 3});
+
+        store = this.reopenWithoutSnapshot();
+
+        assertThat(values(store.scanByTime(TABLE, 0, 10))).containsExactly("ONE");
+        assertThat(Files.exists(directory.resolve("log-00000001.dat.tmp"))).isFalse();
+
+        store.compact();
+        assertThat(Files.exists(directory.resolve("log-00000001.dat"))).isTrue();
+        assertThat(values(store.scanByTime(TABLE, 0, 10))).containsExactly("ONE");
+    }
+
+    @Test
+    public void closedStoreCannotBeWritten() {
+        store.close();
+
+        final Throwable throwable = catchThrowable(() -> store.write(singletonList(put(1, 10, "ONE"))));
+
+        assertThat(throwable).isInstanceOf(IllegalStateException.class);
+    }
+
+    private LogStructuredStore reopenWithoutSnapshot() {
+        // simulates a crash, where no final snapshot is written
+        final LogStructuredStore reopened = new LogStructuredStore(directory, Long.MAX_VALUE, Long.MAX_VALUE);
+        reopened.init();
+        return reopened;
+    }
+
+    private static Change put(final int key, final long timestamp, final String value) {
+        return Change.put(TABLE, key(key), timestamp, value.getBytes());
+    }
+
+    private static byte[] key(final int key) {
+        return new byte[] {(byte) key};
+    }
+
+    private static List<String> values(final List<Value> values) {
+        return values.stream().map(value -> new String(value.getBytes())).collect(Collectors.toList());
+    }
+}
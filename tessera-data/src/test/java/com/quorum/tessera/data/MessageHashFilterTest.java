@@ -0,0 +1,60 @@
+package com.quorum.tessera.data;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.catchThrowable;
+
+public class MessageHashFilterTest {
+
+    private static MessageHash hash(final int value) {
+        return new MessageHash(ByteBuffer.allocate(Integer.BYTES).putInt(value).array());
+    }
+
+    @Test
+    public void addedHashesAreAlwaysReported() {
+        final MessageHashFilter filter = new MessageHashFilter(1000, 0.01);
+
+        for (int i = 0; i < 1000; i++) {
+            filter.put(hash(i));
+        }
+
+        for (int i = 0; i < 1000; i++) {
+            assertThat(filter.mightContain(hash(i))).isTrue();
+        }
+    }
+
+    @Test
+    public void mostHashesThatWereNotAddedAreRejected() {
+        final MessageHashFilter filter = new MessageHashFilter(10000, 0.01);
+
+        for (int i = 0; i < 10000; i++) {
+            filter.put(hash(i));
+        }
+
+        int falsePositives = 0;
+        for (int i = 10000; i < 20000; i++) {
+            if (filter.mightContain(hash(i))) {
+                falsePositives++;
+            }
+        }
+
+        assertThat(falsePositives).isLessThan(300);
+    }
+
+    @Test
+    public void emptyFilterContainsNothing() {
+        final MessageHashFilter filter = new MessageHashFilter(10, 0.01);
+
+        assertThat(filter.mightContain(new MessageHash("HASH".getBytes()))).isFalse();
+    }
+
+    @Test
+    public void invalidSizingIsRejected() {
+        assertThat(catchThrowable(() -> new MessageHashFilter(0, 0.01))).isInstanceOf(IllegalArgumentException.class);
+        assertThat(catchThrowable(() -> new MessageHashFilter(10, 0))).isInstanceOf(IllegalArgumentException.class);
+        assertThat(catchThrowable(() -> new MessageHashFilter(10, 1))).isInstanceOf(IllegalArgumentException.class);
+    }
+}
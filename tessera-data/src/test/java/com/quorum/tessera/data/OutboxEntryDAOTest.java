@@ -0,0 +1,116 @@
+package com.quorum.tessera.data;
+
+import com.quorum.tessera.data.jpatest.JpaH2Config;
+import com.quorum.tessera.data.jpatest.JpaHsqlConfig;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Suite;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import javax.inject.Inject;
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import javax.transaction.Transactional;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@RunWith(Suite.class)
+@Suite.SuiteClasses({OutboxEntryDAOTest.H2Test.class, OutboxEntryDAOTest.HsqlTest.class})
+public class OutboxEntryDAOTest {
+
+    @Transactional
+    public abstract static class DAOTest {
+
+        @PersistenceContext private EntityManager entityManager;
+
+        @Inject private OutboxEntryDAO outboxEntryDAO;
+
+        @Test
+        public void saveSetsScheduleToNow() {
+            final long before = System.currentTimeMillis();
+
+            final OutboxEntry entry = new OutboxEntry(new MessageHash(new byte[] {1}), new byte[] {2});
+            outboxEntryDAO.save(entry);
+            entityManager.flush();
+
+            final OutboxEntry persisted = entityManager.find(OutboxEntry.class, entry.getId());
+
+            assertThat(persisted).isNotNull();
+            assertThat(persisted.getAttempts()).isZero();
+            assertThat(persisted.getTimestamp()).isGreaterThanOrEqualTo(before);
+            assertThat(persisted.getNextAttempt()).isEqualTo(persisted.getTimestamp());
+        }
+
+        @Test
+        public void retrieveDueOnlyReturnsEntriesScheduledBeforeNow() {
+            final long now = System.currentTimeMillis();
+
+            final OutboxEntry due = new OutboxEntry(new MessageHash(new byte[] {1}), new byte[] {2});
+            due.setNextAttempt(now - 1000L);
+            final OutboxEntry earlier = new OutboxEntry(new MessageHash(new byte[] {1}), new byte[] {3});
+            earlier.setNextAttempt(now - 5000L);
+            final OutboxEntry later = new OutboxEntry(new MessageHash(new byte[] {4}), new byte[] {2});
+            later.setNextAttempt(now + 60000L);
+
+            outboxEntryDAO.save(due);
+            outboxEntryDAO.save(earlier);
+            outboxEntryDAO.save(later);
+            entityManager.flush();
+
+            final List<OutboxEntry> results = outboxEntryDAO.retrieveDue(now, 10);
+
+            assertThat(results).containsExactly(earlier, due);
+            assertThat(outboxEntryDAO.retrieveDue(now, 1)).containsExactly(earlier);
+        }
+
+        @Test
+        public void updateChangesRetrySchedule() {
+            final OutboxEntry entry = new OutboxEntry(new MessageHash(new byte[] {1}), new byte[] {2});
+            outboxEntryDAO.save(entry);
+            entityManager.flush();
+
+            entry.setAttempts(3);
+            entry.setNextAttempt(12345L);
+            outboxEntryDAO.update(entry);
+            entityManager.flush();
+            entityManager.clear();
+
+            final OutboxEntry persisted = entityManager.find(OutboxEntry.class, entry.getId());
+
+            assertThat(persisted.getAttempts()).isEqualTo(3);
+            assertThat(persisted.getNextAttempt()).isEqualTo(12345L);
+        }
+
+        @Test
+        public void deleteRemovesEntry() {
+            final OutboxEntry entry = new OutboxEntry(new MessageHash(new byte[] {1}), new byte[] {2});
+            outboxEntryDAO.save(entry);
+            entityManager.flush();
+
+            outboxEntryDAO.delete(new OutboxEntry(new MessageHash(new byte[] {1}), new byte[] {2}));
+            entityManager.flush();
+
+            assertThat(entityManager.find(OutboxEntry.class, entry.getId())).isNull();
+        }
+
+        @Test
+        public void deleteOfMissingEntryIsIgnored() {
+            outboxEntryDAO.delete(new OutboxEntry(new MessageHash(new byte[] {9}), new byte[] {9}));
+        }
+    }
+
+    @Transactional
+    @RunWith(SpringRunner.class)
+    @ContextConfiguration(classes = JpaH2Config.class)
+    @DirtiesContext(classMode = DirtiesContext.ClassMode.AFTER_CLASS)
+    public static class H2Test extends DAOTest {}
+
+    @Transactional
+    @RunWith(SpringRunner.class)
+    @ContextConfiguration(classes = JpaHsqlConfig.class)
+    @DirtiesContext(classMode = DirtiesContext.ClassMode.AFTER_CLASS)
+    public static class HsqlTest extends DAOTest {}
+}
@@ -0,0 +1,192 @@
+package com.quorum.tessera.data;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.mockito.ArgumentCaptor;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static java.util.Collections.singletonList;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.*;
+
+public class PayloadSegmentCompactorTest {
+
+    @Rule public TemporaryFolder folder = new TemporaryFolder();
+
+    private EncryptedTransactionDAO encryptedTransactionDAO;
+
+    private PayloadSegmentStore store;
+
+    private PayloadSegmentCompactor compactor;
+
+    @Before
+    public void onSetUp() {
+        encryptedTransactionDAO = mock(EncryptedTransactionDAO.class);
+        store = new PayloadSegmentStore(folder.getRoot().toPath(), 10);
+        store.init();
+        compactor = new PayloadSegmentCompactor(encryptedTransactionDAO, store, 0.5);
+    }
+
+    @After
+    public void onTearDown() {
+        store.close();
+    }
+
+    @Test
+    public void mostlyDeadSegmentIsMovedAndDeletedOnTheNextRun() {
+        final PayloadPointer live = store.append("LIVE".getBytes());
+        store.append("DEAD..".getBytes());
+        store.append("ACTIVE".getBytes());
+
+        final MessageHash hash = new MessageHash("HASH".getBytes());
+        final EncryptedTransaction row = new EncryptedTransaction(hash, live.encode());
+        stored(row);
+        when(encryptedTransactionDAO.retrieveByHash(hash)).thenReturn(Optional.of(row));
+
+        compactor.run();
+
+        final ArgumentCaptor<EncryptedTransaction> captor = ArgumentCaptor.forClass(EncryptedTransaction.class);
+        verify(encryptedTransactionDAO).update(captor.capture());
+
+        final PayloadPointer moved = PayloadPointer.decode(captor.getValue().getEncodedPayload()).get();
+        assertThat(moved.getSegment()).isNotEqualTo(0);
+        assertThat(store.read(moved)).isEqualTo("LIVE".getBytes());
+        assertThat(store.segmentSizes()).containsKey(0);
+
+        stored();
+        compactor.run();
+
+        assertThat(store.segmentSizes()).doesNotContainKey(0);
+    }
+
+    @Test
+    public void emptiedSegmentThatIsStillPointedIntoIsMovedAgainInsteadOfDeleted() {
+        final PayloadPointer live = store.append("LIVE".getBytes());
+        store.append("DEAD..".getBytes());
+        store.append("ACTIVE".getBytes());
+
+        final MessageHash hash = new MessageHash("HASH".getBytes());
+        final EncryptedTransaction row = new EncryptedTransaction(hash, live.encode());
+        stored(row);
+        when(encryptedTransactionDAO.retrieveByHash(hash)).thenReturn(Optional.of(row));
+
+        compactor.run();
+
+        // an update written the old pointer back after the move
+        compactor.run();
+
+        verify(encryptedTransactionDAO, times(2)).update(any(EncryptedTransaction.class));
+        assertThat(store.segmentSizes()).containsKey(0);
+
+        stored();
+        compactor.run();
+
+        assertThat(store.segmentSizes()).doesNotContainKey(0);
+    }
+
+    @Test
+    public void segmentIsNotMovedWhileAnUpdateIsInProgress() throws Exception {
+        final PayloadPointer live = store.append("LIVE".getBytes());
+        store.append("DEAD..".getBytes());
+        store.append("ACTIVE".getBytes());
+
+        final MessageHash hash = new MessageHash("HASH".getBytes());
+        final EncryptedTransaction row = new EncryptedTransaction(hash, live.encode());
+        stored(row);
+
+        final CountDownLatch locked = new CountDownLatch(1);
+        final CountDownLatch done = new CountDownLatch(1);
+        final Thread update =
+                new Thread(
+                        () -> {
+                            store.updateLock().lock();
+                            try {
+                                locked.countDown();
+                                done.await();
+                            } catch (final InterruptedException ex) {
+                                Thread.currentThread().interrupt();
+                            } finally {
+                                store.updateLock().unlock();
+                            }
+                        });
+        update.start();
+        locked.await();
+
+        try {
+            compactor.run();
+        } finally {
+            done.countDown();
+            update.join();
+        }
+
+        verify(encryptedTransactionDAO, never()).retrieveByHash(any());
+        verify(encryptedTransactionDAO, never()).update(any());
+
+        compactor.run();
+        assertThat(store.segmentSizes()).containsKey(0);
+    }
+
+    @Test
+    public void mostlyLiveSegmentIsLeftAlone() {
+        final PayloadPointer live = store.append("LIVE....".getBytes());
+        store.append("ACTIVE".getBytes());
+
+        final EncryptedTransaction row = new EncryptedTransaction(new MessageHash("HASH".getBytes()), live.encode());
+        stored(row);
+
+        compactor.run();
+        compactor.run();
+
+        verify(encryptedTransactionDAO, never()).update(any());
+        assertThat(store.segmentSizes()).containsKeys(0, 1);
+    }
+
+    @Test
+    public void scanSeeksPastTheLastHashOfEachPage() {
+        final PayloadPointer live = store.append("LIVE".getBytes());
+        store.append("DEAD..".getBytes());
+        store.append("ACTIVE".getBytes());
+
+        // the whole first page is deleted between reading its hashes and its rows
+        final List<MessageHash> firstPage =
+                IntStream.range(0, 1_000)
+                        .mapToObj(i -> new MessageHash(new byte[] {0, (byte) (i >> 8), (byte) i}))
+                        .collect(Collectors.toList());
+        final MessageHash hash = new MessageHash(new byte[] {1});
+        final EncryptedTransaction row = new EncryptedTransaction(hash, live.encode());
+        when(encryptedTransactionDAO.retrieveHashes(null, 1_000)).thenReturn(firstPage);
+        when(encryptedTransactionDAO.retrieveHashes(firstPage.get(999), 1_000)).thenReturn(singletonList(hash));
+        when(encryptedTransactionDAO.retrieveByHashes(singletonList(hash))).thenReturn(singletonList(row));
+        when(encryptedTransactionDAO.retrieveByHash(hash)).thenReturn(Optional.of(row));
+
+        compactor.run();
+
+        final ArgumentCaptor<EncryptedTransaction> captor = ArgumentCaptor.forClass(EncryptedTransaction.class);
+        verify(encryptedTransactionDAO).update(captor.capture());
+        assertThat(PayloadPointer.decode(captor.getValue().getEncodedPayload()).get().getSegment()).isNotEqualTo(0);
+    }
+
+    @Test
+    public void disabledStoreIsNotCompacted() {
+        new PayloadSegmentCompactor(encryptedTransactionDAO, new PayloadSegmentStore(null, 10), 0.5).run();
+
+        verifyZeroInteractions(encryptedTransactionDAO);
+    }
+
+    private void stored(final EncryptedTransaction... rows) {
+        final List<EncryptedTransaction> transactions = Arrays.asList(rows);
+        final List<MessageHash> hashes =
+                transactions.stream().map(EncryptedTransaction::getHash).collect(Collectors.toList());
+        when(encryptedTransactionDAO.retrieveHashes(null, 1_000)).thenReturn(hashes);
+        when(encryptedTransactionDAO.retrieveByHashes(hashes)).thenReturn(transactions);
+    }
+}
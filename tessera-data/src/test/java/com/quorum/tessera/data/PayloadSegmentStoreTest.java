@@ -0,0 +1,123 @@
+package com.quorum.tessera.data;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.catchThrowable;
+
+public class PayloadSegmentStoreTest {
+
+    @Rule public TemporaryFolder folder = new TemporaryFolder();
+
+    private Path directory;
+
+    private PayloadSegmentStore store;
+
+    @Before
+    public void onSetUp() {
+        directory = folder.getRoot().toPath().resolve("payloads");
+        store = new PayloadSegmentStore(directory, 10);
+        store.init();
+    }
+
+    @After
+    public void onTearDown() {
+        store.close();
+    }
+
+    @Test
+    public void appendedPayloadsAreReadBack() {
+        final List<PayloadPointer> pointers =
+                store.append(Arrays.asList("ONE".getBytes(), "TWO".getBytes(), "THREE".getBytes()));
+
+        assertThat(store.read(pointers.get(0))).isEqualTo("ONE".getBytes());
+        assertThat(store.read(pointers.get(1))).isEqualTo("TWO".getBytes());
+        assertThat(store.read(pointers.get(2))).isEqualTo("THREE".getBytes());
+    }
+
+    @Test
+    public void payloadThatWouldOverfillTheSegmentStartsANewOne() {
+        final PayloadPointer first = store.append("SEVEN..".getBytes());
+        final PayloadPointer second = store.append("FOUR".getBytes());
+
+        assertThat(first.getSegment()).isEqualTo(0);
+        assertThat(second.getSegment()).isEqualTo(1);
+        assertThat(second.getOffset()).isZero();
+        assertThat(store.getActiveSegment()).isEqualTo(1);
+        assertThat(store.segmentSizes()).containsEntry(0, 7L).containsEntry(1, 4L);
+    }
+
+    @Test
+    public void activeSegmentIsRemappedOnceItHasGrown() {
+        final PayloadPointer first = store.append("ONE".getBytes());
+        assertThat(store.read(first)).isEqualTo("ONE".getBytes());
+
+        final PayloadPointer second = store.append("TWO".getBytes());
+
+        assertThat(store.read(second)).isEqualTo("TWO".getBytes());
+    }
+
+    @Test
+    public void reopenedStoreAppendsToNewestSegment() {
+        store.append("SEVEN..".getBytes());
+        final PayloadPointer existing = store.append("FOUR".getBytes());
+        store.close();
+
+        store = new PayloadSegmentStore(directory, 10);
+        store.init();
+
+        final PayloadPointer appended = store.append("TWO".getBytes());
+
+        assertThat(appended.getSegment()).isEqualTo(1);
+        assertThat(appended.getOffset()).isEqualTo(4);
+        assertThat(store.read(existing)).isEqualTo("FOUR".getBytes());
+    }
+
+    @Test
+    public void deleteSegmentRemovesItsFile() {
+        store.append("SEVEN..".getBytes());
+        store.append("FOUR".getBytes());
+
+        store.deleteSegment(0);
+
+        assertThat(Files.exists(directory.resolve("segment-00000000.dat"))).isFalse();
+        assertThat(store.segmentSizes()).containsOnlyKeys(1);
+    }
+
+    @Test
+    public void activeSegmentCannotBeDeleted() {
+        final Throwable throwable = catchThrowable(() -> store.deleteSegment(0));
+
+        assertThat(throwable).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    public void storeWithoutDirectoryIsDisabled() {
+        final PayloadSegmentStore disabled = new PayloadSegmentStore(null, 10);
+        disabled.init();
+
+        assertThat(disabled.isEnabled()).isFalse();
+        assertThat(disabled.segmentSizes()).isEmpty();
+        assertThat(catchThrowable(() -> disabled.append("ONE".getBytes()))).isInstanceOf(IllegalStateException.class);
+        assertThat(catchThrowable(() -> disabled.read(new PayloadPointer(0, 0, 1))))
+                .isInstanceOf(IllegalStateException.class);
+    }
+
+    @Test
+    public void pointerRoundTripsThroughItsStoredForm() {
+        final PayloadPointer pointer = new PayloadPointer(3, 1L << 33, 42);
+
+        assertThat(PayloadPointer.decode(pointer.encode())).contains(pointer);
+        assertThat(PayloadPointer.decode(new byte[PayloadPointer.ENCODED_LENGTH])).isNotPresent();
+        assertThat(PayloadPointer.decode("PAYLOAD".getBytes())).isNotPresent();
+    }
+}
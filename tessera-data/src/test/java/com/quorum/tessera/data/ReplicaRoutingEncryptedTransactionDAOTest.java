@@ -0,0 +1,160 @@
+package com.quorum.tessera.data;
+
+import com.quorum.tessera.encryption.PublicKey;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.persistence.PersistenceException;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+
+import static java.util.Collections.singletonList;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.*;
+
+public class ReplicaRoutingEncryptedTransactionDAOTest {
+
+    private EncryptedTransactionDAO primary;
+
+    private EncryptedTransactionDAO replica;
+
+    private ReplicaRoutingEncryptedTransactionDAO encryptedTransactionDAO;
+
+    @Before
+    public void onSetUp() {
+        primary = mock(EncryptedTransactionDAO.class);
+        replica = mock(EncryptedTransactionDAO.class);
+        encryptedTransactionDAO = new ReplicaRoutingEncryptedTransactionDAO(primary, replica);
+    }
+
+    @After
+    public void onTearDown() {
+        verifyNoMoreInteractions(primary, replica);
+    }
+
+    @Test
+    public void lookupsByHashGoToPrimary() {
+        final EncryptedTransaction first = transaction(1);
+        final EncryptedTransaction second = transaction(2);
+        final List<MessageHash> hashes = Arrays.asList(first.getHash(), second.getHash());
+        when(primary.retrieveByHash(first.getHash())).thenReturn(Optional.of(first));
+        when(primary.retrieveByHashes(hashes)).thenReturn(Arrays.asList(first, second));
+
+        assertThat(encryptedTransactionDAO.retrieveByHash(first.getHash())).containsSame(first);
+        assertThat(encryptedTransactionDAO.retrieveByHashes(hashes)).containsExactly(first, second);
+
+        verify(primary).retrieveByHash(first.getHash());
+        verify(primary).retrieveByHashes(hashes);
+    }
+
+    @Test
+    public void readOnlyLookupsByHashGoToReplicaFirst() {
+        final EncryptedTransaction first = transaction(1);
+        final EncryptedTransaction second = transaction(2);
+        final List<MessageHash> hashes = Arrays.asList(first.getHash(), second.getHash());
+        when(replica.retrieveByHash(first.getHash())).thenReturn(Optional.of(first));
+        when(replica.retrieveByHashes(hashes)).thenReturn(Arrays.asList(first, second));
+
+        assertThat(encryptedTransactionDAO.retrieveByHashForRead(first.getHash())).containsSame(first);
+        assertThat(encryptedTransactionDAO.retrieveByHashesForRead(hashes)).containsExactly(first, second);
+
+        verify(replica).retrieveByHash(first.getHash());
+        verify(replica).retrieveByHashes(hashes);
+    }
+
+    @Test
+    public void readOnlyLookupsMissedByReplicaAreMadeOnPrimary() {
+        final EncryptedTransaction replicated = transaction(1);
+        final EncryptedTransaction recent = transaction(2);
+        final MessageHash unknown = transaction(3).getHash();
+        final List<MessageHash> hashes = Arrays.asList(replicated.getHash(), recent.getHash(), unknown);
+        final Set<MessageHash> missing = new HashSet<>(Arrays.asList(recent.getHash(), unknown));
+        when(replica.retrieveByHash(recent.getHash())).thenReturn(Optional.empty());
+        when(primary.retrieveByHash(recent.getHash())).thenReturn(Optional.of(recent));
+        when(replica.retrieveByHashes(hashes)).thenReturn(singletonList(replicated));
+        when(primary.retrieveByHashes(missing)).thenReturn(singletonList(recent));
+
+        assertThat(encryptedTransactionDAO.retrieveByHashForRead(recent.getHash())).containsSame(recent);
+        assertThat(encryptedTransactionDAO.retrieveByHashesForRead(hashes)).containsExactly(replicated, recent);
+
+        verify(replica).retrieveByHash(recent.getHash());
+        verify(primary).retrieveByHash(recent.getHash());
+        verify(replica).retrieveByHashes(hashes);
+        verify(primary).retrieveByHashes(missing);
+    }
+
+    @Test
+    public void failedReadOnlyLookupIsMadeOnPrimary() {
+        final EncryptedTransaction transaction = transaction(1);
+        when(replica.retrieveByHash(transaction.getHash())).thenThrow(new PersistenceException("replica down"));
+        when(primary.retrieveByHash(transaction.getHash())).thenReturn(Optional.of(transaction));
+
+        assertThat(encryptedTransactionDAO.retrieveByHashForRead(transaction.getHash())).containsSame(transaction);
+
+        verify(replica).retrieveByHash(transaction.getHash());
+        verify(primary).retrieveByHash(transaction.getHash());
+    }
+
+    @Test
+    public void failedReplicaReadIsRetriedOnPrimary() {
+        when(replica.retrieveTransactions(0, 10)).thenThrow(new PersistenceException("replica down"));
+        when(primary.retrieveTransactions(0, 10)).thenReturn(singletonList(transaction(1)));
+
+        assertThat(encryptedTransactionDAO.retrieveTransactions(0, 10)).containsExactly(transaction(1));
+
+        verify(replica).retrieveTransactions(0, 10);
+        verify(primary).retrieveTransactions(0, 10);
+    }
+
+    @Test
+    public void lagTolerantScansGoToReplica() {
+        final PublicKey recipient = PublicKey.from(new byte[] {7});
+
+        encryptedTransactionDAO.retrieveTransactions(0, 10);
+        encryptedTransactionDAO.retrieveTransactionsForRecipient(recipient, null, 10);
+
+        verify(replica).retrieveTransactions(0, 10);
+        verify(replica).retrieveTransactionsForRecipient(recipient, null, 10);
+    }
+
+    @Test
+    public void writesAndConsistentScansGoToPrimary() {
+        final EncryptedTransaction transaction = transaction(1);
+
+        encryptedTransactionDAO.save(transaction);
+        encryptedTransactionDAO.update(transaction);
+        encryptedTransactionDAO.retrieveHashes(null, 10);
+        encryptedTransactionDAO.retrieveUnindexedTransactions(null, 10);
+        encryptedTransactionDAO.transactionCount();
+        encryptedTransactionDAO.delete(transaction.getHash());
+
+        verify(primary).save(transaction);
+        verify(primary).update(transaction);
+        verify(primary).retrieveHashes(null, 10);
+        verify(primary).retrieveUnindexedTransactions(null, 10);
+        verify(primary).transactionCount();
+        verify(primary).delete(transaction.getHash());
+    }
+
+    @Test
+    public void everythingGoesToPrimaryWithoutReplica() {
+        final EncryptedTransaction transaction = transaction(1);
+        encryptedTransactionDAO = new ReplicaRoutingEncryptedTransactionDAO(primary, null);
+        when(primary.retrieveByHash(transaction.getHash())).thenReturn(Optional.empty());
+
+        assertThat(encryptedTransactionDAO.retrieveByHash(transaction.getHash())).isNotPresent();
+        assertThat(encryptedTransactionDAO.retrieveByHashForRead(transaction.getHash())).isNotPresent();
+        encryptedTransactionDAO.retrieveTransactions(0, 10);
+
+        verify(primary, times(2)).retrieveByHash(transaction.getHash());
+        verify(primary).retrieveTransactions(0, 10);
+    }
+
+    private static EncryptedTransaction transaction(final int i) {
+        return new EncryptedTransaction(new MessageHash(new byte[] {(byte) i}), new byte[] {(byte) i});
+    }
+}
@@ -0,0 +1,165 @@
+package com.quorum.tessera.data;
+
+import com.quorum.tessera.encryption.PublicKey;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.mockito.ArgumentCaptor;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import static java.util.Collections.singletonList;
+import static java.util.Collections.singletonMap;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+public class SegmentStoringEncryptedTransactionDAOTest {
+
+    @Rule public TemporaryFolder folder = new TemporaryFolder();
+
+    private EncryptedTransactionDAO delegate;
+
+    private PayloadSegmentStore store;
+
+    private SegmentStoringEncryptedTransactionDAO encryptedTransactionDAO;
+
+    @Before
+    public void onSetUp() {
+        delegate = mock(EncryptedTransactionDAO.class);
+        store = new PayloadSegmentStore(folder.getRoot().toPath(), 1024);
+        store.init();
+        encryptedTransactionDAO = new SegmentStoringEncryptedTransactionDAO(delegate, store);
+    }
+
+    @After
+    public void onTearDown() {
+        store.close();
+        verifyNoMoreInteractions(delegate);
+    }
+
+    @Test
+    public void saveStoresPointerInPlaceOfPayload() {
+        final EncryptedTransaction transaction = transaction("HASH", "PAYLOAD");
+
+        final EncryptedTransaction saved = encryptedTransactionDAO.save(transaction);
+
+        assertThat(saved).isSameAs(transaction);
+        assertThat(saved.getEncodedPayload()).isEqualTo("PAYLOAD".getBytes());
+
+        final ArgumentCaptor<EncryptedTransaction> captor = ArgumentCaptor.forClass(EncryptedTransaction.class);
+        verify(delegate).save(captor.capture());
+
+        final Optional<PayloadPointer> pointer = PayloadPointer.decode(captor.getValue().getEncodedPayload());
+        assertThat(pointer).isPresent();
+        assertThat(store.read(pointer.get())).isEqualTo("PAYLOAD".getBytes());
+        assertThat(captor.getValue().getHash()).isEqualTo(transaction.getHash());
+    }
+
+    @Test
+    public void saveAllWithRecipientsPassesRecipientsWithPointers() {
+        final EncryptedTransaction transaction = transaction("HASH", "PAYLOAD");
+        final List<PublicKey> recipients = singletonList(PublicKey.from("KEY".getBytes()));
+
+        encryptedTransactionDAO.saveAllWithRecipients(singletonMap(transaction, recipients));
+
+        @SuppressWarnings("unchecked")
+        final ArgumentCaptor<Map<EncryptedTransaction, Collection<PublicKey>>> captor =
+                ArgumentCaptor.forClass(Map.class);
+        verify(delegate).saveAllWithRecipients(captor.capture());
+
+        final Map.Entry<EncryptedTransaction, Collection<PublicKey>> stored =
+                captor.getValue().entrySet().iterator().next();
+        assertThat(stored.getValue()).isSameAs(recipients);
+        assertThat(PayloadPointer.decode(stored.getKey().getEncodedPayload())).isPresent();
+    }
+
+    @Test
+    public void retrievedPointersAreResolvedToPayloads() {
+        final PayloadPointer pointer = store.append("PAYLOAD".getBytes());
+        final EncryptedTransaction stored =
+                new EncryptedTransaction(new MessageHash("HASH".getBytes()), pointer.encode(), "KEY".getBytes());
+        stored.setTimestamp(123L);
+        when(delegate.retrieveByHash(stored.getHash())).thenReturn(Optional.of(stored));
+
+        final EncryptedTransaction retrieved = encryptedTransactionDAO.retrieveByHash(stored.getHash()).get();
+
+        assertThat(retrieved.getEncodedPayload()).isEqualTo("PAYLOAD".getBytes());
+        assertThat(retrieved.getRecipientKey()).isEqualTo("KEY".getBytes());
+        assertThat(retrieved.getTimestamp()).isEqualTo(123L);
+        verify(delegate).retrieveByHash(stored.getHash());
+    }
+
+    @Test
+    public void readOnlyLookupWithAPointerThatHasSinceMovedIsReadAgain() {
+        final PayloadPointer moved = new PayloadPointer(store.getActiveSegment() + 1, 0, 7);
+        final PayloadPointer current = store.append("PAYLOAD".getBytes());
+        final MessageHash hash = new MessageHash("HASH".getBytes());
+        final MessageHash deleted = new MessageHash("DELETED".getBytes());
+        when(delegate.retrieveByHashForRead(hash))
+                .thenReturn(Optional.of(new EncryptedTransaction(hash, moved.encode())));
+        when(delegate.retrieveByHashesForRead(singletonList(deleted)))
+                .thenReturn(singletonList(new EncryptedTransaction(deleted, moved.encode())));
+        when(delegate.retrieveByHash(hash)).thenReturn(Optional.of(new EncryptedTransaction(hash, current.encode())));
+        when(delegate.retrieveByHash(deleted)).thenReturn(Optional.empty());
+
+        assertThat(encryptedTransactionDAO.retrieveByHashForRead(hash).get().getEncodedPayload())
+                .isEqualTo("PAYLOAD".getBytes());
+        assertThat(encryptedTransactionDAO.retrieveByHashesForRead(singletonList(deleted))).isEmpty();
+
+        verify(delegate).retrieveByHashForRead(hash);
+        verify(delegate).retrieveByHashesForRead(singletonList(deleted));
+        verify(delegate).retrieveByHash(hash);
+        verify(delegate).retrieveByHash(deleted);
+    }
+
+    @Test
+    public void payloadsStoredInTheDatabaseAreReturnedAsTheyAre() {
+        final EncryptedTransaction stored = transaction("HASH", "PAYLOAD");
+        when(delegate.retrieveTransactions(0, 10)).thenReturn(singletonList(stored));
+
+        assertThat(encryptedTransactionDAO.retrieveTransactions(0, 10)).containsExactly(stored);
+        assertThat(encryptedTransactionDAO.retrieveTransactions(0, 10).get(0)).isSameAs(stored);
+
+        verify(delegate, times(2)).retrieveTransactions(0, 10);
+    }
+
+    @Test
+    public void updateOfRecipientKeyKeepsExistingPointer() {
+        final PayloadPointer pointer = store.append("PAYLOAD".getBytes());
+        final MessageHash hash = new MessageHash("HASH".getBytes());
+        when(delegate.retrieveByHash(hash)).thenReturn(Optional.of(new EncryptedTransaction(hash, pointer.encode())));
+
+        encryptedTransactionDAO.update(new EncryptedTransaction(hash, "PAYLOAD".getBytes(), "KEY".getBytes()));
+
+        final ArgumentCaptor<EncryptedTransaction> captor = ArgumentCaptor.forClass(EncryptedTransaction.class);
+        verify(delegate).retrieveByHash(hash);
+        verify(delegate).update(captor.capture());
+        assertThat(captor.getValue().getEncodedPayload()).isEqualTo(pointer.encode());
+        assertThat(captor.getValue().getRecipientKey()).isEqualTo("KEY".getBytes());
+        assertThat(store.segmentSizes()).containsEntry(0, 7L);
+    }
+
+    @Test
+    public void disabledStorePassesEverythingThrough() {
+        final PayloadSegmentStore disabled = new PayloadSegmentStore(null, 1024);
+        final EncryptedTransactionDAO dao = new SegmentStoringEncryptedTransactionDAO(delegate, disabled);
+        final EncryptedTransaction transaction = transaction("HASH", "PAYLOAD");
+
+        dao.save(transaction);
+        dao.update(transaction);
+
+        verify(delegate).save(transaction);
+        verify(delegate).update(transaction);
+        verify(delegate, never()).retrieveByHash(any());
+    }
+
+    private static EncryptedTransaction transaction(final String hash, final String payload) {
+        return new EncryptedTransaction(new MessageHash(hash.getBytes()), payload.getBytes());
+    }
+}
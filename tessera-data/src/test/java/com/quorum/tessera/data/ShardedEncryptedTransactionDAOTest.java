@@ -0,0 +1,254 @@
+package com.quorum.tessera.data;
+
+import com.quorum.tessera.encryption.PublicKey;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.persistence.EntityNotFoundException;
+import javax.persistence.PersistenceException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static java.util.Collections.singletonList;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.catchThrowable;
+import static org.mockito.Mockito.*;
+
+public class ShardedEncryptedTransactionDAOTest {
+
+    private JdbcEncryptedTransactionDAO low;
+
+    private JdbcEncryptedTransactionDAO high;
+
+    private ExecutorService executor;
+
+    private ShardedEncryptedTransactionDAO encryptedTransactionDAO;
+
+    @Before
+    public void onSetUp() {
+        low = mock(JdbcEncryptedTransactionDAO.class);
+        high = mock(JdbcEncryptedTransactionDAO.class);
+        executor = Executors.newFixedThreadPool(2);
+        encryptedTransactionDAO =
+                new ShardedEncryptedTransactionDAO(Arrays.asList(low, high), executor, Collections.emptyList());
+    }
+
+    @After
+    public void onTearDown() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+        encryptedTransactionDAO.close();
+        verifyNoMoreInteractions(low, high);
+    }
+
+    @Test
+    public void hashesAreSplitIntoRangesByPrefix() {
+        assertThat(encryptedTransactionDAO.shardOf(hash(0x00, 0x00))).isZero();
+        assertThat(encryptedTransactionDAO.shardOf(hash(0x7F, 0xFF))).isZero();
+        assertThat(encryptedTransactionDAO.shardOf(hash(0x80, 0x00))).isEqualTo(1);
+        assertThat(encryptedTransactionDAO.shardOf(hash(0xFF, 0xFF))).isEqualTo(1);
+    }
+
+    @Test
+    public void singleTransactionsGoToExactlyOneShard() {
+        final EncryptedTransaction transaction = transaction(0x90, 1L);
+        when(high.retrieveByHash(transaction.getHash())).thenReturn(Optional.of(transaction));
+
+        encryptedTransactionDAO.save(transaction);
+        assertThat(encryptedTransactionDAO.retrieveByHash(transaction.getHash())).containsSame(transaction);
+        encryptedTransactionDAO.delete(transaction.getHash());
+
+        verify(high).save(transaction);
+        verify(high, times(2)).retrieveByHash(transaction.getHash());
+        verify(high).delete(transaction.getHash());
+    }
+
+    @Test
+    public void writesAreUndoneIfTheCallersTransactionRollsBack() {
+        final EncryptedTransaction saved = transaction(0x10, 1L);
+        final EncryptedTransaction stored = transaction(0x90, 2L);
+        final EncryptedTransaction changed = new EncryptedTransaction(stored.getHash(), new byte[] {2});
+        when(high.retrieveByHash(stored.getHash())).thenReturn(Optional.of(stored));
+        TransactionSynchronizationManager.initSynchronization();
+
+        encryptedTransactionDAO.save(saved);
+        encryptedTransactionDAO.update(changed);
+        encryptedTransactionDAO.delete(stored.getHash());
+
+        verify(low).save(saved);
+        verify(high, times(2)).retrieveByHash(stored.getHash());
+        verify(high).update(changed);
+        verifyNoMoreInteractions(low, high);
+
+        TransactionSynchronizationManager.getSynchronizations()
+                .forEach(s -> s.afterCompletion(TransactionSynchronization.STATUS_ROLLED_BACK));
+
+        final ArgumentCaptor<EncryptedTransaction> updates = ArgumentCaptor.forClass(EncryptedTransaction.class);
+        verify(low).delete(saved.getHash());
+        verify(high, times(2)).update(updates.capture());
+        assertThat(updates.getAllValues()).extracting(EncryptedTransaction::getEncodedPayload)
+                .containsExactly(changed.getEncodedPayload(), stored.getEncodedPayload());
+    }
+
+    @Test
+    public void deletesAreMadeOnceTheCallersTransactionCommits() {
+        final EncryptedTransaction stored = transaction(0x90, 2L);
+        when(high.retrieveByHash(stored.getHash())).thenReturn(Optional.of(stored));
+        TransactionSynchronizationManager.initSynchronization();
+
+        encryptedTransactionDAO.delete(stored.getHash());
+
+        verify(high).retrieveByHash(stored.getHash());
+        verifyNoMoreInteractions(high);
+
+        TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization::afterCommit);
+
+        verify(high).delete(stored.getHash());
+    }
+
+    @Test
+    public void deleteOfMissingTransactionFailsStraightAway() {
+        final MessageHash hash = hash(0x90, 0);
+        when(high.retrieveByHash(hash)).thenReturn(Optional.empty());
+
+        assertThat(catchThrowable(() -> encryptedTransactionDAO.delete(hash)))
+                .isInstanceOf(EntityNotFoundException.class);
+
+        verify(high).retrieveByHash(hash);
+    }
+
+    @Test
+    public void batchesAreSplitBetweenShards() {
+        final EncryptedTransaction first = transaction(0x10, 1L);
+        final EncryptedTransaction second = transaction(0x90, 2L);
+
+        encryptedTransactionDAO.saveAll(Arrays.asList(first, second));
+
+        verify(low).saveAll(singletonList(first));
+        verify(high).saveAll(singletonList(second));
+    }
+
+    @Test
+    public void batchThatFailsOnOneShardIsDeletedFromEveryShard() {
+        final EncryptedTransaction first = transaction(0x10, 1L);
+        final EncryptedTransaction second = transaction(0x90, 2L);
+        final PersistenceException failure = new PersistenceException("shard down");
+        when(high.saveAll(singletonList(second))).thenThrow(failure);
+        doThrow(new EntityNotFoundException()).when(high).delete(second.getHash());
+
+        assertThat(catchThrowable(() -> encryptedTransactionDAO.saveAll(Arrays.asList(first, second))))
+                .isSameAs(failure);
+
+        verify(low).saveAll(singletonList(first));
+        verify(high).saveAll(singletonList(second));
+        verify(low).delete(first.getHash());
+        verify(high).delete(second.getHash());
+    }
+
+    @Test
+    public void pagesOfAllTransactionsSeekEachShardPastThePreviousPage() {
+        final EncryptedTransaction first = transaction(0x10, 1L);
+        final EncryptedTransaction second = transaction(0x90, 2L);
+        final EncryptedTransaction third = transaction(0x11, 3L);
+        final EncryptedTransaction fourth = transaction(0x91, 4L);
+        when(low.retrieveTransactionsAfter(null, 2)).thenReturn(Arrays.asList(first, third));
+        when(high.retrieveTransactionsAfter(null, 2)).thenReturn(Arrays.asList(second, fourth));
+        when(low.retrieveTransactionsAfter(first, 2)).thenReturn(singletonList(third));
+        when(high.retrieveTransactionsAfter(second, 2)).thenReturn(singletonList(fourth));
+
+        assertThat(encryptedTransactionDAO.retrieveTransactions(0, 2)).containsExactly(first, second);
+        assertThat(encryptedTransactionDAO.retrieveTransactions(2, 2)).containsExactly(third, fourth);
+
+        verify(low).retrieveTransactionsAfter(null, 2);
+        verify(high).retrieveTransactionsAfter(null, 2);
+        verify(low).retrieveTransactionsAfter(first, 2);
+        verify(high).retrieveTransactionsAfter(second, 2);
+    }
+
+    @Test
+    public void pagesWithoutACursorSkipForwardAPageAtATime() {
+        final EncryptedTransaction first = transaction(0x10, 1L);
+        final EncryptedTransaction second = transaction(0x90, 2L);
+        when(low.retrieveTransactionsAfter(null, 1)).thenReturn(singletonList(first));
+        when(high.retrieveTransactionsAfter(null, 1)).thenReturn(singletonList(second));
+        when(low.retrieveTransactionsAfter(first, 1)).thenReturn(Collections.emptyList());
+
+        assertThat(encryptedTransactionDAO.retrieveTransactions(1, 1)).containsExactly(second);
+
+        verify(low).retrieveTransactionsAfter(null, 1);
+        verify(high, times(2)).retrieveTransactionsAfter(null, 1);
+        verify(low).retrieveTransactionsAfter(first, 1);
+    }
+
+    @Test
+    public void recipientScansAreMergedByTimestamp() {
+        final PublicKey recipient = PublicKey.from(new byte[] {7});
+        final EncryptedTransaction after = transaction(0x20, 1L);
+        when(low.retrieveTransactionsForRecipient(recipient, after, 3))
+                .thenReturn(Arrays.asList(transaction(0x10, 2L), transaction(0x11, 5L)));
+        when(high.retrieveTransactionsForRecipient(recipient, after, 3))
+                .thenReturn(Arrays.asList(transaction(0x90, 3L), transaction(0x91, 4L), transaction(0x92, 6L)));
+
+        assertThat(encryptedTransactionDAO.retrieveTransactionsForRecipient(recipient, after, 3))
+                .containsExactly(transaction(0x10, 2L), transaction(0x90, 3L), transaction(0x91, 4L));
+
+        verify(low).retrieveTransactionsForRecipient(recipient, after, 3);
+        verify(high).retrieveTransactionsForRecipient(recipient, after, 3);
+    }
+
+    @Test
+    public void hashScansContinueIntoTheNextShard() {
+        when(low.retrieveHashes(null, 3)).thenReturn(singletonList(hash(0x10, 0)));
+        when(high.retrieveHashes(null, 2)).thenReturn(Arrays.asList(hash(0x90, 0), hash(0x91, 0)));
+        when(high.retrieveHashes(hash(0x91, 0), 3)).thenReturn(Collections.emptyList());
+
+        assertThat(encryptedTransactionDAO.retrieveHashes(null, 3))
+                .containsExactly(hash(0x10, 0), hash(0x90, 0), hash(0x91, 0));
+        assertThat(encryptedTransactionDAO.retrieveHashes(hash(0x91, 0), 3)).isEmpty();
+
+        verify(low).retrieveHashes(null, 3);
+        verify(high).retrieveHashes(null, 2);
+        verify(high).retrieveHashes(hash(0x91, 0), 3);
+    }
+
+    @Test
+    public void countIsSummedOverShards() {
+        when(low.transactionCount()).thenReturn(3L);
+        when(high.transactionCount()).thenReturn(4L);
+
+        assertThat(encryptedTransactionDAO.transactionCount()).isEqualTo(7L);
+
+        verify(low).transactionCount();
+        verify(high).transactionCount();
+    }
+
+    @Test
+    public void failureOnAShardIsRethrown() {
+        final PersistenceException failure = new PersistenceException("shard down");
+        when(low.transactionCount()).thenReturn(3L);
+        when(high.transactionCount()).thenThrow(failure);
+
+        assertThat(catchThrowable(encryptedTransactionDAO::transactionCount)).isSameAs(failure);
+
+        verify(low).transactionCount();
+        verify(high).transactionCount();
+    }
+
+    private static MessageHash hash(final int first, final int second) {
+        return new MessageHash(new byte[] {(byte) first, (byte) second});
+    }
+
+    private static EncryptedTransaction transaction(final int first, final long timestamp) {
+        final EncryptedTransaction transaction = new EncryptedTransaction(hash(first, 0), new byte[] {1});
+        transaction.setTimestamp(timestamp);
+        return transaction;
+    }
+}
@@ -0,0 +1,64 @@
+package com.quorum.tessera.data;
+
+import org.junit.After;
+import org.junit.Test;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class TransactionCallbacksTest {
+
+    private final List<String> actions = new ArrayList<>();
+
+    @After
+    public void onTearDown() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    @Test
+    public void actionsRunStraightAwayOutsideOfATransaction() {
+        TransactionCallbacks.afterCommit(() -> actions.add("commit"));
+        TransactionCallbacks.afterCompletion(() -> actions.add("completion"));
+        TransactionCallbacks.afterRollback(() -> actions.add("rollback"));
+
+        assertThat(actions).containsExactly("commit", "completion");
+    }
+
+    @Test
+    public void actionsRunOnceTheTransactionHasCommitted() {
+        TransactionSynchronizationManager.initSynchronization();
+
+        TransactionCallbacks.afterCommit(() -> actions.add("commit"));
+        TransactionCallbacks.afterCompletion(() -> actions.add("completion"));
+        TransactionCallbacks.afterRollback(() -> actions.add("rollback"));
+
+        assertThat(actions).isEmpty();
+
+        final List<TransactionSynchronization> synchronizations =
+                TransactionSynchronizationManager.getSynchronizations();
+        synchronizations.forEach(TransactionSynchronization::afterCommit);
+        synchronizations.forEach(s -> s.afterCompletion(TransactionSynchronization.STATUS_COMMITTED));
+
+        assertThat(actions).containsExactly("commit", "completion");
+    }
+
+    @Test
+    public void onlyCompletionAndRollbackActionsRunWhenTheTransactionRollsBack() {
+        TransactionSynchronizationManager.initSynchronization();
+
+        TransactionCallbacks.afterCommit(() -> actions.add("commit"));
+        TransactionCallbacks.afterCompletion(() -> actions.add("completion"));
+        TransactionCallbacks.afterRollback(() -> actions.add("rollback"));
+
+        TransactionSynchronizationManager.getSynchronizations()
+                .forEach(s -> s.afterCompletion(TransactionSynchronization.STATUS_ROLLED_BACK));
+
+        assertThat(actions).containsExactly("completion", "rollback");
+    }
+}
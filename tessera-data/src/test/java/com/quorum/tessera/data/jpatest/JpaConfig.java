@@ -4,6 +4,8 @@ import com.quorum.tessera.data.EncryptedRawTransactionDAO;
 import com.quorum.tessera.data.EncryptedRawTransactionDAOImpl;
 import com.quorum.tessera.data.EncryptedTransactionDAO;
 import com.quorum.tessera.data.EncryptedTransactionDAOImpl;
+import com.quorum.tessera.data.OutboxEntryDAO;
+import com.quorum.tessera.data.OutboxEntryDAOImpl;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.ComponentScan;
 import org.springframework.context.annotation.Configuration;
@@ -30,6 +32,11 @@ public abstract class JpaConfig {
         return new EncryptedRawTransactionDAOImpl();
     }
 
+    @Bean
+    public OutboxEntryDAO outboxEntryDAO() {
+        return new OutboxEntryDAOImpl();
+    }
+
     @Bean
     public JpaTransactionManager jpaTransactionManager(final EntityManagerFactory entityManagerFactory) {
         return new JpaTransactionManager(entityManagerFactory);
@@ -0,0 +1,25 @@
+package com.quorum.tessera.api.exception;
+
+import com.quorum.tessera.transaction.exception.RecipientIndexIncompleteException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.core.Response.Status;
+import javax.ws.rs.ext.ExceptionMapper;
+import javax.ws.rs.ext.Provider;
+
+@Provider
+public class RecipientIndexIncompleteExceptionMapper implements ExceptionMapper<RecipientIndexIncompleteException> {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(RecipientIndexIncompleteExceptionMapper.class);
+
+    @Override
+    public Response toResponse(final RecipientIndexIncompleteException ex) {
+        LOGGER.warn("Recipient index incomplete: {}", ex.getMessage());
+        LOGGER.debug(null, ex);
+
+        return Response.status(Status.SERVICE_UNAVAILABLE).entity(ex.getMessage()).type(MediaType.TEXT_PLAIN).build();
+    }
+}
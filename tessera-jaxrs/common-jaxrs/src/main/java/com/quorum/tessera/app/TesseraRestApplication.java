@@ -10,6 +10,7 @@ import com.quorum.tessera.api.exception.EnclaveNotAvailableExceptionMapper;
 import com.quorum.tessera.api.exception.EntityNotFoundExceptionMapper;
 import com.quorum.tessera.api.exception.KeyNotFoundExceptionMapper;
 import com.quorum.tessera.api.exception.NotFoundExceptionMapper;
+import com.quorum.tessera.api.exception.RecipientIndexIncompleteExceptionMapper;
 import com.quorum.tessera.api.exception.SecurityExceptionMapper;
 import com.quorum.tessera.api.exception.TransactionNotFoundExceptionMapper;
 import com.quorum.tessera.api.exception.WebApplicationExceptionMapper;
@@ -35,6 +36,7 @@ public abstract class TesseraRestApplication extends Application implements Tess
                         EntityNotFoundExceptionMapper.class,
                         KeyNotFoundExceptionMapper.class,
                         NotFoundExceptionMapper.class,
+                        RecipientIndexIncompleteExceptionMapper.class,
                         SecurityExceptionMapper.class,
                         TransactionNotFoundExceptionMapper.class,
                         WebApplicationExceptionMapper.class,
@@ -0,0 +1,24 @@
+package com.quorum.tessera.api.exception;
+
+import com.quorum.tessera.transaction.exception.RecipientIndexIncompleteException;
+import org.junit.Test;
+
+import javax.ws.rs.core.Response;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class RecipientIndexIncompleteExceptionMapperTest {
+
+    private RecipientIndexIncompleteExceptionMapper instance = new RecipientIndexIncompleteExceptionMapper();
+
+    @Test
+    public void toResponse() {
+        final RecipientIndexIncompleteException exception = new RecipientIndexIncompleteException("Still indexing");
+
+        final Response result = instance.toResponse(exception);
+
+        assertThat(result).isNotNull();
+        assertThat(result.getStatus()).isEqualTo(503);
+        assertThat(result.getEntity()).isEqualTo(exception.getMessage());
+    }
+}
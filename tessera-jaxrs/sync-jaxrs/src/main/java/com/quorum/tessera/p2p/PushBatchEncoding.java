@@ -0,0 +1,89 @@
+package com.quorum.tessera.p2p;
+
+import com.quorum.tessera.util.exception.DecodingException;
+
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The body of a {@code /pushbatch} request, which uses the same framing as arrays within an encoded payload:
+ *
+ * <p>8 bytes to describe the number of payloads, and for each payload 8 bytes to describe its length followed by the
+ * bytes of the encoded payload itself
+ */
+final class PushBatchEncoding {
+
+    private static final int MAX_INITIAL_CAPACITY = 1024;
+
+    private PushBatchEncoding() {}
+
+    static byte[] encode(final List<byte[]> payloads) {
+        final int size = payloads.stream().mapToInt(payload -> Long.BYTES + payload.length).sum();
+
+        final ByteBuffer buffer = ByteBuffer.allocate(Long.BYTES + size).putLong(payloads.size());
+        for (final byte[] payload : payloads) {
+            buffer.putLong(payload.length).put(payload);
+        }
+
+        return buffer.array();
+    }
+
+    /**
+     * Reads a batch from the body of a request, giving up as soon as the lengths it declares add up to more than the
+     * maximum size, before the payloads themselves are read
+     *
+     * @throws BatchTooLargeException if the batch is bigger than the maximum size
+     * @throws DecodingException if the batch is malformed
+     */
+    static List<byte[]> decode(final InputStream body, final long maxSize) throws IOException {
+        final DataInputStream input = new DataInputStream(body);
+
+        try {
+            final long count = input.readLong();
+            // every payload needs at least its length prefix, which bounds how many there can really be
+            if (count < 0 || count > (maxSize - Long.BYTES) / Long.BYTES) {
+                throw new IllegalArgumentException("Invalid number of payloads in batch: " + count);
+            }
+
+            long size = Long.BYTES + count * Long.BYTES;
+            // the count is only a claim until the payloads have been read, so it is not trusted to size the list
+            final List<byte[]> payloads = new ArrayList<>((int) Math.min(count, MAX_INITIAL_CAPACITY));
+            for (long i = 0; i < count; i++) {
+                final long length = input.readLong();
+                if (length < 0 || length > Integer.MAX_VALUE) {
+                    throw new IllegalArgumentException("Invalid payload length in batch: " + length);
+                }
+
+                size += length;
+                if (size > maxSize) {
+                    throw new BatchTooLargeException("Batch is larger than the maximum of " + maxSize + " bytes");
+                }
+
+                final byte[] payload = new byte[(int) length];
+                input.readFully(payload);
+                payloads.add(payload);
+            }
+
+            if (input.read() != -1) {
+                throw new IllegalArgumentException("Unexpected data after last payload in batch");
+            }
+
+            return payloads;
+        } catch (final EOFException | IllegalArgumentException ex) {
+            throw new DecodingException(ex);
+        }
+    }
+
+    /** Thrown when a batch is bigger than the receiving node will accept in one request */
+    static class BatchTooLargeException extends RuntimeException {
+
+        BatchTooLargeException(final String message) {
+            super(message);
+        }
+    }
+}
@@ -4,6 +4,8 @@ import com.quorum.tessera.enclave.EncodedPayload;
 import com.quorum.tessera.enclave.PayloadEncoder;
 import com.quorum.tessera.partyinfo.PayloadPublisher;
 import com.quorum.tessera.partyinfo.PublishPayloadException;
+import java.util.List;
+import java.util.stream.Collectors;
 import javax.ws.rs.client.Client;
 import javax.ws.rs.client.Entity;
 import javax.ws.rs.core.MediaType;
@@ -50,4 +52,41 @@ public class RestPayloadPublisher implements PayloadPublisher {
             LOGGER.info("Published to {}", targetUrl);
         }
     }
+
+    /**
+     * Sends all of the payloads in a single {@code /pushbatch} request. Nodes that predate the batch endpoint respond
+     * with a 404, and nodes respond with a 413 to a batch that is larger than they accept, in which case the payloads
+     * are pushed to them one at a time instead.
+     */
+    @Override
+    public void publishPayloads(List<EncodedPayload> payloads, String targetUrl) {
+
+        LOGGER.info("Publishing {} messages to {}", payloads.size(), targetUrl);
+
+        final byte[] encoded =
+                PushBatchEncoding.encode(payloads.stream().map(payloadEncoder::encode).collect(Collectors.toList()));
+
+        final int status;
+        try (Response response =
+                restclient
+                        .target(targetUrl)
+                        .path("/pushbatch")
+                        .request()
+                        .post(Entity.entity(encoded, MediaType.APPLICATION_OCTET_STREAM_TYPE))) {
+            status = response.getStatus();
+        }
+
+        if (Response.Status.NOT_FOUND.getStatusCode() == status
+                || Response.Status.REQUEST_ENTITY_TOO_LARGE.getStatusCode() == status) {
+            LOGGER.info("{} did not accept a batched push ({}), publishing messages individually", targetUrl, status);
+            payloads.forEach(payload -> publishPayload(payload, targetUrl));
+            return;
+        }
+
+        if (Response.Status.OK.getStatusCode() != status && Response.Status.CREATED.getStatusCode() != status) {
+            throw new PublishPayloadException("Unable to push payloads to recipient url " + targetUrl);
+        }
+
+        LOGGER.info("Published {} messages to {}", payloads.size(), targetUrl);
+    }
 }
@@ -17,6 +17,9 @@ import javax.ws.rs.Path;
 import javax.ws.rs.Produces;
 import javax.ws.rs.core.Response;
 import javax.ws.rs.core.Response.Status;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
 import java.util.Objects;
 
 import static javax.ws.rs.core.MediaType.*;
@@ -33,14 +36,24 @@ public class TransactionResource {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(TransactionResource.class);
 
+    /** The largest {@code /pushbatch} body accepted, unless overridden by the tessera.pushbatch.maxBytes property */
+    static final long DEFAULT_MAX_BATCH_BYTES = 64L * 1024 * 1024;
+
     private final TransactionManager delegate;
 
+    private final long maxBatchBytes;
+
     public TransactionResource() {
         this(ServiceFactory.create().transactionManager());
     }
 
     public TransactionResource(TransactionManager delegate) {
+        this(delegate, Long.getLong("tessera.pushbatch.maxBytes", DEFAULT_MAX_BATCH_BYTES));
+    }
+
+    public TransactionResource(TransactionManager delegate, long maxBatchBytes) {
         this.delegate = Objects.requireNonNull(delegate);
+        this.maxBatchBytes = maxBatchBytes;
     }
 
     @ApiOperation("Resend transactions for given key or message hash/recipient")
@@ -81,4 +94,38 @@ public class TransactionResource {
         // TODO: Return the query url not the string of the messageHAsh
         return Response.status(Response.Status.CREATED).entity(Objects.toString(messageHash)).build();
     }
+
+    @ApiOperation(value = "Transmit several encrypted payloads between P2PRestApp Nodes in one request")
+    @ApiResponses({
+        @ApiResponse(code = 201, message = "Payloads stored"),
+        @ApiResponse(code = 400, message = "Malformed batch"),
+        @ApiResponse(code = 413, message = "Batch too large"),
+        @ApiResponse(code = 500, message = "General error")
+    })
+    @POST
+    @Path("pushbatch")
+    @Consumes(APPLICATION_OCTET_STREAM)
+    public Response pushBatch(
+            @ApiParam(
+                            name = "payloads",
+                            required = true,
+                            value = "A count followed by each encoded payload, prefixed with its length.")
+                    final InputStream payloads)
+            throws IOException {
+
+        final List<byte[]> decoded;
+        try {
+            decoded = PushBatchEncoding.decode(payloads, maxBatchBytes);
+        } catch (final PushBatchEncoding.BatchTooLargeException ex) {
+            LOGGER.warn("Rejected push batch request: {}", ex.getMessage());
+            return Response.status(Status.REQUEST_ENTITY_TOO_LARGE).entity(ex.getMessage()).build();
+        }
+
+        LOGGER.debug("Received push request for {} payloads", decoded.size());
+
+        final List<MessageHash> messageHashes = delegate.storePayloads(decoded);
+        LOGGER.debug("Push batch request stored {} payloads", messageHashes.size());
+
+        return Response.status(Response.Status.CREATED).build();
+    }
 }
@@ -0,0 +1,98 @@
+package com.quorum.tessera.p2p;
+
+import com.quorum.tessera.util.exception.DecodingException;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.List;
+
+import static java.util.Collections.emptyList;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.catchThrowable;
+
+public class PushBatchEncodingTest {
+
+    private static final long MAX_SIZE = 1024;
+
+    @Test
+    public void encodedBatchDecodesToSamePayloads() throws IOException {
+        final List<byte[]> payloads = Arrays.asList("FIRST".getBytes(), new byte[0], "THIRD".getBytes());
+
+        final List<byte[]> decoded = decode(PushBatchEncoding.encode(payloads));
+
+        assertThat(decoded).hasSize(3);
+        assertThat(decoded.get(0)).isEqualTo("FIRST".getBytes());
+        assertThat(decoded.get(1)).isEmpty();
+        assertThat(decoded.get(2)).isEqualTo("THIRD".getBytes());
+    }
+
+    @Test
+    public void emptyBatchIsJustACount() throws IOException {
+        final byte[] encoded = PushBatchEncoding.encode(emptyList());
+
+        assertThat(encoded).isEqualTo(new byte[Long.BYTES]);
+        assertThat(decode(encoded)).isEmpty();
+    }
+
+    @Test
+    public void batchOfExactlyTheMaximumSizeIsAccepted() throws IOException {
+        final byte[] encoded = PushBatchEncoding.encode(Arrays.asList(new byte[1000], new byte[0]));
+
+        assertThat(encoded).hasSize((int) MAX_SIZE);
+        assertThat(decode(encoded)).hasSize(2);
+    }
+
+    @Test
+    public void batchLargerThanTheMaximumSizeIsRejected() {
+        final byte[] encoded = PushBatchEncoding.encode(Arrays.asList(new byte[1000], new byte[1]));
+
+        final Throwable throwable = catchThrowable(() -> decode(encoded));
+
+        assertThat(throwable).isInstanceOf(PushBatchEncoding.BatchTooLargeException.class);
+    }
+
+    @Test
+    public void countLargerThanBodyIsRejected() {
+        final byte[] body = ByteBuffer.allocate(Long.BYTES).putLong(Long.MAX_VALUE).array();
+
+        final Throwable throwable = catchThrowable(() -> decode(body));
+
+        assertThat(throwable).isInstanceOf(DecodingException.class);
+    }
+
+    @Test
+    public void countBeyondTheBodyIsRejectedWithoutAllocatingForIt() {
+        final long count = 1L << 30;
+        final byte[] body = ByteBuffer.allocate(Long.BYTES).putLong(count).array();
+
+        final Throwable throwable =
+                catchThrowable(() -> PushBatchEncoding.decode(new ByteArrayInputStream(body), Long.MAX_VALUE));
+
+        assertThat(throwable).isInstanceOf(DecodingException.class);
+    }
+
+    @Test
+    public void payloadLengthLargerThanBodyIsRejected() {
+        final byte[] body = ByteBuffer.allocate(Long.BYTES * 2 + 1).putLong(1).putLong(2).put((byte) 1).array();
+
+        final Throwable throwable = catchThrowable(() -> decode(body));
+
+        assertThat(throwable).isInstanceOf(DecodingException.class);
+    }
+
+    @Test
+    public void trailingDataIsRejected() {
+        final byte[] body = ByteBuffer.allocate(Long.BYTES + 1).putLong(0).put((byte) 1).array();
+
+        final Throwable throwable = catchThrowable(() -> decode(body));
+
+        assertThat(throwable).isInstanceOf(DecodingException.class);
+    }
+
+    private static List<byte[]> decode(final byte[] body) throws IOException {
+        return PushBatchEncoding.decode(new ByteArrayInputStream(body), MAX_SIZE);
+    }
+}
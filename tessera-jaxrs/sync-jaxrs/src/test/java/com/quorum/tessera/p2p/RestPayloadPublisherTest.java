@@ -6,6 +6,7 @@ import com.quorum.tessera.jaxrs.mock.MockClient;
 import com.quorum.tessera.partyinfo.PublishPayloadException;
 import java.net.URI;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import javax.ws.rs.client.Entity;
 import javax.ws.rs.client.Invocation;
@@ -116,4 +117,98 @@ public class RestPayloadPublisherTest {
         }
 
     }
+
+    @Test
+    public void publishPayloadsSendsOneBatch() {
+
+        Invocation.Builder invocationBuilder = mockClient.getWebTarget().getMockInvocationBuilder();
+
+        List<javax.ws.rs.client.Entity> postedEntities = new ArrayList<>();
+
+        doAnswer((invocation) -> {
+            postedEntities.add(invocation.getArgument(0));
+            return Response.created(URI.create("http://location")).build();
+        }).when(invocationBuilder).post(any(javax.ws.rs.client.Entity.class));
+
+        EncodedPayload first = mock(EncodedPayload.class);
+        EncodedPayload second = mock(EncodedPayload.class);
+        when(encoder.encode(first)).thenReturn("FIRST".getBytes());
+        when(encoder.encode(second)).thenReturn("SECOND".getBytes());
+
+        publisher.publishPayloads(Arrays.asList(first, second), "http://someplace.com");
+
+        assertThat(postedEntities).hasSize(1);
+
+        Entity entity = postedEntities.get(0);
+        assertThat(entity.getMediaType()).isEqualTo(MediaType.APPLICATION_OCTET_STREAM_TYPE);
+        assertThat(entity.getEntity())
+                .isEqualTo(PushBatchEncoding.encode(Arrays.asList("FIRST".getBytes(), "SECOND".getBytes())));
+
+        verify(encoder).encode(first);
+        verify(encoder).encode(second);
+        verify(invocationBuilder).post(any(javax.ws.rs.client.Entity.class));
+    }
+
+    @Test
+    public void publishPayloadsFallsBackToSinglePushesWhenBatchIsNotSupported() {
+
+        Invocation.Builder invocationBuilder = mockClient.getWebTarget().getMockInvocationBuilder();
+
+        doReturn(Response.status(Response.Status.NOT_FOUND).build(), Response.ok().build(), Response.ok().build())
+                .when(invocationBuilder)
+                .post(any(javax.ws.rs.client.Entity.class));
+
+        EncodedPayload first = mock(EncodedPayload.class);
+        EncodedPayload second = mock(EncodedPayload.class);
+        when(encoder.encode(first)).thenReturn("FIRST".getBytes());
+        when(encoder.encode(second)).thenReturn("SECOND".getBytes());
+
+        publisher.publishPayloads(Arrays.asList(first, second), "http://someplace.com");
+
+        verify(encoder, times(2)).encode(first);
+        verify(encoder, times(2)).encode(second);
+        verify(invocationBuilder, times(3)).post(any(javax.ws.rs.client.Entity.class));
+    }
+
+    @Test
+    public void publishPayloadsFallsBackToSinglePushesWhenBatchIsTooLarge() {
+
+        Invocation.Builder invocationBuilder = mockClient.getWebTarget().getMockInvocationBuilder();
+
+        doReturn(
+                        Response.status(Response.Status.REQUEST_ENTITY_TOO_LARGE).build(),
+                        Response.ok().build(),
+                        Response.ok().build())
+                .when(invocationBuilder)
+                .post(any(javax.ws.rs.client.Entity.class));
+
+        EncodedPayload first = mock(EncodedPayload.class);
+        EncodedPayload second = mock(EncodedPayload.class);
+        when(encoder.encode(first)).thenReturn("FIRST".getBytes());
+        when(encoder.encode(second)).thenReturn("SECOND".getBytes());
+
+        publisher.publishPayloads(Arrays.asList(first, second), "http://someplace.com");
+
+        verify(encoder, times(2)).encode(first);
+        verify(encoder, times(2)).encode(second);
+        verify(invocationBuilder, times(3)).post(any(javax.ws.rs.client.Entity.class));
+    }
+
+    @Test
+    public void publishPayloadsReturnsError() {
+
+        Invocation.Builder invocationBuilder = mockClient.getWebTarget().getMockInvocationBuilder();
+
+        doReturn(Response.serverError().build()).when(invocationBuilder).post(any(javax.ws.rs.client.Entity.class));
+
+        EncodedPayload encodedPayload = mock(EncodedPayload.class);
+        when(encoder.encode(encodedPayload)).thenReturn("Some Data".getBytes());
+
+        final Throwable throwable =
+                catchThrowable(() -> publisher.publishPayloads(Arrays.asList(encodedPayload), "http://someplace.com"));
+
+        assertThat(throwable).isInstanceOf(PublishPayloadException.class);
+        verify(encoder).encode(encodedPayload);
+        verify(invocationBuilder).post(any(javax.ws.rs.client.Entity.class));
+    }
 }
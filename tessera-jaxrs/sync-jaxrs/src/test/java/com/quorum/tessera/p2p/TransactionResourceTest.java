@@ -1,15 +1,21 @@
 package com.quorum.tessera.p2p;
 
+import com.quorum.tessera.data.MessageHash;
 import com.quorum.tessera.partyinfo.ResendRequest;
 import com.quorum.tessera.partyinfo.ResendResponse;
 import com.quorum.tessera.transaction.TransactionManager;
+import com.quorum.tessera.util.exception.DecodingException;
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 
 import javax.ws.rs.core.Response;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.Arrays;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.catchThrowable;
 import static org.mockito.Mockito.*;
 
 public class TransactionResourceTest {
@@ -39,6 +45,43 @@ public class TransactionResourceTest {
         verify(transactionManager).storePayload(someData);
     }
 
+    @Test
+    public void pushBatch() throws IOException {
+        final byte[] body = PushBatchEncoding.encode(Arrays.asList("ONE".getBytes(), "TWO".getBytes()));
+
+        when(transactionManager.storePayloads(anyList()))
+                .thenReturn(Arrays.asList(new MessageHash("A".getBytes()), new MessageHash("B".getBytes())));
+
+        Response result = transactionResource.pushBatch(new ByteArrayInputStream(body));
+
+        assertThat(result.getStatus()).isEqualTo(201);
+        verify(transactionManager)
+                .storePayloads(
+                        argThat(
+                                l ->
+                                        l.size() == 2
+                                                && Arrays.equals(l.get(0), "ONE".getBytes())
+                                                && Arrays.equals(l.get(1), "TWO".getBytes())));
+    }
+
+    @Test
+    public void pushBatchWithMalformedBodyIsRejected() {
+        final Throwable throwable =
+                catchThrowable(() -> transactionResource.pushBatch(new ByteArrayInputStream(new byte[] {0, 0, 1})));
+
+        assertThat(throwable).isInstanceOf(DecodingException.class);
+    }
+
+    @Test
+    public void pushBatchOverTheMaximumSizeIsRejectedWithoutStoringAnything() throws IOException {
+        final TransactionResource limitedResource = new TransactionResource(transactionManager, 16);
+        final byte[] body = PushBatchEncoding.encode(Arrays.asList("ONE".getBytes(), "TWO".getBytes()));
+
+        final Response result = limitedResource.pushBatch(new ByteArrayInputStream(body));
+
+        assertThat(result.getStatus()).isEqualTo(413);
+    }
+
     @Test
     public void resend() {
 
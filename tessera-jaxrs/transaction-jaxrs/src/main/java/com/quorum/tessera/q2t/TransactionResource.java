@@ -67,6 +67,26 @@ public class TransactionResource {
         return Response.status(Status.CREATED).type(APPLICATION_JSON).location(location).entity(response).build();
     }
 
+    @ApiOperation(value = "Send several private transaction payloads in one request")
+    @ApiResponses({
+        @ApiResponse(code = 200, response = SendBatchResponse.class, message = "Hashes of the sent transactions"),
+        @ApiResponse(code = 400, message = "For unknown and unknown keys")
+    })
+    @POST
+    @Path("sendbatch")
+    @Consumes(APPLICATION_JSON)
+    @Produces(APPLICATION_JSON)
+    public Response sendBatch(
+            @ApiParam(name = "sendBatchRequest", required = true) @NotNull @Valid
+                    final SendBatchRequest sendBatchRequest) {
+
+        final SendBatchResponse response = delegate.sendBatch(sendBatchRequest);
+
+        LOGGER.debug("Sent batch of {} transactions", response.getKeys().size());
+
+        return Response.status(Status.OK).type(APPLICATION_JSON).entity(response).build();
+    }
+
     @ApiOperation(value = "Send private raw transaction payload")
     @ApiResponses({
         @ApiResponse(code = 200, response = SendResponse.class, message = "Send response"),
@@ -173,6 +193,28 @@ public class TransactionResource {
         return Response.status(Status.OK).type(APPLICATION_JSON).entity(response).build();
     }
 
+    @ApiOperation(value = "Returns several decrypted payloads back to Quorum in one request")
+    @ApiResponses({
+        @ApiResponse(
+                code = 200,
+                response = ReceiveBatchResponse.class,
+                message = "Decrypted payloads, with transactions that are not stored marked as not found")
+    })
+    @POST
+    @Path("receivebatch")
+    @Consumes(APPLICATION_JSON)
+    @Produces(APPLICATION_JSON)
+    public Response receiveBatch(
+            @ApiParam(name = "receiveBatchRequest", required = true) @NotNull @Valid
+                    final ReceiveBatchRequest receiveBatchRequest) {
+
+        final ReceiveBatchResponse response = delegate.receiveBatch(receiveBatchRequest);
+
+        LOGGER.debug("Received batch of {} transactions", response.getPayloads().size());
+
+        return Response.status(Status.OK).type(APPLICATION_JSON).entity(response).build();
+    }
+
     @ApiOperation(value = "Submit keys to retrieve payload and decrypt it")
     @ApiResponses({@ApiResponse(code = 200, message = "Raw payload", response = byte[].class)})
     @GET
@@ -9,6 +9,7 @@ import org.junit.Test;
 import javax.ws.rs.core.Response;
 import java.io.UnsupportedEncodingException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Base64;
 import java.util.List;
 
@@ -51,6 +52,26 @@ public class TransactionResourceTest {
         verify(transactionManager).receive(any(ReceiveRequest.class));
     }
 
+    @Test
+    public void receiveBatch() {
+
+        ReceiveBatchRequest receiveBatchRequest = new ReceiveBatchRequest();
+        receiveBatchRequest.setKeys(Arrays.asList("KEY1", "KEY2"));
+
+        ReceiveBatchResponse receiveBatchResponse =
+                new ReceiveBatchResponse(
+                        Arrays.asList(
+                                new ReceiveBatchEntry("KEY1", "PAYLOAD".getBytes()),
+                                new ReceiveBatchEntry("KEY2", null)));
+        when(transactionManager.receiveBatch(receiveBatchRequest)).thenReturn(receiveBatchResponse);
+
+        Response result = transactionResource.receiveBatch(receiveBatchRequest);
+        assertThat(result.getStatus()).isEqualTo(200);
+        assertThat(result.getEntity()).isSameAs(receiveBatchResponse);
+
+        verify(transactionManager).receiveBatch(receiveBatchRequest);
+    }
+
     @Test
     public void receiveRaw() {
 
@@ -81,6 +102,25 @@ public class TransactionResourceTest {
         verify(transactionManager).send(any(SendRequest.class));
     }
 
+    @Test
+    public void sendBatch() {
+
+        SendRequest sendRequest = new SendRequest();
+        sendRequest.setPayload(Base64.getEncoder().encode("PAYLOAD".getBytes()));
+
+        SendBatchRequest sendBatchRequest = new SendBatchRequest();
+        sendBatchRequest.setRequests(Arrays.asList(sendRequest, sendRequest));
+
+        SendBatchResponse sendBatchResponse = new SendBatchResponse(Arrays.asList("KEY1", "KEY2"));
+        when(transactionManager.sendBatch(sendBatchRequest)).thenReturn(sendBatchResponse);
+
+        Response result = transactionResource.sendBatch(sendBatchRequest);
+        assertThat(result.getStatus()).isEqualTo(200);
+        assertThat(result.getEntity()).isSameAs(sendBatchResponse);
+
+        verify(transactionManager).sendBatch(sendBatchRequest);
+    }
+
     @Test
     public void sendSignedTransaction() throws UnsupportedEncodingException {
         SendResponse sendResponse = new SendResponse("KEY");
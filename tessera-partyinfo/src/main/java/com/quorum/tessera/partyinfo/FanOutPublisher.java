@@ -0,0 +1,28 @@
+package com.quorum.tessera.partyinfo;
+
+import com.quorum.tessera.enclave.EncodedPayload;
+import com.quorum.tessera.encryption.PublicKey;
+
+import java.util.List;
+import java.util.Map;
+
+/** Publishes a set of per-recipient payloads concurrently, rather than one after another */
+public interface FanOutPublisher {
+
+    /**
+     * Publishes each payload to its recipient, waiting until every push has completed, failed or timed out
+     *
+     * @param payloads the pre-formatted payloads to publish, keyed by the recipient they are for
+     * @return the outcome for each recipient, in the iteration order of the given map
+     */
+    List<PublishResult> publish(Map<PublicKey, EncodedPayload> payloads);
+
+    /**
+     * Publishes several payloads to each recipient. The payloads for a single recipient are pushed together as one
+     * batch, while different recipients are published to concurrently.
+     *
+     * @param payloads the pre-formatted payloads to publish, keyed by the recipient they are for
+     * @return the outcome for each recipient, which is a failure if any of its payloads could not be pushed
+     */
+    List<PublishResult> publishAll(Map<PublicKey, List<EncodedPayload>> payloads);
+}
@@ -0,0 +1,161 @@
+package com.quorum.tessera.partyinfo;
+
+import com.quorum.tessera.enclave.EncodedPayload;
+import com.quorum.tessera.encryption.PublicKey;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Submits each push to a bounded executor so that the time taken to publish a transaction tracks the slowest
+ * recipient, instead of the sum of all of them.
+ *
+ * <p>Each recipient is given {@code recipientTimeout} milliseconds to complete, counted from when its push starts
+ * running rather than from when it was submitted, so time spent queued behind pushes of other transactions in the
+ * shared executor does not count against it. Separately, no recipient is waited on past {@code deadline} milliseconds
+ * from the start of the call, whether its push has started or not. Pushes that overrun are cancelled and reported as
+ * failures.
+ */
+public class FanOutPublisherImpl implements FanOutPublisher {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(FanOutPublisherImpl.class);
+
+    private final PartyInfoService partyInfoService;
+
+    private final ExecutorService executor;
+
+    private final long recipientTimeout;
+
+    private final long deadline;
+
+    public FanOutPublisherImpl(
+            final PartyInfoService partyInfoService,
+            final ExecutorService executor,
+            final long recipientTimeout,
+            final long deadline) {
+        this.partyInfoService = Objects.requireNonNull(partyInfoService);
+        this.executor = Objects.requireNonNull(executor);
+        this.recipientTimeout = recipientTimeout;
+        this.deadline = deadline;
+    }
+
+    @Override
+    public List<PublishResult> publish(final Map<PublicKey, EncodedPayload> payloads) {
+
+        final Map<PublicKey, Runnable> pushes = new LinkedHashMap<>();
+        payloads.forEach(
+                (recipient, payload) ->
+                        pushes.put(recipient, () -> partyInfoService.publishPayload(payload, recipient)));
+
+        return this.submitAndAwait(pushes);
+    }
+
+    @Override
+    public List<PublishResult> publishAll(final Map<PublicKey, List<EncodedPayload>> payloads) {
+
+        final Map<PublicKey, Runnable> pushes = new LinkedHashMap<>();
+        payloads.forEach(
+                (recipient, recipientPayloads) ->
+                        pushes.put(recipient, () -> partyInfoService.publishPayloads(recipientPayloads, recipient)));
+
+        return this.submitAndAwait(pushes);
+    }
+
+    private List<PublishResult> submitAndAwait(final Map<PublicKey, Runnable> pushes) {
+
+        final long overallCutOff = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(deadline);
+
+        final Map<PublicKey, Push> pending = new LinkedHashMap<>();
+        pushes.forEach(
+                (recipient, push) -> {
+                    final Push timed = new Push(push);
+                    timed.future = executor.submit(timed);
+                    pending.put(recipient, timed);
+                });
+
+        final List<PublishResult> results = new ArrayList<>(pending.size());
+        for (final Map.Entry<PublicKey, Push> entry : pending.entrySet()) {
+            results.add(this.await(entry.getKey(), entry.getValue(), overallCutOff));
+        }
+
+        return results;
+    }
+
+    private PublishResult await(final PublicKey recipient, final Push push, final long overallCutOff) {
+        try {
+            while (true) {
+                final long remaining = push.cutOff(overallCutOff) - System.nanoTime();
+                if (remaining <= 0) {
+                    throw new TimeoutException();
+                }
+
+                // a push that is still queued is looked at again every so often, to pick up the time it starts
+                final long wait = push.started ? remaining : Math.min(remaining, this.queuedCheckInterval());
+
+                try {
+                    push.future.get(wait, TimeUnit.NANOSECONDS);
+                    return PublishResult.success(recipient);
+                } catch (final TimeoutException ex) {
+                    // the cut-off is worked out again, as a push that was queued may have started since
+                }
+            }
+        } catch (final ExecutionException ex) {
+            LOGGER.warn("Unable to publish payload to recipient {}", recipient.encodeToBase64());
+            return PublishResult.failure(recipient, ex.getCause());
+        } catch (final TimeoutException ex) {
+            LOGGER.warn("Timed out publishing payload to recipient {}", recipient.encodeToBase64());
+            push.future.cancel(true);
+            return PublishResult.failure(
+                    recipient, new PublishPayloadException("Timed out publishing to " + recipient.encodeToBase64()));
+        } catch (final InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            push.future.cancel(true);
+            return PublishResult.failure(recipient, ex);
+        }
+    }
+
+    private long queuedCheckInterval() {
+        return Math.max(1L, TimeUnit.MILLISECONDS.toNanos(recipientTimeout) / 10);
+    }
+
+    /** A push that records when it started running, which is when its recipient's timeout starts */
+    private final class Push implements Runnable {
+
+        private final Runnable push;
+
+        private volatile boolean started;
+
+        private volatile long startedAt;
+
+        private Future<?> future;
+
+        private Push(final Runnable push) {
+            this.push = push;
+        }
+
+        @Override
+        public void run() {
+            this.startedAt = System.nanoTime();
+            this.started = true;
+            push.run();
+        }
+
+        /** The time to give up on the push, which is only the overall deadline until it has started */
+        private long cutOff(final long overallCutOff) {
+            if (!started) {
+                return overallCutOff;
+            }
+            return Math.min(startedAt + TimeUnit.MILLISECONDS.toNanos(recipientTimeout), overallCutOff);
+        }
+    }
+}
@@ -4,6 +4,8 @@ import com.quorum.tessera.enclave.EncodedPayload;
 import com.quorum.tessera.partyinfo.model.PartyInfo;
 import com.quorum.tessera.encryption.PublicKey;
 
+import java.util.List;
+
 public interface PartyInfoService {
 
     /**
@@ -35,4 +37,14 @@ public interface PartyInfoService {
      * @throws KeyNotFoundException if the target public key is not known
      */
     void publishPayload(EncodedPayload payload, PublicKey recipientKey);
+
+    /**
+     * Publishes several payloads to the same recipient, looking up its node once and sending them as a batch where the
+     * node supports it
+     *
+     * @param payloads the pre-formatted payloads to publish
+     * @param recipientKey the target public key to publish the payloads to
+     * @throws KeyNotFoundException if the target public key is not known
+     */
+    void publishPayloads(List<EncodedPayload> payloads, PublicKey recipientKey);
 }
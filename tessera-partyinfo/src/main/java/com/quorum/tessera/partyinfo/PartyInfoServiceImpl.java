@@ -12,6 +12,7 @@ import com.quorum.tessera.partyinfo.model.Recipient;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
@@ -128,16 +129,7 @@ public class PartyInfoServiceImpl implements PartyInfoService {
             return;
         }
 
-        final Recipient retrievedRecipientFromStore =
-                partyInfoStore.getPartyInfo().getRecipients().stream()
-                        .filter(recipient -> recipientKey.equals(recipient.getKey()))
-                        .findAny()
-                        .orElseThrow(
-                                () ->
-                                        new KeyNotFoundException(
-                                                "Recipient not found for key: " + recipientKey.encodeToBase64()));
-
-        final String targetUrl = retrievedRecipientFromStore.getUrl();
+        final String targetUrl = this.urlOf(recipientKey);
 
         LOGGER.info("Publishing message to {}", targetUrl);
 
@@ -146,6 +138,40 @@ public class PartyInfoServiceImpl implements PartyInfoService {
         LOGGER.info("Published to {}", targetUrl);
     }
 
+    @Override
+    public void publishPayloads(final List<EncodedPayload> payloads, final PublicKey recipientKey) {
+
+        if (payloads.isEmpty()) {
+            return;
+        }
+
+        if (enclave.getPublicKeys().contains(recipientKey)) {
+            // we are trying to send something to ourselves - don't do it
+            LOGGER.debug(
+                    "Trying to send messages to ourselves with key {}, not publishing", recipientKey.encodeToBase64());
+            return;
+        }
+
+        final String targetUrl = this.urlOf(recipientKey);
+
+        LOGGER.info("Publishing {} messages to {}", payloads.size(), targetUrl);
+
+        payloadPublisher.publishPayloads(payloads, targetUrl);
+
+        LOGGER.info("Published {} messages to {}", payloads.size(), targetUrl);
+    }
+
+    private String urlOf(final PublicKey recipientKey) {
+        return partyInfoStore.getPartyInfo().getRecipients().stream()
+                .filter(recipient -> recipientKey.equals(recipient.getKey()))
+                .findAny()
+                .map(Recipient::getUrl)
+                .orElseThrow(
+                        () ->
+                                new KeyNotFoundException(
+                                        "Recipient not found for key: " + recipientKey.encodeToBase64()));
+    }
+
     boolean validateKeysToUrls(final PartyInfo existingPartyInfo, final PartyInfo newPartyInfo) {
 
         final Map<PublicKey, String> existingRecipientKeyUrlMap =
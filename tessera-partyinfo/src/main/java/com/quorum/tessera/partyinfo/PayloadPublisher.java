@@ -2,6 +2,8 @@ package com.quorum.tessera.partyinfo;
 
 import com.quorum.tessera.enclave.EncodedPayload;
 
+import java.util.List;
+
 /** Publishes messages from one node to another */
 public interface PayloadPublisher {
 
@@ -13,4 +15,15 @@ public interface PayloadPublisher {
      * @param targetUrl the target public key to publish the payload to
      */
     void publishPayload(EncodedPayload payload, String targetUrl);
+
+    /**
+     * Publishes several payloads to the same node. By default each payload is published on its own, but
+     * implementations may send them together in a single request
+     *
+     * @param payloads the pre-formatted payloads to publish, in the order they should be stored
+     * @param targetUrl the url of the node to publish the payloads to
+     */
+    default void publishPayloads(final List<EncodedPayload> payloads, final String targetUrl) {
+        payloads.forEach(payload -> publishPayload(payload, targetUrl));
+    }
 }
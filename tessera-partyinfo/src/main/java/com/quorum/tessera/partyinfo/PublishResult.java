@@ -0,0 +1,39 @@
+package com.quorum.tessera.partyinfo;
+
+import com.quorum.tessera.encryption.PublicKey;
+
+import java.util.Objects;
+import java.util.Optional;
+
+/** The outcome of publishing a payload to a single recipient */
+public class PublishResult {
+
+    private final PublicKey recipient;
+
+    private final Throwable cause;
+
+    private PublishResult(final PublicKey recipient, final Throwable cause) {
+        this.recipient = Objects.requireNonNull(recipient);
+        this.cause = cause;
+    }
+
+    public static PublishResult success(final PublicKey recipient) {
+        return new PublishResult(recipient, null);
+    }
+
+    public static PublishResult failure(final PublicKey recipient, final Throwable cause) {
+        return new PublishResult(recipient, Objects.requireNonNull(cause));
+    }
+
+    public PublicKey getRecipient() {
+        return recipient;
+    }
+
+    public boolean isSuccess() {
+        return cause == null;
+    }
+
+    public Optional<Throwable> getCause() {
+        return Optional.ofNullable(cause);
+    }
+}
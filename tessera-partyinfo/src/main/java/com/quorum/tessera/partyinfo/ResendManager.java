@@ -1,5 +1,7 @@
 package com.quorum.tessera.partyinfo;
 
+import java.util.List;
+
 /** Handles resend requests where the response has one of our own keys as the sender */
 public interface ResendManager {
 
@@ -10,4 +12,12 @@ public interface ResendManager {
      * @param message the message to be decoded and stored
      */
     void acceptOwnMessage(byte[] message);
+
+    /**
+     * Accepts several of our own messages as part of the same transaction, in the same way as {@link
+     * #acceptOwnMessage} does for each of them
+     *
+     * @param messages the messages to be decoded and stored
+     */
+    void acceptOwnMessages(List<byte[]> messages);
 }
@@ -4,17 +4,36 @@ import com.quorum.tessera.data.EncryptedTransaction;
 import com.quorum.tessera.data.EncryptedTransactionDAO;
 import com.quorum.tessera.data.MessageHash;
 import com.quorum.tessera.data.MessageHashFactory;
+import com.quorum.tessera.data.TransactionCallbacks;
 import com.quorum.tessera.enclave.Enclave;
 import com.quorum.tessera.enclave.EncodedPayload;
 import com.quorum.tessera.enclave.PayloadEncoder;
 import com.quorum.tessera.encryption.PublicKey;
 
 import javax.transaction.Transactional;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.SortedSet;
+import java.util.TreeSet;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static java.util.Collections.singletonList;
 
 public class ResendManagerImpl implements ResendManager {
 
+    /**
+     * The number of locks that messages are spread across. Messages for the same transaction always share a lock, so
+     * their recipients are merged one at a time, while unrelated messages rarely contend. A lock is held until the
+     * transaction that merged the message has committed, so the next merge always reads the previous one's result.
+     */
+    static final int LOCK_STRIPES = 256;
+
     private final EncryptedTransactionDAO encryptedTransactionDAO;
 
     private final PayloadEncoder payloadEncoder;
@@ -23,6 +42,8 @@ public class ResendManagerImpl implements ResendManager {
 
     private final MessageHashFactory messageHashFactory = MessageHashFactory.create();
 
+    private final Lock[] locks = new Lock[LOCK_STRIPES];
+
     public ResendManagerImpl(EncryptedTransactionDAO encryptedTransactionDAO, Enclave enclave) {
         this(encryptedTransactionDAO, PayloadEncoder.create(), enclave);
     }
@@ -31,16 +52,63 @@ public class ResendManagerImpl implements ResendManager {
         this.encryptedTransactionDAO = dao;
         this.payloadEncoder = encoder;
         this.enclave = enclave;
+
+        for (int i = 0; i < locks.length; i++) {
+            locks[i] = new ReentrantLock();
+        }
+    }
+
+    Lock lockFor(final MessageHash transactionHash) {
+        return locks[stripeOf(transactionHash)];
+    }
+
+    private int stripeOf(final MessageHash transactionHash) {
+        return Math.floorMod(transactionHash.hashCode(), locks.length);
     }
 
-    // TODO: synchronize based on messagehash, so different message don't lock each other
     @Transactional
-    public synchronized void acceptOwnMessage(final byte[] message) {
+    public void acceptOwnMessage(final byte[] message) {
+        this.acceptOwnMessages(singletonList(message));
+    }
 
-        final EncodedPayload payload = payloadEncoder.decode(message);
+    /**
+     * Merges each message into its stored transaction. The locks for the whole batch are taken before any message is
+     * merged, and always in the order of the stripes rather than of the messages, so that two batches containing the
+     * same transactions cannot each be holding a lock that the other is waiting for.
+     */
+    @Override
+    @Transactional
+    public void acceptOwnMessages(final List<byte[]> messages) {
+
+        final List<EncodedPayload> payloads = new ArrayList<>(messages.size());
+        final List<MessageHash> transactionHashes = new ArrayList<>(messages.size());
+        for (final byte[] message : messages) {
+            final EncodedPayload payload = payloadEncoder.decode(message);
+            payloads.add(payload);
+            transactionHashes.add(this.ownTransactionHash(payload));
+        }
+
+        final SortedSet<Integer> stripes =
+                transactionHashes.stream().map(this::stripeOf).collect(Collectors.toCollection(TreeSet::new));
 
-        // check the payload can be decrpyted to ensure it isn't rubbish being sent to us
-        final byte[] newDecrypted = enclave.unencryptTransaction(payload, null);
+        // only the merge into the stored transaction needs to be exclusive, and only against the same transaction,
+        // but it stays exclusive until the merged payload is committed rather than just until it is written
+        final List<Lock> held = new ArrayList<>(stripes.size());
+        try {
+            for (final int stripe : stripes) {
+                locks[stripe].lock();
+                held.add(locks[stripe]);
+            }
+
+            for (int i = 0; i < payloads.size(); i++) {
+                this.merge(transactionHashes.get(i), payloads.get(i));
+            }
+        } finally {
+            held.forEach(lock -> TransactionCallbacks.afterCompletion(lock::unlock));
+        }
+    }
+
+    private MessageHash ownTransactionHash(final EncodedPayload payload) {
 
         final MessageHash transactionHash =
                 Optional.of(payload)
@@ -54,6 +122,13 @@ public class ResendManagerImpl implements ResendManager {
                     "Message " + transactionHash.toString() + " does not have one the nodes own keys as a sender");
         }
 
+        return transactionHash;
+    }
+
+    private void merge(final MessageHash transactionHash, final EncodedPayload payload) {
+
+        final PublicKey sender = payload.getSenderKey();
+
         // this is a tx which we created
         final Optional<EncryptedTransaction> tx = this.encryptedTransactionDAO.retrieveByHash(transactionHash);
 
@@ -64,26 +139,44 @@ public class ResendManagerImpl implements ResendManager {
             final EncodedPayload existing = payloadEncoder.decode(encodedPayload);
 
             if (!existing.getRecipientKeys().contains(payload.getRecipientKeys().get(0))) {
-                // lets compare it against another message received before
-                final byte[] oldDecrypted = enclave.unencryptTransaction(existing, null);
+                // the same ciphertext and nonce under the same master key can only be the message we sent before,
+                // so comparing the master keys is enough, and neither ciphertext needs to be decrypted
                 final boolean same =
-                        Arrays.equals(newDecrypted, oldDecrypted)
-                                && Arrays.equals(payload.getCipherText(), existing.getCipherText());
+                        Arrays.equals(payload.getCipherText(), existing.getCipherText())
+                                && Objects.equals(payload.getCipherTextNonce(), existing.getCipherTextNonce())
+                                && enclave.hasSameMasterKey(payload, existing);
 
                 if (!same) {
                     throw new IllegalArgumentException("Invalid payload provided");
                 }
 
-                existing.getRecipientKeys().add(payload.getRecipientKeys().get(0));
+                final PublicKey recipient = payload.getRecipientKeys().get(0);
+                existing.getRecipientKeys().add(recipient);
                 existing.getRecipientBoxes().add(payload.getRecipientBoxes().get(0));
 
                 tx.get().setEncodedPayload(payloadEncoder.encode(existing));
 
-                this.encryptedTransactionDAO.save(tx.get());
+                this.encryptedTransactionDAO.update(tx.get());
+
+                // a transaction stored before the recipient index existed has no keys recorded against it, and once
+                // it has any the indexer passes over it, so every party that is still missing is recorded here
+                final List<PublicKey> recorded = this.encryptedTransactionDAO.retrieveRecipients(transactionHash);
+                final List<PublicKey> missing =
+                        Stream.concat(existing.getRecipientKeys().stream(), Stream.of(existing.getSenderKey()))
+                                .filter(Objects::nonNull)
+                                .distinct()
+                                .filter(key -> !recorded.contains(key))
+                                .collect(Collectors.toList());
+                if (!missing.isEmpty()) {
+                    this.encryptedTransactionDAO.saveRecipients(tx.get(), missing);
+                }
             }
 
         } else {
 
+            // check the payload can be decrpyted to ensure it isn't rubbish being sent to us
+            enclave.unencryptTransaction(payload, null);
+
             // we need to recreate this
             payload.getRecipientKeys().add(sender);
             byte[] newbox = enclave.createNewRecipientBox(payload, sender);
@@ -91,7 +184,12 @@ public class ResendManagerImpl implements ResendManager {
 
             final byte[] encoded = payloadEncoder.encode(payload);
 
-            this.encryptedTransactionDAO.save(new EncryptedTransaction(transactionHash, encoded));
+            final EncryptedTransaction newTransaction =
+                    new EncryptedTransaction(transactionHash, encoded, sender.getKeyBytes());
+
+            this.encryptedTransactionDAO.save(newTransaction);
+            this.encryptedTransactionDAO.saveRecipients(
+                    newTransaction, payload.getRecipientKeys().stream().distinct().collect(Collectors.toList()));
         }
     }
 }
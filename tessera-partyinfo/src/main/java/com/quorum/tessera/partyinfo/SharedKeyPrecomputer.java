@@ -0,0 +1,56 @@
+package com.quorum.tessera.partyinfo;
+
+import com.quorum.tessera.enclave.Enclave;
+import com.quorum.tessera.encryption.PublicKey;
+import com.quorum.tessera.partyinfo.model.Recipient;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Collections;
+import java.util.Objects;
+import java.util.Set;
+
+import static java.util.stream.Collectors.toSet;
+
+/**
+ * Passes the keys of all discovered recipients to the Enclave so that it can compute the shared keys for them ahead of
+ * the first transaction. The Enclave is only called when new keys have been discovered since the last run.
+ */
+public class SharedKeyPrecomputer implements Runnable {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(SharedKeyPrecomputer.class);
+
+    private final Enclave enclave;
+
+    private final PartyInfoStore partyInfoStore;
+
+    private final boolean enabled;
+
+    private Set<PublicKey> precomputedKeys = Collections.emptySet();
+
+    public SharedKeyPrecomputer(final Enclave enclave, final PartyInfoStore partyInfoStore, final boolean enabled) {
+        this.enclave = Objects.requireNonNull(enclave);
+        this.partyInfoStore = Objects.requireNonNull(partyInfoStore);
+        this.enabled = enabled;
+    }
+
+    @Override
+    public void run() {
+        if (!enabled) {
+            return;
+        }
+
+        final Set<PublicKey> knownKeys =
+                partyInfoStore.getPartyInfo().getRecipients().stream().map(Recipient::getKey).collect(toSet());
+
+        if (precomputedKeys.containsAll(knownKeys)) {
+            return;
+        }
+
+        LOGGER.debug("Precomputing shared keys for {} known recipients", knownKeys.size());
+
+        enclave.precomputeSharedKeys(knownKeys);
+
+        this.precomputedKeys = knownKeys;
+    }
+}
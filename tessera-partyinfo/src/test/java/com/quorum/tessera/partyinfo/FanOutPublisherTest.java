@@ -0,0 +1,216 @@
+package com.quorum.tessera.partyinfo;
+
+import com.quorum.tessera.enclave.EncodedPayload;
+import com.quorum.tessera.encryption.PublicKey;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+public class FanOutPublisherTest {
+
+    private PartyInfoService partyInfoService;
+
+    private ExecutorService executor;
+
+    private FanOutPublisher fanOutPublisher;
+
+    @Before
+    public void onSetUp() {
+        this.partyInfoService = mock(PartyInfoService.class);
+        this.executor = Executors.newFixedThreadPool(4);
+        this.fanOutPublisher = new FanOutPublisherImpl(partyInfoService, executor, 1000L, 2000L);
+    }
+
+    @After
+    public void onTearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void publishesToEveryRecipient() {
+        final PublicKey first = PublicKey.from("FIRST".getBytes());
+        final PublicKey second = PublicKey.from("SECOND".getBytes());
+        final EncodedPayload firstPayload = mock(EncodedPayload.class);
+        final EncodedPayload secondPayload = mock(EncodedPayload.class);
+
+        final Map<PublicKey, EncodedPayload> payloads = new LinkedHashMap<>();
+        payloads.put(first, firstPayload);
+        payloads.put(second, secondPayload);
+
+        final List<PublishResult> results = fanOutPublisher.publish(payloads);
+
+        assertThat(results).hasSize(2);
+        assertThat(results).allMatch(PublishResult::isSuccess);
+        assertThat(results.get(0).getRecipient()).isEqualTo(first);
+        assertThat(results.get(1).getRecipient()).isEqualTo(second);
+
+        verify(partyInfoService).publishPayload(firstPayload, first);
+        verify(partyInfoService).publishPayload(secondPayload, second);
+        verifyNoMoreInteractions(partyInfoService);
+    }
+
+    @Test
+    public void publishAllPushesEachRecipientsPayloadsAsOneBatch() {
+        final PublicKey first = PublicKey.from("FIRST".getBytes());
+        final PublicKey second = PublicKey.from("SECOND".getBytes());
+        final EncodedPayload payloadOne = mock(EncodedPayload.class);
+        final EncodedPayload payloadTwo = mock(EncodedPayload.class);
+        final EncodedPayload payloadThree = mock(EncodedPayload.class);
+
+        final Map<PublicKey, List<EncodedPayload>> payloads = new LinkedHashMap<>();
+        payloads.put(first, Arrays.asList(payloadOne, payloadTwo));
+        payloads.put(second, Arrays.asList(payloadThree));
+
+        final List<PublishResult> results = fanOutPublisher.publishAll(payloads);
+
+        assertThat(results).hasSize(2);
+        assertThat(results).allMatch(PublishResult::isSuccess);
+        assertThat(results.get(0).getRecipient()).isEqualTo(first);
+        assertThat(results.get(1).getRecipient()).isEqualTo(second);
+
+        verify(partyInfoService).publishPayloads(Arrays.asList(payloadOne, payloadTwo), first);
+        verify(partyInfoService).publishPayloads(Arrays.asList(payloadThree), second);
+        verifyNoMoreInteractions(partyInfoService);
+    }
+
+    @Test
+    public void publishAllReportsRecipientAsFailedIfItsBatchFails() {
+        final PublicKey recipient = PublicKey.from("RECIPIENT".getBytes());
+        final EncodedPayload good = mock(EncodedPayload.class);
+        final EncodedPayload bad = mock(EncodedPayload.class);
+
+        final PublishPayloadException exception = new PublishPayloadException("OUCH");
+        doThrow(exception).when(partyInfoService).publishPayloads(Arrays.asList(good, bad), recipient);
+
+        final Map<PublicKey, List<EncodedPayload>> payloads = new LinkedHashMap<>();
+        payloads.put(recipient, Arrays.asList(good, bad));
+
+        final List<PublishResult> results = fanOutPublisher.publishAll(payloads);
+
+        assertThat(results).hasSize(1);
+        assertThat(results.get(0).isSuccess()).isFalse();
+        assertThat(results.get(0).getCause()).containsSame(exception);
+    }
+
+    @Test
+    public void failedRecipientIsReportedWithoutAffectingOthers() {
+        final PublicKey good = PublicKey.from("GOOD".getBytes());
+        final PublicKey bad = PublicKey.from("BAD".getBytes());
+        final EncodedPayload goodPayload = mock(EncodedPayload.class);
+        final EncodedPayload badPayload = mock(EncodedPayload.class);
+
+        final PublishPayloadException exception = new PublishPayloadException("OUCH");
+        doThrow(exception).when(partyInfoService).publishPayload(badPayload, bad);
+
+        final Map<PublicKey, EncodedPayload> payloads = new LinkedHashMap<>();
+        payloads.put(bad, badPayload);
+        payloads.put(good, goodPayload);
+
+        final List<PublishResult> results = fanOutPublisher.publish(payloads);
+
+        assertThat(results).hasSize(2);
+        assertThat(results.get(0).isSuccess()).isFalse();
+        assertThat(results.get(0).getCause()).containsSame(exception);
+        assertThat(results.get(1).isSuccess()).isTrue();
+        assertThat(results.get(1).getCause()).isEmpty();
+    }
+
+    @Test
+    public void slowRecipientTimesOut() throws Exception {
+        final CountDownLatch latch = new CountDownLatch(1);
+        final PublicKey slow = PublicKey.from("SLOW".getBytes());
+        final EncodedPayload payload = mock(EncodedPayload.class);
+
+        doAnswer(
+                        invocation -> {
+                            latch.await(10, TimeUnit.SECONDS);
+                            return null;
+                        })
+                .when(partyInfoService)
+                .publishPayload(any(EncodedPayload.class), any(PublicKey.class));
+
+        final FanOutPublisher publisher = new FanOutPublisherImpl(partyInfoService, executor, 50L, 100L);
+
+        final Map<PublicKey, EncodedPayload> payloads = new LinkedHashMap<>();
+        payloads.put(slow, payload);
+
+        final List<PublishResult> results = publisher.publish(payloads);
+        latch.countDown();
+
+        assertThat(results).hasSize(1);
+        assertThat(results.get(0).isSuccess()).isFalse();
+        assertThat(results.get(0).getCause()).containsInstanceOf(PublishPayloadException.class);
+    }
+
+    @Test
+    public void timeSpentQueuedDoesNotCountAgainstARecipient() {
+        final ExecutorService single = Executors.newSingleThreadExecutor();
+        try {
+            doAnswer(
+                            invocation -> {
+                                TimeUnit.MILLISECONDS.sleep(150);
+                                return null;
+                            })
+                    .when(partyInfoService)
+                    .publishPayload(any(EncodedPayload.class), any(PublicKey.class));
+
+            final FanOutPublisher publisher = new FanOutPublisherImpl(partyInfoService, single, 200L, 5000L);
+
+            // each push takes most of the recipient timeout, so the later ones only finish in time if the clock
+            // starts when they run
+            final Map<PublicKey, EncodedPayload> payloads = new LinkedHashMap<>();
+            for (int i = 0; i < 10; i++) {
+                payloads.put(PublicKey.from(new byte[] {(byte) i}), mock(EncodedPayload.class));
+            }
+
+            final List<PublishResult> results = publisher.publish(payloads);
+
+            assertThat(results).hasSize(10).allMatch(PublishResult::isSuccess);
+        } finally {
+            single.shutdownNow();
+        }
+    }
+
+    @Test
+    public void queuedRecipientTimesOutAtTheDeadline() {
+        final ExecutorService single = Executors.newSingleThreadExecutor();
+        final CountDownLatch latch = new CountDownLatch(1);
+        try {
+            doAnswer(
+                            invocation -> {
+                                latch.await(10, TimeUnit.SECONDS);
+                                return null;
+                            })
+                    .when(partyInfoService)
+                    .publishPayload(any(EncodedPayload.class), any(PublicKey.class));
+
+            final FanOutPublisher publisher = new FanOutPublisherImpl(partyInfoService, single, 5000L, 100L);
+
+            final Map<PublicKey, EncodedPayload> payloads = new LinkedHashMap<>();
+            payloads.put(PublicKey.from("FIRST".getBytes()), mock(EncodedPayload.class));
+            payloads.put(PublicKey.from("QUEUED".getBytes()), mock(EncodedPayload.class));
+
+            final long start = System.nanoTime();
+            final List<PublishResult> results = publisher.publish(payloads);
+            latch.countDown();
+
+            assertThat(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start)).isLessThan(5000L);
+            assertThat(results).hasSize(2).noneMatch(PublishResult::isSuccess);
+        } finally {
+            single.shutdownNow();
+        }
+    }
+}
@@ -258,6 +258,45 @@ public class PartyInfoServiceTest {
         }
     }
 
+    @Test
+    public void publishPayloadsLooksUpRecipientOnce() {
+
+        when(enclave.getPublicKeys()).thenReturn(singleton(PublicKey.from("Key Data".getBytes())));
+
+        PublicKey recipientKey = PublicKey.from("Some Key Data".getBytes());
+
+        PartyInfo partyInfo = mock(PartyInfo.class);
+        when(partyInfo.getRecipients()).thenReturn(singleton(new Recipient(recipientKey, "http://somehost.com")));
+        when(partyInfoStore.getPartyInfo()).thenReturn(partyInfo);
+
+        List<EncodedPayload> payloads = Arrays.asList(mock(EncodedPayload.class), mock(EncodedPayload.class));
+
+        partyInfoService.publishPayloads(payloads, recipientKey);
+
+        verify(payloadPublisher).publishPayloads(payloads, "http://somehost.com");
+        verify(partyInfoStore).getPartyInfo();
+    }
+
+    @Test
+    public void publishPayloadsDoesntPublishToSender() {
+
+        PublicKey recipientKey = PublicKey.from("Some Key Data".getBytes());
+
+        when(enclave.getPublicKeys()).thenReturn(singleton(recipientKey));
+
+        partyInfoService.publishPayloads(singletonList(mock(EncodedPayload.class)), recipientKey);
+
+        verifyZeroInteractions(payloadPublisher);
+    }
+
+    @Test
+    public void publishPayloadsWithNothingToSendDoesNothing() {
+
+        partyInfoService.publishPayloads(emptyList(), PublicKey.from("Some Key Data".getBytes()));
+
+        verifyZeroInteractions(payloadPublisher);
+    }
+
     @Test
     public void createWithFactoryConstructor() throws Exception {
 
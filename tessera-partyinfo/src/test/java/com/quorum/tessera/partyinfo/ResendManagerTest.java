@@ -5,14 +5,24 @@ import com.quorum.tessera.enclave.Enclave;
 import com.quorum.tessera.enclave.EncodedPayload;
 import com.quorum.tessera.enclave.PayloadEncoder;
 import com.quorum.tessera.data.MessageHash;
+import com.quorum.tessera.data.MessageHashFactory;
 import com.quorum.tessera.encryption.PublicKey;
 import com.quorum.tessera.data.EncryptedTransaction;
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
 import static java.util.Collections.emptyList;
 import static java.util.Collections.singleton;
@@ -20,6 +30,8 @@ import static java.util.Collections.singletonList;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.catchThrowable;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
 import static org.mockito.Mockito.*;
 
 public class ResendManagerTest {
@@ -75,6 +87,7 @@ public class ResendManagerTest {
         assertThat(encodedPayload.getRecipientBoxes()).containsExactly(newEncryptedMasterKey);
 
         verify(encryptedTransactionDAO).save(any(EncryptedTransaction.class));
+        verify(encryptedTransactionDAO).saveRecipients(any(EncryptedTransaction.class), eq(singletonList(senderKey)));
         verify(encryptedTransactionDAO).retrieveByHash(any(MessageHash.class));
         verify(payloadEncoder).decode(input);
         verify(payloadEncoder).encode(any(EncodedPayload.class));
@@ -116,20 +129,75 @@ public class ResendManagerTest {
         when(payloadEncoder.decode(storedData)).thenReturn(existingEncodedPayload);
         when(payloadEncoder.decode(incomingData)).thenReturn(encodedPayload);
         when(payloadEncoder.encode(any(EncodedPayload.class))).thenReturn("updated".getBytes());
+        when(enclave.hasSameMasterKey(encodedPayload, existingEncodedPayload)).thenReturn(true);
+        when(encryptedTransactionDAO.retrieveRecipients(any(MessageHash.class))).thenReturn(singletonList(senderKey));
 
         resendManager.acceptOwnMessage(incomingData);
 
         assertThat(encodedPayload.getRecipientKeys()).containsExactly(recipientKey);
         assertThat(encodedPayload.getRecipientBoxes()).containsExactly(recipientBox);
 
-        verify(encryptedTransactionDAO).save(et);
+        verify(encryptedTransactionDAO).update(et);
+        verify(encryptedTransactionDAO).saveRecipients(et, singletonList(recipientKey));
         verify(encryptedTransactionDAO).retrieveByHash(any(MessageHash.class));
+        verify(encryptedTransactionDAO).retrieveRecipients(any(MessageHash.class));
         verify(payloadEncoder).decode(storedData);
         verify(payloadEncoder).decode(incomingData);
         verify(payloadEncoder).encode(existingEncodedPayload);
         verify(enclave).getPublicKeys();
-        verify(enclave).unencryptTransaction(encodedPayload, null);
-        verify(enclave).unencryptTransaction(existingEncodedPayload, null);
+        verify(enclave).hasSameMasterKey(encodedPayload, existingEncodedPayload);
+    }
+
+    @Test
+    public void storePayloadAsSenderWhenTxIsPresentRecordsEveryPartyOfAnUnindexedTransaction() {
+
+        final byte[] incomingData = "incomingData".getBytes();
+
+        final byte[] storedData = "SOMEDATA".getBytes();
+        final EncryptedTransaction et = new EncryptedTransaction(null, storedData);
+        final PublicKey senderKey = PublicKey.from("SENDER".getBytes());
+
+        final PublicKey recipientKey = PublicKey.from("RECIPIENT-KEY".getBytes());
+        final byte[] recipientBox = "BOX".getBytes();
+
+        final EncodedPayload encodedPayload =
+                EncodedPayload.Builder.create()
+                        .withSenderKey(senderKey)
+                        .withCipherText("CIPHERTEXT".getBytes())
+                        .withRecipientBoxes(singletonList(recipientBox))
+                        .withRecipientKeys(singletonList(recipientKey))
+                        .build();
+
+        final EncodedPayload existingEncodedPayload =
+                EncodedPayload.Builder.create()
+                        .withSenderKey(senderKey)
+                        .withCipherText("CIPHERTEXT".getBytes())
+                        .withRecipientBoxes(new ArrayList<>())
+                        .withRecipientKeys(new ArrayList<>())
+                        .build();
+
+        when(enclave.getPublicKeys()).thenReturn(singleton(senderKey));
+        when(encryptedTransactionDAO.retrieveByHash(any(MessageHash.class))).thenReturn(Optional.of(et));
+        when(payloadEncoder.decode(storedData)).thenReturn(existingEncodedPayload);
+        when(payloadEncoder.decode(incomingData)).thenReturn(encodedPayload);
+        when(payloadEncoder.encode(any(EncodedPayload.class))).thenReturn("updated".getBytes());
+        when(enclave.hasSameMasterKey(encodedPayload, existingEncodedPayload)).thenReturn(true);
+        when(encryptedTransactionDAO.retrieveRecipients(any(MessageHash.class))).thenReturn(emptyList());
+
+        resendManager.acceptOwnMessage(incomingData);
+
+        assertThat(encodedPayload.getRecipientKeys()).containsExactly(recipientKey);
+        assertThat(encodedPayload.getRecipientBoxes()).containsExactly(recipientBox);
+
+        verify(encryptedTransactionDAO).update(et);
+        verify(encryptedTransactionDAO).saveRecipients(et, Arrays.asList(recipientKey, senderKey));
+        verify(encryptedTransactionDAO).retrieveByHash(any(MessageHash.class));
+        verify(encryptedTransactionDAO).retrieveRecipients(any(MessageHash.class));
+        verify(payloadEncoder).decode(storedData);
+        verify(payloadEncoder).decode(incomingData);
+        verify(payloadEncoder).encode(existingEncodedPayload);
+        verify(enclave).getPublicKeys();
+        verify(enclave).hasSameMasterKey(encodedPayload, existingEncodedPayload);
     }
 
     @Test
@@ -167,7 +235,6 @@ public class ResendManagerTest {
         verify(payloadEncoder).decode(storedData);
         verify(payloadEncoder).decode(incomingData);
         verify(enclave).getPublicKeys();
-        verify(enclave).unencryptTransaction(encodedPayload, null);
     }
 
     @Test
@@ -198,7 +265,6 @@ public class ResendManagerTest {
 
         verify(enclave).getPublicKeys();
         verify(payloadEncoder).decode(incomingData);
-        verify(enclave).unencryptTransaction(encodedPayload, null);
     }
 
     @Test
@@ -232,8 +298,49 @@ public class ResendManagerTest {
         when(encryptedTransactionDAO.retrieveByHash(any(MessageHash.class))).thenReturn(Optional.of(et));
         when(payloadEncoder.decode(storedData)).thenReturn(existingEncodedPayload);
         when(payloadEncoder.decode(incomingData)).thenReturn(encodedPayload);
-        when(payloadEncoder.encode(any(EncodedPayload.class))).thenReturn("updated".getBytes());
-        when(enclave.unencryptTransaction(existingEncodedPayload, null)).thenReturn("payload1".getBytes());
+        when(enclave.hasSameMasterKey(encodedPayload, existingEncodedPayload)).thenReturn(false);
+
+        final Throwable throwable = catchThrowable(() -> resendManager.acceptOwnMessage(incomingData));
+
+        assertThat(throwable).isInstanceOf(IllegalArgumentException.class).hasMessage("Invalid payload provided");
+
+        verify(encryptedTransactionDAO).retrieveByHash(any(MessageHash.class));
+        verify(payloadEncoder).decode(storedData);
+        verify(payloadEncoder).decode(incomingData);
+        verify(enclave).getPublicKeys();
+        verify(enclave).hasSameMasterKey(encodedPayload, existingEncodedPayload);
+    }
+
+    @Test
+    public void differentCipherTextForExistingTransactionIsRejectedWithoutDecrypting() {
+        final byte[] incomingData = "incomingData".getBytes();
+
+        final byte[] storedData = "SOMEDATA".getBytes();
+        final EncryptedTransaction et = new EncryptedTransaction(null, storedData);
+        final PublicKey senderKey = PublicKey.from("SENDER".getBytes());
+
+        final EncodedPayload encodedPayload =
+                EncodedPayload.Builder.create()
+                        .withSenderKey(senderKey)
+                        .withCipherText("CIPHERTEXT".getBytes())
+                        .withCipherTextNonce("NONCE".getBytes())
+                        .withRecipientBoxes(singletonList("BOX".getBytes()))
+                        .withRecipientKeys(singletonList(PublicKey.from("RECIPIENT-KEY".getBytes())))
+                        .build();
+
+        final EncodedPayload existingEncodedPayload =
+                EncodedPayload.Builder.create()
+                        .withSenderKey(senderKey)
+                        .withCipherText("CIPHERTEXT".getBytes())
+                        .withCipherTextNonce("OTHER_NONCE".getBytes())
+                        .withRecipientBoxes(new ArrayList<>())
+                        .withRecipientKeys(new ArrayList<>())
+                        .build();
+
+        when(enclave.getPublicKeys()).thenReturn(singleton(senderKey));
+        when(encryptedTransactionDAO.retrieveByHash(any(MessageHash.class))).thenReturn(Optional.of(et));
+        when(payloadEncoder.decode(storedData)).thenReturn(existingEncodedPayload);
+        when(payloadEncoder.decode(incomingData)).thenReturn(encodedPayload);
 
         final Throwable throwable = catchThrowable(() -> resendManager.acceptOwnMessage(incomingData));
 
@@ -243,23 +350,25 @@ public class ResendManagerTest {
         verify(payloadEncoder).decode(storedData);
         verify(payloadEncoder).decode(incomingData);
         verify(enclave).getPublicKeys();
-        verify(enclave).unencryptTransaction(encodedPayload, null);
-        verify(enclave).unencryptTransaction(existingEncodedPayload, null);
     }
 
     @Test
     public void undecryptablePayloadErrors() {
         final byte[] incomingData = "incomingData".getBytes();
 
+        final PublicKey senderKey = PublicKey.from("SENDER".getBytes());
+
         final EncodedPayload encodedPayload =
                 EncodedPayload.Builder.create()
-                        .withSenderKey(mock(PublicKey.class))
+                        .withSenderKey(senderKey)
                         .withCipherText("CIPHERTEXT".getBytes())
                         .withRecipientBoxes(emptyList())
                         .withRecipientKeys(emptyList())
                         .build();
 
         when(payloadEncoder.decode(incomingData)).thenReturn(encodedPayload);
+        when(enclave.getPublicKeys()).thenReturn(singleton(senderKey));
+        when(encryptedTransactionDAO.retrieveByHash(any(MessageHash.class))).thenReturn(Optional.empty());
         when(enclave.unencryptTransaction(encodedPayload, null)).thenThrow(IllegalArgumentException.class);
 
         final Throwable throwable = catchThrowable(() -> resendManager.acceptOwnMessage(incomingData));
@@ -267,9 +376,172 @@ public class ResendManagerTest {
         assertThat(throwable).isInstanceOf(IllegalArgumentException.class).hasMessage(null);
 
         verify(payloadEncoder).decode(incomingData);
+        verify(enclave).getPublicKeys();
+        verify(encryptedTransactionDAO).retrieveByHash(any(MessageHash.class));
         verify(enclave).unencryptTransaction(encodedPayload, null);
     }
 
+    @Test
+    public void messagesForDifferentTransactionsAreMergedConcurrently() throws Exception {
+
+        final ResendManagerImpl impl = (ResendManagerImpl) resendManager;
+        final MessageHashFactory messageHashFactory = MessageHashFactory.create();
+        final PublicKey senderKey = PublicKey.from("SENDER".getBytes());
+
+        final byte[] firstCipherText = "CIPHERTEXT".getBytes();
+        final MessageHash firstHash = messageHashFactory.createFromCipherText(firstCipherText);
+
+        // pick a second transaction that is guarded by a different lock
+        int suffix = 0;
+        while (impl.lockFor(firstHash) == impl.lockFor(messageHashFactory.createFromCipherText(cipherText(suffix)))) {
+            suffix++;
+        }
+        final byte[] secondCipherText = cipherText(suffix);
+        final MessageHash secondHash = messageHashFactory.createFromCipherText(secondCipherText);
+
+        final EncodedPayload first = ownPayload(senderKey, firstCipherText);
+        final EncodedPayload second = ownPayload(senderKey, secondCipherText);
+
+        when(payloadEncoder.decode("FIRST".getBytes())).thenReturn(first);
+        when(payloadEncoder.decode("SECOND".getBytes())).thenReturn(second);
+        when(enclave.getPublicKeys()).thenReturn(singleton(senderKey));
+        when(enclave.createNewRecipientBox(any(), any())).thenReturn("newbox".getBytes());
+        when(payloadEncoder.encode(any(EncodedPayload.class))).thenReturn("updated".getBytes());
+
+        final CountDownLatch firstStarted = new CountDownLatch(1);
+        final CountDownLatch secondStarted = new CountDownLatch(1);
+        when(encryptedTransactionDAO.retrieveByHash(firstHash))
+                .thenAnswer(
+                        invocation -> {
+                            firstStarted.countDown();
+                            return secondStarted.await(5, TimeUnit.SECONDS) ? Optional.empty() : null;
+                        });
+        when(encryptedTransactionDAO.retrieveByHash(secondHash))
+                .thenAnswer(
+                        invocation -> {
+                            secondStarted.countDown();
+                            return Optional.empty();
+                        });
+
+        final ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            final Future<?> firstMerge = executor.submit(() -> resendManager.acceptOwnMessage("FIRST".getBytes()));
+            assertThat(firstStarted.await(5, TimeUnit.SECONDS)).isTrue();
+
+            // the first merge is still holding its lock until this one gets going
+            resendManager.acceptOwnMessage("SECOND".getBytes());
+
+            firstMerge.get(5, TimeUnit.SECONDS);
+        } finally {
+            executor.shutdownNow();
+        }
+
+        verify(payloadEncoder).decode("FIRST".getBytes());
+        verify(payloadEncoder).decode("SECOND".getBytes());
+        verify(payloadEncoder, times(2)).encode(any(EncodedPayload.class));
+        verify(enclave, times(2)).getPublicKeys();
+        verify(enclave).unencryptTransaction(first, null);
+        verify(enclave).unencryptTransaction(second, null);
+        verify(enclave, times(2)).createNewRecipientBox(any(), eq(senderKey));
+        verify(encryptedTransactionDAO).retrieveByHash(firstHash);
+        verify(encryptedTransactionDAO).retrieveByHash(secondHash);
+        verify(encryptedTransactionDAO, times(2)).save(any(EncryptedTransaction.class));
+        verify(encryptedTransactionDAO, times(2)).saveRecipients(any(EncryptedTransaction.class), any());
+    }
+
+    @Test
+    public void batchesOfTheSameTransactionsInOppositeOrdersDoNotDeadlock() throws Exception {
+
+        final ResendManagerImpl impl = (ResendManagerImpl) resendManager;
+        final MessageHashFactory messageHashFactory = MessageHashFactory.create();
+        final PublicKey senderKey = PublicKey.from("SENDER".getBytes());
+
+        final byte[] firstCipherText = "CIPHERTEXT".getBytes();
+        final MessageHash firstHash = messageHashFactory.createFromCipherText(firstCipherText);
+
+        int suffix = 0;
+        while (impl.lockFor(firstHash) == impl.lockFor(messageHashFactory.createFromCipherText(cipherText(suffix)))) {
+            suffix++;
+        }
+        final byte[] secondCipherText = cipherText(suffix);
+        final MessageHash secondHash = messageHashFactory.createFromCipherText(secondCipherText);
+
+        when(payloadEncoder.decode("FIRST".getBytes()))
+                .thenAnswer(invocation -> ownPayload(senderKey, firstCipherText));
+        when(payloadEncoder.decode("SECOND".getBytes()))
+                .thenAnswer(invocation -> ownPayload(senderKey, secondCipherText));
+        when(enclave.getPublicKeys()).thenReturn(singleton(senderKey));
+        when(enclave.createNewRecipientBox(any(), any())).thenReturn("newbox".getBytes());
+        when(payloadEncoder.encode(any(EncodedPayload.class))).thenReturn("updated".getBytes());
+
+        // each batch lingers over its first merge until the other has had the chance to start merging too, which is
+        // when taking the locks in the order of the messages would leave each batch waiting on the other's lock
+        final CountDownLatch bothMerging = new CountDownLatch(2);
+        when(encryptedTransactionDAO.retrieveByHash(any(MessageHash.class)))
+                .thenAnswer(
+                        invocation -> {
+                            bothMerging.countDown();
+                            bothMerging.await(500, TimeUnit.MILLISECONDS);
+                            return Optional.empty();
+                        });
+
+        final ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            final Future<?> forwards =
+                    executor.submit(
+                            () -> inTransaction(
+                                    () -> resendManager.acceptOwnMessages(
+                                            Arrays.asList("FIRST".getBytes(), "SECOND".getBytes()))));
+            final Future<?> backwards =
+                    executor.submit(
+                            () -> inTransaction(
+                                    () -> resendManager.acceptOwnMessages(
+                                            Arrays.asList("SECOND".getBytes(), "FIRST".getBytes()))));
+
+            forwards.get(5, TimeUnit.SECONDS);
+            backwards.get(5, TimeUnit.SECONDS);
+        } finally {
+            executor.shutdownNow();
+        }
+
+        verify(payloadEncoder, times(2)).decode("FIRST".getBytes());
+        verify(payloadEncoder, times(2)).decode("SECOND".getBytes());
+        verify(payloadEncoder, times(4)).encode(any(EncodedPayload.class));
+        verify(enclave, times(4)).getPublicKeys();
+        verify(enclave, times(4)).unencryptTransaction(any(EncodedPayload.class), isNull());
+        verify(enclave, times(4)).createNewRecipientBox(any(), eq(senderKey));
+        verify(encryptedTransactionDAO, times(2)).retrieveByHash(firstHash);
+        verify(encryptedTransactionDAO, times(2)).retrieveByHash(secondHash);
+        verify(encryptedTransactionDAO, times(4)).save(any(EncryptedTransaction.class));
+        verify(encryptedTransactionDAO, times(4)).saveRecipients(any(EncryptedTransaction.class), any());
+    }
+
+    /** Runs the work as if in a transaction, so that anything deferred until completion runs once it has finished */
+    private static void inTransaction(final Runnable work) {
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            work.run();
+        } finally {
+            final List<TransactionSynchronization> synchronizations =
+                    TransactionSynchronizationManager.getSynchronizations();
+            TransactionSynchronizationManager.clearSynchronization();
+            synchronizations.forEach(s -> s.afterCompletion(TransactionSynchronization.STATUS_COMMITTED));
+        }
+    }
+
+    private static byte[] cipherText(final int suffix) {
+        return ("CIPHERTEXT-" + suffix).getBytes();
+    }
+
+    private static EncodedPayload ownPayload(final PublicKey sender, final byte[] cipherText) {
+        return EncodedPayload.Builder.create()
+                .withSenderKey(sender)
+                .withCipherText(cipherText)
+                .withRecipientBoxes(new ArrayList<>())
+                .withRecipientKeys(new ArrayList<>())
+                .build();
+    }
+
     @Test
     public void constructWithMinimalArgs() {
 
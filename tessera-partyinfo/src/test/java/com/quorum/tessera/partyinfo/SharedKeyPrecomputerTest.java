@@ -0,0 +1,63 @@
+package com.quorum.tessera.partyinfo;
+
+import com.quorum.tessera.enclave.Enclave;
+import com.quorum.tessera.encryption.PublicKey;
+import com.quorum.tessera.partyinfo.model.PartyInfo;
+import com.quorum.tessera.partyinfo.model.Recipient;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.net.URI;
+import java.util.Arrays;
+import java.util.HashSet;
+
+import static java.util.Collections.emptySet;
+import static java.util.Collections.singleton;
+import static org.mockito.Mockito.*;
+
+public class SharedKeyPrecomputerTest {
+
+    private static final String URL = "http://myurl.com/";
+
+    private Enclave enclave;
+
+    private PartyInfoStore partyInfoStore;
+
+    @Before
+    public void init() {
+        this.enclave = mock(Enclave.class);
+        this.partyInfoStore = new PartyInfoStore(URI.create(URL));
+    }
+
+    @After
+    public void after() {
+        verifyNoMoreInteractions(enclave);
+    }
+
+    @Test
+    public void keysArePassedToEnclaveOnlyWhenNewOnesAreFound() {
+        final PublicKey keyOne = PublicKey.from("KeyOne".getBytes());
+        final PublicKey keyTwo = PublicKey.from("KeyTwo".getBytes());
+
+        final SharedKeyPrecomputer precomputer = new SharedKeyPrecomputer(enclave, partyInfoStore, true);
+
+        partyInfoStore.store(new PartyInfo(URL, singleton(new Recipient(keyOne, URL)), emptySet()));
+        precomputer.run();
+        precomputer.run();
+
+        partyInfoStore.store(new PartyInfo(URL, singleton(new Recipient(keyTwo, URL)), emptySet()));
+        precomputer.run();
+
+        verify(enclave).precomputeSharedKeys(singleton(keyOne));
+        verify(enclave).precomputeSharedKeys(new HashSet<>(Arrays.asList(keyOne, keyTwo)));
+    }
+
+    @Test
+    public void disabledPrecomputerDoesNothing() {
+        partyInfoStore.store(
+                new PartyInfo(URL, singleton(new Recipient(PublicKey.from("Key".getBytes()), URL)), emptySet()));
+
+        new SharedKeyPrecomputer(enclave, partyInfoStore, false).run();
+    }
+}